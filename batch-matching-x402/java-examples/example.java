@@ -0,0 +1,73 @@
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.batch.FullDatasetClient;
+import com.interzoid.client.batch.MatchJob;
+import com.interzoid.client.x402.EvmSigner;
+import com.interzoid.client.x402.X402Client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs a Full Dataset match job on a raw file on the Web (stored in AWS
+ * S3) and pays for it with x402 (USDC on Base) instead of an API key.
+ * Prints the matched records, grouped by SimKey.
+ *
+ * The first job is answered with a 402 quote and sent again with a signed
+ * payment. The quote is then kept, so further jobs in the same run (pass a
+ * count as the first argument) are paid in a single request with an
+ * authorization signed ahead of time. Quote limits (most paid per job,
+ * networks) are set with interzoid.x402.* properties: see
+ * java-client/README.md.
+ *
+ * The private key is read from the EVM_PRIVATE_KEY environment variable
+ * and never leaves this process.
+ *
+ * Suggested file name: BatchMatchX402.java
+ * Requires:            the shared client (cd ../../java-client && mvn -q install)
+ * Run with:            EVM_PRIVATE_KEY=0x... java -cp ../../java-client/interzoid-client/target/interzoid-client.jar BatchMatchX402.java [jobs]
+ */
+class BatchMatchX402 {
+
+    // The matched records are streamed to this file, then printed
+    private static final String RESULTS_FILE = "x402-matches.csv";
+
+    public static void main(String[] args) {
+        int jobs = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+
+        EvmSigner signer;
+        try {
+            signer = EvmSigner.fromPrivateKey(System.getenv("EVM_PRIVATE_KEY"));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Set EVM_PRIVATE_KEY to the hex private key of a wallet holding USDC: " + e.getMessage());
+            return;
+        }
+
+        MatchJob job = MatchJob.forConnection("https://dl.interzoid.com/csv/companies.csv")
+            .fileType("csv")
+            .function("company-name-only")
+            .companyColumn(1)
+            .hasHeader(true);
+        Path results = Paths.get(RESULTS_FILE);
+
+        try (X402Client payer = X402Client.create(InterzoidHttp.shared(), signer)) {
+            FullDatasetClient client = FullDatasetClient.fromSystemProperties().payWith(payer);
+
+            for (int i = 1; i <= jobs; i++) {
+                long start = System.nanoTime();
+                client.run(job, results);
+                System.err.printf("Job %d paid from %s in %d ms%n",
+                    i, signer.address(), (System.nanoTime() - start) / 1_000_000);
+            }
+            System.err.printf("402 quotes: %d, quote reuses: %d, pre-signed payments: %d%n",
+                payer.challenges(), payer.quoteReuses(), payer.presignedUsed());
+
+            // Matched records, grouped by SimKey
+            System.out.print(new String(Files.readAllBytes(results), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Match job failed: " + e.getMessage());
+        }
+    }
+}
@@ -1,20 +1,34 @@
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.io.GroupCommitWriter;
+
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Reads company names from a text file, calls Interzoid's company match API
  * for each line, and writes the original value + SimKey to a CSV file.
  *
+ * Pass a number as the first argument to keep that many API requests in
+ * flight at once; output.csv is still written in the original line order.
+ * Rows are written as UTF-8 by a dedicated writer thread, which can also
+ * fsync as it goes (see interzoid.writer.* in java-client/README.md).
+ *
+ * The HTTP connection pool is shared with the other Java examples; see
+ * java-client/README.md for pool size and idle timeout settings.
+ *
  * File name: append-simkeys-to-file.java
- * Run with:  java AppendSimkeysToFile
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar append-simkeys-to-file.java
+ *            (add a number, e.g. "... append-simkeys-to-file.java 32", for 32 concurrent requests)
  */
 class AppendSimkeysToFile {
 
@@ -25,6 +39,12 @@ class AppendSimkeysToFile {
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
     private static final String OUTPUT_FILE_NAME = "output.csv";
 
+    // Number of API requests in flight when no argument is given (1 = sequential)
+    private static final int DEFAULT_CONCURRENCY = 1;
+
+    // Completed rows allowed to wait for an earlier, slower row, per in-flight request
+    private static final int REORDER_WINDOW_FACTOR = 8;
+
     // Simple POJO to hold parsed JSON response
     private static class ResponseData {
         String simKey;
@@ -32,160 +52,199 @@ class AppendSimkeysToFile {
         String credits;
     }
 
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
     public static void main(String[] args) {
+        int concurrency = DEFAULT_CONCURRENCY;
+        if (args.length > 0) {
+            try {
+                concurrency = Math.max(1, Integer.parseInt(args[0]));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid concurrency value: " + args[0]);
+                return;
+            }
+        }
+
         try (
             BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME));
-            PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(OUTPUT_FILE_NAME)))
+            // Rows are written by the writer's own thread, in line order
+            GroupCommitWriter writer = GroupCommitWriter.open(Paths.get(OUTPUT_FILE_NAME), true)
         ) {
-            String line;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                String originalValue = line;
+            if (concurrency == 1) {
+                runSequential(reader, writer);
+            } else {
+                runConcurrent(reader, writer, concurrency);
+            }
 
-                // Skip completely empty lines (same as Go example)
-                if (originalValue.length() == 0) {
-                    continue;
-                }
+            System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
 
-                ResponseData result;
-                try {
-                    result = callApiForCompany(originalValue);
-                } catch (Exception e) {
-                    System.out.printf("Error calling API for line %d (%q): %s%n",
-                            lineNumber, originalValue, e.getMessage());
-                    // On error, write original value and empty SimKey
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
-                }
+        } catch (IOException e) {
+            System.out.println("Error opening/creating files: " + e.getMessage());
+        }
+    }
 
-                if (result == null) {
-                    System.out.printf("No response for line %d (%q)%n", lineNumber, originalValue);
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
-                }
+    /**
+     * Original mode: one API call at a time, one row written per call.
+     */
+    private static void runSequential(BufferedReader reader, GroupCommitWriter writer) throws IOException {
+        String line;
+        int lineNumber = 0;
+        long sequence = 0;
 
-                // Optional: check result.code for "Success"
-                if (!"Success".equalsIgnoreCase(result.code)) {
-                    System.out.printf(
-                        "Non-success code for line %d (%q): Code=%s%n",
-                        lineNumber, originalValue, result.code
-                    );
-                }
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String originalValue = line;
 
-                // Write original value and SimKey as a CSV row
-                writer.println(toCsvRow(originalValue, result.simKey));
+            // Skip completely empty lines (same as Go example)
+            if (originalValue.length() == 0) {
+                continue;
             }
 
-            System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
+            ResponseData result = null;
+            Throwable error = null;
+            try {
+                result = callApiForCompany(originalValue);
+            } catch (Exception e) {
+                error = e;
+            }
 
-        } catch (IOException e) {
-            System.out.println("Error opening/creating files: " + e.getMessage());
+            writer.write(sequence++, buildRow(lineNumber, originalValue, result, error));
         }
     }
 
     /**
-     * Calls the Interzoid getcompanymatchadvanced API for a given company name.
+     * Concurrent mode: keeps up to {@code concurrency} requests in flight on the
+     * shared HTTP client. Completed rows are handed to the ordered writer, which
+     * writes output.csv in the original line order, byte-for-byte the same as
+     * the sequential run. Completion threads never wait on the file.
      */
-    private static ResponseData callApiForCompany(String companyName) throws IOException {
-        String companyParam = URLEncoder.encode(companyName, StandardCharsets.UTF_8.toString());
+    private static void runConcurrent(BufferedReader reader, GroupCommitWriter writer, int concurrency)
+            throws IOException {
+        // Bounds the number of outstanding HTTP requests
+        Semaphore inFlight = new Semaphore(concurrency);
+        // Bounds requests + rows waiting in the writer for an earlier row, so
+        // one slow request cannot make the writer hold rows without limit
+        long window = (long) concurrency * REORDER_WINDOW_FACTOR;
 
-        String apiUrl =
-            "https://api.interzoid.com/getcompanymatchadvanced?license=" + API_KEY +
-            "&company=" + companyParam +
-            "&algorithm=model-v4-wide";
+        String line;
+        int lineNumber = 0;
+        long sequence = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String originalValue = line;
+
+            // Skip completely empty lines (same as Go example)
+            if (originalValue.length() == 0) {
+                continue;
+            }
+
+            long rowSequence = sequence++;
+            int rowLineNumber = lineNumber;
+
+            writer.awaitWritten(rowSequence - window);
+            inFlight.acquireUninterruptibly();
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in;
-        if (status >= 200 && status < 300) {
-            in = new BufferedReader(
-                    new java.io.InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-        } else {
-            in = new BufferedReader(
-                    new java.io.InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8));
+            callApiForCompanyAsync(originalValue).whenComplete((result, error) -> {
+                String row = buildRow(rowLineNumber, originalValue, result, unwrap(error));
+                try {
+                    writer.write(rowSequence, row);
+                } catch (IOException e) {
+                    // The writer has failed; closing it reports the error
+                } finally {
+                    inFlight.release();
+                }
+            });
         }
 
-        StringBuilder responseBuilder = new StringBuilder();
-        String inputLine;
-        while ((inputLine = in.readLine()) != null) {
-            responseBuilder.append(inputLine);
+        // Wait until every row has been handed to the writer; closing it
+        // then writes them out
+        inFlight.acquireUninterruptibly(concurrency);
+    }
+
+    /**
+     * Turns the outcome of one API call into its CSV row, logging problems the
+     * same way in both modes. On error or empty response the SimKey is left blank.
+     */
+    private static String buildRow(int lineNumber, String originalValue,
+                                   ResponseData result, Throwable error) {
+        if (error != null) {
+            System.out.printf("Error calling API for line %d (\"%s\"): %s%n",
+                    lineNumber, originalValue, error.getMessage());
+            // On error, write original value and empty SimKey
+            return toCsvRow(originalValue, "");
         }
-        in.close();
-        conn.disconnect();
 
-        String json = responseBuilder.toString().trim();
-        if (json.isEmpty()) {
-            return null;
+        if (result == null) {
+            System.out.printf("No response for line %d (\"%s\")%n", lineNumber, originalValue);
+            return toCsvRow(originalValue, "");
         }
 
-        ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
-        return data;
+        // Optional: check result.code for "Success"
+        if (!"Success".equalsIgnoreCase(result.code)) {
+            System.out.printf(
+                "Non-success code for line %d (\"%s\"): Code=%s%n",
+                lineNumber, originalValue, result.code
+            );
+        }
+
+        // Original value and SimKey as a CSV row
+        return toCsvRow(originalValue, result.simKey);
     }
 
     /**
-     * Very simple JSON value extractor for flat JSON like:
-     * {"SimKey":"...","Code":"Success","Credits":"1"}
-     *
-     * This avoids external JSON libraries.
+     * Calls the Interzoid getcompanymatchadvanced API for a given company name.
      */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) {
-            return "";
-        }
+    private static ResponseData callApiForCompany(String companyName) throws IOException {
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(buildApiUrl(companyName));
+        return parseResponse(response.bodyBytes());
+    }
 
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) {
-            return "";
+    /**
+     * Asynchronous variant of {@link #callApiForCompany} used by the concurrent mode.
+     */
+    private static CompletableFuture<ResponseData> callApiForCompanyAsync(String companyName) {
+        String apiUrl;
+        try {
+            apiUrl = buildApiUrl(companyName);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return InterzoidHttp.shared().getAsync(apiUrl)
+            .thenApply(response -> parseResponse(response.bodyBytes()));
+    }
+
+    private static String buildApiUrl(String companyName) throws IOException {
+        String companyParam = URLEncoder.encode(companyName, StandardCharsets.UTF_8.toString());
 
-        // Skip whitespace
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() &&
-               Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
+        return InterzoidHttp.apiBaseUrl() + "/getcompanymatchadvanced?license=" + API_KEY +
+            "&company=" + companyParam +
+            "&algorithm=model-v4-wide";
+    }
+
+    /**
+     * Maps a response body (success or error) to ResponseData, or null if empty.
+     */
+    private static ResponseData parseResponse(byte[] body) {
+        JsonFields.Values json = RESPONSE_FIELDS.extract(body);
+        if (json.isEmpty()) {
+            return null;
         }
 
-        // Handle quoted string value
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length() &&
-                   json.charAt(valueEnd) != ',' &&
-                   json.charAt(valueEnd) != '}' &&
-                   !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
+        ResponseData data = new ResponseData();
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
+        return data;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
         }
+        return error;
     }
 
     /**
@@ -0,0 +1,98 @@
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.batch.JdbcJob;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads company names straight from a database table, calls Interzoid's
+ * company match API for each one, and writes the SimKeys back into the
+ * table, with no export or re-import.
+ *
+ * Rows are streamed from SOURCE_QUERY a fetch at a time, so the table is
+ * never loaded into memory. Lookups run concurrently while the next rows
+ * are read, and results are written with batched UPDATEs and committed
+ * every few thousand rows (see interzoid.jdbc.* in java-client/README.md).
+ * Rows that got no SimKey are left NULL, so running the program again
+ * picks up only those.
+ *
+ * Any JDBC database works: put its driver jar on the classpath and set
+ * JDBC_URL (or -Dinterzoid.jdbc.url=...). The table needs a key column,
+ * the company name and an empty simkey column, e.g.:
+ *
+ *   CREATE TABLE companies (id BIGINT PRIMARY KEY, company VARCHAR(255), simkey VARCHAR(64))
+ *
+ * File name: append-simkeys-to-table.java
+ * Requires:  the shared client (cd ../../java-client && mvn -q install) and a JDBC driver
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar:h2.jar append-simkeys-to-table.java
+ */
+class AppendSimkeysToTable {
+
+    // Replace this with your API key from https://www.interzoid.com/manage-api-account
+    private static final String API_KEY = "YOUR_API_KEY_HERE";
+
+    private static final String JDBC_URL = System.getProperty("interzoid.jdbc.url", "jdbc:h2:./companies");
+    private static final String JDBC_USER = System.getProperty("interzoid.jdbc.user", "sa");
+    private static final String JDBC_PASSWORD = System.getProperty("interzoid.jdbc.password", "");
+
+    // Key column(s) first, then the company name
+    private static final String SOURCE_QUERY = "SELECT id, company FROM companies WHERE simkey IS NULL";
+    // Bound as (SimKey, key column(s))
+    private static final String UPDATE_SQL = "UPDATE companies SET simkey = ? WHERE id = ?";
+
+    private static final String API_NAME = "getcompanymatchadvanced";
+    private static final String ALGORITHM = "model-v4-wide";
+
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code");
+
+    public static void main(String[] args) {
+        // One connection streams the query while the other writes and commits
+        try (
+            Connection source = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD);
+            Connection sink = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD)
+        ) {
+            JdbcJob job = JdbcJob.query(SOURCE_QUERY).update(UPDATE_SQL);
+            JdbcJob.Summary summary = job.run(source, sink, AppendSimkeysToTable::lookupSimKey);
+
+            System.out.printf("Done. Rows: %d, API calls: %d, SimKeys written: %d, commits: %d (%.0f rows/s)%n",
+                summary.rows(), summary.lookups(), summary.written(), summary.commits(), summary.rowsPerSecond());
+
+        } catch (SQLException e) {
+            System.out.println("Database error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the SimKey for one company name, or "" (row left NULL) if the
+     * call fails or the API has no SimKey for it.
+     */
+    private static CompletableFuture<String> lookupSimKey(String company, long rowNumber) {
+        String apiUrl =
+            InterzoidHttp.apiBaseUrl() + "/" + API_NAME + "?license=" + API_KEY +
+            "&company=" + URLEncoder.encode(company, StandardCharsets.UTF_8) +
+            "&algorithm=" + ALGORITHM;
+
+        // Shared keep-alive client: connections are reused across rows
+        return InterzoidHttp.shared().getAsync(apiUrl).handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.printf("API error on row %d (\"%s\"): %s%n", rowNumber, company, cause.getMessage());
+                return "";
+            }
+            JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
+            if (!"Success".equalsIgnoreCase(json.get("Code"))) {
+                return "";
+            }
+            return json.get("SimKey");
+        });
+    }
+}
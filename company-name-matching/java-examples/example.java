@@ -8,15 +8,15 @@
 //
 // Register for an API key at:
 // https://www.interzoid.com/manage-api-account
+//
+// Requires the shared client (cd ../../java-client && mvn -q install).
+// Run with: java -cp ../../java-client/interzoid-client/target/interzoid-client.jar example.java
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 
 public class example {
 
@@ -27,42 +27,31 @@ public class example {
         // Construct the API URL using simple string concatenation.
         // Change the company or algorithm to match your needs.
         String apiUrl =
-            "https://api.interzoid.com/getcompanymatchadvanced?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getcompanymatchadvanced?license=" + API_KEY +
             "&company=ibm" +
             "&algorithm=model-v4-wide";
 
-        HttpURLConnection connection = null;
-
         try {
-            // Convert the string URL into a URI to avoid deprecation warnings.
-            URI uri = new URI(apiUrl);
-
-            // Convert URI to URL for opening an HTTP connection.
-            URL url = uri.toURL();
-
-            // Open an HTTP GET connection
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
+            // Send the request on the shared keep-alive client
+            HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-            int statusCode = connection.getResponseCode();
-
-            if (statusCode == HttpURLConnection.HTTP_OK) {
-                // Read the response body into a single string
-                String responseBody = readStream(connection.getInputStream());
+            int statusCode = response.statusCode();
 
+            if (statusCode == 200) {
                 // A sample Interzoid JSON response looks like:
                 // {
                 //   "SimKey": "somevalue",
                 //   "Code": "success",
                 //   "Credits": "99"
                 // }
-                //
-                // Since this beginner example uses no JSON libraries,
-                // we extract fields by basic string searching.
 
-                String simKey  = extractJsonValue(responseBody, "SimKey");
-                String code    = extractJsonValue(responseBody, "Code");
-                String credits = extractJsonValue(responseBody, "Credits");
+                // Pick out all fields in one pass over the raw response bytes
+                JsonFields.Values json = JsonFields.of("SimKey", "Code", "Credits")
+                    .extract(response.bodyBytes());
+
+                String simKey  = json.get("SimKey");
+                String code    = json.get("Code");
+                String credits = json.get("Credits");
 
                 // Output values
                 System.out.println("Match Similarity Key: " + simKey);
@@ -72,46 +61,8 @@ public class example {
                 System.out.println("API returned HTTP status code: " + statusCode);
             }
 
-        } catch (IOException | URISyntaxException e) {
+        } catch (IOException e) {
             System.out.println("Error calling Interzoid API: " + e.getMessage());
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
-    }
-
-    // Reads the entire InputStream into a single string.
-    private static String readStream(InputStream inputStream) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
         }
-
-        reader.close();
-        return builder.toString();
-    }
-
-    // Extracts a simple JSON value using string operations.
-    // Works for responses like: "Key": "Value"
-    private static String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"";
-
-        int keyIndex = json.indexOf(pattern);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(":", keyIndex);
-        if (colonIndex == -1) return "";
-
-        int firstQuote = json.indexOf("\"", colonIndex + 1);
-        if (firstQuote == -1) return "";
-
-        int secondQuote = json.indexOf("\"", firstQuote + 1);
-        if (secondQuote == -1) return "";
-
-        return json.substring(firstQuote + 1, secondQuote);
     }
 }
@@ -1,15 +1,23 @@
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.SimKeyCache;
+import com.interzoid.client.batch.FullDatasetClient;
+import com.interzoid.client.batch.MatchJob;
+import com.interzoid.client.cluster.FuzzyClusterer;
+import com.interzoid.client.cluster.SimKeyClusterer;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.FileReader;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Reads company names from a text file, calls Interzoid's
@@ -18,8 +26,28 @@ import java.util.List;
  *     Input,SimKey
  * with a blank line between clusters.
  *
+ * SimKeys are kept in a local cache directory, so re-running the report
+ * only calls the API for company names it has not seen before.
+ *
+ * Records are grouped with a bounded-memory external sort, so input files
+ * larger than the Java heap work too, or optionally with a single-pass
+ * hash grouping (see interzoid.sort.* and interzoid.cluster.mode in
+ * java-client/README.md). With -Dinterzoid.cluster.fuzzyDistance=1,
+ * clusters whose SimKeys differ by one character are reported as one.
+ * Merging is transitive, so a cluster can hold SimKeys that are several
+ * characters apart through a chain of near keys; a last line says how
+ * many SimKeys were merged, and how many of them only through a chain.
+ *
+ * For large files, set BATCH_CONNECTION to a URL of the same input file:
+ * the whole file is then matched in one Full Dataset API job instead of
+ * one call per row, and only rows the job could not match are sent to
+ * the per-row API. The input file is still read locally, so the report
+ * lists every cluster's records in input order and is identical to the
+ * per-row report.
+ *
  * Suggested file name: company-match-report.java
- * Run with:            java CompanyMatchReport
+ * Requires:            the shared client (cd ../../java-client && mvn -q install)
+ * Run with:            java -cp ../../java-client/interzoid-client/target/interzoid-client.jar company-match-report.java
  */
 class CompanyMatchReport {
 
@@ -29,16 +57,25 @@ class CompanyMatchReport {
     // Input file containing one company name per line
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
 
-    // Holds a single input company name and its SimKey
-    private static class Record {
-        String input;
-        String simKey;
+    private static final String API_NAME = "getcompanymatchadvanced";
+    private static final String ALGORITHM = "model-v4-wide";
 
-        Record(String input, String simKey) {
-            this.input = input;
-            this.simKey = simKey;
-        }
-    }
+    // Local SimKey cache (TTL and size: see java-client/README.md).
+    // Delete the directory to start from scratch.
+    private static final String CACHE_DIR = "simkey-cache";
+
+    // With -Dinterzoid.canonical=true, "ACME  Inc" and "Acme Inc" share one
+    // cache entry and one API call; each record keeps its own text
+    private static final Canonicalizer CANONICAL = Canonicalizer.forApi(API_NAME);
+
+    // Optional: URL of the input file that Interzoid can download, e.g. a
+    // pre-signed S3 link. Set it here or with -Dinterzoid.batch.connection=...
+    // Leave empty to call the API once per row.
+    private static final String BATCH_CONNECTION = System.getProperty("interzoid.batch.connection", "");
+    private static final String BATCH_FUNCTION = "company-name-only";
+
+    // The Full Dataset API response is streamed to this file
+    private static final String BATCH_RESULTS_FILE = "batch-matches.csv";
 
     // Maps the JSON returned by the getcompanymatchadvanced API
     private static class ResponseData {
@@ -47,10 +84,68 @@ class CompanyMatchReport {
         String credits;
     }
 
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
     public static void main(String[] args) {
-        List<Record> records = new ArrayList<>();
+        // Collects (SimKey, input) pairs. The default engine sorts small files
+        // in memory and spills large ones to temp files as sorted runs, so
+        // the heap never has to hold the whole file. -Dinterzoid.cluster.mode=hash
+        // groups in one pass instead (faster, but everything stays in memory).
+        try (SimKeyClusterer clusterer = SimKeyClusterer.fromSystemProperties()) {
+
+            try (SimKeyCache cache = SimKeyCache.open(Paths.get(CACHE_DIR))) {
+                boolean matched = false;
+                if (!BATCH_CONNECTION.isEmpty()) {
+                    matched = addBatchMatches(clusterer, cache);
+                }
+                if (!matched) {
+                    addPerRowMatches(clusterer, cache);
+                }
+            } catch (IOException e) {
+                System.out.println("Error reading input file or cache: " + e.getMessage());
+                return;
+            }
+
+            // If there are no records, nothing to do
+            if (clusterer.size() == 0) {
+                System.out.println("No records with similarity keys found.");
+                return;
+            }
 
-        // Read the input file line by line
+            //------------------------------------------------------------------
+            // Emit the clusters in SimKey order (records keep their input order)
+            // and print each cluster that contains two or more records. Each
+            // line is "Input,SimKey", with blank lines between clusters.
+            //------------------------------------------------------------------
+            clusterer.forEachCluster(2, CompanyMatchReport::printCluster);
+
+            // Fuzzy merging is single linkage: say how many SimKeys joined a
+            // cluster only through a chain of near keys
+            if (clusterer instanceof FuzzyClusterer) {
+                System.out.println(((FuzzyClusterer) clusterer).summary());
+            }
+
+        } catch (IOException e) {
+            System.out.println("Error sorting records: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the input file line by line and looks up each company's SimKey.
+     */
+    private static void addPerRowMatches(SimKeyClusterer clusterer, SimKeyCache cache) throws IOException {
+        addInputRecords(clusterer, cache, Map.of());
+    }
+
+    /**
+     * Reads the input file line by line and adds each company with its
+     * SimKey, taken from {@code batchKeys} when the batch job matched it
+     * and looked up otherwise. Records reach the clusterer in input order,
+     * as SimKeyClusterer requires.
+     */
+    private static void addInputRecords(SimKeyClusterer clusterer, SimKeyCache cache,
+                                        Map<String, String> batchKeys) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
             String company;
 
@@ -60,64 +155,83 @@ class CompanyMatchReport {
                     continue;
                 }
 
-                // Call API and get SimKey
-                ResponseData apiResult;
-                try {
-                    apiResult = callGetCompanyMatchAdvanced(company);
-                } catch (Exception e) {
-                    System.out.println("Error calling API for: " + company + " - " + e.getMessage());
-                    continue;
+                String simKey = batchKeys.get(company.trim());
+                if (simKey == null) {
+                    simKey = lookupSimKey(company, cache);
                 }
-
-                if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
-                    // If there is no SimKey, skip this record
-                    continue;
+                if (simKey != null) {
+                    clusterer.add(simKey, company);
                 }
-
-                records.add(new Record(company, apiResult.simKey));
             }
+        }
+    }
 
+    /**
+     * Matches the whole file in one Full Dataset API job. The response is
+     * streamed to BATCH_RESULTS_FILE. Its rows come back grouped by SimKey,
+     * not in input order, so they are only collected here; the input file
+     * is then read in order and each row takes its SimKey from the job, or
+     * is looked up one by one if the job had none for it. Returns false
+     * (nothing added) if the job itself fails, so the caller can fall back
+     * to per-row calls for the whole file.
+     */
+    private static boolean addBatchMatches(SimKeyClusterer clusterer, SimKeyCache cache) throws IOException {
+        MatchJob job = MatchJob.forConnection(BATCH_CONNECTION)
+            .function(BATCH_FUNCTION)
+            .companyColumn(1)
+            .hasHeader(false)
+            .apiKey(API_KEY);
+        Path results = Paths.get(BATCH_RESULTS_FILE);
+
+        try {
+            FullDatasetClient.fromSystemProperties().run(job, results);
         } catch (IOException e) {
-            System.out.println("Error opening input file: " + e.getMessage());
-            return;
+            System.out.println("Batch job failed, calling the API per row instead: " + e.getMessage());
+            return false;
         }
 
-        // If there are no records, nothing to do
-        if (records.isEmpty()) {
-            System.out.println("No records with similarity keys found.");
-            return;
+        // One entry per distinct name the job matched
+        Map<String, String> batchKeys = new HashMap<>();
+        FullDatasetClient.readMatches(results, job.fileType(), (company, simKey) -> {
+            if (!simKey.isEmpty()) {
+                batchKeys.put(company, simKey);
+            }
+        });
+        addInputRecords(clusterer, cache, batchKeys);
+        return true;
+    }
+
+    /**
+     * Returns the SimKey from the cache or, on a miss, from the API.
+     * Returns null if the API gave no SimKey. The cache is keyed by the
+     * canonical form of the name.
+     */
+    private static String lookupSimKey(String company, SimKeyCache cache) throws IOException {
+        // Served from the cache: no credit or round trip needed
+        String cacheKey = CANONICAL.apply(company);
+        String cachedKey = cache.get(API_NAME, ALGORITHM, cacheKey);
+        if (cachedKey != null) {
+            return cachedKey;
         }
 
-        //------------------------------------------------------------------
-        // Sort the records strictly by SimKey only, so identical SimKeys
-        // become adjacent and we can easily cluster.
-        //------------------------------------------------------------------
-        Collections.sort(records, Comparator.comparing(r -> r.simKey));
-
-        //------------------------------------------------------------------
-        // Walk through the sorted list and collect clusters of records that
-        // share the same SimKey. Only print clusters that contain two or more
-        // records. Each line is "Input,SimKey", with blank lines between clusters.
-        //------------------------------------------------------------------
-        String currentKey = null;
-        List<Record> cluster = new ArrayList<>();
-
-        for (Record rec : records) {
-            if (currentKey == null || !rec.simKey.equals(currentKey)) {
-                // SimKey changed: flush previous cluster
-                printCluster(cluster);
-                cluster.clear();
-
-                currentKey = rec.simKey;
-                cluster.add(rec);
-            } else {
-                // Same SimKey as current cluster, so add to it
-                cluster.add(rec);
-            }
+        // Call API and get SimKey
+        ResponseData apiResult;
+        try {
+            apiResult = callGetCompanyMatchAdvanced(company);
+        } catch (Exception e) {
+            System.out.println("Error calling API for: " + company + " - " + e.getMessage());
+            return null;
+        }
+
+        if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
+            // If there is no SimKey, skip this record
+            return null;
         }
 
-        // Flush final cluster
-        printCluster(cluster);
+        if ("Success".equalsIgnoreCase(apiResult.code)) {
+            cache.put(API_NAME, ALGORITHM, cacheKey, apiResult.simKey);
+        }
+        return apiResult.simKey;
     }
 
     /**
@@ -125,12 +239,12 @@ class CompanyMatchReport {
      * Each record is printed as: Input,SimKey
      * with a blank line between clusters.
      */
-    private static void printCluster(List<Record> cluster) {
-        if (cluster.size() < 2) {
+    private static void printCluster(String simKey, List<String> inputs) {
+        if (inputs.size() < 2) {
             return;
         }
-        for (Record r : cluster) {
-            System.out.printf("%s,%s%n", r.input, r.simKey);
+        for (String input : inputs) {
+            System.out.printf("%s,%s%n", input, simKey);
         }
         System.out.println();
     }
@@ -143,93 +257,23 @@ class CompanyMatchReport {
         String companyParam = URLEncoder.encode(company, StandardCharsets.UTF_8.toString());
 
         String apiUrl =
-            "https://api.interzoid.com/getcompanymatchadvanced?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/" + API_NAME + "?license=" + API_KEY +
             "&company=" + companyParam +
-            "&algorithm=model-v4-wide";
-
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in = new BufferedReader(
-            new InputStreamReader(
-                status >= 200 && status < 300
-                    ? conn.getInputStream()
-                    : conn.getErrorStream(),
-                StandardCharsets.UTF_8
-            )
-        );
-
-        StringBuilder responseBuilder = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            responseBuilder.append(line);
-        }
-        in.close();
-        conn.disconnect();
+            "&algorithm=" + ALGORITHM;
 
-        String json = responseBuilder.toString().trim();
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(apiUrl);
+
+        JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
         if (json.isEmpty()) {
             return null;
         }
 
         ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
 
         return data;
     }
-
-    /**
-     * Minimal JSON value extractor for flat JSON like:
-     * {"SimKey":"...","Code":"Success","Credits":"1"}
-     * This avoids external libraries to keep it parallel to the Go example.
-     */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) return "";
-
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        // Handle quoted string value
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length()
-                    && json.charAt(valueEnd) != ','
-                    && json.charAt(valueEnd) != '}'
-                    && !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
 }
@@ -0,0 +1,96 @@
+import com.interzoid.client.batch.DistinctValuePlanner;
+import com.interzoid.client.batch.EnrichmentApi;
+import com.interzoid.client.batch.FanOutResolver;
+import com.interzoid.client.io.GroupCommitWriter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads company names from a text file and enriches each one with several
+ * Interzoid APIs in a single pass: a SimKey (getcompanymatchadvanced), the
+ * standardized name (getorgstandard), business information
+ * (getbusinessinfo) and the parent company (getparentcompanyinfo). The
+ * results are written as one wide CSV row per input line.
+ *
+ * The calls for a company are sent together, so a row takes about as long
+ * as the slowest API rather than the sum of all of them. Each distinct
+ * company is looked up once per API, however often it repeats in the file,
+ * and rows are written in the original order. Remove entries from APIS to
+ * skip an API; set maxInFlight on an entry to cap its concurrent calls.
+ *
+ * If one API fails for a company, its columns are left empty and its Code
+ * column says why; the other columns are still filled.
+ *
+ * File name: enrich-all-apis.java
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar enrich-all-apis.java
+ */
+class EnrichAllApis {
+
+    // Replace this with your Interzoid API key
+    private static final String API_KEY = "YOUR_API_KEY_HERE";
+
+    private static final String INPUT_FILE_NAME = "sample-input-file.txt";
+    private static final String OUTPUT_FILE_NAME = "output-all-apis.csv";
+
+    // APIs called for every company, in output column order
+    private static final List<EnrichmentApi> APIS = List.of(
+        EnrichmentApi.companyMatch(),
+        EnrichmentApi.orgStandard(),
+        EnrichmentApi.businessInfo(),
+        EnrichmentApi.parentCompany());
+
+    public static void main(String[] args) {
+        FanOutResolver enrich = new FanOutResolver(API_KEY, APIS);
+        DistinctValuePlanner planner = new DistinctValuePlanner();
+
+        try (GroupCommitWriter csv = GroupCommitWriter.open(Paths.get(OUTPUT_FILE_NAME), false)) {
+            StringBuilder header = new StringBuilder("Input");
+            for (String column : enrich.columns()) {
+                header.append(',').append(csvEscape(column));
+            }
+            csv.write(header.toString());
+
+            long start = System.nanoTime();
+            DistinctValuePlanner.Summary summary = planner.run(Paths.get(INPUT_FILE_NAME), enrich,
+                (company, result) -> csv.write(toCsvRow(company, enrich.decode(result))));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
+            System.out.printf("Rows: %d, companies looked up: %d, APIs: %d, time: %d ms%n",
+                summary.rows(), summary.distinctValues(), APIS.size(), elapsedMillis);
+            for (Map.Entry<String, Long> failed : enrich.failures().entrySet()) {
+                if (failed.getValue() > 0) {
+                    System.out.printf("%s: %d failed calls (see the %s.Code column)%n",
+                        failed.getKey(), failed.getValue(), failed.getKey());
+                }
+            }
+
+        } catch (IOException e) {
+            System.out.println("Error with input/output files: " + e.getMessage());
+        }
+    }
+
+    private static String csvEscape(String value) {
+        String field = value == null ? "" : value;
+        boolean mustQuote = field.contains(",") ||
+                            field.contains("\"") ||
+                            field.contains("\n") ||
+                            field.contains("\r");
+
+        if (!mustQuote) return field;
+
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String toCsvRow(String input, String[] values) {
+        StringBuilder row = new StringBuilder(csvEscape(input));
+        for (String value : values) {
+            row.append(',').append(csvEscape(value));
+        }
+        return row.toString();
+    }
+}
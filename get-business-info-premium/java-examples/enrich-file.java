@@ -0,0 +1,140 @@
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.batch.DistinctValuePlanner;
+import com.interzoid.client.io.GroupCommitWriter;
+import com.interzoid.client.io.ParquetWriter;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads company names from a text file, calls Interzoid's Business
+ * Information API for each one, and writes the enrichment fields to a
+ * Parquet file (or a CSV file).
+ *
+ * Parquet keeps the column types: Revenue and NumberEmployees are stored
+ * as 64-bit integers, NAICS and Code as dictionary-encoded strings, so the
+ * file loads straight into DuckDB, Spark or pandas without parsing text.
+ * Set OUTPUT_FILE_NAME to a name ending in .csv for CSV output instead.
+ * Row group size and compression: see interzoid.parquet.* in
+ * java-client/README.md.
+ *
+ * Each distinct company is looked up once, however often it repeats in
+ * the file, and rows are written in the original order.
+ *
+ * File name: enrich-file.java
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar enrich-file.java
+ */
+class EnrichFile {
+
+    // Replace this with your Interzoid API key
+    private static final String API_KEY = "YOUR_API_KEY_HERE";
+
+    private static final String INPUT_FILE_NAME = "sample-input-file.txt";
+    private static final String OUTPUT_FILE_NAME = "output.parquet";
+
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of(
+        "CompanyName", "CompanyURL", "CompanyLocation", "Revenue", "NumberEmployees", "NAICS",
+        "TopExecutive", "TopExecutiveTitle", "Code");
+
+    // Output columns: the input value, then the response fields above in order
+    private static final List<ParquetWriter.Column> COLUMNS = List.of(
+        ParquetWriter.Column.string("Input"),
+        ParquetWriter.Column.string("CompanyName"),
+        ParquetWriter.Column.string("CompanyURL"),
+        ParquetWriter.Column.string("CompanyLocation"),
+        ParquetWriter.Column.int64("Revenue"),
+        ParquetWriter.Column.int64("NumberEmployees"),
+        ParquetWriter.Column.string("NAICS"),
+        ParquetWriter.Column.string("TopExecutive"),
+        ParquetWriter.Column.string("TopExecutiveTitle"),
+        ParquetWriter.Column.string("Code"));
+
+    public static void main(String[] args) {
+        DistinctValuePlanner planner = new DistinctValuePlanner();
+        try {
+            DistinctValuePlanner.Summary summary;
+            if (OUTPUT_FILE_NAME.endsWith(".parquet")) {
+                try (ParquetWriter parquet = ParquetWriter.open(Paths.get(OUTPUT_FILE_NAME), COLUMNS)) {
+                    summary = planner.run(Paths.get(INPUT_FILE_NAME), EnrichFile::lookup,
+                        (company, body) -> parquet.write(toValues(company, body)));
+                }
+            } else {
+                try (GroupCommitWriter csv = GroupCommitWriter.open(Paths.get(OUTPUT_FILE_NAME), false)) {
+                    csv.write(toCsvRow(COLUMNS.stream().map(ParquetWriter.Column::name).toArray()));
+                    summary = planner.run(Paths.get(INPUT_FILE_NAME), EnrichFile::lookup,
+                        (company, body) -> csv.write(toCsvRow(toValues(company, body))));
+                }
+            }
+
+            System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
+            System.out.printf("Rows: %d, API calls: %d%n", summary.rows(), summary.distinctValues());
+
+        } catch (IOException e) {
+            System.out.println("Error with input/output files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calls getbusinessinfo for one company. Completes with the response
+     * body, or "" if the call failed.
+     */
+    private static CompletableFuture<String> lookup(String company, long lineNumber) {
+        String apiUrl =
+            InterzoidHttp.apiBaseUrl() + "/getbusinessinfo?license=" + API_KEY +
+            "&lookup=" + URLEncoder.encode(company, StandardCharsets.UTF_8);
+
+        return InterzoidHttp.shared().getAsync(apiUrl).handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.printf("API error on line %d (\"%s\"): %s%n", lineNumber, company, cause.getMessage());
+                return "";
+            }
+            return new String(response.bodyBytes(), StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * One output row: the company as read, then the response fields. A
+     * failed lookup leaves the fields null (empty in CSV).
+     */
+    private static Object[] toValues(String company, String body) {
+        Object[] values = new Object[COLUMNS.size()];
+        values[0] = company;
+        if (!body.isEmpty()) {
+            JsonFields.Values json = RESPONSE_FIELDS.extract(body.getBytes(StandardCharsets.UTF_8));
+            for (int c = 1; c < values.length; c++) {
+                values[c] = json.get(COLUMNS.get(c).name());
+            }
+        }
+        return values;
+    }
+
+    private static String csvEscape(Object value) {
+        String field = value == null ? "" : value.toString();
+        boolean mustQuote = field.contains(",") ||
+                            field.contains("\"") ||
+                            field.contains("\n") ||
+                            field.contains("\r");
+
+        if (!mustQuote) return field;
+
+        return "\"" + field.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String toCsvRow(Object[] values) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            row.append(csvEscape(values[i]));
+        }
+        return row.toString();
+    }
+}
@@ -1,20 +1,25 @@
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.io.CheckpointedRun;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 
 /**
  * Reads full names from a text file, calls Interzoid's Full Name Matching API
  * for each line, and writes the original value + SimKey to a CSV file.
  *
+ * Progress is checkpointed to output.csv.checkpoint every 10,000 rows (see
+ * interzoid.checkpoint.* in java-client/README.md). If a run is killed,
+ * running it again continues from the last checkpoint instead of calling
+ * the API for every row again. Delete the checkpoint file to start over.
+ *
  * File name: append-simkeys-to-file-fullname.java
- * Run with:  java AppendFullnameSimkeysToFile
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar append-simkeys-to-file-fullname.java
  */
 class AppendFullnameSimkeysToFile {
 
@@ -32,16 +37,21 @@ class AppendFullnameSimkeysToFile {
         String credits;
     }
 
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
     public static void main(String[] args) {
-        try (
-            BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME));
-            PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(OUTPUT_FILE_NAME)))
-        ) {
+        try (CheckpointedRun run = CheckpointedRun.open(Paths.get(INPUT_FILE_NAME), Paths.get(OUTPUT_FILE_NAME))) {
+            if (run.isResumed()) {
+                System.out.printf("Resuming after line %d%n", run.resumedFromLine());
+            }
+
             String line;
-            int lineNumber = 0;
 
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
+            // Each readLine() also marks the previous row as done, so the
+            // row must be written before the next line is read
+            while ((line = run.readLine()) != null) {
+                long lineNumber = run.lineNumber();
                 String originalValue = line;
 
                 // Skip completely empty lines (same behavior as Go)
@@ -58,7 +68,7 @@ class AppendFullnameSimkeysToFile {
                         lineNumber, originalValue, e.getMessage()
                     );
                     // On error, write original value and empty SimKey
-                    writer.println(toCsvRow(originalValue, ""));
+                    run.writeLine(toCsvRow(originalValue, ""));
                     continue;
                 }
 
@@ -67,16 +77,18 @@ class AppendFullnameSimkeysToFile {
                         "No response for line %d (\"%s\")%n",
                         lineNumber, originalValue
                     );
-                    writer.println(toCsvRow(originalValue, ""));
+                    run.writeLine(toCsvRow(originalValue, ""));
                     continue;
                 }
 
                 // (Optional) You could inspect result.code here if desired
 
                 // Write original value and SimKey as a CSV row
-                writer.println(toCsvRow(originalValue, result.simKey));
+                run.writeLine(toCsvRow(originalValue, result.simKey));
             }
 
+            // Flushes the last rows and removes the checkpoint
+            run.finish();
             System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
 
         } catch (IOException e) {
@@ -91,101 +103,24 @@ class AppendFullnameSimkeysToFile {
         String nameParam = URLEncoder.encode(fullName, StandardCharsets.UTF_8.toString());
 
         String apiUrl =
-            "https://api.interzoid.com/getfullnamematch?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getfullnamematch?license=" + API_KEY +
             "&fullname=" + nameParam;
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in;
-        if (status >= 200 && status < 300) {
-            in = new BufferedReader(
-                    new java.io.InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
-        } else {
-            in = new BufferedReader(
-                    new java.io.InputStreamReader(conn.getErrorStream(), StandardCharsets.UTF_8));
-        }
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-        StringBuilder responseBuilder = new StringBuilder();
-        String inputLine;
-        while ((inputLine = in.readLine()) != null) {
-            responseBuilder.append(inputLine);
-        }
-        in.close();
-        conn.disconnect();
-
-        String json = responseBuilder.toString().trim();
+        JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
         if (json.isEmpty()) {
             return null;
         }
 
         ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
         return data;
     }
 
-    /**
-     * Very simple JSON value extractor for flat JSON like:
-     * {"SimKey":"...","Code":"Success","Credits":"1"}
-     *
-     * This avoids external JSON libraries.
-     */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) {
-            return "";
-        }
-
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) {
-            return "";
-        }
-
-        // Skip whitespace
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() &&
-               Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        // Handle quoted string value
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length() &&
-                   json.charAt(valueEnd) != ',' &&
-                   json.charAt(valueEnd) != '}' &&
-                   !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
-
     /**
      * Escapes a single field for CSV:
      * - Wrap in quotes if it contains comma, quote, or newline
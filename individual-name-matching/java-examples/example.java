@@ -8,15 +8,15 @@
 //
 // Register for an API key at:
 // https://www.interzoid.com/manage-api-account
+//
+// Requires the shared client (cd ../../java-client && mvn -q install).
+// Run with: java -cp ../../java-client/interzoid-client/target/interzoid-client.jar example.java
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 
 public class example {
 
@@ -28,26 +28,16 @@ public class example {
         // The API URL with a sample full name.
         // You can change "James Johnston" to any name you wish to test.
         String apiUrl =
-            "https://api.interzoid.com/getfullnamematch?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getfullnamematch?license=" + API_KEY +
             "&fullname=James%20Johnston";
 
-        HttpURLConnection connection = null;
-
         try {
-            // Convert the string into a URI, then to a URL
-            URI uri = new URI(apiUrl);
-            URL url = uri.toURL();
-
-            // Open HTTP connection
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-
-            int statusCode = connection.getResponseCode();
+            // Send the request on the shared keep-alive client
+            HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-            if (statusCode == HttpURLConnection.HTTP_OK) {
-                // Read the response body
-                String responseBody = readStream(connection.getInputStream());
+            int statusCode = response.statusCode();
 
+            if (statusCode == 200) {
                 // Example JSON returned:
                 // {
                 //   "SimKey": "somevalue",
@@ -58,9 +48,13 @@ public class example {
                 // We keep this example extremely simple by extracting fields
                 // manually using basic string operations.
 
-                String simKey  = extractJsonValue(responseBody, "SimKey");
-                String code    = extractJsonValue(responseBody, "Code");
-                String credits = extractJsonValue(responseBody, "Credits");
+                // Pick out all fields in one pass over the raw response bytes
+                JsonFields.Values json = JsonFields.of("SimKey", "Code", "Credits")
+                    .extract(response.bodyBytes());
+
+                String simKey  = json.get("SimKey");
+                String code    = json.get("Code");
+                String credits = json.get("Credits");
 
                 // Output results
                 System.out.println("Similarity Key: " + simKey);
@@ -71,45 +65,8 @@ public class example {
                 System.out.println("API returned HTTP status code: " + statusCode);
             }
 
-        } catch (IOException | URISyntaxException e) {
+        } catch (IOException e) {
             System.out.println("Error calling Interzoid API: " + e.getMessage());
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
-
-    // Reads an InputStream into a single string.
-    private static String readStream(InputStream inputStream) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
-        }
-
-        reader.close();
-        return builder.toString();
-    }
-
-    // Extracts a simple JSON value using basic string searching.
-    private static String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"";
-
-        int keyIndex = json.indexOf(pattern);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(":", keyIndex);
-        if (colonIndex == -1) return "";
-
-        int firstQuote = json.indexOf("\"", colonIndex + 1);
-        if (firstQuote == -1) return "";
-
-        int secondQuote = json.indexOf("\"", firstQuote + 1);
-        if (secondQuote == -1) return "";
-
-        return json.substring(firstQuote + 1, secondQuote);
-    }
 }
@@ -1,14 +1,14 @@
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.cluster.FuzzyClusterer;
+import com.interzoid.client.cluster.SimKeyClusterer;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.FileReader;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -20,8 +20,13 @@ import java.util.List;
  * Each printed line is "Input,SimKey" (two-column CSV style).
  * Only clusters with two or more matching names are printed.
  *
+ * Records are grouped with a bounded-memory external sort by default, or
+ * with a single-pass hash grouping when run with
+ * -Dinterzoid.cluster.mode=hash (see java-client/README.md).
+ *
  * File name: generate-match-report.java
- * Run with:  java GenerateMatchReport
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar generate-match-report.java
  */
 class GenerateMatchReport {
 
@@ -31,17 +36,6 @@ class GenerateMatchReport {
     // Input file containing one full name per line
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
 
-    // Holds one input name and its generated similarity key
-    private static class Record {
-        String input;
-        String simKey;
-
-        Record(String input, String simKey) {
-            this.input = input;
-            this.simKey = simKey;
-        }
-    }
-
     // Maps the JSON returned by the getfullnamematch API
     private static class ResponseData {
         String simKey;
@@ -49,90 +43,82 @@ class GenerateMatchReport {
         String credits;
     }
 
-    public static void main(String[] args) {
-        List<Record> records = new ArrayList<>();
-
-        // Open and read the input file line by line
-        try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
-            String name;
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
 
-            while ((name = reader.readLine()) != null) {
-                // Skip blank lines
-                if (name.trim().isEmpty()) {
-                    continue;
+    public static void main(String[] args) {
+        // Collects (SimKey, input) pairs. The default engine sorts small files
+        // in memory and spills large ones to temp files as sorted runs, so
+        // the heap never has to hold the whole file. -Dinterzoid.cluster.mode=hash
+        // groups in one pass instead (faster, but everything stays in memory).
+        try (SimKeyClusterer clusterer = SimKeyClusterer.fromSystemProperties()) {
+
+            // Open and read the input file line by line
+            try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
+                String name;
+
+                while ((name = reader.readLine()) != null) {
+                    // Skip blank lines
+                    if (name.trim().isEmpty()) {
+                        continue;
+                    }
+
+                    ResponseData apiResult;
+                    try {
+                        apiResult = callGetFullNameMatch(name);
+                    } catch (Exception e) {
+                        System.out.println("Error calling API for: " + name + " - " + e.getMessage());
+                        continue;
+                    }
+
+                    if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
+                        // If there is no SimKey, skip this record
+                        continue;
+                    }
+
+                    // Store the name and SimKey for later clustering
+                    clusterer.add(apiResult.simKey, name);
                 }
 
-                ResponseData apiResult;
-                try {
-                    apiResult = callGetFullNameMatch(name);
-                } catch (Exception e) {
-                    System.out.println("Error calling API for: " + name + " - " + e.getMessage());
-                    continue;
-                }
+            } catch (IOException e) {
+                System.out.println("Error opening input file: " + e.getMessage());
+                return;
+            }
 
-                if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
-                    // If there is no SimKey, skip this record
-                    continue;
-                }
+            // No valid records with SimKeys
+            if (clusterer.size() == 0) {
+                System.out.println("No records with similarity keys found.");
+                return;
+            }
 
-                // Store the name and SimKey for later clustering
-                records.add(new Record(name, apiResult.simKey));
+            //------------------------------------------------------------------
+            // Emit the clusters in SimKey order (records keep their input order)
+            // and print each cluster that contains two or more records. Each
+            // line is "Input,SimKey" and clusters are separated by a blank line.
+            //------------------------------------------------------------------
+            clusterer.forEachCluster(2, GenerateMatchReport::printCluster);
+
+            // Fuzzy merging is single linkage: say how many SimKeys joined a
+            // cluster only through a chain of near keys
+            if (clusterer instanceof FuzzyClusterer) {
+                System.out.println(((FuzzyClusterer) clusterer).summary());
             }
 
         } catch (IOException e) {
-            System.out.println("Error opening input file: " + e.getMessage());
-            return;
-        }
-
-        // No valid records with SimKeys
-        if (records.isEmpty()) {
-            System.out.println("No records with similarity keys found.");
-            return;
+            System.out.println("Error sorting records: " + e.getMessage());
         }
-
-        //------------------------------------------------------------------
-        // Sort the records strictly by SimKey only so identical keys are
-        // adjacent, making clustering easy.
-        //------------------------------------------------------------------
-        Collections.sort(records, Comparator.comparing(r -> r.simKey));
-
-        //------------------------------------------------------------------
-        // Walk through the sorted list and collect clusters of records that
-        // share the same SimKey. Only print clusters that contain two or more
-        // records. Each line is "Input,SimKey" and clusters are separated by
-        // a blank line.
-        //------------------------------------------------------------------
-        String currentKey = null;
-        List<Record> cluster = new ArrayList<>();
-
-        for (Record rec : records) {
-            if (currentKey == null || !rec.simKey.equals(currentKey)) {
-                // SimKey changed: flush previous cluster
-                printCluster(cluster);
-                cluster.clear();
-
-                currentKey = rec.simKey;
-                cluster.add(rec);
-            } else {
-                // Same SimKey as current cluster, add to it
-                cluster.add(rec);
-            }
-        }
-
-        // Flush final cluster
-        printCluster(cluster);
     }
 
     /**
      * Helper function to print a cluster if it has two or more records.
      * Each record is printed as "Input,SimKey", with a blank line between clusters.
      */
-    private static void printCluster(List<Record> cluster) {
-        if (cluster.size() < 2) {
+    private static void printCluster(String simKey, List<String> inputs) {
+        if (inputs.size() < 2) {
             return;
         }
-        for (Record r : cluster) {
-            System.out.printf("%s,%s%n", r.input, r.simKey);
+        for (String input : inputs) {
+            System.out.printf("%s,%s%n", input, simKey);
         }
         System.out.println();
     }
@@ -144,92 +130,22 @@ class GenerateMatchReport {
         String nameParam = URLEncoder.encode(fullName, StandardCharsets.UTF_8.toString());
 
         String apiUrl =
-            "https://api.interzoid.com/getfullnamematch?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getfullnamematch?license=" + API_KEY +
             "&fullname=" + nameParam;
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in = new BufferedReader(
-            new InputStreamReader(
-                status >= 200 && status < 300
-                    ? conn.getInputStream()
-                    : conn.getErrorStream(),
-                StandardCharsets.UTF_8
-            )
-        );
-
-        StringBuilder responseBuilder = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            responseBuilder.append(line);
-        }
-        in.close();
-        conn.disconnect();
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-        String json = responseBuilder.toString().trim();
+        JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
         if (json.isEmpty()) {
             return null;
         }
 
         ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
 
         return data;
     }
-
-    /**
-     * Minimal JSON value extractor for flat JSON like:
-     * {"SimKey":"...","Code":"Success","Credits":"1"}
-     * (No external libraries, to keep it parallel to the Go example.)
-     */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) return "";
-
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        // Handle quoted string value
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length()
-                    && json.charAt(valueEnd) != ','
-                    && json.charAt(valueEnd) != '}'
-                    && !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
 }
@@ -0,0 +1,109 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Calls per second against a stub with limited capacity (8 workers, 2 ms
+ * per call, 429 once 16 more are queued), submitting as fast as the
+ * client lets us, as the street-address append example does.
+ *
+ * {@code adaptive=false} is the old fixed cap of poolSize (64) requests in
+ * flight; {@code adaptive=true} lets the ConcurrencyLimiter find the limit.
+ * The score counts every call; the {@code succeeded} and {@code throttled}
+ * counters split it into rows that got a SimKey and rows lost to 429s.
+ *
+ * Run with: java -jar target/benchmarks.jar AdaptiveConcurrencyBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdaptiveConcurrencyBenchmark {
+
+    private static final int ROWS = 256;
+    private static final int WORKERS = 8;
+    private static final long LATENCY_MICROS = 2000;
+
+    @Param({"false", "true"})
+    public boolean adaptive;
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private String[] urls;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long succeeded;
+        public long throttled;
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0).latencyMicros(LATENCY_MICROS).capacity(WORKERS);
+        client = InterzoidHttp.create(new HttpConfig().baseUrl(stub.baseUrl()).adaptive(adaptive));
+
+        urls = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            urls[i] = stub.baseUrl() + "/getaddressmatchadvanced?license=bench&address=" + i + "+Main+St";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.printf("%n  final limit %d, throttled responses %d%n",
+            client.limiter().limit(), client.limiter().throttledCount());
+        stub.close();
+    }
+
+    /**
+     * One invocation submits ROWS calls in order and collects them in order.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void calls(Outcomes outcomes) {
+        ArrayDeque<CompletableFuture<HttpResult>> pending = new ArrayDeque<>();
+        for (String url : urls) {
+            pending.add(client.getAsync(url));
+            while (!pending.isEmpty() && pending.peek().isDone()) {
+                count(pending.poll().join(), outcomes);
+            }
+        }
+        while (!pending.isEmpty()) {
+            count(pending.poll().join(), outcomes);
+        }
+    }
+
+    private static void count(HttpResult result, Outcomes outcomes) {
+        if (result.statusCode() == 429) {
+            outcomes.throttled++;
+        } else {
+            outcomes.succeeded++;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.cluster.ExternalSortClusterer;
+import com.interzoid.client.cluster.HashClusterer;
+import com.interzoid.client.cluster.SimKeyClusterer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Clustering cost of the match reports once SimKeys are known: the
+ * original ArrayList + Collections.sort walk versus the sort and hash
+ * engines. All three produce the same clusters.
+ *
+ * Run with: java -jar target/benchmarks.jar ClusteringBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClusteringBenchmark {
+
+    @Param({"200000"})
+    public int records;
+
+    private String[] simKeys;
+    private String[] inputs;
+
+    private static final class Record {
+        final String input;
+        final String simKey;
+
+        Record(String input, String simKey) {
+            this.input = input;
+            this.simKey = simKey;
+        }
+    }
+
+    @Setup
+    public void generate() {
+        // About a third of the records share their SimKey with another record
+        Random random = new Random(42);
+        simKeys = new String[records];
+        inputs = new String[records];
+        for (int i = 0; i < records; i++) {
+            int entity = random.nextInt(records * 3 / 4);
+            inputs[i] = "Company " + entity + (random.nextBoolean() ? " Inc." : " Incorporated");
+            simKeys[i] = StubApiServer.simKey("company" + entity) + "Sd9f8gH2kLmN0pQ";
+        }
+    }
+
+    /**
+     * What the reports did before: one Record per row, sort, walk.
+     */
+    @Benchmark
+    public void collectionsSort(Blackhole bh) {
+        List<Record> list = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            list.add(new Record(inputs[i], simKeys[i]));
+        }
+        Collections.sort(list, Comparator.comparing(r -> r.simKey));
+
+        String currentKey = null;
+        List<Record> cluster = new ArrayList<>();
+        for (Record rec : list) {
+            if (currentKey == null || !rec.simKey.equals(currentKey)) {
+                if (cluster.size() >= 2) {
+                    bh.consume(cluster);
+                }
+                cluster.clear();
+                currentKey = rec.simKey;
+            }
+            cluster.add(rec);
+        }
+        if (cluster.size() >= 2) {
+            bh.consume(cluster);
+        }
+    }
+
+    @Benchmark
+    public void externalSort(Blackhole bh) throws IOException {
+        try (SimKeyClusterer clusterer = new ExternalSortClusterer()) {
+            run(clusterer, bh);
+        }
+    }
+
+    @Benchmark
+    public void hash(Blackhole bh) throws IOException {
+        try (SimKeyClusterer clusterer = new HashClusterer()) {
+            run(clusterer, bh);
+        }
+    }
+
+    private void run(SimKeyClusterer clusterer, Blackhole bh) throws IOException {
+        for (int i = 0; i < records; i++) {
+            clusterer.add(simKeys[i], inputs[i]);
+        }
+        clusterer.forEachCluster(2, (simKey, clusterInputs) -> bh.consume(clusterInputs));
+    }
+}
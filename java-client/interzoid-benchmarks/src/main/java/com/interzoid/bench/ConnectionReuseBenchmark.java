@@ -0,0 +1,106 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the old per-call pattern (new HttpURLConnection, read, disconnect()
+ * for every row) with the shared keep-alive client, both calling a local stub.
+ *
+ * The stub reports how many TCP connections each trial needed. Run it
+ * sequentially and with concurrent callers:
+ *
+ *   java -jar target/benchmarks.jar ConnectionReuseBenchmark
+ *   java -jar target/benchmarks.jar ConnectionReuseBenchmark -t 32
+ *
+ * Sequentially the JDK's keep-alive cache can reuse the socket of a fully read
+ * HttpURLConnection. Once several callers run at once, only
+ * http.maxConnections (default 5) idle sockets are kept, so the old pattern
+ * opens a new connection and TLS handshake for most requests. The shared
+ * client keeps one pooled connection per caller, or multiplexes over HTTP/2.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionReuseBenchmark {
+
+    @Param({"false", "true"})
+    public boolean tls;
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private String url;
+    private SSLSocketFactory socketFactory;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0, tls);
+        client = InterzoidHttp.create(new HttpConfig()
+            .baseUrl(stub.baseUrl())
+            .sslContext(stub.clientSslContext()));
+        if (tls) {
+            socketFactory = stub.clientSslContext().getSocketFactory();
+        }
+        url = stub.baseUrl() + "/getcompanymatchadvanced?license=bench&company=IBM%20Corp.&algorithm=model-v4-wide";
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        System.out.printf("%n[tls=%s] requests=%d, TCP connections=%d%n",
+            tls, stub.requestCount(), stub.connectionCount());
+        stub.close();
+    }
+
+    /**
+     * What every example did before: open, read, disconnect.
+     */
+    @Benchmark
+    public int perCallConnection() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        if (conn instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) conn).setSSLSocketFactory(socketFactory);
+        }
+        conn.setRequestMethod("GET");
+        int status = conn.getResponseCode();
+        try (InputStream in = conn.getInputStream()) {
+            in.readAllBytes();
+        }
+        conn.disconnect();
+        return status;
+    }
+
+    /**
+     * The shared client: the connection (and TLS session) is reused.
+     */
+    @Benchmark
+    public int sharedClient() throws IOException {
+        HttpResult result = client.get(url);
+        return result.bodyBytes().length;
+    }
+}
@@ -0,0 +1,108 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.io.CsvReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Pulling one column out of a wide CSV extract: readLine + String.split
+ * (which cannot handle quoted fields) versus CsvReader taking only the
+ * selected column, or every column.
+ *
+ * Run with: java -jar target/benchmarks.jar CsvReaderBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvReaderBenchmark {
+
+    @Param({"200000"})
+    public int rows;
+
+    @Param({"20"})
+    public int columns;
+
+    // Column looked up, as in the append examples
+    private static final int COLUMN = 3;
+
+    private Path input;
+
+    @Setup
+    public void generate() throws IOException {
+        Random random = new Random(42);
+        input = Files.createTempFile("interzoid-csv-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(c == COLUMN ? "\"" + random.nextInt(10000) + " Main Street, Suite 5\"" : "field" + c);
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public void splitLines(Blackhole bh) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                bh.consume(line.split(",")[COLUMN]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void csvReaderOneColumn(Blackhole bh) throws IOException {
+        try (CsvReader reader = CsvReader.open(input, ',', false)) {
+            CsvReader.Record record;
+            while ((record = reader.next()) != null) {
+                bh.consume(record.get(COLUMN));
+                bh.consume(record.raw());
+            }
+        }
+    }
+
+    @Benchmark
+    public void csvReaderAllColumns(Blackhole bh) throws IOException {
+        try (CsvReader reader = CsvReader.open(input, ',', false)) {
+            CsvReader.Record record;
+            while ((record = reader.next()) != null) {
+                for (int c = 0; c < record.size(); c++) {
+                    bh.consume(record.get(c));
+                }
+            }
+        }
+    }
+}
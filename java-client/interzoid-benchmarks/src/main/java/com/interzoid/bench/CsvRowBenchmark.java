@@ -0,0 +1,61 @@
+package com.interzoid.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of csvEscape/toCsvRow as used by the append-simkeys examples for
+ * every output row, for a plain value and one that needs quoting.
+ *
+ * Run with: java -jar target/benchmarks.jar CsvRowBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvRowBenchmark {
+
+    @Param({"Acme Holdings Incorporated", "Acme, \"The\" Holdings Inc."})
+    public String input;
+
+    private final String simKey = StubApiServer.simKey("acme holdings") + "Sd9f8gH2kLmN0pQ";
+
+    @Benchmark
+    public String toCsvRow() {
+        return toCsvRow(input, simKey);
+    }
+
+    /**
+     * The helpers from the append-simkeys examples.
+     */
+    static String csvEscape(String field) {
+        if (field == null) {
+            field = "";
+        }
+        boolean mustQuote = field.contains(",") ||
+                            field.contains("\"") ||
+                            field.contains("\n") ||
+                            field.contains("\r");
+        if (!mustQuote) {
+            return field;
+        }
+        String escaped = field.replace("\"", "\"\"");
+        return "\"" + escaped + "\"";
+    }
+
+    static String toCsvRow(String col1, String col2) {
+        return csvEscape(col1) + "," + csvEscape(col2);
+    }
+}
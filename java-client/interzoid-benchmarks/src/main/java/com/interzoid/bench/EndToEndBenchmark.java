@@ -0,0 +1,108 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rows per second through the whole append-simkeys row path against the
+ * in-process stub: build the URL, call the API on the shared client,
+ * read the fields, and format the output row.
+ *
+ * {@code concurrency} is the number of calls in flight, as in
+ * AppendSimkeysToFile's concurrent mode; 1 is the sequential loop.
+ * {@code latencyMicros} adds a fixed service time per call to the stub,
+ * which is where concurrency pays off against the real API.
+ *
+ * Run with: java -jar target/benchmarks.jar EndToEndBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    private static final int ROWS = 256;
+    private static final JsonFields FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
+    @Param({"1", "16"})
+    public int concurrency;
+
+    @Param({"0", "2000"})
+    public long latencyMicros;
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private String[] inputs;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0).latencyMicros(latencyMicros);
+        client = InterzoidHttp.create(new HttpConfig().baseUrl(stub.baseUrl()));
+
+        inputs = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            inputs[i] = "Company " + i + (i % 3 == 0 ? ", Inc." : " Incorporated");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        stub.close();
+    }
+
+    /**
+     * One invocation processes ROWS rows, so the score is rows per second.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void rows(Blackhole bh) throws Exception {
+        Semaphore window = new Semaphore(concurrency);
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[ROWS];
+
+        for (int i = 0; i < ROWS; i++) {
+            String input = inputs[i];
+            window.acquire();
+            calls[i] = client.getAsync(url(input))
+                .thenApply(result -> {
+                    JsonFields.Values values = FIELDS.extract(result.bodyBytes());
+                    return CsvRowBenchmark.toCsvRow(input, values.get("SimKey"));
+                })
+                .whenComplete((row, error) -> window.release());
+        }
+        for (CompletableFuture<?> call : calls) {
+            bh.consume(call.get());
+        }
+    }
+
+    private String url(String input) {
+        return stub.baseUrl() + "/getcompanymatchadvanced?license=bench"
+            + "&company=" + URLEncoder.encode(input, StandardCharsets.UTF_8)
+            + "&algorithm=model-v4-wide";
+    }
+}
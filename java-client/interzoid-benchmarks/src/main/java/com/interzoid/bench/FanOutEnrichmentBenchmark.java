@@ -0,0 +1,119 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.batch.DistinctValuePlanner;
+import com.interzoid.client.batch.EnrichmentApi;
+import com.interzoid.client.batch.FanOutResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Enriching a company file with four APIs that answer at different speeds
+ * (2.5, 5, 10 and 20 ms in the stub), 8 calls in flight per API:
+ *
+ * <ul>
+ *   <li>sequentialPasses: one pass per API, one call at a time, as four separate programs do</li>
+ *   <li>fanOut: one pass with FanOutResolver, all four calls per company in flight together</li>
+ *   <li>slowestApiOnly: the same pipeline with only the 20 ms API, the floor for fanOut</li>
+ * </ul>
+ *
+ * Service times are long next to the client's CPU cost per call, as
+ * with the real API; with very short ones, four times the calls costs
+ * four times the CPU and fanOut drifts above the floor.
+ *
+ * Run with: java -jar target/benchmarks.jar FanOutEnrichmentBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 4)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutEnrichmentBenchmark {
+
+    @Param({"200"})
+    public int rows;
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private Path input;
+    private List<String> companies;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0)
+            .latencyMicros("getorgstandard", 2500)
+            .latencyMicros("getcompanymatchadvanced", 5000)
+            .latencyMicros("getbusinessinfo", 10000)
+            .latencyMicros("getparentcompanyinfo", 20000);
+        client = InterzoidHttp.create(new HttpConfig().baseUrl(stub.baseUrl()).adaptive(false).poolSize(256));
+
+        companies = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            companies.add("Company " + i + " Inc.");
+        }
+        input = Files.createTempFile("interzoid-fanout-", ".txt");
+        Files.write(input, companies);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        stub.close();
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public void sequentialPasses(Blackhole bh) throws IOException {
+        for (EnrichmentApi api : allApis()) {
+            for (String company : companies) {
+                HttpResult result = client.get(api.toUrl(stub.baseUrl(), "bench", company));
+                bh.consume(result.bodyBytes());
+            }
+        }
+    }
+
+    @Benchmark
+    public void fanOut(Blackhole bh) throws IOException {
+        run(allApis(), bh);
+    }
+
+    @Benchmark
+    public void slowestApiOnly(Blackhole bh) throws IOException {
+        run(List.of(EnrichmentApi.parentCompany().maxInFlight(8)), bh);
+    }
+
+    private void run(List<EnrichmentApi> apis, Blackhole bh) throws IOException {
+        FanOutResolver enrich = new FanOutResolver(client, "bench", apis);
+        new DistinctValuePlanner().run(input, enrich, (company, result) -> bh.consume(enrich.decode(result)));
+    }
+
+    private static List<EnrichmentApi> allApis() {
+        return List.of(
+            EnrichmentApi.companyMatch().maxInFlight(8),
+            EnrichmentApi.orgStandard().maxInFlight(8),
+            EnrichmentApi.businessInfo().maxInFlight(8),
+            EnrichmentApi.parentCompany().maxInFlight(8));
+    }
+}
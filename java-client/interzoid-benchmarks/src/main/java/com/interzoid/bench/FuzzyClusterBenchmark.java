@@ -0,0 +1,133 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.cluster.FuzzyClusterer;
+import com.interzoid.client.cluster.HashClusterer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Merging SimKeys within edit distance 1: comparing every pair of
+ * distinct keys versus the segment index in FuzzyClusterer. Both find
+ * the same pairs. Raise {@code keys} to see the gap grow, since the
+ * pairwise cost is quadratic.
+ *
+ * Run with: java -jar target/benchmarks.jar FuzzyClusterBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FuzzyClusterBenchmark {
+
+    @Param({"20000"})
+    public int keys;
+
+    private String[] simKeys;
+    private String[] inputs;
+
+    @Setup
+    public void generate() {
+        // One key in ten is a copy of an earlier key with one character changed
+        Random random = new Random(42);
+        simKeys = new String[keys];
+        inputs = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            inputs[i] = "Company " + i + " Inc.";
+            if (i > 0 && random.nextInt(10) == 0) {
+                char[] typo = simKeys[random.nextInt(i)].toCharArray();
+                typo[random.nextInt(16)] = Character.forDigit(random.nextInt(16), 16);
+                simKeys[i] = new String(typo);
+            } else {
+                // Hash-like, as real SimKeys are; no shared suffix
+                simKeys[i] = StubApiServer.simKey("company" + i) + StubApiServer.simKey("inc" + i).substring(1);
+            }
+        }
+    }
+
+    /**
+     * Every distinct key against every other, merged with union-find.
+     */
+    @Benchmark
+    public void allPairs(Blackhole bh) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (String key : simKeys) {
+            ids.putIfAbsent(key, ids.size());
+        }
+        String[] distinct = ids.keySet().toArray(new String[0]);
+        int[] parent = new int[distinct.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        int merges = 0;
+        for (int b = 1; b < distinct.length; b++) {
+            for (int a = 0; a < b; a++) {
+                if (withinOneEdit(distinct[a], distinct[b])) {
+                    int rootA = find(parent, a);
+                    int rootB = find(parent, b);
+                    if (rootA != rootB) {
+                        parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                        merges++;
+                    }
+                }
+            }
+        }
+        bh.consume(merges);
+    }
+
+    @Benchmark
+    public void segmentIndex(Blackhole bh) throws IOException {
+        try (FuzzyClusterer clusterer = new FuzzyClusterer(new HashClusterer(), 1)) {
+            for (int i = 0; i < keys; i++) {
+                clusterer.add(simKeys[i], inputs[i]);
+            }
+            clusterer.forEachCluster(2, (simKey, clusterInputs) -> bh.consume(clusterInputs));
+            bh.consume(clusterer.mergedKeys());
+        }
+    }
+
+    private static int find(int[] parent, int key) {
+        while (parent[key] != key) {
+            parent[key] = parent[parent[key]];
+            key = parent[key];
+        }
+        return key;
+    }
+
+    private static boolean withinOneEdit(String a, String b) {
+        if (a.length() < b.length()) {
+            String swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a.length() - b.length() > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < b.length() && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (a.length() == b.length()) {
+            return a.regionMatches(i + 1, b, i + 1, a.length() - i - 1);
+        }
+        return a.regionMatches(i + 1, b, i, b.length() - i);
+    }
+}
@@ -0,0 +1,142 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.batch.JdbcJob;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing SimKeys back into an in-memory H2 table of companies, against a
+ * stub that takes 2 ms per call:
+ *
+ * <ul>
+ *   <li>rowAtATime: read a row, call the API, UPDATE it with autocommit on,
+ *       as a straightforward JDBC loop does</li>
+ *   <li>jdbcJob: {@link JdbcJob}, lookups in flight while rows are read and
+ *       batched UPDATEs committed every {@code commitEvery} rows</li>
+ * </ul>
+ *
+ * Both leave the same table behind; the simkey column is cleared before
+ * every run.
+ *
+ * Run with: java -jar target/benchmarks.jar JdbcBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JdbcBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private static final String QUERY = "SELECT id, company FROM companies WHERE simkey IS NULL";
+    private static final String UPDATE = "UPDATE companies SET simkey = ? WHERE id = ?";
+    private static final JsonFields SIMKEY = JsonFields.of("SimKey");
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private Connection source;
+    private Connection sink;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException, SQLException {
+        stub = StubApiServer.start(0).latencyMicros(2000);
+        client = InterzoidHttp.create(new HttpConfig().baseUrl(stub.baseUrl()).adaptive(false).poolSize(256));
+
+        String url = "jdbc:h2:mem:interzoid-bench;DB_CLOSE_DELAY=-1";
+        source = DriverManager.getConnection(url, "sa", "");
+        sink = DriverManager.getConnection(url, "sa", "");
+        try (Statement ddl = sink.createStatement()) {
+            ddl.execute("CREATE TABLE companies (id BIGINT PRIMARY KEY, company VARCHAR(255), simkey VARCHAR(64))");
+        }
+        try (PreparedStatement insert = sink.prepareStatement("INSERT INTO companies (id, company) VALUES (?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                insert.setLong(1, i);
+                insert.setString(2, "Company " + i + " Inc.");
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void clearSimKeys() throws SQLException {
+        try (Statement clear = sink.createStatement()) {
+            clear.executeUpdate("UPDATE companies SET simkey = NULL");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws SQLException {
+        try (Statement drop = sink.createStatement()) {
+            drop.execute("DROP TABLE companies");
+        }
+        source.close();
+        sink.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public int rowAtATime() throws IOException, SQLException {
+        List<Object[]> todo = new ArrayList<>(rows);
+        try (Statement select = source.createStatement(); ResultSet rs = select.executeQuery(QUERY)) {
+            while (rs.next()) {
+                todo.add(new Object[] {rs.getLong(1), rs.getString(2)});
+            }
+        }
+        int written = 0;
+        try (PreparedStatement update = sink.prepareStatement(UPDATE)) {
+            for (Object[] row : todo) {
+                HttpResult result = client.get(url((String) row[1]));
+                update.setString(1, SIMKEY.extract(result.bodyBytes()).get("SimKey"));
+                update.setLong(2, (Long) row[0]);
+                written += update.executeUpdate();
+            }
+        }
+        return written;
+    }
+
+    @Benchmark
+    public long jdbcJob() throws IOException, SQLException {
+        JdbcJob job = JdbcJob.query(QUERY).update(UPDATE);
+        JdbcJob.Summary summary = job.run(source, sink, (company, rowNumber) ->
+            client.getAsync(url(company)).thenApply(result -> SIMKEY.extract(result.bodyBytes()).get("SimKey")));
+        return summary.written();
+    }
+
+    private String url(String company) {
+        return stub.baseUrl() + "/getcompanymatchadvanced?license=bench&algorithm=model-v4-wide&company="
+            + URLEncoder.encode(company, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.JsonFields;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Field extraction from API responses: the per-field extractJsonValue
+ * helpers the examples used to carry versus one JsonFields pass over the
+ * raw bytes. The old paths include decoding the body to a String first,
+ * as the examples did.
+ *
+ * Run with: java -jar target/benchmarks.jar JsonExtractBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonExtractBenchmark {
+
+    private static final String[] SIMKEY_FIELDS = {"SimKey", "Code", "Credits"};
+    private static final String[] BUSINESS_FIELDS = {
+        "CompanyName", "CompanyURL", "CompanyLocation", "CompanyDescription", "Revenue",
+        "NumberEmployees", "NAICS", "TopExecutive", "TopExecutiveTitle", "Code", "Credits"};
+
+    private static final JsonFields SIMKEY = JsonFields.of(SIMKEY_FIELDS);
+    private static final JsonFields BUSINESS = JsonFields.of(BUSINESS_FIELDS);
+
+    private final byte[] simKeyResponse = StubApiServer.responseFor("getcompanymatchadvanced", "IBM Corp.")
+        .getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] businessResponse = ("{\"CompanyName\":\"Cisco Systems\","
+        + "\"CompanyURL\":\"https://www.cisco.com\",\"CompanyLocation\":\"San Jose, CA\","
+        + "\"CompanyDescription\":\"Cisco Systems, Inc. designs, manufactures, and sells Internet Protocol based "
+        + "networking and other products related to the communications and information technology industry "
+        + "in the Americas, Europe, the Middle East, Africa, and the Asia Pacific.\","
+        + "\"Revenue\":\"51000000000\",\"NumberEmployees\":\"82500\",\"NAICS\":\"334210\","
+        + "\"TopExecutive\":\"Chuck Robbins\",\"TopExecutiveTitle\":\"CEO\","
+        + "\"Code\":\"Success\",\"Credits\":\"99\"}").getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public void simKeyExtractJsonValue(Blackhole bh) {
+        String json = new String(simKeyResponse, StandardCharsets.UTF_8).trim();
+        for (String field : SIMKEY_FIELDS) {
+            bh.consume(extractJsonValue(json, field));
+        }
+    }
+
+    @Benchmark
+    public void simKeyJsonFields(Blackhole bh) {
+        JsonFields.Values values = SIMKEY.extract(simKeyResponse);
+        for (int i = 0; i < SIMKEY_FIELDS.length; i++) {
+            bh.consume(values.get(i));
+        }
+    }
+
+    @Benchmark
+    public void businessIndexOf(Blackhole bh) {
+        String json = new String(businessResponse, StandardCharsets.UTF_8);
+        for (String field : BUSINESS_FIELDS) {
+            bh.consume(extractByIndexOf(json, field));
+        }
+    }
+
+    @Benchmark
+    public void businessJsonFields(Blackhole bh) {
+        JsonFields.Values values = BUSINESS.extract(businessResponse);
+        for (int i = 0; i < BUSINESS_FIELDS.length; i++) {
+            bh.consume(values.get(i));
+        }
+    }
+
+    /**
+     * The helper from the matching examples.
+     */
+    static String extractJsonValue(String json, String key) {
+        String quotedKey = "\"" + key + "\"";
+        int keyIndex = json.indexOf(quotedKey);
+        if (keyIndex == -1) {
+            return "";
+        }
+
+        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
+        if (colonIndex == -1) {
+            return "";
+        }
+
+        int valueStart = colonIndex + 1;
+        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
+            valueStart++;
+        }
+
+        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
+            valueStart++;
+            StringBuilder sb = new StringBuilder();
+            boolean escaping = false;
+
+            for (int i = valueStart; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (escaping) {
+                    sb.append(c);
+                    escaping = false;
+                } else if (c == '\\') {
+                    escaping = true;
+                } else if (c == '"') {
+                    break;
+                } else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        } else {
+            int valueEnd = valueStart;
+            while (valueEnd < json.length()
+                    && json.charAt(valueEnd) != ','
+                    && json.charAt(valueEnd) != '}'
+                    && !Character.isWhitespace(json.charAt(valueEnd))) {
+                valueEnd++;
+            }
+            return json.substring(valueStart, valueEnd).trim();
+        }
+    }
+
+    /**
+     * The simpler helper from the premium API examples.
+     */
+    static String extractByIndexOf(String json, String key) {
+        String pattern = "\"" + key + "\"";
+
+        int keyIndex = json.indexOf(pattern);
+        if (keyIndex == -1) return "";
+
+        int colonIndex = json.indexOf(":", keyIndex);
+        if (colonIndex == -1) return "";
+
+        int firstQuote = json.indexOf("\"", colonIndex + 1);
+        if (firstQuote == -1) return "";
+
+        int secondQuote = json.indexOf("\"", firstQuote + 1);
+        if (secondQuote == -1) return "";
+
+        return json.substring(firstQuote + 1, secondQuote);
+    }
+}
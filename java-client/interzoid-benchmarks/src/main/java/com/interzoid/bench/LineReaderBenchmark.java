@@ -0,0 +1,108 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.io.MappedLineReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading an input file line by line: the examples'
+ * BufferedReader(FileReader) versus MappedLineReader, decoding every line,
+ * decoding none, and split across threads.
+ *
+ * Run with: java -jar target/benchmarks.jar LineReaderBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineReaderBenchmark {
+
+    @Param({"1000000"})
+    public int lines;
+
+    @Param({"4"})
+    public int threads;
+
+    private Path input;
+
+    @Setup
+    public void generate() throws IOException {
+        Random random = new Random(42);
+        input = Files.createTempFile("interzoid-lines-", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                writer.write(random.nextInt(10000) + " Main Street, Suite " + random.nextInt(500));
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        Files.deleteIfExists(input);
+    }
+
+    /**
+     * What the examples do: platform charset, a String per line.
+     */
+    @Benchmark
+    public void bufferedReader(Blackhole bh) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(input.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                bh.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void mappedDecodeEach(Blackhole bh) throws IOException {
+        try (MappedLineReader reader = MappedLineReader.open(input)) {
+            reader.forEachLine(line -> bh.consume(line.toString()));
+        }
+    }
+
+    /**
+     * Lines that are only counted or skipped are never decoded.
+     */
+    @Benchmark
+    public void mappedNoDecode(Blackhole bh) throws IOException {
+        try (MappedLineReader reader = MappedLineReader.open(input)) {
+            reader.forEachLine(line -> bh.consume(line.length()));
+        }
+    }
+
+    @Benchmark
+    public long mappedParallel() throws IOException {
+        LongAdder chars = new LongAdder();
+        try (MappedLineReader reader = MappedLineReader.open(input)) {
+            reader.forEachLineParallel(threads, line -> chars.add(line.toString().length()));
+        }
+        return chars.sum();
+    }
+}
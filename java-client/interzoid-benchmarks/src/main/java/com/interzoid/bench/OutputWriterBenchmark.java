@@ -0,0 +1,75 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.io.GroupCommitWriter;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rows per millisecond from several completion threads into one output
+ * file: a shared PrintWriter, as the examples used, versus
+ * GroupCommitWriter's queue and writer thread.
+ *
+ * Run with: java -jar target/benchmarks.jar OutputWriterBenchmark -t 8
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class OutputWriterBenchmark {
+
+    private static final String ROW = "Acme Consolidated Holdings Inc.,Sd9f8gH2kLmN0pQxV3bR7tY1uW5eZ";
+
+    private Path printOutput;
+    private Path groupCommitOutput;
+    private PrintWriter printWriter;
+    private GroupCommitWriter groupCommitWriter;
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        printOutput = Files.createTempFile("interzoid-output-", ".csv");
+        groupCommitOutput = Files.createTempFile("interzoid-output-", ".csv");
+        printWriter = new PrintWriter(new BufferedWriter(new FileWriter(printOutput.toFile())));
+        groupCommitWriter = GroupCommitWriter.open(groupCommitOutput, false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        printWriter.close();
+        groupCommitWriter.close();
+        Files.deleteIfExists(printOutput);
+        Files.deleteIfExists(groupCommitOutput);
+    }
+
+    @Benchmark
+    public void printWriter() {
+        printWriter.println(ROW);
+    }
+
+    @Benchmark
+    public void groupCommitWriter() throws IOException {
+        groupCommitWriter.write(ROW);
+    }
+}
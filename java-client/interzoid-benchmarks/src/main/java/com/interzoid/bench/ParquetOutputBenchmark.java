@@ -0,0 +1,108 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.io.ParquetWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing a SimKey result set (value, SimKey, employee count) as CSV
+ * versus Parquet, uncompressed and gzip. The file size is printed at the
+ * end of each benchmark, since on-disk size is half the point.
+ *
+ * Run with: java -jar target/benchmarks.jar ParquetOutputBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParquetOutputBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    // Rows per distinct value, as in a file with many repeats
+    @Param({"5"})
+    public int repeats;
+
+    private static final List<ParquetWriter.Column> COLUMNS = List.of(
+        ParquetWriter.Column.string("Company"),
+        ParquetWriter.Column.string("SimKey"),
+        ParquetWriter.Column.int64("NumberEmployees"));
+
+    private String[] companies;
+    private String[] simKeys;
+    private long[] employees;
+    private Path output;
+
+    @Setup
+    public void generate() throws IOException {
+        Random random = new Random(42);
+        companies = new String[rows];
+        simKeys = new String[rows];
+        employees = new long[rows];
+        int distinct = Math.max(1, rows / repeats);
+        for (int i = 0; i < rows; i++) {
+            int value = random.nextInt(distinct);
+            companies[i] = "Company " + value + " Holdings, Inc.";
+            simKeys[i] = StubApiServer.simKey(companies[i]);
+            employees[i] = value % 100000;
+        }
+        output = Files.createTempFile("interzoid-output-", ".out");
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        System.out.printf("%nOutput file: %,d bytes%n", Files.size(output));
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void csv() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write('"' + companies[i] + "\"," + simKeys[i] + ',' + employees[i]);
+                writer.newLine();
+            }
+        }
+    }
+
+    @Benchmark
+    public void parquet() throws IOException {
+        writeParquet(ParquetWriter.Compression.NONE);
+    }
+
+    @Benchmark
+    public void parquetGzip() throws IOException {
+        writeParquet(ParquetWriter.Compression.GZIP);
+    }
+
+    private void writeParquet(ParquetWriter.Compression compression) throws IOException {
+        try (ParquetWriter writer = ParquetWriter.open(output, COLUMNS, 64L << 20, compression)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write(companies[i], simKeys[i], employees[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.proxy.ProxyConfig;
+import com.interzoid.proxy.ProxyServer;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Several jobs looking up the same companies at the same time, against a
+ * stub that takes 50 ms per call, about what the API takes over the internet:
+ *
+ * <ul>
+ *   <li>direct: every job calls the stub itself</li>
+ *   <li>proxyCold: the jobs share a {@link ProxyServer} with an empty
+ *       cache; each company goes upstream once, and jobs asking for it
+ *       meanwhile wait for that call</li>
+ *   <li>proxyWarm: the same, with every answer already cached</li>
+ * </ul>
+ *
+ * Each job sends its lookups {@code inFlight} at a time. Upstream calls
+ * per run are {@code jobs * lookups}, {@code distinct} and 0.
+ *
+ * Run with: java -jar target/benchmarks.jar ProxyBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+
+    @Param({"4"})
+    public int jobs;
+
+    @Param({"500"})
+    public int lookups;
+
+    @Param({"100"})
+    public int distinct;
+
+    private static final int IN_FLIGHT = 16;
+
+    private StubApiServer stub;
+    private InterzoidHttp client;
+    private InterzoidHttp upstream;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0).latencyMicros(50000);
+        client = InterzoidHttp.create(new HttpConfig().adaptive(false).poolSize(256).maxAttempts(1));
+        upstream = InterzoidHttp.create(
+            new HttpConfig().baseUrl(stub.baseUrl()).adaptive(false).poolSize(256).maxAttempts(1));
+        queries = new ArrayList<>(lookups);
+        for (int i = 0; i < lookups; i++) {
+            String company = "Company " + (i % distinct) + " Inc.";
+            queries.add("/getcompanymatchadvanced?license=bench&algorithm=model-v4-wide&company="
+                + URLEncoder.encode(company, StandardCharsets.UTF_8));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        stub.close();
+    }
+
+    /**
+     * A proxy with an empty cache for every run.
+     */
+    @State(Scope.Benchmark)
+    public static class ColdProxy {
+        ProxyServer proxy;
+        Path cacheDir;
+
+        @Setup(Level.Invocation)
+        public void start(ProxyBenchmark bench) throws IOException {
+            cacheDir = Files.createTempDirectory("interzoid-proxy-");
+            proxy = bench.startProxy(cacheDir);
+        }
+
+        @TearDown(Level.Invocation)
+        public void stop() throws IOException {
+            proxy.close();
+            deleteTree(cacheDir);
+        }
+    }
+
+    /**
+     * A proxy that has already answered every query once.
+     */
+    @State(Scope.Benchmark)
+    public static class WarmProxy {
+        ProxyServer proxy;
+        Path cacheDir;
+
+        @Setup(Level.Trial)
+        public void start(ProxyBenchmark bench) throws IOException {
+            cacheDir = Files.createTempDirectory("interzoid-proxy-");
+            proxy = bench.startProxy(cacheDir);
+            bench.runJobs(proxy.baseUrl(), 1, body -> { });
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            proxy.close();
+            deleteTree(cacheDir);
+        }
+    }
+
+    @Benchmark
+    public void direct(Blackhole bh) {
+        runJobs(stub.baseUrl(), jobs, bh::consume);
+    }
+
+    @Benchmark
+    public void proxyCold(ColdProxy cold, Blackhole bh) {
+        runJobs(cold.proxy.baseUrl(), jobs, bh::consume);
+    }
+
+    @Benchmark
+    public void proxyWarm(WarmProxy warm, Blackhole bh) {
+        runJobs(warm.proxy.baseUrl(), jobs, bh::consume);
+    }
+
+    ProxyServer startProxy(Path cacheDir) throws IOException {
+        ProxyConfig config = new ProxyConfig().port(0).cacheDir(cacheDir).maxRequestsPerSecond(0);
+        return ProxyServer.start(config, upstream);
+    }
+
+    /**
+     * Runs {@code count} jobs side by side, each sending every query.
+     */
+    void runJobs(String baseUrl, int count, Consumer<byte[]> sink) {
+        List<CompletableFuture<Void>> running = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            running.add(CompletableFuture.runAsync(() -> runJob(baseUrl, sink)));
+        }
+        running.forEach(CompletableFuture::join);
+    }
+
+    private void runJob(String baseUrl, Consumer<byte[]> sink) {
+        List<CompletableFuture<HttpResult>> window = new ArrayList<>(IN_FLIGHT);
+        for (String query : queries) {
+            window.add(client.getAsync(baseUrl + query));
+            if (window.size() == IN_FLIGHT) {
+                window.forEach(call -> sink.accept(call.join().bodyBytes()));
+                window.clear();
+            }
+        }
+        window.forEach(call -> sink.accept(call.join().bodyBytes()));
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.JsonFields;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning a response body into fields: the examples' old readStream
+ * (InputStreamReader + readLine into a StringBuilder) followed by the
+ * per-field helper, versus decoding the bytes once (HttpResult.body())
+ * and versus reading the fields from the bytes directly.
+ *
+ * Run with: java -jar target/benchmarks.jar ReadBodyBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadBodyBenchmark {
+
+    private static final JsonFields FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
+    private final byte[] body = StubApiServer.responseFor("getcompanymatchadvanced", "IBM Corp.")
+        .getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public String readStreamThenExtract() throws IOException {
+        String json = readStream(new ByteArrayInputStream(body));
+        return JsonExtractBenchmark.extractJsonValue(json, "SimKey")
+            + JsonExtractBenchmark.extractJsonValue(json, "Code")
+            + JsonExtractBenchmark.extractJsonValue(json, "Credits");
+    }
+
+    @Benchmark
+    public String decodeThenExtract() {
+        String json = new String(body, StandardCharsets.UTF_8);
+        return JsonExtractBenchmark.extractJsonValue(json, "SimKey")
+            + JsonExtractBenchmark.extractJsonValue(json, "Code")
+            + JsonExtractBenchmark.extractJsonValue(json, "Credits");
+    }
+
+    @Benchmark
+    public String jsonFields() {
+        JsonFields.Values values = FIELDS.extract(body);
+        return values.get(0) + values.get(1) + values.get(2);
+    }
+
+    /**
+     * The helper the examples used before the shared client.
+     */
+    static String readStream(InputStream inputStream) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            builder.append(line);
+        }
+
+        reader.close();
+        return builder.toString();
+    }
+}
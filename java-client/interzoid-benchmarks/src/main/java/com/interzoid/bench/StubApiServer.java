@@ -0,0 +1,743 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.x402.Eip3009;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * In-process stand-in for api.interzoid.com, used by the benchmarks so they
+ * never touch the real service or spend credits.
+ *
+ * Every endpoint answers with flat JSON in the same shape as the real APIs
+ * (getbusinessinfo with made-up Revenue, NumberEmployees and NAICS,
+ * getparentcompanyinfo with a made-up parent).
+ * SimKeys are derived from the input with case and punctuation removed, so
+ * "IBM Corp." and "ibm corp" share a key the way the real matching APIs
+ * would cluster them.
+ *
+ * The server counts the TCP connections it accepts, which shows how many
+ * connection setups (and TLS handshakes) a client needed.
+ *
+ * {@code /match} stands in for the Full Dataset API (match.interzoid.com):
+ * it reads the file named by {@code connection} (any URL the JDK can open,
+ * including file:), and streams back one "input,SimKey" CSV row per input
+ * row. Without an {@code apikey} it answers 402 with an x402 version 2
+ * quote for {@link #x402Amount} USDC base units, in the body and in a
+ * PAYMENT-REQUIRED header, like the real service. A request carrying a
+ * PAYMENT-SIGNATURE (or version 1 X-PAYMENT) header is served once the
+ * payment's recipient, amount and validity window check out, its
+ * signature recovers to the payer ({@code from}) as the USDC contract
+ * would check it, and its nonce has not been seen before; otherwise it
+ * gets another 402. Nothing is settled, so any key can pay.
+ * {@link #batchFailEvery} leaves some SimKeys empty to exercise per-row
+ * fallback.
+ *
+ * {@link #capacity} models a service with a fixed number of workers:
+ * requests beyond that wait their turn (so latency grows with load), and
+ * once the queue is full they are rejected with 429, optionally with a
+ * Retry-After header. Use it to watch a client's concurrency limit adapt.
+ *
+ * {@link #failPercent} and {@link #outageAfter} answer 503 to a share of
+ * calls, or to all calls for a while, to exercise retries and circuit
+ * breakers.
+ *
+ * {@link #latencyMicros(String, long)} gives one endpoint its own service
+ * time, to model APIs that answer at different speeds.
+ *
+ * Run standalone with: java -cp benchmarks.jar com.interzoid.bench.StubApiServer [port] [--tls]
+ * (-Dstub.latencyMicros, -Dstub.latencyMicros.<endpoint>, -Dstub.capacity, -Dstub.retryAfterSeconds,
+ * -Dstub.failPercent, -Dstub.outageAfterRequests with -Dstub.outageMs, and
+ * -Dstub.batchFailEvery and -Dstub.x402Amount set the options above).
+ */
+public final class StubApiServer implements AutoCloseable {
+
+    private static final String KEYSTORE_PASSWORD = "changeit";
+
+    // Quoted to x402 clients: USDC on Base, paid to a made-up address
+    static final String X402_NETWORK = "eip155:8453";
+    static final String X402_ASSET = "0x833589fCD6eDb6E08f4c7C32D4f71b54bdA02913";
+    static final String X402_PAY_TO = "0x4020402040204020402040204020402040204020";
+    private static final long X402_TIMEOUT_SECONDS = 60;
+    private static final long X402_CHAIN_ID = 8453;
+    private static final String X402_TOKEN_NAME = "USD Coin";
+    private static final String X402_TOKEN_VERSION = "2";
+
+    private static final JsonFields PAYMENT_FIELDS = JsonFields.of("x402Version", "payload");
+    private static final JsonFields PAYLOAD_FIELDS = JsonFields.of("signature", "authorization");
+    private static final JsonFields AUTHORIZATION_FIELDS =
+        JsonFields.of("from", "to", "value", "validAfter", "validBefore", "nonce");
+
+    // Industry codes handed out by the getbusinessinfo stand-in
+    private static final String[] NAICS = { "334210", "511210", "522110", "541511", "621111" };
+
+    static {
+        // Without TCP_NODELAY the JDK server's separate header/body writes hit
+        // delayed ACKs and every response takes ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SSLContext sslContext;
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long latencyMicros;
+    private final Map<String, Long> endpointLatencyMicros = new ConcurrentHashMap<>();
+    private volatile int batchFailEvery;
+
+    // x402: price of a /match call, and nonces already paid with
+    private volatile long x402Amount = 10_000;
+    private final Set<String> spentNonces = ConcurrentHashMap.newKeySet();
+    private final AtomicLong paymentsAccepted = new AtomicLong();
+    private final AtomicLong paymentsRefused = new AtomicLong();
+    private final AtomicLong quotesSent = new AtomicLong();
+
+    // Capacity model: null means unlimited
+    private volatile Semaphore workers;
+    private volatile int queueLimit;
+    private volatile int retryAfterSeconds;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final AtomicLong throttled = new AtomicLong();
+
+    // Failure injection
+    private volatile int failPercent;
+    private volatile long outageAfterRequests = -1;
+    private volatile long outageNanos;
+    private volatile long outageEndsNanos;
+    private final AtomicLong failed = new AtomicLong();
+
+    private StubApiServer(HttpServer server, ExecutorService executor, SSLContext sslContext) {
+        this.server = server;
+        this.executor = executor;
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Starts a plain HTTP stub on the given port (0 picks a free port).
+     */
+    public static StubApiServer start(int port) throws IOException {
+        return start(port, false);
+    }
+
+    /**
+     * Starts a stub on the given port, optionally serving HTTPS with a
+     * freshly generated self-signed certificate for "localhost".
+     */
+    public static StubApiServer start(int port, boolean tls) throws IOException {
+        InetSocketAddress address = new InetSocketAddress("localhost", port);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-api");
+            t.setDaemon(true);
+            return t;
+        });
+
+        HttpServer server;
+        SSLContext sslContext = null;
+        if (tls) {
+            sslContext = selfSignedContext();
+            HttpsServer https = HttpsServer.create(address, 1024);
+            https.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            server = https;
+        } else {
+            server = HttpServer.create(address, 1024);
+        }
+
+        StubApiServer stub = new StubApiServer(server, executor, sslContext);
+        server.createContext("/", stub::handle);
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * Base URL to use as {@code interzoid.baseUrl}, e.g. http://localhost:54321.
+     */
+    public String baseUrl() {
+        String scheme = sslContext != null ? "https" : "http";
+        return scheme + "://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * TLS context that trusts this server's certificate (null for plain HTTP).
+     */
+    public SSLContext clientSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Adds a fixed delay to every response, to mimic the service time of the real API.
+     */
+    public StubApiServer latencyMicros(long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+        return this;
+    }
+
+    /**
+     * Service time for one endpoint (e.g. "getbusinessinfo"), in place of
+     * the default {@link #latencyMicros(long)}.
+     */
+    public StubApiServer latencyMicros(String endpoint, long latencyMicros) {
+        endpointLatencyMicros.put(endpoint, latencyMicros);
+        return this;
+    }
+
+    /**
+     * Makes every n-th row of a /match response come back without a SimKey
+     * (0, the default, matches every row).
+     */
+    public StubApiServer batchFailEvery(int n) {
+        this.batchFailEvery = n;
+        return this;
+    }
+
+    /**
+     * Price quoted for a /match call without an API key, in USDC base
+     * units (default 10000, i.e. $0.01). Changing it makes payments signed
+     * for the old price fail, as after a price change on the real service.
+     */
+    public StubApiServer x402Amount(long amount) {
+        this.x402Amount = amount;
+        return this;
+    }
+
+    /**
+     * Serves at most {@code workers} API calls at a time (each taking
+     * {@link #latencyMicros}); up to twice as many more wait in a queue, and
+     * calls beyond that get 429. 0 removes the limit.
+     */
+    public StubApiServer capacity(int workers) {
+        this.queueLimit = 3 * workers;
+        this.workers = workers > 0 ? new Semaphore(workers, true) : null;
+        return this;
+    }
+
+    /**
+     * Value of the Retry-After header sent with 429s (0, the default, sends none).
+     */
+    public StubApiServer retryAfterSeconds(int seconds) {
+        this.retryAfterSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * Answers 503 to about {@code percent}% of API calls, at random.
+     */
+    public StubApiServer failPercent(int percent) {
+        this.failPercent = percent;
+        return this;
+    }
+
+    /**
+     * Answers 503 to every API call for {@code length}, starting once
+     * {@code requests} requests have been received (0 starts it now).
+     */
+    public StubApiServer outageAfter(long requests, Duration length) {
+        this.outageNanos = length.toNanos();
+        this.outageAfterRequests = requests + this.requests.get();
+        return this;
+    }
+
+    /**
+     * Number of calls answered 503 by failure injection so far.
+     */
+    public long failedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Number of calls rejected with 429 so far.
+     */
+    public long throttledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Number of distinct client connections accepted so far.
+     */
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Number of 402 quotes sent for /match so far, including refused payments.
+     */
+    public long quoteCount() {
+        return quotesSent.get();
+    }
+
+    /**
+     * Number of /match calls served against an x402 payment so far.
+     */
+    public long paymentsAccepted() {
+        return paymentsAccepted.get();
+    }
+
+    /**
+     * Number of x402 payments refused so far (wrong amount, expired, reused nonce...).
+     */
+    public long paymentsRefused() {
+        return paymentsRefused.get();
+    }
+
+    public void resetCounters() {
+        connections.clear();
+        requests.set(0);
+        throttled.set(0);
+        failed.set(0);
+        quotesSent.set(0);
+        paymentsAccepted.set(0);
+        paymentsRefused.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long request = requests.incrementAndGet();
+        connections.add(exchange.getRemoteAddress().toString());
+
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+
+        String endpoint = exchange.getRequestURI().getPath().replaceFirst("^/", "");
+        if ("match".equals(endpoint)) {
+            serve(endpoint);
+            handleMatch(exchange);
+            return;
+        }
+
+        if (shouldFail(request)) {
+            failed.incrementAndGet();
+            respond(exchange, 503, "{\"Code\":\"Service Unavailable\"}");
+            return;
+        }
+
+        Semaphore capacity = workers;
+        if (capacity == null) {
+            serve(endpoint);
+        } else if (admitted.incrementAndGet() > queueLimit) {
+            admitted.decrementAndGet();
+            reject(exchange);
+            return;
+        } else {
+            try {
+                capacity.acquireUninterruptibly();
+                try {
+                    serve(endpoint);
+                } finally {
+                    capacity.release();
+                }
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+
+        String input = firstParameter(exchange.getRequestURI().getRawQuery());
+        byte[] body = responseFor(endpoint, input).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Spends the configured service time.
+     */
+    private void serve(String endpoint) {
+        long micros = endpointLatencyMicros.getOrDefault(endpoint, latencyMicros);
+        if (micros > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(micros);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean shouldFail(long request) {
+        if (outageAfterRequests >= 0 && request >= outageAfterRequests) {
+            synchronized (this) {
+                if (outageAfterRequests >= 0 && request >= outageAfterRequests) {
+                    outageEndsNanos = System.nanoTime() + outageNanos;
+                    outageAfterRequests = -1;
+                }
+            }
+        }
+        long ends = outageEndsNanos;
+        if (ends != 0 && ends - System.nanoTime() > 0) {
+            return true;
+        }
+        return failPercent > 0 && ThreadLocalRandom.current().nextInt(100) < failPercent;
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        throttled.incrementAndGet();
+        if (retryAfterSeconds > 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        respond(exchange, 429, "{\"Code\":\"Too Many Requests\"}");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void handleMatch(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+        if (params.getOrDefault("apikey", "").isEmpty()) {
+            String payment = exchange.getRequestHeaders().getFirst("PAYMENT-SIGNATURE");
+            if (payment == null) {
+                payment = exchange.getRequestHeaders().getFirst("X-PAYMENT");
+            }
+            String refusal = payment == null ? "" : checkPayment(payment);
+            if (refusal == null) {
+                paymentsAccepted.incrementAndGet();
+            } else {
+                if (!refusal.isEmpty()) {
+                    paymentsRefused.incrementAndGet();
+                }
+                sendQuote(exchange, refusal);
+                return;
+            }
+        }
+
+        char delimiter = "tsv".equalsIgnoreCase(params.get("filetype")) ? '\t' : ',';
+        int column = Integer.parseInt(params.getOrDefault("company_column", "1")) - 1;
+        boolean skipHeader = Boolean.parseBoolean(params.get("has_header"));
+        int failEvery = batchFailEvery;
+
+        BufferedReader reader;
+        try {
+            InputStream source = URI.create(params.getOrDefault("connection", "")).toURL().openStream();
+            reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            byte[] error = ("Cannot read connection: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(400, error.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(error);
+            }
+            return;
+        }
+
+        // Length 0: chunked, so rows are streamed as they are matched
+        exchange.getResponseHeaders().set("Content-Type", "text/csv");
+        exchange.sendResponseHeaders(200, 0);
+        try (BufferedReader in = reader;
+             Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            String line;
+            long row = 0;
+            while ((line = in.readLine()) != null) {
+                if (skipHeader) {
+                    skipHeader = false;
+                    continue;
+                }
+                String[] fields = line.split(delimiter == '\t' ? "\t" : ",", -1);
+                String input = column < fields.length ? fields[column].trim() : "";
+                if (input.isEmpty()) {
+                    continue;
+                }
+                row++;
+                String key = failEvery > 0 && row % failEvery == 0 ? "" : simKey(input);
+                out.write((delimiter == ',' ? csvField(input) : input) + delimiter + key + "\n");
+            }
+        }
+    }
+
+    private void sendQuote(HttpExchange exchange, String error) throws IOException {
+        quotesSent.incrementAndGet();
+        String json = "{\"x402Version\":2,"
+            + (error.isEmpty() ? "" : "\"error\":\"" + jsonEscape(error) + "\",")
+            + "\"resource\":{\"url\":\"" + baseUrl() + "/match\",\"description\":\"Full Dataset matching\","
+            + "\"mimeType\":\"text/csv\"},"
+            + "\"accepts\":[{\"scheme\":\"exact\",\"network\":\"" + X402_NETWORK + "\","
+            + "\"amount\":\"" + x402Amount + "\",\"asset\":\"" + X402_ASSET + "\","
+            + "\"payTo\":\"" + X402_PAY_TO + "\",\"maxTimeoutSeconds\":" + X402_TIMEOUT_SECONDS + ","
+            + "\"extra\":{\"name\":\"" + X402_TOKEN_NAME + "\",\"version\":\"" + X402_TOKEN_VERSION + "\"}}]}";
+        byte[] quote = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("PAYMENT-REQUIRED", Base64.getEncoder().encodeToString(quote));
+        respond(exchange, 402, json);
+    }
+
+    /**
+     * Checks an x402 payment header; returns null if it pays for a /match
+     * call, or why not. Each nonce pays once.
+     */
+    private String checkPayment(String header) {
+        byte[] json;
+        try {
+            json = Base64.getDecoder().decode(header.trim());
+        } catch (IllegalArgumentException e) {
+            return "payment header is not base64";
+        }
+        JsonFields.Values payload = PAYLOAD_FIELDS.extract(PAYMENT_FIELDS.extract(json).get("payload"));
+        JsonFields.Values authorization = AUTHORIZATION_FIELDS.extract(payload.get("authorization"));
+
+        String signature = payload.get("signature");
+        if (!signature.matches("0x[0-9a-fA-F]{130}")) {
+            return "malformed signature";
+        }
+        String from = authorization.get("from");
+        if (!from.matches("0x[0-9a-fA-F]{40}")) {
+            return "malformed payer address";
+        }
+        if (!X402_PAY_TO.equalsIgnoreCase(authorization.get("to"))) {
+            return "payment is not to " + X402_PAY_TO;
+        }
+        String value = authorization.get("value");
+        if (!value.matches("[0-9]{1,18}") || Long.parseLong(value) < x402Amount) {
+            return "payment of " + value + " is below the price of " + x402Amount;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        String validAfter = authorization.get("validAfter");
+        String validBefore = authorization.get("validBefore");
+        if (!validAfter.matches("[0-9]{1,18}") || !validBefore.matches("[0-9]{1,18}")
+                || Long.parseLong(validAfter) > now || Long.parseLong(validBefore) <= now) {
+            return "authorization is outside its validity window";
+        }
+        String nonce = authorization.get("nonce");
+        if (!nonce.matches("0x[0-9a-fA-F]{64}")) {
+            return "malformed nonce";
+        }
+        byte[] digest = Eip3009.digest(X402_TOKEN_NAME, X402_TOKEN_VERSION, X402_CHAIN_ID, X402_ASSET, from,
+            authorization.get("to"), new BigInteger(value), Long.parseLong(validAfter), Long.parseLong(validBefore),
+            hexBytes(nonce));
+        if (!from.equalsIgnoreCase(Eip3009.recoverSigner(digest, hexBytes(signature)))) {
+            return "signature is not from " + from;
+        }
+        if (!spentNonces.add(nonce.toLowerCase(Locale.ROOT))) {
+            return "nonce has already been used";
+        }
+        return null;
+    }
+
+    /**
+     * Builds a response in the shape of the given endpoint.
+     */
+    static String responseFor(String endpoint, String input) {
+        if ("getorgstandard".equals(endpoint)) {
+            return "{\"Standard\":\"" + jsonEscape(input.trim().toUpperCase(Locale.ROOT))
+                + "\",\"Code\":\"Success\",\"Credits\":\"499999\"}";
+        }
+        if ("getbusinessinfo".equals(endpoint)) {
+            // Made-up but stable figures, so typed output can be checked
+            long h = Long.parseUnsignedLong(simKey(input), 16) >>> 1;
+            return "{\"CompanyName\":\"" + jsonEscape(input.trim()) + "\",\"Revenue\":\"" + (h % 100000) * 1000
+                + "\",\"NumberEmployees\":\"" + h % 50000 + "\",\"NAICS\":\"" + NAICS[(int) (h % NAICS.length)]
+                + "\",\"Code\":\"Success\",\"Credits\":\"499999\"}";
+        }
+        if ("getparentcompanyinfo".equals(endpoint)) {
+            String parent = input.trim() + " Holdings";
+            return "{\"CompanyName\":\"" + jsonEscape(input.trim()) + "\",\"ParentCompany\":\"" + jsonEscape(parent)
+                + "\",\"ParentCompanyLocation\":\"Delaware, USA\",\"ParentCompanyURL\":\"https://www."
+                + simKey(parent) + ".com\",\"Code\":\"Success\",\"Credits\":\"499999\"}";
+        }
+        return "{\"SimKey\":\"" + simKey(input) + "\",\"Code\":\"Success\",\"Credits\":\"499999\"}";
+    }
+
+    /**
+     * Deterministic stand-in for a SimKey: a hash of the input with case,
+     * whitespace and punctuation removed.
+     */
+    static String simKey(String input) {
+        StringBuilder normalized = new StringBuilder(input.length());
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        long h = 1125899906842597L;
+        for (int i = 0; i < normalized.length(); i++) {
+            h = 31 * h + normalized.charAt(i);
+        }
+        String hex = Long.toHexString(h);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Returns the value of the first query parameter other than license/algorithm.
+     */
+    private static String firstParameter(String rawQuery) {
+        if (rawQuery == null) {
+            return "";
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            if (name.equals("license") || name.equals("algorithm")) {
+                continue;
+            }
+            return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+        }
+        return "";
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Bytes of 0x-prefixed hex, already checked to be well formed.
+     */
+    private static byte[] hexBytes(String hex) {
+        byte[] bytes = new byte[(hex.length() - 2) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 + 2 * i, 4 + 2 * i), 16);
+        }
+        return bytes;
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonEscape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates a throwaway self-signed certificate for localhost with the
+     * JDK's keytool and returns a context that serves (and trusts) it.
+     */
+    private static SSLContext selfSignedContext() throws IOException {
+        File keystore = File.createTempFile("interzoid-stub", ".p12");
+        keystore.delete();
+        keystore.deleteOnExit();
+
+        String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+        Process process = new ProcessBuilder(
+            keytool, "-genkeypair", "-alias", "stub", "-keyalg", "RSA", "-keysize", "2048",
+            "-validity", "2", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+            "-storetype", "PKCS12", "-keystore", keystore.getPath(),
+            "-storepass", KEYSTORE_PASSWORD, "-keypass", KEYSTORE_PASSWORD)
+            .redirectErrorStream(true)
+            .start();
+        try {
+            process.getInputStream().readAllBytes();
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed to create a stub certificate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating stub certificate", e);
+        }
+
+        try (InputStream in = new FileInputStream(keystore)) {
+            KeyStore store = KeyStore.getInstance("PKCS12");
+            store.load(in, KEYSTORE_PASSWORD.toCharArray());
+
+            KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            kmf.init(store, KEYSTORE_PASSWORD.toCharArray());
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init(store);
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not load stub certificate", e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        boolean tls = args.length > 1 && "--tls".equals(args[1]);
+        StubApiServer stub = start(port, tls)
+            .latencyMicros(Long.getLong("stub.latencyMicros", 0))
+            .capacity(Integer.getInteger("stub.capacity", 0))
+            .retryAfterSeconds(Integer.getInteger("stub.retryAfterSeconds", 0))
+            .failPercent(Integer.getInteger("stub.failPercent", 0))
+            .batchFailEvery(Integer.getInteger("stub.batchFailEvery", 0))
+            .x402Amount(Long.getLong("stub.x402Amount", 10_000));
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("stub.latencyMicros.")) {
+                stub.latencyMicros(name.substring("stub.latencyMicros.".length()), Long.getLong(name));
+            }
+        }
+        long outageAfter = Long.getLong("stub.outageAfterRequests", -1);
+        if (outageAfter >= 0) {
+            stub.outageAfter(outageAfter, Duration.ofMillis(Long.getLong("stub.outageMs", 10_000)));
+        }
+        System.out.println("Stub Interzoid API listening on " + stub.baseUrl());
+        System.out.println("Run an example with -Dinterzoid.baseUrl=" + stub.baseUrl());
+    }
+}
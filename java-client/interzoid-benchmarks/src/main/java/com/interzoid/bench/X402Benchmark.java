@@ -0,0 +1,122 @@
+package com.interzoid.bench;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.x402.EvmSigner;
+import com.interzoid.client.x402.X402Client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repeated x402-paid Full Dataset jobs against the stub's /match, which
+ * takes 20 ms per request and checks every payment:
+ *
+ * <ul>
+ *   <li>noReuse: every job is refused with 402, then paid with an
+ *       authorization signed on the spot, as the other language examples
+ *       do (two round trips and a signature per job)</li>
+ *   <li>quoteReuse: the quote is kept, so jobs after the first are sent
+ *       with a payment straight away, still signed on the spot</li>
+ *   <li>presigned: as quoteReuse, with authorizations signed ahead of time
+ *       on a background thread</li>
+ * </ul>
+ *
+ * Each invocation runs {@code jobs} jobs one after another with a fresh
+ * client, so the first job of every invocation pays for the quote.
+ *
+ * Run with: java -jar target/benchmarks.jar X402Benchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class X402Benchmark {
+
+    @Param({"20"})
+    public int jobs;
+
+    // Private key 1: a well-known test account, never funded
+    private static final EvmSigner SIGNER = EvmSigner.fromPrivateKey(
+        "0x0000000000000000000000000000000000000000000000000000000000000001");
+
+    private StubApiServer stub;
+    private InterzoidHttp http;
+    private Path input;
+    private String url;
+    private X402Client payer;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        stub = StubApiServer.start(0).latencyMicros(20_000);
+        http = InterzoidHttp.create(new HttpConfig().baseUrl(stub.baseUrl()));
+        input = Files.createTempFile("x402-bench", ".csv");
+        Files.write(input, "Acme Inc\nIBM Corp\nInterzoid\n".getBytes(StandardCharsets.UTF_8));
+        url = stub.baseUrl() + "/match?function=match&filetype=csv&company_column=1&connection=" + input.toUri();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closePayer() {
+        if (payer != null) {
+            payer.close();
+            payer = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        stub.close();
+        Files.deleteIfExists(input);
+    }
+
+    @Benchmark
+    public int noReuse() throws IOException {
+        payer = X402Client.create(http, SIGNER).quoteTtl(Duration.ZERO).presigned(0);
+        return runJobs();
+    }
+
+    @Benchmark
+    public int quoteReuse() throws IOException {
+        payer = X402Client.create(http, SIGNER).presigned(0);
+        return runJobs();
+    }
+
+    @Benchmark
+    public int presigned() throws IOException {
+        payer = X402Client.create(http, SIGNER).presigned(2);
+        return runJobs();
+    }
+
+    private int runJobs() throws IOException {
+        int bytes = 0;
+        for (int i = 0; i < jobs; i++) {
+            HttpResult result = payer.get(url);
+            if (!result.isSuccess()) {
+                throw new IOException("Job was not served: HTTP " + result.statusCode());
+            }
+            bytes += result.bodyBytes().length;
+        }
+        return bytes;
+    }
+}
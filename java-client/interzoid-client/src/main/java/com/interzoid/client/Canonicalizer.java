@@ -0,0 +1,263 @@
+package com.interzoid.client;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folds trivially different spellings of an input value ("ACME  Inc",
+ * "Acme Inc", "Acme&nbsp;Inc") into one canonical form before the cache
+ * and the API are asked, so all of them share one lookup.
+ *
+ * Only the lookup key changes. The value sent to the API is the first
+ * spelling seen, and every row keeps its own text in the output, so a
+ * report shows exactly what was in the file.
+ *
+ * The rules are applied in this order, whatever order they are given in:
+ *
+ * <ul>
+ *   <li>{@link Rule#NFKC}: Unicode compatibility normalization (full-width
+ *       letters, ligatures, no-break spaces)</li>
+ *   <li>{@link Rule#PUNCTUATION}: drops punctuation characters</li>
+ *   <li>{@link Rule#WHITESPACE}: trims, and turns every run of whitespace
+ *       into one space</li>
+ *   <li>{@link Rule#CASE}: lower case, in the root locale</li>
+ * </ul>
+ *
+ * A rule may only be used for an API whose answer does not depend on what
+ * the rule removes. The defaults are per API and kept conservative:
+ *
+ * <pre>
+ *   getcompanymatchadvanced, getaddressmatchadvanced, getfullnamematch
+ *                    nfkc,whitespace,case
+ *   getorgstandard   nfkc,whitespace        (the Standard keeps the input's case)
+ *   any other API    none
+ * </pre>
+ *
+ * Canonicalization is off unless enabled, and the rules of any API can be
+ * overridden, with system properties:
+ *
+ * <pre>
+ *   interzoid.canonical              true to use the default rules above (default false)
+ *   interzoid.canonical.rules.&lt;api&gt;  rules for one API, e.g. "nfkc,whitespace", or "none";
+ *                                    applies even if interzoid.canonical is false
+ * </pre>
+ *
+ * {@link #toString()} lists the rules in use, e.g. "nfkc,whitespace,case",
+ * so a run can log what it folded.
+ */
+public final class Canonicalizer {
+
+    /**
+     * One folding step.
+     */
+    public enum Rule {
+        NFKC, PUNCTUATION, WHITESPACE, CASE;
+
+        String propertyName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Canonicalizer NONE = new Canonicalizer(EnumSet.noneOf(Rule.class));
+
+    private static final Map<String, EnumSet<Rule>> DEFAULT_RULES = Map.of(
+        "getcompanymatchadvanced", EnumSet.of(Rule.NFKC, Rule.WHITESPACE, Rule.CASE),
+        "getaddressmatchadvanced", EnumSet.of(Rule.NFKC, Rule.WHITESPACE, Rule.CASE),
+        "getfullnamematch", EnumSet.of(Rule.NFKC, Rule.WHITESPACE, Rule.CASE),
+        "getorgstandard", EnumSet.of(Rule.NFKC, Rule.WHITESPACE));
+
+    private final Set<Rule> rules;
+
+    private Canonicalizer(EnumSet<Rule> rules) {
+        this.rules = Collections.unmodifiableSet(EnumSet.copyOf(rules));
+    }
+
+    /**
+     * Leaves every value as it is.
+     */
+    public static Canonicalizer none() {
+        return NONE;
+    }
+
+    public static Canonicalizer of(Rule... rules) {
+        if (rules.length == 0) {
+            return NONE;
+        }
+        EnumSet<Rule> set = EnumSet.noneOf(Rule.class);
+        Collections.addAll(set, rules);
+        return new Canonicalizer(set);
+    }
+
+    /**
+     * The rules for {@code api}, from interzoid.canonical.rules.&lt;api&gt; if
+     * set, else its defaults if interzoid.canonical is true, else none.
+     */
+    public static Canonicalizer forApi(String api) {
+        String configured = System.getProperty("interzoid.canonical.rules." + api);
+        if (configured != null) {
+            return parse(configured);
+        }
+        if (!Boolean.getBoolean("interzoid.canonical")) {
+            return NONE;
+        }
+        EnumSet<Rule> defaults = DEFAULT_RULES.get(api);
+        return defaults == null ? NONE : new Canonicalizer(defaults);
+    }
+
+    /**
+     * Parses a comma-separated rule list such as "nfkc,whitespace,case".
+     * "none" or "" gives {@link #none()}.
+     */
+    public static Canonicalizer parse(String spec) {
+        EnumSet<Rule> set = EnumSet.noneOf(Rule.class);
+        for (String part : spec.split(",")) {
+            String name = part.trim();
+            if (name.isEmpty() || name.equalsIgnoreCase("none")) {
+                continue;
+            }
+            try {
+                set.add(Rule.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown canonicalization rule \"" + name
+                    + "\" (expected nfkc, punctuation, whitespace or case)");
+            }
+        }
+        return set.isEmpty() ? NONE : new Canonicalizer(set);
+    }
+
+    public Set<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * True if no rule is in use, so {@link #apply} returns its input.
+     */
+    public boolean isIdentity() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Returns the canonical form of {@code value}: the value itself if no
+     * rule changes it.
+     */
+    public String apply(String value) {
+        if (rules.isEmpty() || value.isEmpty()) {
+            return value;
+        }
+        String result = value;
+        // ASCII text is already NFKC; most input lines are
+        if (rules.contains(Rule.NFKC) && !isAscii(result) && !Normalizer.isNormalized(result, Normalizer.Form.NFKC)) {
+            result = Normalizer.normalize(result, Normalizer.Form.NFKC);
+        }
+        if (rules.contains(Rule.PUNCTUATION) || rules.contains(Rule.WHITESPACE)) {
+            result = fold(result, rules.contains(Rule.PUNCTUATION), rules.contains(Rule.WHITESPACE));
+        }
+        if (rules.contains(Rule.CASE)) {
+            result = result.toLowerCase(Locale.ROOT);
+        }
+        return result;
+    }
+
+    /**
+     * Lists the rules in apply order, e.g. "nfkc,whitespace,case", or "none".
+     */
+    @Override
+    public String toString() {
+        if (rules.isEmpty()) {
+            return "none";
+        }
+        List<String> names = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            names.add(rule.propertyName());
+        }
+        return String.join(",", names);
+    }
+
+    /**
+     * One pass for the punctuation and whitespace rules. Returns
+     * {@code value} itself when there is nothing to drop or collapse.
+     */
+    private static String fold(String value, boolean punctuation, boolean whitespace) {
+        if (!needsFolding(value, punctuation, whitespace)) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); ) {
+            int c = value.codePointAt(i);
+            i += Character.charCount(c);
+            if (punctuation && isPunctuation(c)) {
+                continue;
+            }
+            if (whitespace && isSpace(c)) {
+                pendingSpace = out.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                out.append(' ');
+                pendingSpace = false;
+            }
+            out.appendCodePoint(c);
+        }
+        return out.toString();
+    }
+
+    private static boolean needsFolding(String value, boolean punctuation, boolean whitespace) {
+        int last = value.length() - 1;
+        if (last < 0) {
+            return false;
+        }
+        if (whitespace && (isSpace(value.charAt(0)) || isSpace(value.charAt(last)))) {
+            return true;
+        }
+        boolean previousSpace = false;
+        for (int i = 0; i <= last; i++) {
+            char c = value.charAt(i);
+            if (punctuation && isPunctuation(c)) {
+                return true;
+            }
+            if (whitespace) {
+                boolean space = isSpace(c);
+                if (space && (c != ' ' || previousSpace)) {
+                    return true;
+                }
+                previousSpace = space;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace(int c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    private static boolean isPunctuation(int c) {
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.interzoid.client;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker for one API endpoint.
+ *
+ * After {@code failureThreshold} failures in a row (transport errors or
+ * 5xx) the breaker opens: for {@code openDuration} no call is sent, and
+ * callers park in {@link #awaitPermit()} instead of spending threads,
+ * sockets and retries on a host that is down. Then one probe call is let
+ * through (half-open). If it succeeds the breaker closes and everyone
+ * proceeds; if it fails the breaker opens again. Only the probe's outcome
+ * moves a breaker that is not closed: a call that was already in flight
+ * when it opened may still succeed, which says nothing about the host now.
+ *
+ * 429 is neither a success nor a failure here: the host is up but busy,
+ * which is for the {@link ConcurrencyLimiter} to handle. Such a call, or
+ * one abandoned before it was sent, gives its permit back with
+ * {@link #releasePermit}.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    // permitDelayNanos results other than a wait
+    private static final long PERMIT = 0;
+    private static final long PROBE_PERMIT = -2;
+    private static final long PROBE_OUT = -1;
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long timesOpened;
+
+    public CircuitBreaker(String endpoint, int failureThreshold, Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+        }
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Waits until a call may be sent: immediately while closed; while open,
+     * until the open period ends and either this caller becomes the probe
+     * or the probe has closed the breaker. Every permit must be followed by
+     * exactly one {@link #onSuccess}, {@link #onFailure} or
+     * {@link #releasePermit}, given the value returned here.
+     *
+     * @return true if this caller is the half-open probe
+     */
+    public boolean awaitPermit() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long wait = permitDelayNanos();
+                if (wait == PERMIT || wait == PROBE_PERMIT) {
+                    return wait == PROBE_PERMIT;
+                }
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                } else {
+                    changed.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #awaitPermit()}, but keeps waiting if interrupted and
+     * restores the interrupt flag afterwards.
+     */
+    public boolean awaitPermitUninterruptibly() {
+        boolean interrupted = false;
+        boolean probe;
+        while (true) {
+            try {
+                probe = awaitPermit();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return probe;
+    }
+
+    /**
+     * @param probe what {@link #awaitPermit()} returned for this call
+     */
+    public void onSuccess(boolean probe) {
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+            if (probe && state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                probeInFlight = false;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param probe what {@link #awaitPermit()} returned for this call
+     */
+    public void onFailure(boolean probe) {
+        lock.lock();
+        try {
+            consecutiveFailures++;
+            if ((probe && state == State.HALF_OPEN)
+                    || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAtNanos = System.nanoTime();
+                probeInFlight = false;
+                timesOpened++;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a permit whose call says nothing about the host: it was
+     * answered 429, or never sent. A probe's turn passes to the next
+     * waiting caller.
+     *
+     * @param probe what {@link #awaitPermit()} returned for this call
+     */
+    public void releasePermit(boolean probe) {
+        lock.lock();
+        try {
+            if (probe && state == State.HALF_OPEN) {
+                probeInFlight = false;
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * How many times the breaker has opened so far.
+     */
+    public long timesOpened() {
+        lock.lock();
+        try {
+            return timesOpened;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns PERMIT (or PROBE_PERMIT, taking the probe) if a call may go
+     * now, the nanoseconds left in the open period, or PROBE_OUT while
+     * another caller's probe is out.
+     */
+    private long permitDelayNanos() {
+        if (state == State.CLOSED) {
+            return PERMIT;
+        }
+        if (state == State.OPEN) {
+            long remaining = openedAtNanos + openNanos - System.nanoTime();
+            if (remaining > 0) {
+                return remaining;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (probeInFlight) {
+            return PROBE_OUT;
+        }
+        probeInFlight = true;
+        return PROBE_PERMIT;
+    }
+}
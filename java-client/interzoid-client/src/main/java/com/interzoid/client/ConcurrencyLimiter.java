@@ -0,0 +1,288 @@
+package com.interzoid.client;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the number of API calls in flight, adjusting the cap from the
+ * responses (AIMD: additive increase, multiplicative decrease).
+ *
+ * A fixed cap is either too low, which leaves quota unused, or too high,
+ * which gets calls throttled. This limiter starts low and doubles while
+ * every call is answered promptly (slow start). After that it adds about
+ * one slot per round of calls whenever all slots are busy. It cuts the
+ * limit when the API pushes back:
+ *
+ * <ul>
+ *   <li>HTTP 429, any 5xx, or a transport error: the limit is halved</li>
+ *   <li>latency well above the quietest recent latency (the API is queueing): the limit drops by 10%</li>
+ *   <li>a Retry-After header: no new call starts before the time it names</li>
+ * </ul>
+ *
+ * Decreases are applied at most once per round trip, so one burst of
+ * throttled calls counts as a single signal. The limit settles just below
+ * the point where the API starts pushing back.
+ *
+ * With adaptive limiting off, this is a plain semaphore of {@code maxLimit}.
+ */
+public final class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+    // Smoothed latency above this multiple of the baseline counts as queueing,
+    // as long as the excess is also above the minimum (ignores jitter on fast calls)
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final long MIN_QUEUEING_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final double SMOOTHING = 0.1;
+
+    // How fast the baseline creeps up when the quietest latency really rises
+    private static final double BASELINE_DRIFT = 0.002;
+
+    // Never pause longer than this for one Retry-After
+    private static final long MAX_RETRY_AFTER_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private boolean slowStart = true;
+
+    private double baselineLatencyNanos = -1;
+    private double smoothedLatencyNanos = -1;
+    private long lastDecreaseNanos;
+    private long pausedUntilNanos;
+
+    private long throttled;
+
+    /**
+     * @param adaptive     adjust the limit from responses; if false the limit stays at {@code maxLimit}
+     * @param initialLimit starting limit when adaptive
+     * @param maxLimit     upper bound, e.g. the connection pool size
+     */
+    public ConcurrencyLimiter(boolean adaptive, int initialLimit, int maxLimit) {
+        if (maxLimit < 1) {
+            throw new IllegalArgumentException("maxLimit must be at least 1: " + maxLimit);
+        }
+        this.adaptive = adaptive;
+        this.minLimit = 1;
+        this.maxLimit = maxLimit;
+        this.limit = adaptive ? Math.max(minLimit, Math.min(initialLimit, maxLimit)) : maxLimit;
+        // So that the first pushback counts, however soon it comes
+        this.lastDecreaseNanos = System.nanoTime() - MIN_DECREASE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Waits for a free slot (and for any Retry-After pause to end), then takes it.
+     * Every acquire must be followed by exactly one {@link #onResponse} or {@link #onError}.
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long pause = pausedUntilNanos - System.nanoTime();
+                if (pause > 0) {
+                    changed.awaitNanos(pause);
+                } else if (inFlight >= (int) limit) {
+                    changed.await();
+                } else {
+                    inFlight++;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #acquire()}, but keeps waiting if interrupted and restores
+     * the interrupt flag afterwards.
+     */
+    public void acquireUninterruptibly() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                acquire();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Releases the slot of a call that got an HTTP response.
+     *
+     * @param statusCode   HTTP status
+     * @param latencyNanos time from sending the request to the complete response,
+     *                     or negative if it says nothing about API load (e.g. a large download)
+     * @param retryAfter   value of the Retry-After header, or null
+     */
+    public void onResponse(int statusCode, long latencyNanos, String retryAfter) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            long now = System.nanoTime();
+
+            if (retryAfter != null) {
+                long pause = parseRetryAfter(retryAfter);
+                if (pause > 0) {
+                    pausedUntilNanos = Math.max(pausedUntilNanos, now + Math.min(pause, MAX_RETRY_AFTER_NANOS));
+                }
+            }
+
+            if (statusCode == 429 || statusCode >= 500) {
+                throttled++;
+                decrease(BACKOFF_RATIO, now);
+            } else if (latencyNanos >= 0) {
+                recordLatency(latencyNanos);
+                if (isQueueing()) {
+                    decrease(LATENCY_BACKOFF_RATIO, now);
+                } else if (saturated) {
+                    increase();
+                }
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a call that failed without a response (timeout, reset, ...).
+     */
+    public void onError() {
+        lock.lock();
+        try {
+            inFlight--;
+            decrease(BACKOFF_RATIO, System.nanoTime());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Current limit on concurrent calls.
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calls currently in flight.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Responses so far that were 429 or 5xx.
+     */
+    public long throttledCount() {
+        lock.lock();
+        try {
+            return throttled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    private void increase() {
+        if (!adaptive) {
+            return;
+        }
+        // Slow start doubles the limit per round; afterwards +1 per round
+        limit = Math.min(maxLimit, limit + (slowStart ? 1.0 : 1.0 / limit));
+    }
+
+    private void decrease(double ratio, long now) {
+        if (!adaptive) {
+            return;
+        }
+        long interval = Math.max(MIN_DECREASE_INTERVAL_NANOS, (long) smoothedLatencyNanos);
+        if (now - lastDecreaseNanos < interval) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        slowStart = false;
+        limit = Math.max(minLimit, limit * ratio);
+    }
+
+    private boolean isQueueing() {
+        double excess = smoothedLatencyNanos - baselineLatencyNanos;
+        return excess > MIN_QUEUEING_NANOS && excess > (LATENCY_TOLERANCE - 1) * baselineLatencyNanos;
+    }
+
+    private void recordLatency(long latencyNanos) {
+        if (baselineLatencyNanos < 0) {
+            baselineLatencyNanos = latencyNanos;
+            smoothedLatencyNanos = latencyNanos;
+            return;
+        }
+        smoothedLatencyNanos += SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+        if (latencyNanos < baselineLatencyNanos) {
+            baselineLatencyNanos = latencyNanos;
+        } else {
+            baselineLatencyNanos += BASELINE_DRIFT * (latencyNanos - baselineLatencyNanos);
+        }
+    }
+
+    /**
+     * Parses Retry-After as delay-seconds or an HTTP date. Returns the pause
+     * in nanoseconds (Long.MAX_VALUE for one too long to count in
+     * nanoseconds), or 0 if the value cannot be parsed.
+     */
+    static long parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // Not delay-seconds; try an HTTP date
+        }
+        ZonedDateTime until;
+        try {
+            until = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+        Duration pause = Duration.between(ZonedDateTime.now(until.getZone()), until);
+        try {
+            return Math.max(0, pause.toNanos());
+        } catch (ArithmeticException e) {
+            return pause.isNegative() ? 0 : Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.interzoid.client;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Settings for {@link InterzoidHttp}.
+ *
+ * Defaults can be overridden with system properties, e.g.
+ * {@code java -Dinterzoid.http.poolSize=128 ...}:
+ *
+ * <pre>
+ *   interzoid.baseUrl                  API base URL (default https://api.interzoid.com)
+ *   interzoid.http.poolSize            max concurrent requests / pooled connections (default 64)
+ *   interzoid.http.adaptive            adjust concurrency from API responses, up to poolSize (default true)
+ *   interzoid.http.initialConcurrency  starting concurrency when adaptive (default 4)
+ *   interzoid.http.idleTimeoutSeconds  how long an idle connection is kept alive (default 60)
+ *   interzoid.http.connectTimeoutMs    TCP + TLS connect timeout (default 10000)
+ *   interzoid.http.requestTimeoutMs    per-request timeout (default 60000)
+ *   interzoid.http.version             HTTP_2 (default, falls back to 1.1) or HTTP_1_1
+ *   interzoid.retry.maxAttempts        attempts per call, including the first (default 4; 1 disables retries)
+ *   interzoid.retry.baseDelayMs        backoff before the first retry, doubled per retry (default 200)
+ *   interzoid.retry.maxDelayMs         longest backoff (default 10000)
+ *   interzoid.retry.budgetRatio        retries allowed per request, on average (default 0.2)
+ *   interzoid.breaker.failureThreshold failures in a row that open an endpoint's breaker (default 5)
+ *   interzoid.breaker.openMs           how long an open breaker holds calls back (default 5000)
+ * </pre>
+ */
+public final class HttpConfig {
+
+    public static final String DEFAULT_BASE_URL = "https://api.interzoid.com";
+
+    private String baseUrl = DEFAULT_BASE_URL;
+    private int poolSize = 64;
+    private boolean adaptive = true;
+    private int initialConcurrency = 4;
+    private Duration idleTimeout = Duration.ofSeconds(60);
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration requestTimeout = Duration.ofSeconds(60);
+    private HttpClient.Version version = HttpClient.Version.HTTP_2;
+    private int maxAttempts = 4;
+    private Duration retryBaseDelay = Duration.ofMillis(200);
+    private Duration retryMaxDelay = Duration.ofSeconds(10);
+    private double retryBudgetRatio = 0.2;
+    private int breakerFailureThreshold = 5;
+    private Duration breakerOpenDuration = Duration.ofSeconds(5);
+    private SSLContext sslContext;
+
+    /**
+     * Returns the built-in defaults with any {@code interzoid.*} system properties applied.
+     */
+    public static HttpConfig fromSystemProperties() {
+        HttpConfig config = new HttpConfig();
+        config.baseUrl = System.getProperty("interzoid.baseUrl", config.baseUrl);
+        config.poolSize = Integer.getInteger("interzoid.http.poolSize", config.poolSize);
+        config.adaptive = Boolean.parseBoolean(
+            System.getProperty("interzoid.http.adaptive", String.valueOf(config.adaptive)));
+        config.initialConcurrency = Integer.getInteger("interzoid.http.initialConcurrency", config.initialConcurrency);
+        config.idleTimeout = Duration.ofSeconds(
+            Long.getLong("interzoid.http.idleTimeoutSeconds", config.idleTimeout.getSeconds()));
+        config.connectTimeout = Duration.ofMillis(
+            Long.getLong("interzoid.http.connectTimeoutMs", config.connectTimeout.toMillis()));
+        config.requestTimeout = Duration.ofMillis(
+            Long.getLong("interzoid.http.requestTimeoutMs", config.requestTimeout.toMillis()));
+        String version = System.getProperty("interzoid.http.version");
+        if (version != null) {
+            config.version = HttpClient.Version.valueOf(version.trim().toUpperCase());
+        }
+        config.maxAttempts = Integer.getInteger("interzoid.retry.maxAttempts", config.maxAttempts);
+        config.retryBaseDelay = Duration.ofMillis(
+            Long.getLong("interzoid.retry.baseDelayMs", config.retryBaseDelay.toMillis()));
+        config.retryMaxDelay = Duration.ofMillis(
+            Long.getLong("interzoid.retry.maxDelayMs", config.retryMaxDelay.toMillis()));
+        config.retryBudgetRatio = Double.parseDouble(
+            System.getProperty("interzoid.retry.budgetRatio", String.valueOf(config.retryBudgetRatio)));
+        config.breakerFailureThreshold =
+            Integer.getInteger("interzoid.breaker.failureThreshold", config.breakerFailureThreshold);
+        config.breakerOpenDuration = Duration.ofMillis(
+            Long.getLong("interzoid.breaker.openMs", config.breakerOpenDuration.toMillis()));
+        return config;
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    public HttpConfig baseUrl(String baseUrl) {
+        // Accept both "http://host:port" and "http://host:port/"
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        return this;
+    }
+
+    public int poolSize() {
+        return poolSize;
+    }
+
+    public HttpConfig poolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be at least 1: " + poolSize);
+        }
+        this.poolSize = poolSize;
+        return this;
+    }
+
+    public boolean adaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Whether the number of concurrent requests adapts to the API's responses
+     * (see {@link ConcurrencyLimiter}). If false, up to {@code poolSize}
+     * requests always run at once.
+     */
+    public HttpConfig adaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        return this;
+    }
+
+    public int initialConcurrency() {
+        return initialConcurrency;
+    }
+
+    public HttpConfig initialConcurrency(int initialConcurrency) {
+        if (initialConcurrency < 1) {
+            throw new IllegalArgumentException("initialConcurrency must be at least 1: " + initialConcurrency);
+        }
+        this.initialConcurrency = initialConcurrency;
+        return this;
+    }
+
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+
+    public HttpConfig idleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    public HttpConfig connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    public HttpConfig requestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public HttpClient.Version version() {
+        return version;
+    }
+
+    public HttpConfig version(HttpClient.Version version) {
+        this.version = version;
+        return this;
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Attempts per call, including the first. Transport errors, 429 and 5xx
+     * are retried; 1 disables retries.
+     */
+    public HttpConfig maxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public Duration retryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public HttpConfig retryBaseDelay(Duration retryBaseDelay) {
+        this.retryBaseDelay = retryBaseDelay;
+        return this;
+    }
+
+    public Duration retryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    public HttpConfig retryMaxDelay(Duration retryMaxDelay) {
+        this.retryMaxDelay = retryMaxDelay;
+        return this;
+    }
+
+    public double retryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    /**
+     * Retries allowed per request on average, so an outage cannot turn
+     * every call into {@code maxAttempts} calls.
+     */
+    public HttpConfig retryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+        return this;
+    }
+
+    public int breakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public HttpConfig breakerFailureThreshold(int breakerFailureThreshold) {
+        if (breakerFailureThreshold < 1) {
+            throw new IllegalArgumentException("breakerFailureThreshold must be at least 1: " + breakerFailureThreshold);
+        }
+        this.breakerFailureThreshold = breakerFailureThreshold;
+        return this;
+    }
+
+    public Duration breakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public HttpConfig breakerOpenDuration(Duration breakerOpenDuration) {
+        this.breakerOpenDuration = breakerOpenDuration;
+        return this;
+    }
+
+    public SSLContext sslContext() {
+        return sslContext;
+    }
+
+    /**
+     * Uses a custom TLS context, e.g. one that trusts a local stub server's certificate.
+     */
+    public HttpConfig sslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+        return this;
+    }
+}
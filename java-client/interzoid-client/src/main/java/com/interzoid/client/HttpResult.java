@@ -0,0 +1,50 @@
+package com.interzoid.client;
+
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Status, raw body, and headers of one completed API call.
+ *
+ * The body is returned whether or not the status is 2xx, because the
+ * Interzoid APIs describe most failures in the JSON body (Code field).
+ */
+public final class HttpResult {
+
+    private final int statusCode;
+    private final byte[] body;
+    private final HttpHeaders headers;
+
+    HttpResult(int statusCode, byte[] body, HttpHeaders headers) {
+        this.statusCode = statusCode;
+        this.body = body;
+        this.headers = headers;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Raw response bytes (not copied; do not modify).
+     */
+    public byte[] bodyBytes() {
+        return body;
+    }
+
+    /**
+     * Response body decoded as UTF-8.
+     */
+    public String body() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    public Optional<String> header(String name) {
+        return headers.firstValue(name);
+    }
+}
@@ -0,0 +1,473 @@
+package com.interzoid.client;
+
+import com.interzoid.client.metrics.Metrics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared HTTP layer for the Interzoid APIs.
+ *
+ * Every example used to open a new HttpURLConnection per call and then
+ * disconnect() it, which closes the socket, so each row paid for a new TCP
+ * connection and TLS handshake. This class wraps one java.net.http.HttpClient
+ * per JVM instead: connections are kept alive in a pool and reused, and
+ * HTTP/2 is negotiated (and requests multiplexed) when the server offers it.
+ *
+ * Typical use:
+ *
+ * <pre>
+ *   String url = InterzoidHttp.apiBaseUrl() + "/getcompanymatchadvanced?license=...";
+ *   HttpResult result = InterzoidHttp.shared().get(url);
+ * </pre>
+ *
+ * The connection pool size and idle timeout are JVM-wide settings of the JDK
+ * client, so they are applied once, by the first InterzoidHttp created.
+ *
+ * Concurrent requests are capped by a {@link ConcurrencyLimiter}: by default
+ * the cap starts small and adapts to 429s, 5xx responses, Retry-After and
+ * rising latency, never exceeding the pool size.
+ *
+ * Failed calls are retried with backoff (see {@link #get}), and each
+ * endpoint has a {@link CircuitBreaker} that holds calls back while that
+ * endpoint keeps failing.
+ *
+ * Every response and failed call is recorded in {@link Metrics#shared()}.
+ * The shared client also exports its limiter, retry and breaker state
+ * there as gauges.
+ */
+public final class InterzoidHttp {
+
+    // Threads that send async retries once their backoff has passed
+    private static final int RETRY_THREADS = 2;
+
+    private static volatile InterzoidHttp shared;
+
+    private final HttpConfig config;
+    private final HttpClient client;
+
+    // Caps concurrent requests; adapts to the API's responses unless disabled
+    private final ConcurrencyLimiter limiter;
+
+    // Resilience: one breaker per endpoint, one retry budget for the client
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final RetryBudget budget;
+    private final ExecutorService retryExecutor;
+
+    private final Metrics metrics = Metrics.shared();
+    private volatile boolean exportGauges;
+
+    private InterzoidHttp(HttpConfig config) {
+        this.config = config;
+        this.limiter = new ConcurrencyLimiter(config.adaptive(), config.initialConcurrency(), config.poolSize());
+        this.budget = new RetryBudget(config.retryBudgetRatio());
+        this.retryExecutor = Executors.newFixedThreadPool(RETRY_THREADS, r -> {
+            Thread t = new Thread(r, "interzoid-retry");
+            t.setDaemon(true);
+            return t;
+        });
+
+        applyPoolProperties(config);
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(config.version())
+            .connectTimeout(config.connectTimeout())
+            .followRedirects(HttpClient.Redirect.NORMAL);
+        if (config.sslContext() != null) {
+            builder.sslContext(config.sslContext());
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Returns the JVM-wide client, configured from system properties on first use.
+     */
+    public static InterzoidHttp shared() {
+        InterzoidHttp result = shared;
+        if (result == null) {
+            synchronized (InterzoidHttp.class) {
+                result = shared;
+                if (result == null) {
+                    result = new InterzoidHttp(HttpConfig.fromSystemProperties());
+                    result.exportGauges();
+                    shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a separate client with its own settings (e.g. for tests or benchmarks).
+     */
+    public static InterzoidHttp create(HttpConfig config) {
+        return new InterzoidHttp(config);
+    }
+
+    /**
+     * Base URL for the API calls of the shared client, without a trailing slash.
+     * Point it at a local stub with {@code -Dinterzoid.baseUrl=http://localhost:8080}.
+     */
+    public static String apiBaseUrl() {
+        return shared().config.baseUrl();
+    }
+
+    public HttpConfig config() {
+        return config;
+    }
+
+    /**
+     * The limiter in front of this client, for reporting the current limit,
+     * the calls in flight and how many were throttled.
+     */
+    public ConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    /**
+     * The circuit breaker for an endpoint, e.g. "getcompanymatchadvanced".
+     */
+    public CircuitBreaker breaker(String endpoint) {
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker != null) {
+            return breaker;
+        }
+        breaker = breakers.computeIfAbsent(endpoint, name ->
+            new CircuitBreaker(name, config.breakerFailureThreshold(), config.breakerOpenDuration()));
+        if (exportGauges) {
+            exportBreakerGauge(breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * Retries sent so far, and retries skipped because the retry budget was used up.
+     */
+    public long retryCount() {
+        return budget.retries();
+    }
+
+    public long retriesDenied() {
+        return budget.denied();
+    }
+
+    /**
+     * Performs a blocking GET and returns the response, whatever its status.
+     *
+     * Transport errors, 429 and 5xx are retried with exponential backoff and
+     * jitter, up to {@code maxAttempts} and within the retry budget. While the
+     * endpoint's circuit breaker is open the calling thread parks. When
+     * attempts run out the last response is returned or the last error thrown.
+     */
+    public HttpResult get(String url) throws IOException {
+        return get(url, Map.of());
+    }
+
+    /**
+     * {@link #get(String)} with extra request headers.
+     */
+    public HttpResult get(String url, Map<String, String> headers) throws IOException {
+        return get(url, headers, config.maxAttempts());
+    }
+
+    /**
+     * {@link #get(String, Map)} sent once and never retried, for a request
+     * that must not be repeated: an x402 payment may have been settled even
+     * though its response was a 5xx or was lost.
+     */
+    public HttpResult getOnce(String url, Map<String, String> headers) throws IOException {
+        return get(url, headers, 1);
+    }
+
+    private HttpResult get(String url, Map<String, String> headers, int maxAttempts) throws IOException {
+        HttpRequest request = newRequest(url, headers);
+        CircuitBreaker breaker = breaker(endpointOf(request));
+        budget.onRequest();
+
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<byte[]> response;
+            boolean probe;
+            try {
+                probe = breaker.awaitPermit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while calling " + url, e);
+            }
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                // Never sent: a probe permit must go back or the breaker stays half-open for good
+                breaker.releasePermit(probe);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while calling " + url, e);
+            }
+            long start = System.nanoTime();
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+                limiter.onError();
+                breaker.onFailure(probe);
+                metrics.recordError(breaker.endpoint(), System.nanoTime() - start);
+                if (!mayRetry(attempt, maxAttempts)) {
+                    throw e;
+                }
+                backoff(attempt, url);
+                continue;
+            } catch (RuntimeException e) {
+                limiter.onError();
+                breaker.onFailure(probe);
+                metrics.recordError(breaker.endpoint(), System.nanoTime() - start);
+                throw e;
+            } catch (InterruptedException e) {
+                limiter.onError();
+                breaker.onFailure(probe);
+                metrics.recordError(breaker.endpoint(), System.nanoTime() - start);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while calling " + url, e);
+            }
+            release(response, start, breaker, probe);
+            if (!isRetryable(response.statusCode()) || !mayRetry(attempt, maxAttempts)) {
+                return toResult(response);
+            }
+            backoff(attempt, url);
+        }
+    }
+
+    /**
+     * Performs a non-blocking GET, with the same retries as {@link #get}. The
+     * calling thread only waits while the limiter is full (or paused by a
+     * Retry-After) or the endpoint's breaker is open, which paces callers
+     * that submit many requests in a loop. Retries are sent from a small
+     * pool of client threads after their backoff.
+     */
+    public CompletableFuture<HttpResult> getAsync(String url) {
+        HttpRequest request;
+        try {
+            request = newRequest(url, Map.of());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CircuitBreaker breaker = breaker(endpointOf(request));
+        budget.onRequest();
+        return attemptAsync(request, breaker, 1);
+    }
+
+    private CompletableFuture<HttpResult> attemptAsync(HttpRequest request, CircuitBreaker breaker, int attempt) {
+        boolean probe = breaker.awaitPermitUninterruptibly();
+        limiter.acquireUninterruptibly();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<byte[]>> sent;
+        try {
+            sent = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            limiter.onError();
+            breaker.onFailure(probe);
+            metrics.recordError(breaker.endpoint(), System.nanoTime() - start);
+            throw e;
+        }
+        return sent
+            .handle((response, error) -> {
+                if (error != null) {
+                    limiter.onError();
+                    breaker.onFailure(probe);
+                    metrics.recordError(breaker.endpoint(), System.nanoTime() - start);
+                    if (!(unwrap(error) instanceof IOException) || !mayRetry(attempt, config.maxAttempts())) {
+                        return CompletableFuture.<HttpResult>failedFuture(error);
+                    }
+                    return retryLater(request, breaker, attempt);
+                }
+                release(response, start, breaker, probe);
+                if (isRetryable(response.statusCode()) && mayRetry(attempt, config.maxAttempts())) {
+                    return retryLater(request, breaker, attempt);
+                }
+                return CompletableFuture.completedFuture(toResult(response));
+            })
+            .thenCompose(next -> next);
+    }
+
+    private CompletableFuture<HttpResult> retryLater(HttpRequest request, CircuitBreaker breaker, int attempt) {
+        Executor delayed = CompletableFuture.delayedExecutor(backoffNanos(attempt), TimeUnit.NANOSECONDS, retryExecutor);
+        return CompletableFuture.supplyAsync(() -> attemptAsync(request, breaker, attempt + 1), delayed)
+            .thenCompose(next -> next);
+    }
+
+    /**
+     * Performs a blocking GET and streams the body straight into {@code target},
+     * for responses too large to hold in memory. On a 2xx status the returned
+     * result has an empty body; on any other status the (error) body is
+     * returned in the result and {@code target} is deleted.
+     *
+     * @param timeout time allowed for the whole response, since large
+     *                downloads outlast the per-request timeout
+     */
+    public HttpResult download(String url, Path target, Duration timeout) throws IOException {
+        return download(url, target, timeout, Map.of());
+    }
+
+    /**
+     * {@link #download(String, Path, Duration)} with extra request headers.
+     */
+    public HttpResult download(String url, Path target, Duration timeout, Map<String, String> headers)
+            throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(timeout);
+        headers.forEach(builder::header);
+        HttpRequest request = builder.GET().build();
+
+        limiter.acquireUninterruptibly();
+        HttpResponse<Path> response;
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofFile(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        } catch (IOException | RuntimeException e) {
+            limiter.onError();
+            throw e;
+        } catch (InterruptedException e) {
+            limiter.onError();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + url, e);
+        }
+        // A download's duration reflects its size, not how busy the API is
+        limiter.onResponse(response.statusCode(), -1, null);
+
+        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+            return new HttpResult(response.statusCode(), new byte[0], response.headers());
+        }
+        byte[] error = Files.readAllBytes(target);
+        Files.deleteIfExists(target);
+        return new HttpResult(response.statusCode(), error, response.headers());
+    }
+
+    private HttpRequest newRequest(String url, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+            .timeout(config.requestTimeout())
+            .header("Accept", "application/json");
+        headers.forEach(builder::header);
+        return builder.GET().build();
+    }
+
+    private void release(HttpResponse<byte[]> response, long start, CircuitBreaker breaker, boolean probe) {
+        long latency = System.nanoTime() - start;
+        limiter.onResponse(response.statusCode(), latency,
+            response.headers().firstValue("Retry-After").orElse(null));
+        metrics.recordResponse(breaker.endpoint(), response.statusCode(), latency, response.body());
+        if (response.statusCode() >= 500) {
+            breaker.onFailure(probe);
+        } else if (response.statusCode() == 429) {
+            // Busy, not down: says nothing either way about closing the breaker
+            breaker.releasePermit(probe);
+        } else {
+            breaker.onSuccess(probe);
+        }
+    }
+
+    /**
+     * Publishes the limiter, the retry counts and every breaker as gauges.
+     */
+    private void exportGauges() {
+        metrics.gauge("interzoid_http_in_flight", "API calls in flight", limiter::inFlight);
+        metrics.gauge("interzoid_http_concurrency_limit", "Current concurrency limit", limiter::limit);
+        metrics.gauge("interzoid_http_throttled", "429 responses seen by the limiter", limiter::throttledCount);
+        metrics.gauge("interzoid_http_retries", "Retries sent", this::retryCount);
+        metrics.gauge("interzoid_http_retries_denied", "Retries skipped by the retry budget", this::retriesDenied);
+        exportGauges = true;
+        for (CircuitBreaker breaker : breakers.values()) {
+            exportBreakerGauge(breaker);
+        }
+    }
+
+    private void exportBreakerGauge(CircuitBreaker breaker) {
+        metrics.gauge("interzoid_breaker_open{endpoint=\"" + breaker.endpoint() + "\"}",
+            "1 while the endpoint's circuit breaker holds calls back",
+            () -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1);
+    }
+
+    /**
+     * Throttled or a server-side failure that may well pass; other statuses
+     * (400, 401, 402, 404, ...) would come back the same.
+     */
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode == 500 || statusCode == 502
+            || statusCode == 503 || statusCode == 504;
+    }
+
+    private boolean mayRetry(int attempt, int maxAttempts) {
+        return attempt < maxAttempts && budget.tryRetry();
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half the delay is fixed, half
+     * random, so callers that failed together do not retry together. A
+     * Retry-After from the API is honored separately, by the limiter.
+     */
+    private long backoffNanos(int attempt) {
+        long base = config.retryBaseDelay().toNanos();
+        long max = config.retryMaxDelay().toNanos();
+        long delay = attempt >= 30 ? max : Math.min(max, base << (attempt - 1));
+        long half = delay / 2;
+        return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+
+    private void backoff(int attempt, String url) throws IOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoffNanos(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while retrying " + url, e);
+        }
+    }
+
+    /**
+     * The API name in a URL such as https://api.interzoid.com/getfullnamematch?...
+     */
+    private static String endpointOf(HttpRequest request) {
+        String path = request.uri().getPath();
+        if (path == null || path.length() <= 1) {
+            return "/";
+        }
+        int end = path.indexOf('/', 1);
+        return end < 0 ? path.substring(1) : path.substring(1, end);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private static HttpResult toResult(HttpResponse<byte[]> response) {
+        return new HttpResult(response.statusCode(), response.body(), response.headers());
+    }
+
+    /**
+     * The JDK client reads its pool settings from system properties when its
+     * connection pool is first initialized, so set them (unless the user
+     * already has) before building the first client.
+     */
+    private static void applyPoolProperties(HttpConfig config) {
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(config.poolSize()));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(config.idleTimeout().getSeconds()));
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
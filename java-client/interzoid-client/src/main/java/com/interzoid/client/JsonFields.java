@@ -0,0 +1,400 @@
+package com.interzoid.client;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass extractor for the top-level fields of an API response.
+ *
+ * The examples used to call an {@code extractJsonValue(json, key)} helper
+ * once per field. Each call searched the whole decoded body for the key
+ * and copied the value through a StringBuilder, so a response with eleven
+ * fields was scanned eleven times. Here the raw response bytes are walked
+ * once. Requested keys are compared as UTF-8 bytes without being decoded,
+ * other values are skipped, and the walk stops once every requested
+ * field has been seen. A value without escapes becomes a String straight
+ * from the bytes; only escaped values are decoded piece by piece.
+ *
+ * <pre>
+ *   private static final JsonFields FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+ *   ...
+ *   JsonFields.Values values = FIELDS.extract(result.bodyBytes());
+ *   String simKey = values.get("SimKey");
+ * </pre>
+ *
+ * Only keys of the top-level object are matched. String values are
+ * unescaped (including {@code \}{@code uXXXX} and surrogate pairs); numbers
+ * and booleans are returned as written; nested objects and arrays are
+ * returned as their raw JSON text. Missing fields and {@code null} read as
+ * "". Parsing is lenient like the helper it replaces: malformed input ends
+ * the walk and leaves the remaining fields "".
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class JsonFields {
+
+    // matchKey results other than a field index
+    private static final int NOT_REQUESTED = -1;
+    private static final int MALFORMED = -2;
+
+    private final String[] names;
+    private final byte[][] nameBytes;
+
+    private JsonFields(String[] names) {
+        this.names = names.clone();
+        this.nameBytes = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates an extractor for the given top-level field names.
+     */
+    public static JsonFields of(String... names) {
+        return new JsonFields(names);
+    }
+
+    public Values extract(byte[] json) {
+        return extract(json, 0, json.length);
+    }
+
+    public Values extract(byte[] json, int offset, int length) {
+        String[] values = new String[names.length];
+        Parser parser = new Parser(json, offset, offset + length);
+
+        int first = parser.peek();
+        if (first < 0) {
+            return new Values(names, values, true);
+        }
+        if (first == '{') {
+            parser.pos++;
+            parseObject(parser, values);
+        }
+        return new Values(names, values, false);
+    }
+
+    /**
+     * Convenience for bodies that are already a String.
+     */
+    public Values extract(String json) {
+        return extract(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void parseObject(Parser parser, String[] values) {
+        int remaining = names.length;
+        while (remaining > 0) {
+            if (parser.peek() != '"') {
+                return; // end of object, or malformed
+            }
+            int field = matchKey(parser);
+            if (field == MALFORMED || parser.peek() != ':') {
+                return;
+            }
+            parser.pos++;
+
+            if (field >= 0 && values[field] == null) {
+                String value = parser.readValue();
+                if (value == null) {
+                    return;
+                }
+                values[field] = value;
+                remaining--;
+            } else if (!parser.skipValue()) {
+                return;
+            }
+            if (parser.peek() != ',') {
+                return; // end of object, or members run together
+            }
+            parser.pos++;
+        }
+    }
+
+    /**
+     * Reads the key at the current position and returns the index of the
+     * requested field it names, or NOT_REQUESTED. Leaves the position after
+     * the closing quote.
+     */
+    private int matchKey(Parser parser) {
+        byte[] b = parser.bytes;
+        int start = parser.pos + 1;
+        int i = start;
+        while (i < parser.end && b[i] != '"') {
+            if (b[i] == '\\') {
+                // Escaped key (rare): decode it and compare as a String
+                String key = parser.readString();
+                if (key == null) {
+                    return MALFORMED;
+                }
+                for (int f = 0; f < names.length; f++) {
+                    if (names[f].equals(key)) {
+                        return f;
+                    }
+                }
+                return NOT_REQUESTED;
+            }
+            i++;
+        }
+        if (i >= parser.end) {
+            return MALFORMED;
+        }
+        parser.pos = i + 1;
+
+        int length = i - start;
+        for (int f = 0; f < nameBytes.length; f++) {
+            byte[] name = nameBytes[f];
+            if (name.length == length && regionEquals(b, start, name)) {
+                return f;
+            }
+        }
+        return NOT_REQUESTED;
+    }
+
+    private static boolean regionEquals(byte[] b, int start, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (b[start + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Field values of one response, in the order the names were given.
+     */
+    public static final class Values {
+        private final String[] names;
+        private final String[] values;
+        private final boolean empty;
+
+        private Values(String[] names, String[] values, boolean empty) {
+            this.names = names;
+            this.values = values;
+            this.empty = empty;
+        }
+
+        /**
+         * Value of a requested field, or "" if it was missing or null.
+         */
+        public String get(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return get(i);
+                }
+            }
+            throw new IllegalArgumentException("Field was not requested: " + name);
+        }
+
+        /**
+         * Value of the field at {@code index} in the order given to {@link JsonFields#of}.
+         */
+        public String get(int index) {
+            String value = values[index];
+            return value == null ? "" : value;
+        }
+
+        /**
+         * True if the body was empty or only whitespace.
+         */
+        public boolean isEmpty() {
+            return empty;
+        }
+    }
+
+    /**
+     * Cursor over the response bytes.
+     */
+    private static final class Parser {
+        final byte[] bytes;
+        final int end;
+        int pos;
+
+        Parser(byte[] bytes, int pos, int end) {
+            this.bytes = bytes;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        /**
+         * Skips whitespace and returns the next byte without consuming it, or -1 at the end.
+         */
+        int peek() {
+            while (pos < end) {
+                byte c = bytes[pos];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                    return c & 0xFF;
+                }
+                pos++;
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the value at the current position, or returns null if it is malformed.
+         */
+        String readValue() {
+            int c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = pos;
+            if (c == '{' || c == '[') {
+                if (!skipValue()) {
+                    return null;
+                }
+                return new String(bytes, start, pos - start, StandardCharsets.UTF_8);
+            }
+            if (!skipLiteral()) {
+                return null;
+            }
+            String literal = new String(bytes, start, pos - start, StandardCharsets.ISO_8859_1);
+            return "null".equals(literal) ? "" : literal;
+        }
+
+        /**
+         * Skips the value at the current position. Returns false if the input ends first.
+         */
+        boolean skipValue() {
+            int c = peek();
+            if (c == '"') {
+                return skipString();
+            }
+            if (c != '{' && c != '[') {
+                return skipLiteral();
+            }
+            int depth = 0;
+            while (pos < end) {
+                byte b = bytes[pos];
+                if (b == '"') {
+                    if (!skipString()) {
+                        return false;
+                    }
+                    continue;
+                }
+                pos++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean skipLiteral() {
+            int start = pos;
+            while (pos < end) {
+                byte b = bytes[pos];
+                if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    break;
+                }
+                pos++;
+            }
+            return pos > start;
+        }
+
+        private boolean skipString() {
+            pos++;
+            while (pos < end) {
+                byte b = bytes[pos++];
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reads the string starting at the opening quote at the current
+         * position, or returns null if it is not terminated.
+         */
+        String readString() {
+            int start = pos + 1;
+            boolean ascii = true;
+            for (int i = start; i < end; i++) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    pos = i + 1;
+                    // ISO-8859-1 is a plain byte copy; valid for pure ASCII
+                    return new String(bytes, start, i - start,
+                        ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                }
+                if (b == '\\') {
+                    return readEscapedString(start);
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+            }
+            return null;
+        }
+
+        private String readEscapedString(int start) {
+            StringBuilder sb = new StringBuilder();
+            int segment = start;
+            int i = start;
+            while (i < end) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    appendSegment(sb, segment, i);
+                    pos = i + 1;
+                    return sb.toString();
+                }
+                if (b != '\\') {
+                    i++;
+                    continue;
+                }
+
+                appendSegment(sb, segment, i);
+                if (i + 1 >= end) {
+                    return null;
+                }
+                byte escaped = bytes[i + 1];
+                i += 2;
+                switch (escaped) {
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        // Surrogate pairs arrive as two escapes and combine in the builder
+                        int unit = hex4(i);
+                        if (unit < 0) {
+                            return null;
+                        }
+                        sb.append((char) unit);
+                        i += 4;
+                        break;
+                    default:
+                        // \" \\ \/ and, leniently, any other escaped character
+                        sb.append((char) (escaped & 0xFF));
+                }
+                segment = i;
+            }
+            return null;
+        }
+
+        private void appendSegment(StringBuilder sb, int from, int to) {
+            if (to > from) {
+                sb.append(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+            }
+        }
+
+        private int hex4(int from) {
+            if (from + 4 > end) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = from; i < from + 4; i++) {
+                int digit = Character.digit(bytes[i], 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = (value << 4) | digit;
+            }
+            return value;
+        }
+    }
+}
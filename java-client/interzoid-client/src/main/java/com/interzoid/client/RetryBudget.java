@@ -0,0 +1,53 @@
+package com.interzoid.client;
+
+/**
+ * Caps retries at a fraction of first attempts, so that during an outage
+ * the retries cannot multiply the load on the API.
+ *
+ * Each request deposits {@code ratio} of a token and each retry spends a
+ * whole one. A small reserve lets the first few failures of a run retry
+ * before any deposits have built up. The balance never exceeds the
+ * reserve plus what a burst of {@link #MAX_BALANCE} retries would need.
+ */
+final class RetryBudget {
+
+    private static final double RESERVE = 10;
+    private static final double MAX_BALANCE = 100;
+
+    private final double ratio;
+    private double balance = RESERVE;
+    private long retries;
+    private long denied;
+
+    RetryBudget(double ratio) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("ratio must not be negative: " + ratio);
+        }
+        this.ratio = ratio;
+    }
+
+    synchronized void onRequest() {
+        balance = Math.min(RESERVE + MAX_BALANCE, balance + ratio);
+    }
+
+    /**
+     * Spends a token for one retry; false if the budget is used up.
+     */
+    synchronized boolean tryRetry() {
+        if (balance < 1) {
+            denied++;
+            return false;
+        }
+        balance -= 1;
+        retries++;
+        return true;
+    }
+
+    synchronized long retries() {
+        return retries;
+    }
+
+    synchronized long denied() {
+        return denied;
+    }
+}
@@ -0,0 +1,581 @@
+package com.interzoid.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent local cache of API results (SimKeys, Standards) keyed by
+ * API name, algorithm, and input value.
+ *
+ * Nightly re-runs over mostly unchanged files would otherwise spend a
+ * credit and a round trip on every value again. With the cache only new
+ * values go to the API; everything else is answered locally.
+ *
+ * Storage is an append-only log ({@code results.log} in the cache directory)
+ * plus an in-memory index that is rebuilt by scanning the log on open.
+ * The index holds no keys or values, only a 64-bit hash of each key and
+ * the offset of its newest record, in an open-addressing table with an
+ * LRU list threaded through int arrays: about 32 bytes per entry, where
+ * the Strings and map entries took several hundred. A lookup reads its
+ * record back from the log (or from the append buffer, for recent puts)
+ * and compares the key stored there, so a hash collision cannot return
+ * another input's result.
+ *
+ * Each record carries a CRC, so a record half-written by a crash is
+ * detected and dropped. Entries older than the TTL are treated as missing,
+ * and the least recently used entries are evicted once {@code maxEntries} is
+ * reached. When most of the log is dead records it is compacted on close.
+ *
+ * Input values are only Unicode NFC-normalized for the key, which never
+ * changes what the API would return. Only successful results should be put.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.cache.ttlDays     days before an entry must be fetched again (default 30)
+ *   interzoid.cache.maxEntries  entries kept before LRU eviction (default 5000000)
+ * </pre>
+ */
+public final class SimKeyCache implements Closeable {
+
+    private static final String LOG_FILE_NAME = "results.log";
+    private static final int RECORD_MAGIC = 0x495A4331; // "IZC1"
+
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4 + 4;
+    private static final int KEY_LENGTH_AT = 12;
+    private static final int VALUE_LENGTH_AT = 16;
+    private static final int MAX_FIELD_BYTES = 1 << 20;
+
+    private static final int APPEND_BUFFER_SIZE = 1 << 16;
+    // Most records are read back whole in one read of this size
+    private static final int PROBE_BYTES = 512;
+
+    // Write buffered appends through to the log after this many puts
+    private static final int FLUSH_EVERY = 1024;
+
+    private static final int NONE = -1;
+
+    private final Path logFile;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private FileChannel log;
+    private final ByteBuffer appendBuffer = ByteBuffer.allocate(APPEND_BUFFER_SIZE);
+    private final ByteBuffer probeBuffer = ByteBuffer.allocate(PROBE_BYTES);
+    // Bytes in the log file; records after it are still in appendBuffer
+    private long logLength;
+    private long recordsInLog;
+    private int unflushed;
+
+    // Entry e: hash of its key and offset of its newest record, linked from
+    // the least (head) to the most recently used (tail). Free ids are
+    // chained through next.
+    private long[] hashes = new long[1 << 10];
+    private long[] offsets = new long[1 << 10];
+    private int[] previous = new int[1 << 10];
+    private int[] next = new int[1 << 10];
+    private int entryCount;
+    private int usedIds;
+    private int freeIds = NONE;
+    private int head = NONE;
+    private int tail = NONE;
+    // Open-addressing table of entry ids (+1, so 0 means empty), linear probing
+    private int[] table = new int[1 << 11];
+
+    // The record of the entry last returned by find()
+    private ByteBuffer found;
+
+    private long hits;
+    private long misses;
+
+    private SimKeyCache(Path dir, Duration ttl, int maxEntries) throws IOException {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+        }
+        Files.createDirectories(dir);
+        this.logFile = dir.resolve(LOG_FILE_NAME);
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+        this.log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens (or creates) the cache in {@code dir} using the TTL and size
+     * limit from system properties.
+     */
+    public static SimKeyCache open(Path dir) throws IOException {
+        Duration ttl = Duration.ofDays(Long.getLong("interzoid.cache.ttlDays", 30));
+        int maxEntries = Integer.getInteger("interzoid.cache.maxEntries", 5_000_000);
+        return open(dir, ttl, maxEntries);
+    }
+
+    public static SimKeyCache open(Path dir, Duration ttl, int maxEntries) throws IOException {
+        return new SimKeyCache(dir, ttl, maxEntries);
+    }
+
+    /**
+     * Returns the cached result, or null if absent or expired. A result
+     * that cannot be read back from the log counts as absent.
+     *
+     * @param api       endpoint name, e.g. "getaddressmatchadvanced"
+     * @param algorithm algorithm parameter, or "" for APIs without one
+     * @param input     input value exactly as it would be sent to the API
+     */
+    public synchronized String get(String api, String algorithm, String input) {
+        byte[] keyBytes = key(api, algorithm, input);
+        int entry;
+        try {
+            entry = find(hash(keyBytes), keyBytes);
+        } catch (IOException e) {
+            entry = NONE;
+        }
+        if (entry == NONE || isExpired(found.getLong(4), System.currentTimeMillis())) {
+            if (entry != NONE) {
+                removeEntry(entry);
+            }
+            misses++;
+            return null;
+        }
+        unlink(entry);
+        linkLast(entry);
+        hits++;
+        int keyLength = found.getInt(KEY_LENGTH_AT);
+        return new String(found.array(), RECORD_HEADER_BYTES + keyLength, found.getInt(VALUE_LENGTH_AT),
+            StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores a successful result. Empty values are ignored.
+     */
+    public synchronized void put(String api, String algorithm, String input, String value) throws IOException {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] keyBytes = key(api, algorithm, input);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_FIELD_BYTES || valueBytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Input or value longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        long hash = hash(keyBytes);
+        int entry = find(hash, keyBytes);
+        long offset = append(keyBytes, valueBytes, System.currentTimeMillis());
+        recordsInLog++;
+        index(entry, hash, offset);
+
+        if (++unflushed >= FLUSH_EVERY) {
+            flushAppends();
+            unflushed = 0;
+        }
+    }
+
+    /**
+     * Writes buffered puts through to the log, for callers that stay up
+     * between runs and cannot wait for {@link #close}.
+     */
+    public synchronized void flush() throws IOException {
+        if (log != null) {
+            flushAppends();
+            unflushed = 0;
+        }
+    }
+
+    public synchronized int size() {
+        return entryCount;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Flushes pending writes and compacts the log if most of it is dead records.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (log == null) {
+            return;
+        }
+        Path compacted = null;
+        try {
+            flushAppends();
+            if (recordsInLog > 2L * entryCount + FLUSH_EVERY) {
+                compacted = writeCompacted();
+            }
+        } finally {
+            log.close();
+            log = null;
+        }
+        if (compacted != null) {
+            Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private boolean isExpired(long writtenAt, long now) {
+        return now - writtenAt > ttlMillis;
+    }
+
+    private static byte[] key(String api, String algorithm, String input) {
+        String normalized = Normalizer.normalize(input, Normalizer.Form.NFC);
+        return (api + '\u0000' + (algorithm == null ? "" : algorithm) + '\u0000' + normalized)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a over the key bytes, then a murmur3 finalizer.
+     */
+    private static long hash(byte[] key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    //------------------------------------------------------------------
+    // Log file format, one record per put:
+    //   int magic, long writtenAt, int keyLength, int valueLength,
+    //   key bytes (UTF-8), value bytes (UTF-8),
+    //   int crc32 over writtenAt, both lengths, key and value
+    //------------------------------------------------------------------
+
+    /**
+     * Scans the log and rebuilds the index. A torn or corrupt record ends the
+     * scan and the file is truncated back to the last good record.
+     */
+    private void load() throws IOException {
+        long now = System.currentTimeMillis();
+        long validLength = 0;
+
+        // Not closing the stream: that would close the log channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log), 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[RECORD_HEADER_BYTES - 4];
+        while (true) {
+            try {
+                if (in.readInt() != RECORD_MAGIC) {
+                    break;
+                }
+                in.readFully(header);
+                ByteBuffer fields = ByteBuffer.wrap(header);
+                long writtenAt = fields.getLong();
+                int keyLength = fields.getInt();
+                int valueLength = fields.getInt();
+                if (keyLength < 0 || valueLength < 0 || keyLength > MAX_FIELD_BYTES || valueLength > MAX_FIELD_BYTES) {
+                    break;
+                }
+                byte[] body = new byte[keyLength + valueLength];
+                in.readFully(body);
+                int storedCrc = in.readInt();
+
+                crc.reset();
+                crc.update(header);
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+
+                // Earlier records are looked up (to compare keys) from here
+                long offset = validLength;
+                logLength = validLength;
+                byte[] keyBytes = Arrays.copyOf(body, keyLength);
+                long hash = hash(keyBytes);
+                int entry = find(hash, keyBytes);
+                if (isExpired(writtenAt, now)) {
+                    if (entry != NONE) {
+                        removeEntry(entry);
+                    }
+                } else {
+                    index(entry, hash, offset);
+                }
+                validLength += RECORD_HEADER_BYTES + keyLength + valueLength + 4;
+                recordsInLog++;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+
+        if (validLength < log.size()) {
+            log.truncate(validLength);
+        }
+        logLength = validLength;
+    }
+
+    /**
+     * Copies the record of every live entry, least recently used first, to
+     * a new log next to the current one and returns its path. Expired
+     * entries are dropped.
+     */
+    private Path writeCompacted() throws IOException {
+        Path tmp = logFile.resolveSibling(LOG_FILE_NAME + ".compact");
+        long now = System.currentTimeMillis();
+        long written = 0;
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), APPEND_BUFFER_SIZE)) {
+            for (int entry = head; entry != NONE; ) {
+                int following = next[entry];
+                ByteBuffer record = readRecord(offsets[entry]);
+                if (isExpired(record.getLong(4), now)) {
+                    removeEntry(entry);
+                } else {
+                    out.write(record.array(), 0, record.limit());
+                    written++;
+                }
+                entry = following;
+            }
+        }
+        recordsInLog = written;
+        return tmp;
+    }
+
+    private long append(byte[] keyBytes, byte[] valueBytes, long writtenAt) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length + valueBytes.length + 4);
+        record.putInt(RECORD_MAGIC).putLong(writtenAt).putInt(keyBytes.length).putInt(valueBytes.length);
+        record.put(keyBytes).put(valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        if (record.remaining() > appendBuffer.remaining()) {
+            flushAppends();
+        }
+        long offset = logLength + appendBuffer.position();
+        if (record.remaining() > appendBuffer.remaining()) {
+            writeFully(record, logLength);
+            logLength += record.limit();
+        } else {
+            appendBuffer.put(record);
+        }
+        return offset;
+    }
+
+    private void flushAppends() throws IOException {
+        if (appendBuffer.position() == 0) {
+            return;
+        }
+        appendBuffer.flip();
+        int length = appendBuffer.remaining();
+        writeFully(appendBuffer, logLength);
+        logLength += length;
+        appendBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += log.write(buffer, position);
+        }
+    }
+
+    /**
+     * The whole record at {@code offset}. Reads the first bytes of the
+     * record in one go, which for most records covers the whole of it.
+     */
+    private ByteBuffer readRecord(long offset) throws IOException {
+        long end = logLength + appendBuffer.position();
+        ByteBuffer record = probeBuffer;
+        record.clear().limit((int) Math.min(record.capacity(), end - offset));
+        readFully(record, offset);
+        record.flip();
+        if (record.limit() < RECORD_HEADER_BYTES || record.getInt(0) != RECORD_MAGIC) {
+            throw new IOException("Corrupt SimKey cache record at offset " + offset);
+        }
+        int length = RECORD_HEADER_BYTES + record.getInt(KEY_LENGTH_AT) + record.getInt(VALUE_LENGTH_AT) + 4;
+        if (length > record.limit()) {
+            record = ByteBuffer.allocate(length);
+            readFully(record, offset);
+            record.flip();
+        }
+        record.limit(length);
+        return record;
+    }
+
+    /**
+     * Reads from the log, continuing into the append buffer for records
+     * not yet written to it.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining() && position < logLength) {
+            int n = log.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("SimKey cache log ends early at offset " + position);
+            }
+            position += n;
+        }
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        if (buffer.remaining() > appendBuffer.position() - (position - logLength)) {
+            throw new EOFException("SimKey cache log ends early at offset " + position);
+        }
+        buffer.put(appendBuffer.array(), (int) (position - logLength), buffer.remaining());
+    }
+
+    //------------------------------------------------------------------
+    // Index: entries by hash, and the LRU list
+    //------------------------------------------------------------------
+
+    /**
+     * The entry for this key, or NONE. Each entry whose hash matches is
+     * checked against the key of its record, which is left in {@code found}.
+     */
+    private int find(long hash, byte[] keyBytes) throws IOException {
+        int mask = table.length - 1;
+        for (int slot = slotOf(hash, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = table[slot] - 1;
+            if (hashes[entry] != hash) {
+                continue;
+            }
+            ByteBuffer record = readRecord(offsets[entry]);
+            int keyLength = record.getInt(KEY_LENGTH_AT);
+            if (keyLength == keyBytes.length && Arrays.equals(record.array(), RECORD_HEADER_BYTES,
+                    RECORD_HEADER_BYTES + keyLength, keyBytes, 0, keyLength)) {
+                found = record;
+                return entry;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Points {@code entry} (or a new entry, if NONE) at the record at
+     * {@code offset} and makes it the most recently used, evicting the
+     * least recently used entry if the cache is over its size.
+     */
+    private void index(int entry, long hash, long offset) {
+        if (entry == NONE) {
+            entry = addEntry(hash);
+        } else {
+            unlink(entry);
+        }
+        offsets[entry] = offset;
+        linkLast(entry);
+        if (entryCount > maxEntries) {
+            removeEntry(head);
+        }
+    }
+
+    private int addEntry(long hash) {
+        int entry;
+        if (freeIds != NONE) {
+            entry = freeIds;
+            freeIds = next[entry];
+        } else {
+            if (usedIds == hashes.length) {
+                int capacity = usedIds * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                previous = Arrays.copyOf(previous, capacity);
+                next = Arrays.copyOf(next, capacity);
+            }
+            entry = usedIds++;
+        }
+        // Rehashed before the entry is inserted: rehash() walks the LRU list
+        if ((entryCount + 1) * 2 > table.length) {
+            rehash();
+        }
+        hashes[entry] = hash;
+        insert(table, entry);
+        entryCount++;
+        return entry;
+    }
+
+    private void removeEntry(int entry) {
+        unlink(entry);
+        int mask = table.length - 1;
+        int slot = slotOf(hashes[entry], mask);
+        while (table[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+        // Backward-shift deletion: move later entries of the probe run into the gap
+        table[slot] = 0;
+        for (int i = (slot + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = slotOf(hashes[table[i] - 1], mask);
+            if (((i - home) & mask) >= ((i - slot) & mask)) {
+                table[slot] = table[i];
+                table[i] = 0;
+                slot = i;
+            }
+        }
+        next[entry] = freeIds;
+        freeIds = entry;
+        entryCount--;
+    }
+
+    private void insert(int[] into, int entry) {
+        int mask = into.length - 1;
+        int slot = slotOf(hashes[entry], mask);
+        while (into[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        into[slot] = entry + 1;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        for (int entry = head; entry != NONE; entry = next[entry]) {
+            insert(newTable, entry);
+        }
+        table = newTable;
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] == NONE) {
+            head = next[entry];
+        } else {
+            next[previous[entry]] = next[entry];
+        }
+        if (next[entry] == NONE) {
+            tail = previous[entry];
+        } else {
+            previous[next[entry]] = previous[entry];
+        }
+    }
+
+    private void linkLast(int entry) {
+        previous[entry] = tail;
+        next[entry] = NONE;
+        if (tail == NONE) {
+            head = entry;
+        } else {
+            next[tail] = entry;
+        }
+        tail = entry;
+    }
+
+    private static int slotOf(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,542 @@
+package com.interzoid.client.batch;
+
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.io.CsvReader;
+import com.interzoid.client.io.MappedLineReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs an input file through the API once per distinct value instead of
+ * once per line, then joins the results back onto every line in input order.
+ *
+ * Address and company files often repeat the same value many times, and
+ * each repeat used to cost a credit and a round trip. The planner works in
+ * three stages:
+ *
+ * <ol>
+ *   <li>plan: stream the input and give each distinct value an id, keeping
+ *       one small id per line</li>
+ *   <li>resolve: ask the {@link ValueResolver} once per distinct value,
+ *       keeping up to {@value #MAX_PENDING} lookups in flight</li>
+ *   <li>join back: hand every line and the result for its value to a
+ *       {@link ResolvedRowHandler}, in the original order</li>
+ * </ol>
+ *
+ * If the input could not be indexed within the memory budget, the plan
+ * stage hash-partitions the lines into temporary files instead (all
+ * copies of a value land in the same partition). Each partition is then
+ * indexed and resolved on its own, and the join stage reads the partition
+ * results back in step with a one-byte-per-line partition log, so the
+ * original order is restored without sorting.
+ *
+ * The input is read through a {@link MappedLineReader}, decoded as UTF-8.
+ * Empty lines are skipped, as in the examples.
+ *
+ * A CSV or TSV file can be run the same way with
+ * {@link #run(CsvReader, int, ValueResolver, ResolvedRowHandler)}: one
+ * column is looked up and every record is handed on whole, as it was
+ * read, so a result column can be appended in the same pass.
+ *
+ * With a {@link Canonicalizer} set ({@link #canonical}), values are
+ * counted as the same when their canonical forms are, so "ACME  Inc" and
+ * "Acme Inc" cost one lookup. The resolver gets the first spelling seen,
+ * and every row is still handed on with its own text.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.distinct.memoryMb  memory for the distinct-value index (default 64)
+ *   interzoid.sort.tmpDir        directory for partition files (default java.io.tmpdir)
+ * </pre>
+ */
+public final class DistinctValuePlanner {
+
+    // Lookups in flight before the planner waits for the oldest one
+    private static final int MAX_PENDING = 4096;
+
+    // Partition numbers are logged as one unsigned byte per line
+    private static final int MAX_PARTITIONS = 256;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int MIN_READ_BUFFER_SIZE = 1 << 13;
+
+    // Rough heap bytes per input byte if every line were distinct: the
+    // chars, the String and map entry per value, and the per-line id
+    private static final int INDEX_BYTES_PER_INPUT_BYTE = 8;
+
+    private final long memoryBudgetBytes;
+    private final Path tmpDir;
+    private Canonicalizer canonical = Canonicalizer.none();
+
+    public DistinctValuePlanner() {
+        this(Long.getLong("interzoid.distinct.memoryMb", 64) << 20,
+             Paths.get(System.getProperty("interzoid.sort.tmpDir", System.getProperty("java.io.tmpdir"))));
+    }
+
+    public DistinctValuePlanner(long memoryBudgetBytes, Path tmpDir) {
+        if (memoryBudgetBytes < 1) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be positive: " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Folds values with {@code canonical} before they are compared
+     * (default: {@link Canonicalizer#none()}, exact matches only).
+     */
+    public DistinctValuePlanner canonical(Canonicalizer canonical) {
+        this.canonical = canonical;
+        return this;
+    }
+
+    /**
+     * Counts of one run.
+     */
+    public static final class Summary {
+        private final long rows;
+        private final long distinctValues;
+        private final int partitions;
+        private final double readRowsPerSecond;
+
+        Summary(long rows, long distinctValues, int partitions, double readRowsPerSecond) {
+            this.rows = rows;
+            this.distinctValues = distinctValues;
+            this.partitions = partitions;
+            this.readRowsPerSecond = readRowsPerSecond;
+        }
+
+        /** Non-empty lines read. */
+        public long rows() {
+            return rows;
+        }
+
+        /** Values looked up, i.e. calls to the resolver (canonical forms, if folded). */
+        public long distinctValues() {
+            return distinctValues;
+        }
+
+        /** 1 if the index fit in memory, otherwise the number of spill partitions. */
+        public int partitions() {
+            return partitions;
+        }
+
+        /** Lines per second read by the plan stage, before any lookups. */
+        public double readRowsPerSecond() {
+            return readRowsPerSecond;
+        }
+    }
+
+    /**
+     * Reads {@code input} (UTF-8, one value per line), resolves each
+     * distinct value once, and passes every line with its result to
+     * {@code handler} in input order.
+     */
+    public Summary run(Path input, ValueResolver resolver, ResolvedRowHandler handler) throws IOException {
+        long indexBytes = Files.size(input) * INDEX_BYTES_PER_INPUT_BYTE;
+        long partitions = (indexBytes + memoryBudgetBytes - 1) / memoryBudgetBytes;
+        if (partitions <= 1) {
+            return runInMemory(input, resolver, handler);
+        }
+        return runPartitioned(input, resolver, handler, (int) Math.min(MAX_PARTITIONS, partitions));
+    }
+
+    /**
+     * Reads the records of {@code input} (after its header, if any),
+     * resolves each distinct value of {@code column} once, and passes every
+     * record's raw text with the result for its value to {@code handler},
+     * in input order. Records with an empty value are passed on with ""
+     * and no lookup. The reader is not closed.
+     */
+    public Summary run(CsvReader input, int column, ValueResolver resolver, ResolvedRowHandler handler)
+            throws IOException {
+        long size = input.sourceSize();
+        long indexBytes = size < 0 ? 0 : size * INDEX_BYTES_PER_INPUT_BYTE;
+        long partitions = (indexBytes + memoryBudgetBytes - 1) / memoryBudgetBytes;
+        if (partitions <= 1) {
+            return runInMemory(input, column, resolver, handler);
+        }
+        return runPartitioned(input, column, resolver, handler, (int) Math.min(MAX_PARTITIONS, partitions));
+    }
+
+    private Summary runInMemory(Path input, ValueResolver resolver, ResolvedRowHandler handler) throws IOException {
+        DistinctIndex index = new DistinctIndex(canonical);
+        MappedLineReader.Stats read;
+        try (MappedLineReader reader = MappedLineReader.open(input)) {
+            read = reader.forEachLine(line -> {
+                if (!line.isEmpty()) {
+                    index.add(line.toString(), line.number());
+                }
+            });
+        }
+
+        String[] results = index.resolveAll(resolver);
+        for (int row = 0; row < index.rows; row++) {
+            handler.row(index.text(row), results[index.rowIds[row]]);
+        }
+        return new Summary(index.rows, index.lookups(), 1, read.rowsPerSecond());
+    }
+
+    private Summary runInMemory(CsvReader input, int column, ValueResolver resolver, ResolvedRowHandler handler)
+            throws IOException {
+        DistinctIndex index = new DistinctIndex(canonical);
+        long started = System.nanoTime();
+        CsvReader.Record record;
+        while ((record = input.next()) != null) {
+            index.add(record.get(column), record.raw(), record.lineNumber());
+        }
+        double readRate = ratePerSecond(index.rows, System.nanoTime() - started);
+
+        String[] results = index.resolveAll(resolver);
+        for (int row = 0; row < index.rows; row++) {
+            handler.row(index.texts[row], results[index.rowIds[row]]);
+        }
+        return new Summary(index.rows, index.lookups(), 1, readRate);
+    }
+
+    private Summary runPartitioned(Path input, ValueResolver resolver, ResolvedRowHandler handler, int partitions)
+            throws IOException {
+        // Lines are copied as raw bytes and only decoded when their partition
+        // is indexed, unless they must be decoded to be canonicalized first
+        boolean folded = !canonical.isIdentity();
+        return runPartitioned(partitions, false, resolver, handler, writer -> {
+            try (MappedLineReader reader = MappedLineReader.open(input)) {
+                byte[][] scratch = { new byte[256] };
+                return reader.forEachLine(line -> {
+                    if (line.isEmpty()) {
+                        return;
+                    }
+                    if (scratch[0].length < line.length()) {
+                        scratch[0] = new byte[Math.max(line.length(), scratch[0].length * 2)];
+                    }
+                    line.copyTo(scratch[0], 0);
+                    int hash = folded ? canonical.apply(line.toString()).hashCode() : line.bytesHashCode();
+                    DataOutputStream out = writer.partition(partitionOf(hash, partitions));
+                    out.writeLong(line.number());
+                    out.writeInt(line.length());
+                    out.write(scratch[0], 0, line.length());
+                }).rowsPerSecond();
+            }
+        });
+    }
+
+    private Summary runPartitioned(CsvReader input, int column, ValueResolver resolver, ResolvedRowHandler handler,
+                                   int partitions) throws IOException {
+        return runPartitioned(partitions, true, resolver, handler, writer -> {
+            long started = System.nanoTime();
+            CsvReader.Record record;
+            while ((record = input.next()) != null) {
+                String value = record.get(column);
+                DataOutputStream out = writer.partition(partitionOf(canonical.apply(value).hashCode(), partitions));
+                out.writeLong(record.lineNumber());
+                writeString(out, value);
+                writeString(out, record.raw());
+            }
+            return ratePerSecond(writer.rows, System.nanoTime() - started);
+        });
+    }
+
+    private Summary runPartitioned(int partitions, boolean withText, ValueResolver resolver,
+                                   ResolvedRowHandler handler, PlanStage plan) throws IOException {
+        Path[] parts = new Path[partitions];
+        Path log = null;
+        try {
+            log = Files.createTempFile(tmpDir, "interzoid-distinct-", ".log");
+            for (int p = 0; p < partitions; p++) {
+                parts[p] = Files.createTempFile(tmpDir, "interzoid-distinct-", ".part");
+            }
+
+            // Plan: every row goes to the partition of its value; the log
+            // remembers which partition each row went to
+            PartitionWriter writer = new PartitionWriter(partitions);
+            double readRate;
+            int writeBuffer = bufferSize(partitions);
+            try (OutputStream partitionLog = new BufferedOutputStream(Files.newOutputStream(log), IO_BUFFER_SIZE)) {
+                writer.log = partitionLog;
+                for (int p = 0; p < partitions; p++) {
+                    writer.out[p] = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(parts[p]), writeBuffer));
+                }
+                readRate = plan.plan(writer);
+            } finally {
+                closeAll(writer.out);
+            }
+
+            // Resolve: one partition at a time, replacing its rows with (row, result) pairs
+            long lookups = 0;
+            for (int p = 0; p < partitions; p++) {
+                lookups += resolvePartition(parts[p], withText, resolver);
+            }
+
+            // Join back: the log says which partition holds the next row
+            DataInputStream[] in = new DataInputStream[partitions];
+            int readBuffer = bufferSize(partitions);
+            try (InputStream partitionLog = new BufferedInputStream(Files.newInputStream(log), IO_BUFFER_SIZE)) {
+                for (int p = 0; p < partitions; p++) {
+                    in[p] = new DataInputStream(new BufferedInputStream(Files.newInputStream(parts[p]), readBuffer));
+                }
+                int p;
+                while ((p = partitionLog.read()) >= 0) {
+                    String row = readString(in[p]);
+                    String result = readString(in[p]);
+                    handler.row(row, result);
+                }
+            } finally {
+                closeAll(in);
+            }
+            return new Summary(writer.rows, lookups, partitions, readRate);
+
+        } finally {
+            if (log != null) {
+                Files.deleteIfExists(log);
+            }
+            for (Path part : parts) {
+                if (part != null) {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the input and writes every row to its partition.
+     */
+    private interface PlanStage {
+        /** Returns the rows per second read. */
+        double plan(PartitionWriter writer) throws IOException;
+    }
+
+    /**
+     * The partition files and the partition log of one run.
+     */
+    private static final class PartitionWriter {
+        final DataOutputStream[] out;
+        OutputStream log;
+        long rows;
+
+        PartitionWriter(int partitions) {
+            this.out = new DataOutputStream[partitions];
+        }
+
+        /**
+         * Logs the next row as going to partition {@code p} and returns its stream.
+         */
+        DataOutputStream partition(int p) throws IOException {
+            log.write(p);
+            rows++;
+            return out[p];
+        }
+    }
+
+    /**
+     * Indexes and resolves one partition file, then rewrites it as
+     * (row, result) pairs in the same order. Returns its lookup count.
+     */
+    private int resolvePartition(Path part, boolean withText, ValueResolver resolver) throws IOException {
+        DistinctIndex index = new DistinctIndex(canonical);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(part), IO_BUFFER_SIZE))) {
+            while (true) {
+                long lineNumber;
+                try {
+                    lineNumber = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                String value = readString(in);
+                if (withText) {
+                    index.add(value, readString(in), lineNumber);
+                } else {
+                    index.add(value, lineNumber);
+                }
+            }
+        }
+
+        String[] results = index.resolveAll(resolver);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(part), IO_BUFFER_SIZE))) {
+            for (int row = 0; row < index.rows; row++) {
+                writeString(out, index.text(row));
+                writeString(out, results[index.rowIds[row]]);
+            }
+        }
+        return index.lookups();
+    }
+
+    /**
+     * Distinct values with the line of their first occurrence, and the
+     * value id (and, for CSV or folded input, the row text) of every row.
+     * Values are keyed by their canonical form; the first spelling is kept.
+     */
+    private static final class DistinctIndex {
+        final Canonicalizer canonical;
+        final HashMap<String, Integer> ids = new HashMap<>();
+        final List<String> values = new ArrayList<>();
+        long[] firstLines = new long[64];
+        int[] rowIds = new int[1024];
+        String[] texts;
+        int rows;
+        int emptyId = -1;
+
+        DistinctIndex(Canonicalizer canonical) {
+            this.canonical = canonical;
+        }
+
+        void add(String value, String text, long lineNumber) {
+            if (texts == null) {
+                texts = new String[rowIds.length];
+            } else if (rows == texts.length) {
+                texts = Arrays.copyOf(texts, texts.length * 2);
+            }
+            texts[rows] = text;
+            addValue(value, lineNumber);
+        }
+
+        /**
+         * Adds a row whose text is the value itself.
+         */
+        void add(String value, long lineNumber) {
+            if (canonical.isIdentity()) {
+                addValue(value, lineNumber);
+            } else {
+                // Other spellings share the id, so the row keeps its own text
+                add(value, value, lineNumber);
+            }
+        }
+
+        private void addValue(String value, long lineNumber) {
+            String key = canonical.apply(value);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = values.size();
+                ids.put(key, id);
+                values.add(value);
+                if (key.isEmpty()) {
+                    emptyId = id;
+                }
+                if (id == firstLines.length) {
+                    firstLines = Arrays.copyOf(firstLines, firstLines.length * 2);
+                }
+                firstLines[id] = lineNumber;
+            }
+            if (rows == rowIds.length) {
+                rowIds = Arrays.copyOf(rowIds, rowIds.length * 2);
+            }
+            rowIds[rows++] = id;
+        }
+
+        String text(int row) {
+            return texts != null ? texts[row] : values.get(rowIds[row]);
+        }
+
+        /**
+         * Values sent to the resolver: every distinct value but "" (or one
+         * that folds to "").
+         */
+        int lookups() {
+            return emptyId >= 0 ? values.size() - 1 : values.size();
+        }
+
+        /**
+         * Resolves every distinct value, keeping up to MAX_PENDING lookups in flight.
+         */
+        String[] resolveAll(ValueResolver resolver) throws IOException {
+            String[] results = new String[values.size()];
+            ArrayDeque<CompletableFuture<String>> pending = new ArrayDeque<>();
+            int done = 0;
+            for (int id = 0; id < results.length; id++) {
+                String value = values.get(id);
+                pending.add(id == emptyId ? CompletableFuture.completedFuture("")
+                    : resolver.resolve(value, firstLines[id]));
+                while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > MAX_PENDING)) {
+                    results[done] = await(pending.poll(), done);
+                    done++;
+                }
+            }
+            while (!pending.isEmpty()) {
+                results[done] = await(pending.poll(), done);
+                done++;
+            }
+            return results;
+        }
+
+        private String await(CompletableFuture<String> lookup, int id) throws IOException {
+            try {
+                String result = lookup.join();
+                return result == null ? "" : result;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Could not resolve line " + firstLines[id]
+                    + " (\"" + values.get(id) + "\"): " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private static double ratePerSecond(long rows, long nanos) {
+        return nanos <= 0 ? 0 : rows * 1e9 / nanos;
+    }
+
+    private static int partitionOf(int h, int partitions) {
+        return Math.floorMod(h ^ (h >>> 16), partitions);
+    }
+
+    /**
+     * Buffer per partition stream, so that all of them together stay within
+     * a fraction of the budget.
+     */
+    private int bufferSize(int partitions) {
+        long share = memoryBudgetBytes / (4L * partitions);
+        return (int) Math.max(MIN_READ_BUFFER_SIZE, Math.min(IO_BUFFER_SIZE, share));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void closeAll(Closeable[] streams) throws IOException {
+        IOException first = null;
+        for (Closeable stream : streams) {
+            if (stream == null) {
+                continue;
+            }
+            try {
+                stream.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.interzoid.client.batch;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One API called by a {@link FanOutResolver}: the endpoint, the query
+ * parameter that takes the input value, and the response fields kept as
+ * output columns.
+ *
+ * <pre>
+ *   EnrichmentApi parent = EnrichmentApi.of("getparentcompanyinfo", "lookup")
+ *       .label("Parent")
+ *       .fields("ParentCompany", "ParentCompanyLocation")
+ *       .maxInFlight(8);
+ * </pre>
+ *
+ * Output columns are named label.field, followed by label.Code, which
+ * holds the API's Code, or the reason the call failed.
+ *
+ * The default number of calls in flight per API can be overridden with a
+ * system property:
+ *
+ * <pre>
+ *   interzoid.fanout.maxInFlight  calls in flight per API (default 64)
+ * </pre>
+ */
+public final class EnrichmentApi {
+
+    private final String endpoint;
+    private final String inputParameter;
+    private String label;
+    private List<String> fields = Collections.emptyList();
+    private int maxInFlight = Integer.getInteger("interzoid.fanout.maxInFlight", 64);
+    private final Map<String, String> extraParameters = new LinkedHashMap<>();
+
+    private EnrichmentApi(String endpoint, String inputParameter) {
+        this.endpoint = endpoint;
+        this.inputParameter = inputParameter;
+        this.label = endpoint;
+    }
+
+    /**
+     * @param endpoint       API name, e.g. "getbusinessinfo"
+     * @param inputParameter query parameter that takes the input value, e.g. "lookup"
+     */
+    public static EnrichmentApi of(String endpoint, String inputParameter) {
+        if (endpoint == null || endpoint.isEmpty() || inputParameter == null || inputParameter.isEmpty()) {
+            throw new IllegalArgumentException("endpoint and inputParameter are required");
+        }
+        return new EnrichmentApi(endpoint, inputParameter);
+    }
+
+    /**
+     * getcompanymatchadvanced (model-v4-wide): the company's SimKey.
+     */
+    public static EnrichmentApi companyMatch() {
+        return of("getcompanymatchadvanced", "company")
+            .label("Match")
+            .parameter("algorithm", "model-v4-wide")
+            .fields("SimKey");
+    }
+
+    /**
+     * getorgstandard: the standardized organization name.
+     */
+    public static EnrichmentApi orgStandard() {
+        return of("getorgstandard", "org")
+            .label("Standard")
+            .fields("Standard");
+    }
+
+    /**
+     * getbusinessinfo: firmographics.
+     */
+    public static EnrichmentApi businessInfo() {
+        return of("getbusinessinfo", "lookup")
+            .label("Business")
+            .fields("CompanyName", "CompanyURL", "CompanyLocation", "Revenue", "NumberEmployees", "NAICS",
+                    "TopExecutive", "TopExecutiveTitle");
+    }
+
+    /**
+     * getparentcompanyinfo: the parent company.
+     */
+    public static EnrichmentApi parentCompany() {
+        return of("getparentcompanyinfo", "lookup")
+            .label("Parent")
+            .fields("ParentCompany", "ParentCompanyLocation", "ParentCompanyURL");
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Prefix of this API's output columns (default: the endpoint name).
+     */
+    public EnrichmentApi label(String label) {
+        this.label = label;
+        return this;
+    }
+
+    public List<String> fields() {
+        return fields;
+    }
+
+    /**
+     * Response fields kept, in column order. "Code" is always added last.
+     */
+    public EnrichmentApi fields(String... fields) {
+        this.fields = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(fields)));
+        return this;
+    }
+
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Most calls to this API in flight at once, below the client's own limit.
+     */
+    public EnrichmentApi maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Any other query parameter the API takes.
+     */
+    public EnrichmentApi parameter(String name, String value) {
+        extraParameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * Output column names: label.field for each field, then label.Code.
+     */
+    public List<String> columnNames() {
+        List<String> names = new ArrayList<>(fields.size() + 1);
+        for (String field : fields) {
+            names.add(label + '.' + field);
+        }
+        names.add(label + ".Code");
+        return names;
+    }
+
+    /**
+     * Request URL for one input value.
+     */
+    public String toUrl(String baseUrl, String apiKey, String value) {
+        StringBuilder url = new StringBuilder(baseUrl).append('/').append(endpoint).append('?');
+        append(url, "license", apiKey);
+        append(url.append('&'), inputParameter, value);
+        for (Map.Entry<String, String> e : extraParameters.entrySet()) {
+            append(url.append('&'), e.getKey(), e.getValue());
+        }
+        return url.toString();
+    }
+
+    private static StringBuilder append(StringBuilder url, String name, String value) {
+        return url.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,251 @@
+package com.interzoid.client.batch;
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Looks up one value in several APIs at once and merges the answers into
+ * one wide row.
+ *
+ * Enriching a company file with a SimKey, a standard name, firmographics
+ * and a parent company used to take four programs. Each read the whole
+ * file and made one call at a time, so the wall time was the sum of all
+ * four runs. As the {@link ValueResolver} of a
+ * {@link DistinctValuePlanner}, this sends the selected calls for a value
+ * together, so the file is read once, each distinct value is looked up
+ * once per API, and a row takes about as long as its slowest call.
+ *
+ * <pre>
+ *   FanOutResolver enrich = new FanOutResolver(API_KEY, List.of(
+ *       EnrichmentApi.companyMatch(), EnrichmentApi.businessInfo()));
+ *   planner.run(input, enrich, (company, result) -> write(company, enrich.decode(result)));
+ * </pre>
+ *
+ * Each API has its own cap on calls in flight ({@link EnrichmentApi#maxInFlight}),
+ * so a slow API cannot take every slot of the shared client's limiter.
+ * A call over its API's cap waits in that API's queue, and is sent when an
+ * earlier call of the same API answers. {@link #resolve} does not wait
+ * for it, so the calls to the other APIs, and the next values, still go
+ * out while one API is slow. Calls still go through the client's retries
+ * and circuit breakers.
+ *
+ * A failed call does not fail the row. That API's columns are left empty
+ * and its Code column says why ("HTTP 503", or the error). The other
+ * APIs' columns are filled as usual. Failures are counted per API.
+ */
+public final class FanOutResolver implements ValueResolver {
+
+    // Separates the column values inside a result string
+    private static final char SEPARATOR = '\u001f';
+
+    private final InterzoidHttp http;
+    private final String apiKey;
+    private final List<EnrichmentApi> apis;
+    private final JsonFields[] responseFields;
+    private final Slots[] slots;
+    private final AtomicLongArray failures;
+    private final List<String> columns;
+
+    public FanOutResolver(String apiKey, List<EnrichmentApi> apis) {
+        this(InterzoidHttp.shared(), apiKey, apis);
+    }
+
+    public FanOutResolver(InterzoidHttp http, String apiKey, List<EnrichmentApi> apis) {
+        if (apis.isEmpty()) {
+            throw new IllegalArgumentException("At least one API is required");
+        }
+        this.http = http;
+        this.apiKey = apiKey;
+        this.apis = List.copyOf(apis);
+        this.responseFields = new JsonFields[apis.size()];
+        this.slots = new Slots[apis.size()];
+        this.failures = new AtomicLongArray(apis.size());
+        List<String> names = new ArrayList<>();
+        for (int a = 0; a < apis.size(); a++) {
+            EnrichmentApi api = apis.get(a);
+            List<String> fields = new ArrayList<>(api.fields());
+            fields.add("Code");
+            responseFields[a] = JsonFields.of(fields.toArray(new String[0]));
+            slots[a] = new Slots(api.maxInFlight());
+            names.addAll(api.columnNames());
+        }
+        this.columns = Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Output column names, API by API (see {@link EnrichmentApi#columnNames}).
+     */
+    public List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * Calls every API for the value. Completes once all calls have
+     * answered or failed; never completes exceptionally. Calls over an
+     * API's cap are queued, so this waits only for the client's own
+     * limiter, never for an API's slot.
+     */
+    @Override
+    public CompletableFuture<String> resolve(String value, long lineNumber) {
+        List<CompletableFuture<String[]>> calls = new ArrayList<>(apis.size());
+        for (int a = 0; a < apis.size(); a++) {
+            calls.add(call(a, value));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            StringBuilder result = new StringBuilder();
+            boolean first = true;
+            for (CompletableFuture<String[]> call : calls) {
+                for (String column : call.join()) {
+                    if (!first) {
+                        result.append(SEPARATOR);
+                    }
+                    first = false;
+                    if (column != null) {
+                        result.append(column.replace(SEPARATOR, ' '));
+                    }
+                }
+            }
+            return result.toString();
+        });
+    }
+
+    /**
+     * Splits a result from {@link #resolve} into one value per column; null
+     * where an API had no value. A "" result (an empty input line) gives
+     * all nulls.
+     */
+    public String[] decode(String result) {
+        String[] values = new String[columns.size()];
+        if (result.isEmpty()) {
+            return values;
+        }
+        int column = 0;
+        int start = 0;
+        for (int i = 0; i <= result.length() && column < values.length; i++) {
+            if (i == result.length() || result.charAt(i) == SEPARATOR) {
+                values[column++] = i > start ? result.substring(start, i) : null;
+                start = i + 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Failed calls so far, by API label.
+     */
+    public Map<String, Long> failures() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int a = 0; a < apis.size(); a++) {
+            counts.put(apis.get(a).label(), failures.get(a));
+        }
+        return counts;
+    }
+
+    /**
+     * One API call. Sent once the API has a free slot; completes with its
+     * field values and Code.
+     */
+    private CompletableFuture<String[]> call(int a, String value) {
+        CompletableFuture<String[]> call = new CompletableFuture<>();
+        slots[a].submit(() -> send(a, value).whenComplete((values, error) -> {
+            slots[a].release();
+            call.complete(values);
+        }));
+        return call;
+    }
+
+    private CompletableFuture<String[]> send(int a, String value) {
+        EnrichmentApi api = apis.get(a);
+        CompletableFuture<HttpResult> sent;
+        try {
+            sent = http.getAsync(api.toUrl(http.config().baseUrl(), apiKey, value));
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((response, error) -> {
+            String[] values = new String[api.fields().size() + 1];
+            int code = values.length - 1;
+            if (error != null) {
+                failures.incrementAndGet(a);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                values[code] = "Error: " + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+                return values;
+            }
+            JsonFields.Values json = responseFields[a].extract(response.bodyBytes());
+            if (response.isSuccess()) {
+                for (int f = 0; f < values.length; f++) {
+                    values[f] = json.get(f);
+                }
+            } else {
+                failures.incrementAndGet(a);
+                values[code] = json.get(code).isEmpty() ? "HTTP " + response.statusCode() : json.get(code);
+            }
+            return values;
+        });
+    }
+
+    /**
+     * One API's calls in flight, and the calls waiting for a slot. A queued
+     * call is sent by the thread that frees a slot, which is usually the
+     * thread that completed an earlier call of the API. One thread at a
+     * time drains the queue, so a run of calls that fail at once does not
+     * recurse through release.
+     */
+    private static final class Slots {
+        private final int max;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+        private boolean draining;
+
+        Slots(int max) {
+            this.max = max;
+        }
+
+        void submit(Runnable send) {
+            synchronized (this) {
+                waiting.add(send);
+            }
+            drain();
+        }
+
+        void release() {
+            synchronized (this) {
+                inFlight--;
+            }
+            drain();
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            while (true) {
+                Runnable send;
+                synchronized (this) {
+                    if (inFlight >= max || waiting.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    inFlight++;
+                    send = waiting.poll();
+                }
+                send.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.interzoid.client.batch;
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.io.CsvReader;
+import com.interzoid.client.x402.X402Client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Client for the Full Dataset API at match.interzoid.com, the endpoint
+ * behind the batch tool.
+ *
+ * Calling a matching API once per row pays a network round trip per row.
+ * A Full Dataset job sends one request; the service reads the whole input
+ * file from its URL and returns every matched row in one CSV response.
+ * The response is streamed straight to disk (never held in memory) and
+ * only moved to its final name once complete.
+ *
+ * <pre>
+ *   FullDatasetClient client = FullDatasetClient.fromSystemProperties();
+ *   client.run(job, Paths.get("matches.csv"));
+ *   FullDatasetClient.readMatches(Paths.get("matches.csv"), job.fileType(), (input, simKey) -> ...);
+ * </pre>
+ *
+ * A job without an API key is paid for with x402 once {@link #payWith}
+ * has been given a client; repeated jobs then reuse its quote and skip
+ * the 402 round trip.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.batch.baseUrl         service base URL (default https://match.interzoid.com)
+ *   interzoid.batch.timeoutMinutes  time allowed for a whole job (default 60)
+ * </pre>
+ */
+public final class FullDatasetClient {
+
+    public static final String DEFAULT_BASE_URL = "https://match.interzoid.com";
+
+    // Longest error body quoted in an exception message
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final InterzoidHttp http;
+    private final String baseUrl;
+    private final Duration timeout;
+    private X402Client payer;
+
+    public FullDatasetClient(InterzoidHttp http, String baseUrl, Duration timeout) {
+        this.http = http;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Client on the shared HTTP connection pool, configured from system properties.
+     */
+    public static FullDatasetClient fromSystemProperties() {
+        return new FullDatasetClient(
+            InterzoidHttp.shared(),
+            System.getProperty("interzoid.batch.baseUrl", DEFAULT_BASE_URL),
+            Duration.ofMinutes(Long.getLong("interzoid.batch.timeoutMinutes", 60)));
+    }
+
+    /**
+     * Pays for jobs that have no API key with x402 through {@code payer}.
+     */
+    public FullDatasetClient payWith(X402Client payer) {
+        this.payer = payer;
+        return this;
+    }
+
+    /**
+     * Runs the job and writes the result CSV to {@code output}. On failure
+     * {@code output} is left untouched.
+     *
+     * @throws IOException if the job could not be run, including a 402
+     *                     response when no API key was given and no x402
+     *                     client was set, or its payment was refused
+     */
+    public void run(MatchJob job, Path output) throws IOException {
+        Path partial = output.resolveSibling(output.getFileName() + ".part");
+        String url = job.toUrl(baseUrl);
+        HttpResult result = payer != null
+            ? payer.download(url, partial, timeout)
+            : http.download(url, partial, timeout);
+
+        if (result.statusCode() == 402) {
+            throw new IOException("Full Dataset API requires payment (HTTP 402): "
+                + "set an API key on the job or payWith an x402 client. Quote: " + errorText(result));
+        }
+        if (!result.isSuccess()) {
+            throw new IOException("Full Dataset API returned HTTP " + result.statusCode() + ": " + errorText(result));
+        }
+        Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a result file row by row. Each row holds the matched input value
+     * in its first column and the SimKey in its last; blank lines between
+     * groups and a header row are skipped. A row with no SimKey column (or
+     * an empty one) is passed on with {@code simKey} "", so the caller can
+     * fall back to a per-row API call for it.
+     *
+     * @return number of rows passed to the handler
+     */
+    public static long readMatches(Path results, String fileType, MatchHandler handler) throws IOException {
+        long rows = 0;
+        boolean first = true;
+
+        try (CsvReader reader = CsvReader.open(results, CsvReader.delimiterFor(fileType), false)) {
+            CsvReader.Record record;
+            while ((record = reader.next()) != null) {
+                if (record.isBlank()) {
+                    continue;
+                }
+                String last = record.get(record.size() - 1).trim();
+                if (first && last.equalsIgnoreCase("SimKey")) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+
+                String simKey = record.size() > 1 ? last : "";
+                handler.match(record.get(0), simKey);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static String errorText(HttpResult result) {
+        String body = result.body().trim();
+        return body.length() > MAX_ERROR_LENGTH ? body.substring(0, MAX_ERROR_LENGTH) + "..." : body;
+    }
+}
@@ -0,0 +1,353 @@
+package com.interzoid.client.batch;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Resolves a column of a database table in place: rows are streamed from
+ * a query, looked up through a {@link ValueResolver}, and the results are
+ * written back with batched statements.
+ *
+ * Running a file job against a table used to mean an export, a CSV write
+ * and a re-import, which cost more than the matching. Here the query is
+ * read with a fetch size, so the table is never held in memory, up to
+ * {@code maxInFlight} lookups run while the next rows are read, and
+ * results are written with {@code addBatch}/{@code executeBatch} and
+ * committed every {@code commitEvery} rows.
+ *
+ * <pre>
+ *   JdbcJob job = JdbcJob.query("SELECT id, company FROM companies WHERE simkey IS NULL")
+ *       .update("UPDATE companies SET simkey = ? WHERE id = ?");
+ *   JdbcJob.Summary summary = job.run(source, sink, resolver);
+ * </pre>
+ *
+ * The query returns the key columns first ({@link #keyColumns}, default 1)
+ * and then the value to look up. An {@link #update} statement is bound
+ * with the result first and then the keys; an {@link #insert} statement
+ * with the keys first and then the result.
+ *
+ * Rows whose value is empty, or whose result is "", are not written, so a
+ * query like the one above picks them up again on the next run. A row
+ * value that repeats while its lookup is still in flight shares it.
+ *
+ * The source and sink must be different connections: the query's cursor
+ * stays open while the sink commits. The source is read in a transaction
+ * (some drivers, e.g. PostgreSQL, only honour the fetch size then), which
+ * is rolled back at the end.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.jdbc.fetchSize    rows fetched from the database at a time (default 1000)
+ *   interzoid.jdbc.batchSize    statements sent per executeBatch (default 500)
+ *   interzoid.jdbc.commitEvery  rows written between commits (default 5000)
+ *   interzoid.jdbc.maxInFlight  lookups in flight while rows are read (default 256)
+ * </pre>
+ */
+public final class JdbcJob {
+
+    private final String query;
+    private String writeSql;
+    private boolean resultFirst;
+    private int keyColumns = 1;
+    private int fetchSize = Integer.getInteger("interzoid.jdbc.fetchSize", 1000);
+    private int batchSize = Integer.getInteger("interzoid.jdbc.batchSize", 500);
+    private int commitEvery = Integer.getInteger("interzoid.jdbc.commitEvery", 5000);
+    private int maxInFlight = Integer.getInteger("interzoid.jdbc.maxInFlight", 256);
+
+    private JdbcJob(String query) {
+        this.query = query;
+    }
+
+    /**
+     * @param query SELECT returning the key columns, then the value to look up
+     */
+    public static JdbcJob query(String query) {
+        if (query == null || query.isEmpty()) {
+            throw new IllegalArgumentException("query is required");
+        }
+        return new JdbcJob(query);
+    }
+
+    /**
+     * Writes results with an UPDATE bound as (result, key...), e.g.
+     * "UPDATE companies SET simkey = ? WHERE id = ?".
+     */
+    public JdbcJob update(String sql) {
+        this.writeSql = sql;
+        this.resultFirst = true;
+        return this;
+    }
+
+    /**
+     * Writes results with an INSERT bound as (key..., result), e.g.
+     * "INSERT INTO company_simkeys (id, simkey) VALUES (?, ?)".
+     */
+    public JdbcJob insert(String sql) {
+        this.writeSql = sql;
+        this.resultFirst = false;
+        return this;
+    }
+
+    /**
+     * Number of leading query columns that identify a row (default 1).
+     */
+    public JdbcJob keyColumns(int keyColumns) {
+        if (keyColumns < 1) {
+            throw new IllegalArgumentException("keyColumns must be at least 1: " + keyColumns);
+        }
+        this.keyColumns = keyColumns;
+        return this;
+    }
+
+    public JdbcJob fetchSize(int fetchSize) {
+        this.fetchSize = positive("fetchSize", fetchSize);
+        return this;
+    }
+
+    public JdbcJob batchSize(int batchSize) {
+        this.batchSize = positive("batchSize", batchSize);
+        return this;
+    }
+
+    public JdbcJob commitEvery(int commitEvery) {
+        this.commitEvery = positive("commitEvery", commitEvery);
+        return this;
+    }
+
+    public JdbcJob maxInFlight(int maxInFlight) {
+        this.maxInFlight = positive("maxInFlight", maxInFlight);
+        return this;
+    }
+
+    /**
+     * Counts of one run.
+     */
+    public static final class Summary {
+        private final long rows;
+        private final long lookups;
+        private final long written;
+        private final long commits;
+        private final double rowsPerSecond;
+
+        Summary(long rows, long lookups, long written, long commits, double rowsPerSecond) {
+            this.rows = rows;
+            this.lookups = lookups;
+            this.written = written;
+            this.commits = commits;
+            this.rowsPerSecond = rowsPerSecond;
+        }
+
+        /** Rows read from the query. */
+        public long rows() {
+            return rows;
+        }
+
+        /** Calls to the resolver. */
+        public long lookups() {
+            return lookups;
+        }
+
+        /** Rows written back; the rest had no value or no result. */
+        public long written() {
+            return written;
+        }
+
+        public long commits() {
+            return commits;
+        }
+
+        /** Rows per second through the whole job. */
+        public double rowsPerSecond() {
+            return rowsPerSecond;
+        }
+    }
+
+    /**
+     * A row read from the query whose result has not been written yet.
+     */
+    private static final class PendingRow {
+        final Object[] keys;
+        final String value;
+        final long rowNumber;
+        final CompletableFuture<String> result;
+
+        PendingRow(Object[] keys, String value, long rowNumber, CompletableFuture<String> result) {
+            this.keys = keys;
+            this.value = value;
+            this.rowNumber = rowNumber;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Runs the query on {@code source}, resolves each row's value and
+     * writes the results through {@code sink}. Rows are written in query
+     * order. If a lookup fails or a write is rejected, the rows since the
+     * last commit are rolled back and the error is thrown.
+     */
+    public Summary run(Connection source, Connection sink, ValueResolver resolver) throws SQLException, IOException {
+        if (writeSql == null) {
+            throw new IllegalStateException("Set an update or insert statement first");
+        }
+        if (source == sink) {
+            throw new IllegalArgumentException("source and sink must be different connections");
+        }
+        long started = System.nanoTime();
+        boolean sourceAutoCommit = source.getAutoCommit();
+        boolean sinkAutoCommit = sink.getAutoCommit();
+        source.setAutoCommit(false);
+        sink.setAutoCommit(false);
+        Writer writer = null;
+        try (PreparedStatement select = source.prepareStatement(query,
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+             PreparedStatement write = sink.prepareStatement(writeSql)) {
+            select.setFetchSize(fetchSize);
+            writer = new Writer(sink, write);
+
+            ArrayDeque<PendingRow> pending = new ArrayDeque<>();
+            HashMap<String, CompletableFuture<String>> inFlight = new HashMap<>();
+            long rows = 0;
+            long lookups = 0;
+            try (ResultSet rs = select.executeQuery()) {
+                int valueColumn = keyColumns + 1;
+                while (rs.next()) {
+                    rows++;
+                    Object[] keys = new Object[keyColumns];
+                    for (int k = 0; k < keyColumns; k++) {
+                        keys[k] = rs.getObject(k + 1);
+                    }
+                    String value = rs.getString(valueColumn);
+                    CompletableFuture<String> result;
+                    if (value == null || value.trim().isEmpty()) {
+                        result = CompletableFuture.completedFuture("");
+                    } else {
+                        result = inFlight.get(value);
+                        if (result == null) {
+                            result = resolver.resolve(value, rows);
+                            inFlight.put(value, result);
+                            lookups++;
+                        }
+                    }
+                    pending.add(new PendingRow(keys, value, rows, result));
+
+                    // Write whatever has finished, and wait for the oldest lookup once the window is full
+                    while (!pending.isEmpty() && (pending.peek().result.isDone() || pending.size() > maxInFlight)) {
+                        writer.write(pending.poll(), inFlight);
+                    }
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(pending.poll(), inFlight);
+            }
+            writer.finish();
+            return new Summary(rows, lookups, writer.written, writer.commits,
+                rows / Math.max(1e-9, (System.nanoTime() - started) / 1e9));
+
+        } catch (SQLException | IOException | RuntimeException e) {
+            try {
+                sink.rollback();
+            } catch (SQLException rollbackFailed) {
+                e.addSuppressed(rollbackFailed);
+            }
+            throw e;
+        } finally {
+            try {
+                source.rollback();
+            } finally {
+                source.setAutoCommit(sourceAutoCommit);
+                sink.setAutoCommit(sinkAutoCommit);
+            }
+        }
+    }
+
+    /**
+     * Batches and commits the writes of one run.
+     */
+    private final class Writer {
+        final Connection sink;
+        final PreparedStatement statement;
+        int batched;
+        long written;
+        long sinceCommit;
+        long commits;
+
+        Writer(Connection sink, PreparedStatement statement) {
+            this.sink = sink;
+            this.statement = statement;
+        }
+
+        void write(PendingRow row, HashMap<String, CompletableFuture<String>> inFlight)
+                throws SQLException, IOException {
+            String result = await(row);
+            if (row.value != null) {
+                inFlight.remove(row.value, row.result);
+            }
+            if (result.isEmpty()) {
+                return;
+            }
+            int p = 1;
+            if (resultFirst) {
+                statement.setString(p++, result);
+            }
+            for (Object key : row.keys) {
+                statement.setObject(p++, key);
+            }
+            if (!resultFirst) {
+                statement.setString(p, result);
+            }
+            statement.addBatch();
+            written++;
+            if (++batched == batchSize) {
+                executeBatch();
+            }
+            if (++sinceCommit >= commitEvery) {
+                executeBatch();
+                sink.commit();
+                commits++;
+                sinceCommit = 0;
+            }
+        }
+
+        void finish() throws SQLException {
+            executeBatch();
+            if (sinceCommit > 0) {
+                sink.commit();
+                commits++;
+                sinceCommit = 0;
+            }
+        }
+
+        private void executeBatch() throws SQLException {
+            if (batched > 0) {
+                statement.executeBatch();
+                batched = 0;
+            }
+        }
+
+        private String await(PendingRow row) throws IOException {
+            try {
+                String result = row.result.join();
+                return result == null ? "" : result;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Could not resolve row " + row.rowNumber
+                    + " (\"" + row.value + "\"): " + cause.getMessage(), cause);
+            }
+        }
+    }
+
+    private static int positive(String name, int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be at least 1: " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,16 @@
+package com.interzoid.client.batch;
+
+import java.io.IOException;
+
+/**
+ * Receives one row of a Full Dataset API result.
+ */
+@FunctionalInterface
+public interface MatchHandler {
+
+    /**
+     * @param input  the matched value from the input file
+     * @param simKey its SimKey, or "" if the service could not match the row
+     */
+    void match(String input, String simKey) throws IOException;
+}
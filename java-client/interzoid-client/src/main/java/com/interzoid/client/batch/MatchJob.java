@@ -0,0 +1,128 @@
+package com.interzoid.client.batch;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parameters of one Full Dataset API job (match.interzoid.com/match).
+ *
+ * The service downloads the file at {@code connection} itself, matches
+ * every row server side, and returns the results as one CSV response, so
+ * a large file costs one request instead of one round trip per row.
+ *
+ * <pre>
+ *   MatchJob job = MatchJob.forConnection("https://dl.interzoid.com/csv/companies.csv")
+ *       .function("company-name-only")
+ *       .companyColumn(1)
+ *       .hasHeader(true)
+ *       .apiKey(API_KEY);
+ * </pre>
+ */
+public final class MatchJob {
+
+    private final String connection;
+    private String fileType = "csv";
+    private String function = "company-name-only";
+    private boolean hasHeader;
+    private String apiKey;
+    private final Map<String, String> extraParameters = new LinkedHashMap<>();
+
+    private MatchJob(String connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @param connection URL of the input file, reachable by the service
+     */
+    public static MatchJob forConnection(String connection) {
+        if (connection == null || connection.isEmpty()) {
+            throw new IllegalArgumentException("connection is required");
+        }
+        return new MatchJob(connection);
+    }
+
+    public String connection() {
+        return connection;
+    }
+
+    public String fileType() {
+        return fileType;
+    }
+
+    /**
+     * "csv" (default) or "tsv".
+     */
+    public MatchJob fileType(String fileType) {
+        this.fileType = fileType;
+        return this;
+    }
+
+    public String function() {
+        return function;
+    }
+
+    /**
+     * Matching function, e.g. "company-name-only" (default).
+     */
+    public MatchJob function(String function) {
+        this.function = function;
+        return this;
+    }
+
+    /**
+     * Column of the input file that holds the company name, as the service numbers it.
+     */
+    public MatchJob companyColumn(int column) {
+        return parameter("company_column", String.valueOf(column));
+    }
+
+    public boolean hasHeader() {
+        return hasHeader;
+    }
+
+    public MatchJob hasHeader(boolean hasHeader) {
+        this.hasHeader = hasHeader;
+        return this;
+    }
+
+    /**
+     * Interzoid API key. Without one the service answers 402 Payment
+     * Required with an x402 quote.
+     */
+    public MatchJob apiKey(String apiKey) {
+        this.apiKey = apiKey;
+        return this;
+    }
+
+    /**
+     * Any other query parameter the chosen function takes.
+     */
+    public MatchJob parameter(String name, String value) {
+        extraParameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * Full request URL for the given service base URL.
+     */
+    public String toUrl(String baseUrl) {
+        StringBuilder url = new StringBuilder(baseUrl).append("/match?");
+        if (apiKey != null && !apiKey.isEmpty()) {
+            append(url, "apikey", apiKey).append('&');
+        }
+        append(url, "connection", connection);
+        append(url.append('&'), "filetype", fileType);
+        append(url.append('&'), "function", function);
+        for (Map.Entry<String, String> e : extraParameters.entrySet()) {
+            append(url.append('&'), e.getKey(), e.getValue());
+        }
+        append(url.append('&'), "has_header", String.valueOf(hasHeader));
+        return url.toString();
+    }
+
+    private static StringBuilder append(StringBuilder url, String name, String value) {
+        return url.append(name).append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+}
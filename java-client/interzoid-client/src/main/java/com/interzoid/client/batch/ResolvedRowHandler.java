@@ -0,0 +1,16 @@
+package com.interzoid.client.batch;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a {@link DistinctValuePlanner} run in input order.
+ */
+@FunctionalInterface
+public interface ResolvedRowHandler {
+
+    /**
+     * @param input  the input line
+     * @param result the result resolved for that value ("" if unresolved)
+     */
+    void row(String input, String result) throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.interzoid.client.batch;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Looks up the API result (SimKey, Standard, ...) for one distinct input value.
+ */
+@FunctionalInterface
+public interface ValueResolver {
+
+    /**
+     * Returns the result for {@code value}. Return a completed future for
+     * synchronous lookups (e.g. a cache hit); return "" for a value the API
+     * could not resolve. A future that fails aborts the run.
+     *
+     * @param value      the input value, exactly as read from the file
+     * @param lineNumber line of its first occurrence, for log messages
+     */
+    CompletableFuture<String> resolve(String value, long lineNumber);
+}
@@ -0,0 +1,17 @@
+package com.interzoid.client.cluster;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives one group of records that share the same SimKey.
+ */
+@FunctionalInterface
+public interface ClusterHandler {
+
+    /**
+     * @param simKey the shared SimKey
+     * @param inputs input values with this SimKey, in their original file order
+     */
+    void cluster(String simKey, List<String> inputs) throws IOException;
+}
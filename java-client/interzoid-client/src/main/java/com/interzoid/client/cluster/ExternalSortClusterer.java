@@ -0,0 +1,337 @@
+package com.interzoid.client.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Groups (SimKey, input) pairs by SimKey using a bounded amount of memory.
+ *
+ * The match reports used to collect every record in an ArrayList and sort
+ * it, so the heap had to hold the whole file. Here pairs are buffered until
+ * the memory budget is reached, sorted, and spilled to a temporary run file.
+ * {@link #forEachCluster} then k-way merges the runs and hands each group of
+ * equal SimKeys to a {@link ClusterHandler}. If everything fits in memory
+ * nothing is written to disk.
+ *
+ * The order matches a stable in-memory sort by SimKey (what
+ * Collections.sort did in the reports). Keys compare with String.compareTo,
+ * and records with equal keys keep their input order, because each run is
+ * sorted stably and ties in the merge go to the earlier run.
+ *
+ * Memory is bounded by the budget plus one read buffer per run being
+ * merged, and by the size of the largest single cluster.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.sort.memoryMb  in-memory budget before a run is spilled (default 64)
+ *   interzoid.sort.tmpDir    directory for run files (default java.io.tmpdir)
+ * </pre>
+ */
+public final class ExternalSortClusterer implements SimKeyClusterer {
+
+    // Most run files merged at once; more runs are merged in several passes
+    private static final int MAX_MERGE_FAN_IN = 128;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    // Rough per-pair overhead of the String[] and two String objects
+    private static final int PAIR_OVERHEAD_BYTES = 96;
+
+    private static final Comparator<String[]> BY_KEY = Comparator.comparing(pair -> pair[0]);
+
+    private final long memoryBudgetBytes;
+    private final Path tmpDir;
+
+    private final List<String[]> buffer = new ArrayList<>();
+    private long bufferedBytes;
+    private final List<Path> runs = new ArrayList<>();
+    private long count;
+
+    public ExternalSortClusterer() {
+        this(Long.getLong("interzoid.sort.memoryMb", 64) << 20,
+             Paths.get(System.getProperty("interzoid.sort.tmpDir", System.getProperty("java.io.tmpdir"))));
+    }
+
+    public ExternalSortClusterer(long memoryBudgetBytes, Path tmpDir) {
+        if (memoryBudgetBytes < 1) {
+            throw new IllegalArgumentException("memoryBudgetBytes must be positive: " + memoryBudgetBytes);
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public void add(String simKey, String input) throws IOException {
+        buffer.add(new String[] {simKey, input});
+        bufferedBytes += 2L * (simKey.length() + input.length()) + PAIR_OVERHEAD_BYTES;
+        count++;
+
+        if (bufferedBytes >= memoryBudgetBytes) {
+            spill();
+        }
+    }
+
+    @Override
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Number of sorted runs written to disk so far.
+     */
+    public int spilledRuns() {
+        return runs.size();
+    }
+
+    @Override
+    public void forEachCluster(int minSize, ClusterHandler handler) throws IOException {
+        if (runs.isEmpty()) {
+            // Everything fit in memory: no temp files needed
+            buffer.sort(BY_KEY);
+            emitClusters(new ListSource(buffer), minSize, handler);
+            buffer.clear();
+            return;
+        }
+
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > MAX_MERGE_FAN_IN) {
+            mergePass();
+        }
+
+        List<RunReader> readers = openRuns(runs);
+        try {
+            emitClusters(new MergeSource(readers), minSize, handler);
+        } finally {
+            closeAll(readers);
+        }
+    }
+
+    /**
+     * Deletes any remaining run files.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.clear();
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private static void emitClusters(PairSource source, int minSize, ClusterHandler handler)
+            throws IOException {
+        String currentKey = null;
+        List<String> inputs = new ArrayList<>();
+
+        String[] pair;
+        while ((pair = source.next()) != null) {
+            if (currentKey != null && !pair[0].equals(currentKey)) {
+                if (inputs.size() >= minSize) {
+                    handler.cluster(currentKey, inputs);
+                    inputs = new ArrayList<>();
+                } else {
+                    inputs.clear();
+                }
+            }
+            currentKey = pair[0];
+            inputs.add(pair[1]);
+        }
+
+        if (currentKey != null && inputs.size() >= minSize) {
+            handler.cluster(currentKey, inputs);
+        }
+    }
+
+    /**
+     * Sorts the buffer (stable) and writes it out as a new run.
+     */
+    private void spill() throws IOException {
+        buffer.sort(BY_KEY);
+        Path run = Files.createTempFile(tmpDir, "interzoid-run-", ".bin");
+        runs.add(run);
+
+        try (DataOutputStream out = openRunForWrite(run)) {
+            for (String[] pair : buffer) {
+                writePair(out, pair);
+            }
+        }
+        buffer.clear();
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Merges the runs in groups of MAX_MERGE_FAN_IN, keeping their relative
+     * order so ties still resolve to the earlier input.
+     */
+    private void mergePass() throws IOException {
+        List<Path> merged = new ArrayList<>();
+        for (int start = 0; start < runs.size(); start += MAX_MERGE_FAN_IN) {
+            List<Path> group = runs.subList(start, Math.min(start + MAX_MERGE_FAN_IN, runs.size()));
+            Path output = Files.createTempFile(tmpDir, "interzoid-run-", ".bin");
+
+            List<RunReader> readers = openRuns(group);
+            try (DataOutputStream out = openRunForWrite(output)) {
+                MergeSource source = new MergeSource(readers);
+                String[] pair;
+                while ((pair = source.next()) != null) {
+                    writePair(out, pair);
+                }
+            } finally {
+                closeAll(readers);
+            }
+
+            for (Path run : group) {
+                Files.deleteIfExists(run);
+            }
+            merged.add(output);
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    private static DataOutputStream openRunForWrite(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE));
+    }
+
+    private static void writePair(DataOutputStream out, String[] pair) throws IOException {
+        writeString(out, pair[0]);
+        writeString(out, pair[1]);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static List<RunReader> openRuns(List<Path> paths) throws IOException {
+        List<RunReader> readers = new ArrayList<>(paths.size());
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                readers.add(new RunReader(paths.get(i), i));
+            }
+        } catch (IOException e) {
+            closeAll(readers);
+            throw e;
+        }
+        return readers;
+    }
+
+    private static void closeAll(List<RunReader> readers) throws IOException {
+        IOException first = null;
+        for (RunReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Pair sources: an in-memory sorted list, or a k-way merge of runs
+    //------------------------------------------------------------------
+
+    private interface PairSource {
+        String[] next() throws IOException;
+    }
+
+    private static final class ListSource implements PairSource {
+        private final List<String[]> pairs;
+        private int position;
+
+        ListSource(List<String[]> pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        public String[] next() {
+            return position < pairs.size() ? pairs.get(position++) : null;
+        }
+    }
+
+    private static final class MergeSource implements PairSource {
+        private final PriorityQueue<RunReader> heap;
+
+        MergeSource(List<RunReader> readers) throws IOException {
+            // Equal keys: the earlier run holds the earlier input
+            heap = new PriorityQueue<>(Math.max(1, readers.size()),
+                Comparator.<RunReader, String>comparing(r -> r.current[0]).thenComparingInt(r -> r.order));
+            for (RunReader reader : readers) {
+                if (reader.advance()) {
+                    heap.add(reader);
+                }
+            }
+        }
+
+        @Override
+        public String[] next() throws IOException {
+            RunReader reader = heap.poll();
+            if (reader == null) {
+                return null;
+            }
+            String[] pair = reader.current;
+            if (reader.advance()) {
+                heap.add(reader);
+            }
+            return pair;
+        }
+    }
+
+    private static final class RunReader implements Closeable {
+        private final DataInputStream in;
+        private final int order;
+        private String[] current;
+
+        RunReader(Path path, int order) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE));
+            this.order = order;
+        }
+
+        boolean advance() throws IOException {
+            int keyLength;
+            try {
+                keyLength = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            String key = readString(keyLength);
+            String input = readString(in.readInt());
+            current = new String[] {key, input};
+            return true;
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
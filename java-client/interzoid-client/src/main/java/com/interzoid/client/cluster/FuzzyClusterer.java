@@ -0,0 +1,444 @@
+package com.interzoid.client.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Second clustering stage that also merges clusters whose SimKeys are
+ * within a small edit distance of each other.
+ *
+ * The engines only group byte-identical SimKeys, so two keys one
+ * character apart end up in separate clusters. Comparing every pair of
+ * distinct keys is O(n²), which is hours at a million keys. Here each
+ * distinct key is indexed by signatures. The key is cut into
+ * {@code maxDistance + 1} segments, and if two keys are within
+ * {@code maxDistance} edits, at least one segment of one appears
+ * unchanged in the other, shifted by at most {@code maxDistance}
+ * (pigeonhole). A key is looked up by a fixed number of substrings, so
+ * only keys sharing a segment are compared, with a banded Levenshtein
+ * distance. No pair within the distance is missed. SimKeys look like
+ * hashes, so few keys share a segment; keys with long runs in common
+ * (a fixed prefix or suffix) would make many more comparisons.
+ *
+ * Keys within the distance are merged transitively (single linkage): if
+ * A is near B and B is near C, all three form one cluster, even when A
+ * and C are further apart than the distance. A chain of near keys can
+ * therefore grow a cluster whose keys differ by many edits;
+ * {@link #chainedKeys()} counts the keys that are further than the
+ * distance from the key their cluster is reported under, and
+ * {@link #summary()} puts both counts in one line for a report. A merged
+ * cluster is reported under its key with the most records (ties go to
+ * the key that sorts first), and holds every record of its keys in
+ * input order. Clusters come out in the order of those keys, as with the
+ * wrapped engine.
+ *
+ * Records are spooled to a temporary file as they are added. They are
+ * replayed into the wrapped engine under their merged key once the
+ * merges are known, so the engine's memory bounds still hold. The stage
+ * itself keeps about 100 bytes per distinct key in memory.
+ *
+ * Enabled in the match reports by {@link SimKeyClusterer#fromSystemProperties()}:
+ *
+ * <pre>
+ *   interzoid.cluster.fuzzyDistance  edit distance for merging, 0 = off (default 0)
+ *   interzoid.sort.tmpDir            directory for the spool file (default java.io.tmpdir)
+ * </pre>
+ */
+public final class FuzzyClusterer implements SimKeyClusterer {
+
+    /** Largest supported distance; beyond it segments get too short to filter. */
+    public static final int MAX_DISTANCE = 3;
+
+    // An index entry packs a signature hash (high bits) with key id + 1 (low bits)
+    private static final int KEY_BITS = 26;
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+    private static final int MAX_KEYS = (1 << KEY_BITS) - 1;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final SimKeyClusterer delegate;
+    private final int maxDistance;
+    private final Path tmpDir;
+    private Path spool;
+    private DataOutputStream spoolOut;
+    private long records;
+
+    // Distinct keys in order of first appearance, with their record counts
+    private String[] keys = new String[1 << 10];
+    private int[] counts = new int[1 << 10];
+    private int keyCount;
+    // Open-addressing table of key ids (+1, so 0 means empty), linear probing
+    private int[] table = new int[1 << 11];
+
+    // Signature index, filled while merging
+    private long[] signatures;
+    private int signatureCount;
+
+    // Scratch rows for the edit distance
+    private int[] previousRow = new int[64];
+    private int[] currentRow = new int[64];
+
+    private int mergedKeys;
+    private int chainedKeys;
+
+    /**
+     * Wraps {@code delegate}, spooling records to {@code interzoid.sort.tmpDir}.
+     */
+    public FuzzyClusterer(SimKeyClusterer delegate, int maxDistance) {
+        this(delegate, maxDistance,
+             Paths.get(System.getProperty("interzoid.sort.tmpDir", System.getProperty("java.io.tmpdir"))));
+    }
+
+    public FuzzyClusterer(SimKeyClusterer delegate, int maxDistance, Path tmpDir) {
+        if (maxDistance < 1 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must be between 1 and " + MAX_DISTANCE + ": " + maxDistance);
+        }
+        this.delegate = delegate;
+        this.maxDistance = maxDistance;
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public void add(String simKey, String input) throws IOException {
+        if (spoolOut == null) {
+            spool = Files.createTempFile(tmpDir, "interzoid-fuzzy-", ".spool");
+            spoolOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spool), IO_BUFFER_SIZE));
+        }
+        int key = findOrAddKey(simKey);
+        counts[key]++;
+        spoolOut.writeInt(key);
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        spoolOut.writeInt(bytes.length);
+        spoolOut.write(bytes);
+        records++;
+    }
+
+    @Override
+    public long size() {
+        return records;
+    }
+
+    /**
+     * Number of distinct SimKeys seen.
+     */
+    public int distinctKeys() {
+        return keyCount;
+    }
+
+    /**
+     * Distinct SimKeys merged into another key's cluster. Known once
+     * {@link #forEachCluster} has run.
+     */
+    public int mergedKeys() {
+        return mergedKeys;
+    }
+
+    /**
+     * Merged keys that are further than the distance from the key their
+     * cluster is reported under, so joined it only through a chain of
+     * near keys. Known once {@link #forEachCluster} has run.
+     */
+    public int chainedKeys() {
+        return chainedKeys;
+    }
+
+    /**
+     * One line on the merging for a report, e.g. "Fuzzy merging at edit
+     * distance 1: 12 of 400 SimKeys merged into another cluster, 3 of them
+     * more than 1 edit from its SimKey (through a chain of near keys)".
+     */
+    public String summary() {
+        return "Fuzzy merging at edit distance " + maxDistance + ": " + mergedKeys + " of " + keyCount
+            + " SimKeys merged into another cluster, " + chainedKeys + " of them more than " + maxDistance
+            + (maxDistance == 1 ? " edit" : " edits") + " from its SimKey (through a chain of near keys)";
+    }
+
+    @Override
+    public void forEachCluster(int minSize, ClusterHandler handler) throws IOException {
+        if (spoolOut == null) {
+            delegate.forEachCluster(minSize, handler);
+            return;
+        }
+        spoolOut.close();
+        int[] representative = mergeNearKeys();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(spool), IO_BUFFER_SIZE))) {
+            byte[] buffer = new byte[256];
+            for (long r = 0; r < records; r++) {
+                int key = in.readInt();
+                int length = in.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+                delegate.add(keys[representative[key]], new String(buffer, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+        Files.deleteIfExists(spool);
+        delegate.forEachCluster(minSize, handler);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (spoolOut != null) {
+                spoolOut.close();
+                Files.deleteIfExists(spool);
+            }
+        } finally {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Finds every pair of keys within the distance, merges them, and
+     * returns the representative key of each key.
+     */
+    private int[] mergeNearKeys() {
+        int[] parent = new int[keyCount];
+        int[] seenBy = new int[keyCount];
+        for (int k = 0; k < keyCount; k++) {
+            parent[k] = k;
+            seenBy[k] = -1;
+        }
+        signatures = new long[tableSize((long) keyCount * (maxDistance + 1))];
+        signatureCount = 0;
+        int[] keysOfLength = new int[64];
+
+        // Each key is looked up among the keys before it, then indexed
+        for (int b = 0; b < keyCount; b++) {
+            String key = keys[b];
+            int n = key.length();
+            for (int length = Math.max(0, n - maxDistance); length <= n + maxDistance; length++) {
+                if (length >= keysOfLength.length || keysOfLength[length] == 0) {
+                    continue;
+                }
+                for (int segment = 0; segment <= maxDistance; segment++) {
+                    int start = segmentStart(length, segment);
+                    int segmentLength = segmentStart(length, segment + 1) - start;
+                    int last = Math.min(n - segmentLength, start + maxDistance);
+                    for (int p = Math.max(0, start - maxDistance); p <= last; p++) {
+                        long tag = signature(length, segment, key, p, segmentLength);
+                        int mask = signatures.length - 1;
+                        for (int slot = slotOf(tag, mask); signatures[slot] != 0; slot = (slot + 1) & mask) {
+                            long entry = signatures[slot];
+                            if ((entry & ~KEY_MASK) != tag) {
+                                continue;
+                            }
+                            int a = (int) (entry & KEY_MASK) - 1;
+                            if (seenBy[a] == b) {
+                                continue;
+                            }
+                            seenBy[a] = b;
+                            int rootA = find(parent, a);
+                            int rootB = find(parent, b);
+                            if (rootA != rootB && withinDistance(keys[a], key)) {
+                                parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                            }
+                        }
+                    }
+                }
+            }
+
+            for (int segment = 0; segment <= maxDistance; segment++) {
+                int start = segmentStart(n, segment);
+                addSignature(signature(n, segment, key, start, segmentStart(n, segment + 1) - start), b);
+            }
+            if (n >= keysOfLength.length) {
+                keysOfLength = Arrays.copyOf(keysOfLength, Math.max(n + 1, keysOfLength.length * 2));
+            }
+            keysOfLength[n]++;
+        }
+        signatures = null;
+
+        // The key with the most records (then the first in key order) names each group
+        int[] best = new int[keyCount];
+        Arrays.fill(best, -1);
+        for (int k = 0; k < keyCount; k++) {
+            int root = find(parent, k);
+            int current = best[root];
+            if (current < 0 || counts[k] > counts[current]
+                    || (counts[k] == counts[current] && keys[k].compareTo(keys[current]) < 0)) {
+                best[root] = k;
+            }
+        }
+        int[] representative = new int[keyCount];
+        mergedKeys = 0;
+        chainedKeys = 0;
+        for (int k = 0; k < keyCount; k++) {
+            representative[k] = best[find(parent, k)];
+            if (representative[k] != k) {
+                mergedKeys++;
+                if (!withinDistance(keys[k], keys[representative[k]])) {
+                    chainedKeys++;
+                }
+            }
+        }
+        return representative;
+    }
+
+    /**
+     * Start of a segment of a key of the given length; segments differ in
+     * length by at most one.
+     */
+    private int segmentStart(int length, int segment) {
+        return (int) ((long) length * segment / (maxDistance + 1));
+    }
+
+    private void addSignature(long tag, int key) {
+        int mask = signatures.length - 1;
+        int slot = slotOf(tag, mask);
+        while (signatures[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        signatures[slot] = tag | (key + 1);
+        signatureCount++;
+    }
+
+    /**
+     * Hash of one segment, with the key length and segment number, in the
+     * bits above KEY_BITS. Collisions only add comparisons.
+     */
+    private static long signature(int length, int segment, String key, int from, int count) {
+        long h = 0xcbf29ce484222325L ^ ((long) length << 8 | segment);
+        for (int i = from; i < from + count; i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h & ~KEY_MASK;
+    }
+
+    private static int slotOf(long tag, int mask) {
+        return (int) (tag >>> KEY_BITS) & mask;
+    }
+
+    /**
+     * Power of two with room for {@code entries} at a load of at most one half.
+     */
+    private static int tableSize(long entries) {
+        long size = Long.highestOneBit(Math.max(2, entries * 2 - 1)) << 1;
+        if (size > 1 << 30) {
+            throw new IllegalStateException("Too many distinct SimKeys for fuzzy merging: " + entries);
+        }
+        return (int) size;
+    }
+
+    private static int find(int[] parent, int key) {
+        while (parent[key] != key) {
+            parent[key] = parent[parent[key]];
+            key = parent[key];
+        }
+        return key;
+    }
+
+    /**
+     * True if the Levenshtein distance between a and b is at most
+     * maxDistance. Only the diagonal band that can stay within the
+     * distance is computed, and it stops as soon as a row exceeds it.
+     */
+    boolean withinDistance(String a, String b) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > maxDistance) {
+            return false;
+        }
+        int outside = maxDistance + 1;
+        if (previousRow.length < m + 2) {
+            previousRow = new int[m + 2];
+            currentRow = new int[m + 2];
+        }
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, outside);
+        }
+        previous[m + 1] = outside;
+
+        for (int i = 1; i <= n; i++) {
+            int low = Math.max(1, i - maxDistance);
+            int high = Math.min(m, i + maxDistance);
+            current[low - 1] = low == 1 ? Math.min(i, outside) : outside;
+            int rowMin = current[low - 1];
+            char ca = a.charAt(i - 1);
+            for (int j = low; j <= high; j++) {
+                int value = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                value = Math.min(value, previous[j] + 1);
+                value = Math.min(value, current[j - 1] + 1);
+                current[j] = Math.min(value, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // The next row reads one cell past this row's band
+            current[high + 1] = outside;
+            if (rowMin > maxDistance) {
+                return false;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m] <= maxDistance;
+    }
+
+    private int findOrAddKey(String simKey) {
+        int mask = table.length - 1;
+        for (int slot = mix(simKey.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                int key = addKey(simKey);
+                table[slot] = key + 1;
+                if (keyCount * 2 > table.length) {
+                    rehash();
+                }
+                return key;
+            }
+            if (keys[entry - 1].equals(simKey)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int addKey(String simKey) {
+        if (keyCount == MAX_KEYS) {
+            throw new IllegalStateException("Too many distinct SimKeys for fuzzy merging: " + MAX_KEYS);
+        }
+        if (keyCount == keys.length) {
+            keys = Arrays.copyOf(keys, keyCount * 2);
+            counts = Arrays.copyOf(counts, keyCount * 2);
+        }
+        keys[keyCount] = simKey;
+        return keyCount++;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int key = 0; key < keyCount; key++) {
+            int slot = mix(keys[key].hashCode()) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = key + 1;
+        }
+        table = newTable;
+    }
+
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+}
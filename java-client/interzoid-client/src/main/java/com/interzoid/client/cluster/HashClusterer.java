@@ -0,0 +1,287 @@
+package com.interzoid.client.cluster;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass, in-memory SimKey grouping without sorting every record.
+ *
+ * Sorting all records by SimKey costs O(n log n) string comparisons only to
+ * find equal keys. Here each record is hashed once into an open-addressing
+ * table of distinct SimKeys. Every key keeps a linked list of record numbers
+ * (in input order) stored in plain int arrays. Inputs and keys are packed
+ * into chunked char arenas rather than one object per row, so a record
+ * costs its characters plus three ints, and characters are never copied
+ * again as the arenas grow.
+ *
+ * At the end only the keys shared by at least {@code minSize} records are
+ * sorted, so output matches the sort-based reports exactly. All records
+ * stay in memory; use {@link ExternalSortClusterer} for inputs larger than
+ * the heap.
+ */
+public final class HashClusterer implements SimKeyClusterer {
+
+    private static final int NONE = -1;
+
+    // Input values: record i is inputLength[i] chars at inputRef[i] in the input arena
+    private CharArena inputChars = new CharArena();
+    private int[] inputRef = new int[1 << 12];
+    private int[] inputLength = new int[1 << 12];
+    private int[] nextRecord = new int[1 << 12];
+    private int recordCount;
+
+    // Distinct SimKeys: key k is keyLength[k] chars at keyRef[k] in the key arena
+    private CharArena keyChars = new CharArena();
+    private int[] keyRef = new int[1 << 10];
+    private int[] keyLength = new int[1 << 10];
+    private int[] keyHash = new int[1 << 10];
+    private int[] firstRecord = new int[1 << 10];
+    private int[] lastRecord = new int[1 << 10];
+    private int[] keySize = new int[1 << 10];
+    private int keyCount;
+
+    // Open-addressing table of key ids (+1, so 0 means empty), linear probing
+    private int[] table = new int[1 << 11];
+
+    @Override
+    public void add(String simKey, String input) {
+        int key = findOrAddKey(simKey);
+        int record = appendInput(input);
+
+        if (firstRecord[key] == NONE) {
+            firstRecord[key] = record;
+        } else {
+            nextRecord[lastRecord[key]] = record;
+        }
+        lastRecord[key] = record;
+        keySize[key]++;
+    }
+
+    @Override
+    public long size() {
+        return recordCount;
+    }
+
+    /**
+     * Number of distinct SimKeys seen.
+     */
+    public int distinctKeys() {
+        return keyCount;
+    }
+
+    @Override
+    public void forEachCluster(int minSize, ClusterHandler handler) throws IOException {
+        // Only the clusters that will be reported need ordering
+        int selected = 0;
+        Integer[] keys = new Integer[countKeysWithSize(minSize)];
+        for (int k = 0; k < keyCount; k++) {
+            if (keySize[k] >= minSize) {
+                keys[selected++] = k;
+            }
+        }
+        Arrays.sort(keys, this::compareKeys);
+
+        for (int k : keys) {
+            List<String> inputs = new ArrayList<>(keySize[k]);
+            for (int r = firstRecord[k]; r != NONE; r = nextRecord[r]) {
+                inputs.add(inputChars.string(inputRef[r], inputLength[r]));
+            }
+            handler.cluster(keyString(k), inputs);
+        }
+    }
+
+    @Override
+    public void close() {
+        inputChars = new CharArena();
+        keyChars = new CharArena();
+        table = new int[1];
+        recordCount = 0;
+        keyCount = 0;
+    }
+
+    private int countKeysWithSize(int minSize) {
+        int count = 0;
+        for (int k = 0; k < keyCount; k++) {
+            if (keySize[k] >= minSize) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int findOrAddKey(String simKey) {
+        int hash = mix(simKey.hashCode());
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                int key = addKey(simKey, hash);
+                table[slot] = key + 1;
+                if (keyCount * 2 > table.length) {
+                    rehash();
+                }
+                return key;
+            }
+            int key = entry - 1;
+            if (keyHash[key] == hash && keyEquals(key, simKey)) {
+                return key;
+            }
+        }
+    }
+
+    private int addKey(String simKey, int hash) {
+        int key = keyCount;
+        if (key == keyRef.length) {
+            int newLength = keyRef.length * 2;
+            keyRef = Arrays.copyOf(keyRef, newLength);
+            keyLength = Arrays.copyOf(keyLength, newLength);
+            keyHash = Arrays.copyOf(keyHash, newLength);
+            firstRecord = Arrays.copyOf(firstRecord, newLength);
+            lastRecord = Arrays.copyOf(lastRecord, newLength);
+            keySize = Arrays.copyOf(keySize, newLength);
+        }
+        keyRef[key] = keyChars.append(simKey);
+        keyLength[key] = simKey.length();
+        keyHash[key] = hash;
+        firstRecord[key] = NONE;
+        lastRecord[key] = NONE;
+        keySize[key] = 0;
+        keyCount++;
+        return key;
+    }
+
+    private int appendInput(String input) {
+        int record = recordCount;
+        if (record == inputRef.length) {
+            int newLength = inputRef.length * 2;
+            inputRef = Arrays.copyOf(inputRef, newLength);
+            inputLength = Arrays.copyOf(inputLength, newLength);
+            nextRecord = Arrays.copyOf(nextRecord, newLength);
+        }
+        inputRef[record] = inputChars.append(input);
+        inputLength[record] = input.length();
+        nextRecord[record] = NONE;
+        recordCount++;
+        return record;
+    }
+
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int key = 0; key < keyCount; key++) {
+            int slot = keyHash[key] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = key + 1;
+        }
+        table = newTable;
+    }
+
+    private boolean keyEquals(int key, String simKey) {
+        int length = keyLength[key];
+        if (length != simKey.length()) {
+            return false;
+        }
+        char[] chunk = keyChars.chunk(keyRef[key]);
+        int start = CharArena.offset(keyRef[key]);
+        for (int i = 0; i < length; i++) {
+            if (chunk[start + i] != simKey.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same ordering as String.compareTo on the two keys.
+     */
+    private int compareKeys(int a, int b) {
+        char[] chunkA = keyChars.chunk(keyRef[a]);
+        char[] chunkB = keyChars.chunk(keyRef[b]);
+        int startA = CharArena.offset(keyRef[a]);
+        int startB = CharArena.offset(keyRef[b]);
+        int lengthA = keyLength[a];
+        int lengthB = keyLength[b];
+        int common = Math.min(lengthA, lengthB);
+        for (int i = 0; i < common; i++) {
+            char ca = chunkA[startA + i];
+            char cb = chunkB[startB + i];
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+    private String keyString(int key) {
+        return keyChars.string(keyRef[key], keyLength[key]);
+    }
+
+    private static int mix(int h) {
+        // Spread String.hashCode bits so linear probing on a power-of-two table clusters less
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    /**
+     * Append-only char storage in fixed-size chunks. A value never spans two
+     * chunks; values longer than a chunk get a chunk of their own. A
+     * reference packs the chunk number and the offset into one int.
+     */
+    private static final class CharArena {
+        private static final int OFFSET_BITS = 16;
+        private static final int CHUNK_SIZE = 1 << OFFSET_BITS;
+        private static final int MAX_CHUNKS = 1 << (31 - OFFSET_BITS);
+
+        private char[][] chunks = new char[16][];
+        private int chunkCount;
+        private int used = CHUNK_SIZE;
+
+        int append(String value) {
+            int length = value.length();
+            if (length > CHUNK_SIZE) {
+                addChunk(value.toCharArray());
+                used = CHUNK_SIZE;
+                return (chunkCount - 1) << OFFSET_BITS;
+            }
+            // A full chunk takes nothing more, not even an empty value: its
+            // offset would spill into the chunk number
+            if (chunkCount == 0 || used == CHUNK_SIZE || length > CHUNK_SIZE - used) {
+                addChunk(new char[CHUNK_SIZE]);
+                used = 0;
+            }
+            value.getChars(0, length, chunks[chunkCount - 1], used);
+            int ref = ((chunkCount - 1) << OFFSET_BITS) | used;
+            used += length;
+            return ref;
+        }
+
+        char[] chunk(int ref) {
+            return chunks[ref >>> OFFSET_BITS];
+        }
+
+        static int offset(int ref) {
+            return ref & (CHUNK_SIZE - 1);
+        }
+
+        String string(int ref, int length) {
+            return new String(chunk(ref), offset(ref), length);
+        }
+
+        private void addChunk(char[] chunk) {
+            if (chunkCount == MAX_CHUNKS) {
+                throw new IllegalStateException("Too much input for in-memory clustering; use interzoid.cluster.mode=sort");
+            }
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            chunks[chunkCount++] = chunk;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.interzoid.client.cluster;
+
+import com.interzoid.client.io.MappedLineReader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a match report across several {@link ReportWorker} processes, on
+ * one machine or many.
+ *
+ * One report process can only use one host's network and API quota
+ * share. Here the input file is cut into byte-range shards that start on
+ * line boundaries. Workers take shards from the coordinator one at a
+ * time, look up the SimKey of every line, and send each (SimKey, input)
+ * pair to the worker that owns the SimKey's hash partition. When every
+ * shard is done, each worker clusters its partition and sends back the
+ * clusters of at least {@code minSize} inputs. The coordinator merges
+ * them in SimKey order, with each cluster's inputs in file order, so
+ * {@link #awaitReport} sees exactly what
+ * {@link SimKeyClusterer#forEachCluster} sees in a single-process run.
+ *
+ * <pre>
+ *   try (ReportCoordinator coordinator = ReportCoordinator.start(input, 4, 2)) {
+ *       // start 4 workers with coordinator.url()
+ *       coordinator.awaitReport(printer);
+ *   }
+ * </pre>
+ *
+ * Shards are handed out on request, so a faster worker takes more of
+ * them. Workers read their shard from the coordinator, so only the
+ * coordinator needs the input file. A worker that fails tells the
+ * coordinator, and {@link #awaitReport} throws; a worker that disappears
+ * without a word leaves the run waiting. Either way, start the run again.
+ *
+ * SimKeys within an edit distance usually land in different partitions,
+ * so {@code interzoid.cluster.fuzzyDistance} is not supported here.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.report.host             address the coordinator and each worker listen on;
+ *                                     must be reachable from the other machines (default 127.0.0.1)
+ *   interzoid.report.port             coordinator port (default 8095)
+ *   interzoid.report.shardsPerWorker  input shards per worker (default 4)
+ * </pre>
+ */
+public final class ReportCoordinator implements Closeable {
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final int workers;
+    private final int minSize;
+    private final FileChannel input;
+    private final long[] shardStarts;
+    private final long[] shardEnds;
+    private final Path tmpDir;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final List<String> workerUrls = new ArrayList<>();
+    private final CountDownLatch registered;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final boolean[] shardDone;
+    private final CountDownLatch shardsDone;
+    private final Path[] reports;
+    private final CountDownLatch reportsIn;
+    private volatile String failure;
+
+    private ReportCoordinator(int workers, int minSize, FileChannel input, List<MappedLineReader.Chunk> shards,
+                              String host, int port) throws IOException {
+        this.workers = workers;
+        this.minSize = minSize;
+        this.input = input;
+        this.shardStarts = new long[shards.size()];
+        this.shardEnds = new long[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            shardStarts[i] = shards.get(i).start();
+            shardEnds[i] = shards.get(i).end();
+        }
+        this.tmpDir = Paths.get(System.getProperty("interzoid.sort.tmpDir", System.getProperty("java.io.tmpdir")));
+        this.registered = new CountDownLatch(workers);
+        this.shardDone = new boolean[shards.size()];
+        this.shardsDone = new CountDownLatch(shards.size());
+        this.reports = new Path[workers];
+        this.reportsIn = new CountDownLatch(workers);
+
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 256);
+        // Waiting workers hold a thread each until the step they wait for is done
+        this.executor = ReportWire.daemonPool("interzoid-report-coordinator");
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts a coordinator with the interzoid.report.* settings.
+     *
+     * @param workers number of workers that will take part
+     * @param minSize smallest cluster reported
+     */
+    public static ReportCoordinator start(Path input, int workers, int minSize) throws IOException {
+        return start(input, workers, minSize,
+            System.getProperty("interzoid.report.host", "127.0.0.1"),
+            Integer.getInteger("interzoid.report.port", 8095),
+            Integer.getInteger("interzoid.report.shardsPerWorker", 4));
+    }
+
+    public static ReportCoordinator start(Path input, int workers, int minSize, String host, int port,
+                                          int shardsPerWorker) throws IOException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1: " + workers);
+        }
+        if (shardsPerWorker < 1) {
+            throw new IllegalArgumentException("shardsPerWorker must be at least 1: " + shardsPerWorker);
+        }
+        if (Integer.getInteger("interzoid.cluster.fuzzyDistance", 0) > 0) {
+            throw new IllegalArgumentException(
+                "interzoid.cluster.fuzzyDistance is not supported when the report is split across workers");
+        }
+        List<MappedLineReader.Chunk> shards;
+        try (MappedLineReader reader = MappedLineReader.open(input)) {
+            shards = reader.split(workers * shardsPerWorker);
+        }
+        FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+        try {
+            ReportCoordinator coordinator = new ReportCoordinator(workers, minSize, channel, shards, host, port);
+            coordinator.server.start();
+            return coordinator;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * URL workers connect to, e.g. http://127.0.0.1:8095.
+     */
+    public String url() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    public int shards() {
+        return shardStarts.length;
+    }
+
+    /**
+     * Waits until every worker has sent its clusters, then calls the
+     * handler for each in SimKey order. Throws if a worker failed.
+     */
+    public void awaitReport(ClusterHandler handler) throws IOException, InterruptedException {
+        if (!await(reportsIn)) {
+            throw new IOException("Report worker failed: " + failure);
+        }
+        List<ReportReader> readers = new ArrayList<>(reports.length);
+        try {
+            PriorityQueue<ReportReader> queue = new PriorityQueue<>(Comparator.comparing(reader -> reader.simKey));
+            for (Path report : reports) {
+                ReportReader reader = new ReportReader(report);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            // Each SimKey belongs to one partition, so there are no ties to break
+            while (!queue.isEmpty()) {
+                ReportReader reader = queue.poll();
+                handler.cluster(reader.simKey, reader.inputs);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (ReportReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Stops serving and deletes the received clusters.
+     */
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        input.close();
+        synchronized (reports) {
+            for (Path report : reports) {
+                if (report != null) {
+                    Files.deleteIfExists(report);
+                }
+            }
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Worker requests, in the order a worker makes them
+    //------------------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.substring(1).split("/");
+        try {
+            switch (parts[0]) {
+                case "register":
+                    register(exchange);
+                    break;
+                case "shard":
+                    if (parts.length == 3 && "done".equals(parts[2])) {
+                        shardDone(exchange, Integer.parseInt(parts[1]));
+                    } else {
+                        nextShard(exchange);
+                    }
+                    break;
+                case "maps-done":
+                    ReportWire.readBody(exchange);
+                    waitFor(exchange, shardsDone);
+                    break;
+                case "report":
+                    receiveReport(exchange, Integer.parseInt(parts[1]));
+                    break;
+                case "fail":
+                    failure = new String(ReportWire.readBody(exchange), StandardCharsets.UTF_8);
+                    ReportWire.respond(exchange, 200, "");
+                    break;
+                default:
+                    ReportWire.readBody(exchange);
+                    ReportWire.respond(exchange, 404, "Unknown path: " + path);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            ReportWire.respond(exchange, 400, "Bad request: " + path);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ReportWire.respond(exchange, 503, "Coordinator is shutting down");
+        }
+    }
+
+    /**
+     * Body: the worker's own URL. Answers once every worker has
+     * registered, with the worker's partition, minSize and all worker URLs.
+     */
+    private void register(HttpExchange exchange) throws IOException, InterruptedException {
+        String url = new String(ReportWire.readBody(exchange), StandardCharsets.UTF_8);
+        int index;
+        synchronized (workerUrls) {
+            if (workerUrls.size() == workers) {
+                ReportWire.respond(exchange, 409, "All " + workers + " workers have already registered");
+                return;
+            }
+            workerUrls.add(url);
+            index = workerUrls.size() - 1;
+        }
+        registered.countDown();
+        if (!await(registered)) {
+            ReportWire.respond(exchange, 500, "Run failed: " + failure);
+            return;
+        }
+
+        ByteArrayOutputStream plan = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(plan)) {
+            out.writeInt(index);
+            out.writeInt(minSize);
+            out.writeInt(workers);
+            for (String workerUrl : workerUrls) {
+                ReportWire.writeString(out, workerUrl);
+            }
+        }
+        ReportWire.respond(exchange, 200, plan.toByteArray());
+    }
+
+    /**
+     * Sends the next unassigned shard's bytes, or 204 when none is left.
+     */
+    private void nextShard(HttpExchange exchange) throws IOException {
+        ReportWire.readBody(exchange);
+        int shard = nextShard.getAndIncrement();
+        if (shard >= shardStarts.length) {
+            ReportWire.respond(exchange, 204, new byte[0]);
+            return;
+        }
+        long start = shardStarts[shard];
+        long length = shardEnds[shard] - start;
+        exchange.getResponseHeaders().set("X-Shard-Index", Integer.toString(shard));
+        exchange.getResponseHeaders().set("X-Shard-Start", Long.toString(start));
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long sent = 0;
+            while (sent < length) {
+                sent += input.transferTo(start + sent, length - sent, target);
+            }
+        }
+    }
+
+    /**
+     * Called once every pair of the shard has been accepted by its reducer.
+     */
+    private void shardDone(HttpExchange exchange, int shard) throws IOException {
+        ReportWire.readBody(exchange);
+        synchronized (shardDone) {
+            if (!shardDone[shard]) {
+                shardDone[shard] = true;
+                shardsDone.countDown();
+            }
+        }
+        ReportWire.respond(exchange, 200, "");
+    }
+
+    /**
+     * Body: one partition's clusters in SimKey order, spooled to disk
+     * until every partition is in.
+     */
+    private void receiveReport(HttpExchange exchange, int partition) throws IOException {
+        if (partition < 0 || partition >= reports.length) {
+            ReportWire.readBody(exchange);
+            ReportWire.respond(exchange, 400, "No partition " + partition + " in a run of " + reports.length);
+            return;
+        }
+        Path report = Files.createTempFile(tmpDir, "interzoid-report-", ".bin");
+        try (InputStream in = exchange.getRequestBody()) {
+            Files.copy(in, report, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // E.g. the worker went away part way through the body
+            Files.deleteIfExists(report);
+            throw e;
+        }
+        synchronized (reports) {
+            if (reports[partition] != null) {
+                Files.delete(report);
+                ReportWire.respond(exchange, 409, "Partition " + partition + " was already reported");
+                return;
+            }
+            reports[partition] = report;
+        }
+        reportsIn.countDown();
+        ReportWire.respond(exchange, 200, "");
+    }
+
+    private void waitFor(HttpExchange exchange, CountDownLatch latch) throws IOException, InterruptedException {
+        if (await(latch)) {
+            ReportWire.respond(exchange, 200, "");
+        } else {
+            ReportWire.respond(exchange, 500, "Run failed: " + failure);
+        }
+    }
+
+    /**
+     * Waits for the latch; returns false if a worker fails first.
+     */
+    private boolean await(CountDownLatch latch) throws InterruptedException {
+        while (!latch.await(200, TimeUnit.MILLISECONDS)) {
+            if (failure != null) {
+                return false;
+            }
+        }
+        return failure == null;
+    }
+
+    /**
+     * Reads one partition's clusters back: SimKey, count, inputs.
+     */
+    private static final class ReportReader implements Closeable {
+        private final DataInputStream in;
+        String simKey;
+        List<String> inputs;
+
+        ReportReader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE));
+        }
+
+        boolean advance() throws IOException {
+            int keyLength = ReportWire.readIntOrEnd(in);
+            if (keyLength < 0) {
+                return false;
+            }
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            simKey = new String(key, StandardCharsets.UTF_8);
+            int count = in.readInt();
+            inputs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                inputs.add(ReportWire.readString(in));
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.interzoid.client.cluster;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Encoding shared by {@link ReportCoordinator} and {@link ReportWorker}.
+ *
+ * Strings are a length and UTF-8 bytes, as in the sort run files. A pair
+ * on its way to a reducer carries its order key (the shard's start offset
+ * plus the line's index in the shard), which is unique and follows file
+ * order. The reducer keeps the key as a fixed-width hex prefix of the
+ * input, so sorting a cluster's inputs as strings puts them back in file
+ * order.
+ */
+final class ReportWire {
+
+    static final int ORDER_PREFIX_LENGTH = 16;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ReportWire() {
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next int, or returns -1 at the end of the stream.
+     */
+    static int readIntOrEnd(DataInputStream in) throws IOException {
+        try {
+            return in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    static String withOrderPrefix(long order, String input) {
+        char[] prefix = new char[ORDER_PREFIX_LENGTH];
+        for (int i = ORDER_PREFIX_LENGTH - 1; i >= 0; i--) {
+            prefix[i] = HEX[(int) (order & 0xf)];
+            order >>>= 4;
+        }
+        return new String(prefix).concat(input);
+    }
+
+    /**
+     * Reducer that owns {@code simKey} out of {@code partitions}. String
+     * hash codes are the same in every JVM, so all workers agree.
+     */
+    static int partition(String simKey, int partitions) {
+        return Math.floorMod(simKey.hashCode(), partitions);
+    }
+
+    static ExecutorService daemonPool(String name) {
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        // With no body the stream is closed already, and even an empty write fails
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (body.length > 0) {
+                out.write(body);
+            }
+        }
+    }
+
+    static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        respond(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,366 @@
+package com.interzoid.client.cluster;
+
+import com.interzoid.client.batch.ValueResolver;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * One process of a match report run by a {@link ReportCoordinator}:
+ * looks up SimKeys for the shards it is given, and clusters the SimKeys
+ * of its own hash partition.
+ *
+ * Lines are read from each shard in order and looked up through a
+ * {@link ValueResolver}, {@code maxInFlight} at a time. Blank lines are
+ * skipped, and so are lines whose result is "". Each (SimKey, input) pair
+ * is sent to the worker owning the SimKey, in batches, and the shard is
+ * reported done once every batch has been accepted. This worker's own
+ * pairs go into an {@link ExternalSortClusterer}, so a partition larger
+ * than memory spills to interzoid.sort.tmpDir as in a single-process run.
+ *
+ * <pre>
+ *   try (ReportWorker worker = ReportWorker.start("http://coordinator:8095")) {
+ *       worker.run(resolver);
+ *   }
+ * </pre>
+ *
+ * The resolver's second argument is the line's order key, the shard's
+ * byte offset plus the line's index in the shard: it follows file order
+ * but is not a line number.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.report.host         address this worker listens on for pairs; must be
+ *                                 reachable from the other workers (default 127.0.0.1)
+ *   interzoid.report.maxInFlight  lookups in flight while a shard is read (default 64)
+ * </pre>
+ */
+public final class ReportWorker implements Closeable {
+
+    // Bytes of pairs buffered for another worker before they are sent
+    private static final int SEND_BATCH_BYTES = 1 << 18;
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final String coordinatorUrl;
+    private final HttpClient http;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ExternalSortClusterer partition = new ExternalSortClusterer();
+    private final Path tmpDir;
+    private int maxInFlight = Integer.getInteger("interzoid.report.maxInFlight", 64);
+
+    private long rows;
+    private int shards;
+
+    private ReportWorker(String coordinatorUrl, String host) throws IOException {
+        this.coordinatorUrl = coordinatorUrl.replaceFirst("/+$", "");
+        this.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.tmpDir = Paths.get(System.getProperty("interzoid.sort.tmpDir", System.getProperty("java.io.tmpdir")));
+        this.server = HttpServer.create(new InetSocketAddress(host, 0), 256);
+        this.executor = ReportWire.daemonPool("interzoid-report-worker");
+        server.createContext("/pairs", this::receivePairs);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts listening for pairs from the other workers; {@link #run}
+     * then joins the coordinator's run.
+     */
+    public static ReportWorker start(String coordinatorUrl) throws IOException {
+        ReportWorker worker = new ReportWorker(coordinatorUrl, System.getProperty("interzoid.report.host", "127.0.0.1"));
+        worker.server.start();
+        return worker;
+    }
+
+    public ReportWorker maxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * URL the other workers send pairs to.
+     */
+    public String url() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /** Non-blank lines this worker looked up. */
+    public long rows() {
+        return rows;
+    }
+
+    /** Shards this worker was given. */
+    public int shards() {
+        return shards;
+    }
+
+    /**
+     * Registers with the coordinator, works through shards until none are
+     * left, waits for the other workers to finish theirs, then sends this
+     * partition's clusters to the coordinator. On an error the coordinator
+     * is told, so the whole run stops.
+     */
+    public void run(ValueResolver resolver) throws IOException, InterruptedException {
+        try {
+            DataInputStream plan = new DataInputStream(new ByteArrayInputStream(
+                send(HttpRequest.newBuilder(uri("/register"))
+                    .POST(HttpRequest.BodyPublishers.ofString(url(), StandardCharsets.UTF_8)))));
+            int index = plan.readInt();
+            int minSize = plan.readInt();
+            String[] workerUrls = new String[plan.readInt()];
+            for (int i = 0; i < workerUrls.length; i++) {
+                workerUrls[i] = ReportWire.readString(plan);
+            }
+
+            while (true) {
+                // POST, so the client never resends it and takes a second shard
+                HttpResponse<InputStream> shard = http.send(
+                    HttpRequest.newBuilder(uri("/shard")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+                if (shard.statusCode() == 204) {
+                    shard.body().close();
+                    break;
+                }
+                if (shard.statusCode() != 200) {
+                    check(shard.statusCode(), shard.body().readAllBytes());
+                }
+                int shardIndex = Integer.parseInt(shard.headers().firstValue("X-Shard-Index").orElse(""));
+                long start = Long.parseLong(shard.headers().firstValue("X-Shard-Start").orElse(""));
+                mapShard(shard.body(), start, resolver, new Sender(workerUrls, index));
+                shards++;
+                send(HttpRequest.newBuilder(uri("/shard/" + shardIndex + "/done"))
+                    .POST(HttpRequest.BodyPublishers.noBody()));
+            }
+
+            // Once every shard is done, every pair of this partition has arrived
+            send(HttpRequest.newBuilder(uri("/maps-done")).GET());
+            sendClusters(index, minSize);
+
+        } catch (IOException | RuntimeException e) {
+            reportFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops listening and deletes this worker's spilled runs.
+     */
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        partition.close();
+    }
+
+    private void mapShard(InputStream body, long start, ValueResolver resolver, Sender sender) throws IOException {
+        // Lines and charset as in the single-process report's FileReader.readLine
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, Charset.defaultCharset()))) {
+            ArrayDeque<PendingLine> pending = new ArrayDeque<>();
+            long lineIndex = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // A line takes at least one byte, so this stays below the next shard's start
+                long order = start + lineIndex++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                rows++;
+                pending.add(new PendingLine(order, line, resolver.resolve(line, order)));
+                while (!pending.isEmpty() && (pending.peek().result.isDone() || pending.size() > maxInFlight)) {
+                    sender.add(pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                sender.add(pending.poll());
+            }
+        }
+        sender.flush();
+    }
+
+    /**
+     * Sorts each cluster's inputs back into file order and sends the
+     * clusters, in SimKey order, to the coordinator.
+     */
+    private void sendClusters(int index, int minSize) throws IOException, InterruptedException {
+        Path report = Files.createTempFile(tmpDir, "interzoid-report-", ".bin");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(report), IO_BUFFER_SIZE))) {
+                partition.forEachCluster(minSize, (simKey, inputs) -> {
+                    List<String> ordered = new ArrayList<>(inputs);
+                    Collections.sort(ordered);
+                    ReportWire.writeString(out, simKey);
+                    out.writeInt(ordered.size());
+                    for (String input : ordered) {
+                        ReportWire.writeString(out, input.substring(ReportWire.ORDER_PREFIX_LENGTH));
+                    }
+                });
+            }
+            send(HttpRequest.newBuilder(uri("/report/" + index)).POST(HttpRequest.BodyPublishers.ofFile(report)));
+        } finally {
+            Files.deleteIfExists(report);
+        }
+    }
+
+    private void receivePairs(HttpExchange exchange) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(exchange.getRequestBody()))) {
+            receive(in);
+        }
+        ReportWire.respond(exchange, 200, "");
+    }
+
+    /**
+     * Adds a batch of (order, SimKey, input) records to this partition.
+     */
+    private synchronized void receive(DataInputStream in) throws IOException {
+        int keyLength;
+        while ((keyLength = ReportWire.readIntOrEnd(in)) >= 0) {
+            byte[] key = new byte[keyLength];
+            in.readFully(key);
+            long order = in.readLong();
+            String input = ReportWire.readString(in);
+            partition.add(new String(key, StandardCharsets.UTF_8), ReportWire.withOrderPrefix(order, input));
+        }
+    }
+
+    private void reportFailure(Exception e) {
+        try {
+            send(HttpRequest.newBuilder(uri("/fail"))
+                .POST(HttpRequest.BodyPublishers.ofString(url() + ": " + e, StandardCharsets.UTF_8)));
+        } catch (IOException | RuntimeException | InterruptedException notSent) {
+            e.addSuppressed(notSent);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(coordinatorUrl + path);
+    }
+
+    private byte[] send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        check(response.statusCode(), response.body());
+        return response.body();
+    }
+
+    private static void check(int status, byte[] body) throws IOException {
+        if (status != 200) {
+            throw new IOException("HTTP " + status + ": " + new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * A line whose SimKey lookup may still be in flight.
+     */
+    private static final class PendingLine {
+        final long order;
+        final String input;
+        final CompletableFuture<String> result;
+
+        PendingLine(long order, String input, CompletableFuture<String> result) {
+            this.order = order;
+            this.input = input;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Routes the pairs of one shard to their partitions, batching the
+     * ones bound for other workers.
+     */
+    private final class Sender {
+        private final String[] workerUrls;
+        private final int self;
+        private final ByteArrayOutputStream[] batches;
+
+        Sender(String[] workerUrls, int self) {
+            this.workerUrls = workerUrls;
+            this.self = self;
+            this.batches = new ByteArrayOutputStream[workerUrls.length];
+            for (int i = 0; i < batches.length; i++) {
+                batches[i] = new ByteArrayOutputStream();
+            }
+        }
+
+        void add(PendingLine line) throws IOException {
+            String simKey;
+            try {
+                simKey = line.result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new IOException("Could not resolve \"" + line.input + "\": " + cause.getMessage(), cause);
+            }
+            if (simKey == null || simKey.isEmpty()) {
+                return;
+            }
+            int target = ReportWire.partition(simKey, workerUrls.length);
+            DataOutputStream out = new DataOutputStream(batches[target]);
+            ReportWire.writeString(out, simKey);
+            out.writeLong(line.order);
+            ReportWire.writeString(out, line.input);
+            if (batches[target].size() >= SEND_BATCH_BYTES) {
+                sendBatch(target);
+            }
+        }
+
+        void flush() throws IOException {
+            for (int target = 0; target < batches.length; target++) {
+                if (batches[target].size() > 0) {
+                    sendBatch(target);
+                }
+            }
+        }
+
+        private void sendBatch(int target) throws IOException {
+            byte[] batch = batches[target].toByteArray();
+            batches[target].reset();
+            if (target == self) {
+                receive(new DataInputStream(new ByteArrayInputStream(batch)));
+                return;
+            }
+            try {
+                HttpResponse<byte[]> response = http.send(
+                    HttpRequest.newBuilder(URI.create(workerUrls[target] + "/pairs"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(batch)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+                check(response.statusCode(), response.body());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending pairs to " + workerUrls[target], e);
+            }
+        }
+    }
+}
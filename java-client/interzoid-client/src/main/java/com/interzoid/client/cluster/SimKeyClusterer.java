@@ -0,0 +1,69 @@
+package com.interzoid.client.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Groups (SimKey, input) records by SimKey for the match reports.
+ *
+ * Implementations emit clusters in SimKey order (String.compareTo), with
+ * the inputs of each cluster in the order they were added. That is the
+ * output of sorting all records stably by SimKey, so every engine
+ * produces the same report.
+ */
+public interface SimKeyClusterer extends Closeable {
+
+    /**
+     * Adds one record. Records must be added in input order.
+     */
+    void add(String simKey, String input) throws IOException;
+
+    /**
+     * Number of records added.
+     */
+    long size();
+
+    /**
+     * Calls the handler once for each SimKey shared by at least
+     * {@code minSize} records, in SimKey order. Call once, after all records
+     * have been added.
+     */
+    void forEachCluster(int minSize, ClusterHandler handler) throws IOException;
+
+    /**
+     * Calls the handler for every distinct SimKey, including single records.
+     */
+    default void forEachCluster(ClusterHandler handler) throws IOException {
+        forEachCluster(1, handler);
+    }
+
+    /**
+     * Creates the engine selected by the {@code interzoid.cluster.mode}
+     * system property:
+     *
+     * <pre>
+     *   sort  external merge sort in bounded memory (default)
+     *   hash  single-pass hash grouping; faster, but all records stay in memory
+     * </pre>
+     *
+     * If {@code interzoid.cluster.fuzzyDistance} is above 0, the engine is
+     * wrapped in a {@link FuzzyClusterer} that also merges SimKeys within
+     * that edit distance.
+     */
+    static SimKeyClusterer fromSystemProperties() {
+        String mode = System.getProperty("interzoid.cluster.mode", "sort").trim().toLowerCase();
+        SimKeyClusterer engine;
+        switch (mode) {
+            case "sort":
+                engine = new ExternalSortClusterer();
+                break;
+            case "hash":
+                engine = new HashClusterer();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown interzoid.cluster.mode: " + mode);
+        }
+        int fuzzyDistance = Integer.getInteger("interzoid.cluster.fuzzyDistance", 0);
+        return fuzzyDistance > 0 ? new FuzzyClusterer(engine, fuzzyDistance) : engine;
+    }
+}
@@ -0,0 +1,830 @@
+package com.interzoid.client.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent SimKey -> records index, so a match report over a file that
+ * grows a little every day only handles what is new.
+ *
+ * Without it every run calls the API for every record and rebuilds every
+ * cluster, even when 99% of the file was reported yesterday. Here the
+ * report passes each input line to {@link #seen}, and adds only the lines
+ * the index does not hold yet, calling the API only for inputs it has no
+ * SimKey for. {@link #forEachChangedCluster} then emits only the clusters
+ * that are new or gained a record in this run, each with all of its
+ * records, old and new.
+ *
+ * Files in the index directory:
+ *
+ * <pre>
+ *   records.log  append-only (SimKey, input) records, each pointing back to
+ *                the previous record with the same SimKey
+ *   keys.tbl     memory-mapped hash table: SimKey -> its newest record
+ *   inputs.tbl   memory-mapped hash table: input -> its newest record and
+ *                how many records it has
+ *   reported.pos log length whose clusters have been reported
+ * </pre>
+ *
+ * Opening the index maps the tables; nothing is loaded. A lookup touches
+ * one table slot, and a changed cluster is read by following its chain
+ * through the log, so a run's disk reads grow with the records it
+ * reports rather than with the size of the index.
+ *
+ * Records carry a CRC, as in {@link com.interzoid.client.SimKeyCache}.
+ * The tables record the log length they cover and are flagged while a run
+ * updates them. If a run dies, the next open drops any torn record at the
+ * end of the log and rebuilds the tables from it, keeping every record
+ * that was written.
+ *
+ * A record counts as reported only once {@link #forEachChangedCluster}
+ * has handed its cluster out without error, which moves reported.pos up
+ * to the end of the log. Opening the index counts the SimKeys of every
+ * record past reported.pos as changed, so records kept from a run that
+ * died before its report are reported by the next run.
+ *
+ * Every line is a record, so an input repeated in the file is in its
+ * cluster as often as in a full report. A run counts how often it has
+ * seen each input: the n-th time, {@link #seen} is true if the index
+ * holds at least n records of it, so a file that only grew gets only its
+ * new lines added. Inputs are found by a 64-bit hash and then compared
+ * with the input stored in the log, so a hash collision cannot hide an
+ * input. Records are never removed; delete the directory to start over.
+ *
+ * <pre>
+ *   try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+ *       for (String input : lines) {
+ *           if (!index.seen(input)) {
+ *               String simKey = index.simKeyOf(input);
+ *               index.add(simKey != null ? simKey : lookupSimKey(input), input);
+ *           }
+ *       }
+ *       index.forEachChangedCluster(2, handler);
+ *   }
+ * </pre>
+ *
+ * Not thread-safe.
+ */
+public final class SimKeyIndex implements Closeable {
+
+    private static final String LOG_FILE_NAME = "records.log";
+    private static final String KEYS_FILE_NAME = "keys.tbl";
+    private static final String INPUTS_FILE_NAME = "inputs.tbl";
+    private static final String REPORTED_FILE_NAME = "reported.pos";
+
+    private static final int RECORD_MAGIC = 0x495A5831; // "IZX1"
+    // magic, previous offset, key length, input length
+    private static final int RECORD_HEADER_BYTES = 4 + 8 + 4 + 4;
+    private static final int MAX_FIELD_BYTES = 1 << 20;
+
+    private static final int APPEND_BUFFER_SIZE = 1 << 16;
+    // Bytes read to check a record's input against a lookup
+    private static final int PROBE_BYTES = 512;
+
+    // Separate hash seeds for SimKeys and inputs
+    private static final long KEY_SEED = 0x6b2f3c9e1d7a5b43L;
+    private static final long INPUT_SEED = 0x3a91c5e7f20d4b68L;
+
+    // keys.tbl slot: long hash, long newest record
+    private static final int KEY_SLOT_BYTES = 16;
+    // inputs.tbl slot: long hash, long newest record, int records, int run, int times seen in that run
+    private static final int INPUT_SLOT_BYTES = 32;
+    private static final int NEWEST_AT = 8;
+    private static final int COUNT_AT = 16;
+    private static final int RUN_AT = 20;
+    private static final int SEEN_AT = 24;
+
+    private final Path reportedFile;
+    private final FileChannel log;
+    private final MappedTable keys;
+    private final MappedTable inputs;
+
+    private final ByteBuffer appendBuffer = ByteBuffer.allocate(APPEND_BUFFER_SIZE);
+    private final ByteBuffer probeBuffer = ByteBuffer.allocate(PROBE_BYTES);
+    private long logLength;
+    private boolean updating;
+    // Tells this run's seen counts from those left by earlier runs; 0 while rebuilding
+    private final int run;
+
+    // SimKeys that gained a record past reported.pos
+    private final Set<String> changed = new HashSet<>();
+
+    private SimKeyIndex(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        this.log = FileChannel.open(dir.resolve(LOG_FILE_NAME),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.keys = new MappedTable(dir.resolve(KEYS_FILE_NAME), KEY_SLOT_BYTES);
+        this.inputs = new MappedTable(dir.resolve(INPUTS_FILE_NAME), INPUT_SLOT_BYTES);
+        this.logLength = log.size();
+        this.reportedFile = dir.resolve(REPORTED_FILE_NAME);
+
+        if (keys.isStale(logLength) || inputs.isStale(logLength)) {
+            rebuild();
+        }
+        this.run = inputs.nextRun();
+        readUnreported(Math.min(readReportedLength(), logLength));
+    }
+
+    /**
+     * Opens the index in {@code dir}, creating it if needed.
+     */
+    public static SimKeyIndex open(Path dir) throws IOException {
+        return new SimKeyIndex(dir);
+    }
+
+    /**
+     * Counts one more line of this input in this run. True if the index
+     * already holds a record for it: the n-th time a run sees an input,
+     * true if the index holds at least n records of it. A line for which
+     * this is false is not in the index yet and should be {@link #add added}.
+     */
+    public boolean seen(String input) throws IOException {
+        int at = findInput(input.getBytes(StandardCharsets.UTF_8), hash(input, INPUT_SEED));
+        if (at < 0) {
+            return false;
+        }
+        int seen = seenThisRun(at) + 1;
+        inputs.putInt(at + RUN_AT, run);
+        inputs.putInt(at + SEEN_AT, seen);
+        return seen <= inputs.getInt(at + COUNT_AT);
+    }
+
+    /**
+     * The SimKey indexed for this input, or null if it has none, so a line
+     * repeating an indexed input needs no lookup.
+     */
+    public String simKeyOf(String input) throws IOException {
+        int at = findInput(input.getBytes(StandardCharsets.UTF_8), hash(input, INPUT_SEED));
+        if (at < 0) {
+            return null;
+        }
+        return readRecord(inputs.getLong(at + NEWEST_AT))[0];
+    }
+
+    /**
+     * Indexes one record, a line of the input with its SimKey. Lines for
+     * which {@link #seen} was not called count as seen by this run.
+     */
+    public void add(String simKey, String input) throws IOException {
+        if (!updating) {
+            keys.markUpdating();
+            inputs.markUpdating();
+            updating = true;
+        }
+        long keyHash = hash(simKey, KEY_SEED);
+        long offset = append(keys.get(keyHash), simKey, input);
+        keys.put(keyHash, offset);
+        countInput(input.getBytes(StandardCharsets.UTF_8), hash(input, INPUT_SEED), offset);
+        changed.add(simKey);
+    }
+
+    /**
+     * Number of distinct inputs in the index.
+     */
+    public long size() {
+        return inputs.size();
+    }
+
+    /**
+     * Number of SimKeys that gained a record since the changed clusters
+     * were last reported, by this run or an earlier one.
+     */
+    public int changedKeys() {
+        return changed.size();
+    }
+
+    /**
+     * Calls the handler for each SimKey that gained a record since the
+     * last report and now has at least {@code minSize} records, in SimKey
+     * order, with all of its records in the order they were indexed. Saves
+     * the index first. If the handler throws, nothing is marked reported
+     * and the same clusters are emitted again by the next call or run.
+     */
+    public void forEachChangedCluster(int minSize, ClusterHandler handler) throws IOException {
+        commit();
+        long reportedLength = logLength;
+        String[] simKeys = changed.toArray(new String[0]);
+        Arrays.sort(simKeys);
+        for (String simKey : simKeys) {
+            List<String> records = readCluster(simKey);
+            if (records.size() >= minSize) {
+                handler.cluster(simKey, records);
+            }
+        }
+        writeReportedLength(reportedLength);
+        // Not removeAll: with a list argument it is quadratic
+        for (String simKey : simKeys) {
+            changed.remove(simKey);
+        }
+    }
+
+    /**
+     * Writes buffered records and syncs the log and tables to disk.
+     */
+    public void commit() throws IOException {
+        flushAppends();
+        if (!updating) {
+            return;
+        }
+        log.force(false);
+        keys.commit(logLength);
+        inputs.commit(logLength);
+        updating = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commit();
+        } finally {
+            try {
+                keys.close();
+                inputs.close();
+            } finally {
+                log.close();
+            }
+        }
+    }
+
+    //------------------------------------------------------------------
+    // Log record format:
+    //   int magic, long offset of the previous record with this SimKey (-1 if none),
+    //   int keyLength, int inputLength, key bytes (UTF-8), input bytes (UTF-8),
+    //   int crc32 over everything after the magic
+    //------------------------------------------------------------------
+
+    private long append(long previous, String simKey, String input) throws IOException {
+        byte[] keyBytes = simKey.getBytes(StandardCharsets.UTF_8);
+        byte[] inputBytes = input.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_FIELD_BYTES || inputBytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("SimKey or input longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length + inputBytes.length + 4);
+        record.putInt(RECORD_MAGIC).putLong(previous).putInt(keyBytes.length).putInt(inputBytes.length);
+        record.put(keyBytes).put(inputBytes);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.position() - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+
+        long offset = logLength + appendBuffer.position();
+        if (record.remaining() > appendBuffer.remaining()) {
+            flushAppends();
+        }
+        if (record.remaining() > appendBuffer.remaining()) {
+            writeFully(record, logLength);
+            logLength += record.limit();
+        } else {
+            appendBuffer.put(record);
+        }
+        return offset;
+    }
+
+    private void flushAppends() throws IOException {
+        if (appendBuffer.position() == 0) {
+            return;
+        }
+        appendBuffer.flip();
+        int length = appendBuffer.remaining();
+        writeFully(appendBuffer, logLength);
+        logLength += length;
+        appendBuffer.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += log.write(buffer, position);
+        }
+    }
+
+    /**
+     * Slot of the input in the inputs table, or -1. Each slot whose hash
+     * matches is checked against the input of its newest record.
+     */
+    private int findInput(byte[] inputBytes, long inputHash) throws IOException {
+        int at = inputs.find(inputHash);
+        while (at >= 0 && !recordHasInput(inputs.getLong(at + NEWEST_AT), inputBytes)) {
+            at = inputs.findNext(at, inputHash);
+        }
+        return at;
+    }
+
+    /**
+     * Makes the record at {@code offset} the newest of its input and
+     * counts it, adding the input to the inputs table if it is new.
+     */
+    private void countInput(byte[] inputBytes, long inputHash, long offset) throws IOException {
+        int at = findInput(inputBytes, inputHash);
+        if (at >= 0) {
+            int count = inputs.getInt(at + COUNT_AT) + 1;
+            inputs.putLong(at + NEWEST_AT, offset);
+            inputs.putInt(at + COUNT_AT, count);
+            inputs.putInt(at + SEEN_AT, Math.max(seenThisRun(at), count));
+            inputs.putInt(at + RUN_AT, run);
+            return;
+        }
+        at = inputs.claim(inputHash);
+        inputs.putLong(at + NEWEST_AT, offset);
+        inputs.putInt(at + COUNT_AT, 1);
+        inputs.putInt(at + RUN_AT, run);
+        inputs.putInt(at + SEEN_AT, 1);
+        inputs.growIfFull();
+    }
+
+    private int seenThisRun(int at) {
+        return inputs.getInt(at + RUN_AT) == run ? inputs.getInt(at + SEEN_AT) : 0;
+    }
+
+    /**
+     * True if the record at {@code offset} holds this input. Reads the
+     * first bytes of the record in one go, which for most records covers
+     * the whole of it.
+     */
+    private boolean recordHasInput(long offset, byte[] inputBytes) throws IOException {
+        long end = logLength + appendBuffer.position();
+        probeBuffer.clear().limit((int) Math.min(probeBuffer.capacity(), end - offset));
+        readFully(probeBuffer, offset);
+        probeBuffer.flip();
+        if (probeBuffer.getInt() != RECORD_MAGIC) {
+            throw new IOException("Corrupt SimKey index record at offset " + offset);
+        }
+        probeBuffer.getLong();
+        int keyLength = probeBuffer.getInt();
+        int inputLength = probeBuffer.getInt();
+        if (inputLength != inputBytes.length) {
+            return false;
+        }
+        int inputAt = RECORD_HEADER_BYTES + keyLength;
+        if (inputAt + inputLength <= probeBuffer.limit()) {
+            return Arrays.equals(probeBuffer.array(), inputAt, inputAt + inputLength, inputBytes, 0, inputLength);
+        }
+        ByteBuffer stored = ByteBuffer.allocate(inputLength);
+        readFully(stored, offset + inputAt);
+        return Arrays.equals(stored.array(), inputBytes);
+    }
+
+    /**
+     * The SimKey and input of the record at {@code offset}.
+     */
+    private String[] readRecord(long offset) throws IOException {
+        ByteBuffer header = readHeader(offset);
+        header.getLong();
+        int keyLength = header.getInt();
+        int inputLength = header.getInt();
+        ByteBuffer body = ByteBuffer.allocate(keyLength + inputLength);
+        readFully(body, offset + RECORD_HEADER_BYTES);
+        return new String[] {
+            new String(body.array(), 0, keyLength, StandardCharsets.UTF_8),
+            new String(body.array(), keyLength, inputLength, StandardCharsets.UTF_8)
+        };
+    }
+
+    /**
+     * The header of the record at {@code offset}, positioned after the magic.
+     */
+    private ByteBuffer readHeader(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(header, offset);
+        header.flip();
+        if (header.getInt() != RECORD_MAGIC) {
+            throw new IOException("Corrupt SimKey index record at offset " + offset);
+        }
+        return header;
+    }
+
+    /**
+     * Adds the SimKeys of the records from {@code offset} to the end of
+     * the log to the changed set. The log up to logLength holds only
+     * whole records here.
+     */
+    private void readUnreported(long offset) throws IOException {
+        while (offset < logLength) {
+            ByteBuffer header = readHeader(offset);
+            header.getLong();
+            int keyLength = header.getInt();
+            int inputLength = header.getInt();
+            ByteBuffer key = ByteBuffer.allocate(keyLength);
+            readFully(key, offset + RECORD_HEADER_BYTES);
+            changed.add(new String(key.array(), StandardCharsets.UTF_8));
+            offset += RECORD_HEADER_BYTES + keyLength + inputLength + 4;
+        }
+    }
+
+    /**
+     * Log length already reported, or 0 (report everything) if no report
+     * has been saved.
+     */
+    private long readReportedLength() throws IOException {
+        if (!Files.exists(reportedFile) || Files.size(reportedFile) != Long.BYTES) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(reportedFile)).getLong();
+    }
+
+    /**
+     * Saves the reported log length: written next to reported.pos, synced
+     * and moved into place, so a crash leaves the old or the new value.
+     */
+    private void writeReportedLength(long length) throws IOException {
+        Path next = reportedFile.resolveSibling(REPORTED_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(next, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(Long.BYTES).putLong(0, length);
+            while (value.hasRemaining()) {
+                channel.write(value);
+            }
+            channel.force(false);
+        }
+        Files.move(next, reportedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Follows the chain of one SimKey back through the log. Keys whose
+     * hashes collide share a chain, so records are matched by key.
+     */
+    private List<String> readCluster(String simKey) throws IOException {
+        List<String> records = new ArrayList<>();
+        byte[] keyBytes = simKey.getBytes(StandardCharsets.UTF_8);
+        for (long offset = keys.get(hash(simKey, KEY_SEED)); offset >= 0; ) {
+            ByteBuffer header = readHeader(offset);
+            long previous = header.getLong();
+            int keyLength = header.getInt();
+            int inputLength = header.getInt();
+            ByteBuffer body = ByteBuffer.allocate(keyLength + inputLength);
+            readFully(body, offset + RECORD_HEADER_BYTES);
+            if (keyLength == keyBytes.length
+                    && Arrays.equals(body.array(), 0, keyLength, keyBytes, 0, keyLength)) {
+                records.add(new String(body.array(), keyLength, inputLength, StandardCharsets.UTF_8));
+            }
+            offset = previous;
+        }
+        Collections.reverse(records);
+        return records;
+    }
+
+    /**
+     * Reads from the log, continuing into the append buffer for records
+     * not yet written to it.
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining() && position < logLength) {
+            int n = log.read(buffer, position);
+            if (n < 0) {
+                throw new EOFException("SimKey index log ends early at offset " + position);
+            }
+            position += n;
+        }
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+        if (buffer.remaining() > appendBuffer.position() - (position - logLength)) {
+            throw new EOFException("SimKey index log ends early at offset " + position);
+        }
+        buffer.put(appendBuffer.array(), (int) (position - logLength), buffer.remaining());
+    }
+
+    /**
+     * Rebuilds both tables from the log after a run that did not finish.
+     * A torn or corrupt record ends the scan and the log is truncated back
+     * to the last good record.
+     */
+    private void rebuild() throws IOException {
+        keys.clear();
+        inputs.clear();
+        keys.markUpdating();
+        inputs.markUpdating();
+
+        long validLength = 0;
+        log.position(0);
+        InputStream raw = Channels.newInputStream(log);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, APPEND_BUFFER_SIZE));
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[RECORD_HEADER_BYTES - 4];
+        while (true) {
+            try {
+                if (in.readInt() != RECORD_MAGIC) {
+                    break;
+                }
+                in.readFully(header);
+                ByteBuffer fields = ByteBuffer.wrap(header);
+                fields.getLong();
+                int keyLength = fields.getInt();
+                int inputLength = fields.getInt();
+                if (keyLength < 0 || inputLength < 0 || keyLength > MAX_FIELD_BYTES || inputLength > MAX_FIELD_BYTES) {
+                    break;
+                }
+                byte[] body = new byte[keyLength + inputLength];
+                in.readFully(body);
+                int storedCrc = in.readInt();
+
+                crc.reset();
+                crc.update(header);
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    break;
+                }
+
+                keys.put(hash(new String(body, 0, keyLength, StandardCharsets.UTF_8), KEY_SEED), validLength);
+                String input = new String(body, keyLength, inputLength, StandardCharsets.UTF_8);
+                countInput(Arrays.copyOfRange(body, keyLength, body.length), hash(input, INPUT_SEED), validLength);
+                validLength += RECORD_HEADER_BYTES + keyLength + inputLength + 4;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+
+        // Not closing the streams: that would close the log channel
+        if (validLength < log.size()) {
+            log.truncate(validLength);
+        }
+        logLength = validLength;
+        log.force(false);
+        keys.commit(logLength);
+        inputs.commit(logLength);
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, then a murmur3 finalizer. Never 0,
+     * which marks an empty table slot.
+     */
+    private static long hash(String value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Open-addressing hash table of fixed-size slots in a memory-mapped
+     * file, with linear probing. Each slot starts with a 64-bit hash, 0 for
+     * an empty slot; the rest is the owner's. Grows by writing a table of
+     * twice the size next to it and moving it into place.
+     *
+     * Header: long magic, long capacity, long size, long log length covered,
+     * int updating flag, int run counter. Then capacity slots.
+     */
+    private static final class MappedTable implements Closeable {
+
+        private static final long TABLE_MAGIC = 0x495A58544231L; // "IZXTB1"
+        private static final int HEADER_BYTES = 64;
+        private static final int INITIAL_CAPACITY = 1 << 12;
+
+        private static final int CAPACITY_AT = 8;
+        private static final int SIZE_AT = 16;
+        private static final int LOG_LENGTH_AT = 24;
+        private static final int UPDATING_AT = 32;
+        private static final int RUN_COUNTER_AT = 36;
+
+        private final Path file;
+        private final int slotBytes;
+        // Slots a single mapping can hold
+        private final int maxCapacity;
+        private MappedByteBuffer map;
+        private int capacity;
+        private long size;
+
+        MappedTable(Path file, int slotBytes) throws IOException {
+            this.file = file;
+            this.slotBytes = slotBytes;
+            this.maxCapacity = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_BYTES) / slotBytes);
+            if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+                map(file);
+                if (map.getLong(0) == TABLE_MAGIC
+                        && Files.size(file) == HEADER_BYTES + map.getLong(CAPACITY_AT) * slotBytes) {
+                    capacity = (int) map.getLong(CAPACITY_AT);
+                    size = map.getLong(SIZE_AT);
+                    return;
+                }
+            }
+            create(file, INITIAL_CAPACITY);
+            map(file);
+            capacity = INITIAL_CAPACITY;
+            // A new table covers no log yet; a longer log means rebuild
+            map.putLong(LOG_LENGTH_AT, 0);
+        }
+
+        boolean isStale(long logLength) {
+            return map.getInt(UPDATING_AT) != 0 || map.getLong(LOG_LENGTH_AT) != logLength;
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Counts one more open of the table and returns the count. Saved
+         * at once, so no two runs get the same number.
+         */
+        int nextRun() {
+            int run = map.getInt(RUN_COUNTER_AT) + 1;
+            map.putInt(RUN_COUNTER_AT, run);
+            map.force();
+            return run;
+        }
+
+        /**
+         * The long after the hash in the first slot holding the hash, or -1.
+         */
+        long get(long hash) {
+            int at = find(hash);
+            return at < 0 ? -1 : map.getLong(at + 8);
+        }
+
+        /**
+         * Stores the long after the hash in the first slot holding the
+         * hash, claiming a slot if there is none.
+         */
+        void put(long hash, long value) throws IOException {
+            int at = find(hash);
+            if (at < 0) {
+                at = claim(hash);
+                map.putLong(at + 8, value);
+                growIfFull();
+            } else {
+                map.putLong(at + 8, value);
+            }
+        }
+
+        /**
+         * Position of the first slot holding the hash, or -1.
+         */
+        int find(long hash) {
+            int mask = capacity - 1;
+            return probe(hash, slotOf(hash, mask), mask);
+        }
+
+        /**
+         * Position of the next slot after {@code at} holding the hash, or -1,
+         * for hashes shared by more than one entry.
+         */
+        int findNext(int at, long hash) {
+            int mask = capacity - 1;
+            return probe(hash, ((at - HEADER_BYTES) / slotBytes + 1) & mask, mask);
+        }
+
+        private int probe(long hash, int slot, int mask) {
+            for (; ; slot = (slot + 1) & mask) {
+                int at = HEADER_BYTES + slot * slotBytes;
+                long stored = map.getLong(at);
+                if (stored == 0) {
+                    return -1;
+                }
+                if (stored == hash) {
+                    return at;
+                }
+            }
+        }
+
+        /**
+         * Takes the first empty slot on the hash's probe path and returns
+         * its position. The caller fills in the slot, then calls
+         * {@link #growIfFull}, which moves every slot.
+         */
+        int claim(long hash) {
+            int mask = capacity - 1;
+            for (int slot = slotOf(hash, mask); ; slot = (slot + 1) & mask) {
+                int at = HEADER_BYTES + slot * slotBytes;
+                if (map.getLong(at) == 0) {
+                    map.putLong(at, hash);
+                    size++;
+                    return at;
+                }
+            }
+        }
+
+        void growIfFull() throws IOException {
+            if (size * 2 > capacity) {
+                grow();
+            }
+        }
+
+        long getLong(int at) {
+            return map.getLong(at);
+        }
+
+        int getInt(int at) {
+            return map.getInt(at);
+        }
+
+        void putLong(int at, long value) {
+            map.putLong(at, value);
+        }
+
+        void putInt(int at, int value) {
+            map.putInt(at, value);
+        }
+
+        void markUpdating() {
+            map.putInt(UPDATING_AT, 1);
+            map.force();
+        }
+
+        void commit(long logLength) {
+            map.putLong(SIZE_AT, size);
+            map.putLong(LOG_LENGTH_AT, logLength);
+            map.force();
+            map.putInt(UPDATING_AT, 0);
+            map.force();
+        }
+
+        void clear() throws IOException {
+            create(file, INITIAL_CAPACITY);
+            map(file);
+            capacity = INITIAL_CAPACITY;
+            size = 0;
+        }
+
+        @Override
+        public void close() {
+            map.force();
+            map = null;
+        }
+
+        private void grow() throws IOException {
+            if (capacity == maxCapacity) {
+                throw new IllegalStateException("SimKey index is full: " + size + " entries");
+            }
+            int newCapacity = capacity * 2;
+            Path grown = file.resolveSibling(file.getFileName() + ".grow");
+            create(grown, newCapacity);
+            try (FileChannel channel = FileChannel.open(grown, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) newCapacity * slotBytes);
+                int mask = newCapacity - 1;
+                for (int slot = 0; slot < capacity; slot++) {
+                    int at = HEADER_BYTES + slot * slotBytes;
+                    long hash = map.getLong(at);
+                    if (hash == 0) {
+                        continue;
+                    }
+                    int to = slotOf(hash, mask);
+                    while (target.getLong(HEADER_BYTES + to * slotBytes) != 0) {
+                        to = (to + 1) & mask;
+                    }
+                    for (int field = 0; field < slotBytes; field += 8) {
+                        target.putLong(HEADER_BYTES + to * slotBytes + field, map.getLong(at + field));
+                    }
+                }
+                target.putLong(SIZE_AT, size);
+                target.putLong(LOG_LENGTH_AT, map.getLong(LOG_LENGTH_AT));
+                target.putInt(UPDATING_AT, map.getInt(UPDATING_AT));
+                target.putInt(RUN_COUNTER_AT, map.getInt(RUN_COUNTER_AT));
+                target.force();
+            }
+            Files.move(grown, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(file);
+            capacity = newCapacity;
+        }
+
+        private void map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+        }
+
+        /**
+         * Writes an empty table file of the given capacity.
+         */
+        private void create(Path path, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putLong(TABLE_MAGIC).putLong(capacity);
+                header.flip();
+                channel.write(header, 0);
+                // Extending the file leaves the slots zero-filled
+                channel.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) capacity * slotBytes - 1);
+            }
+        }
+
+        private static int slotOf(long hash, int mask) {
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
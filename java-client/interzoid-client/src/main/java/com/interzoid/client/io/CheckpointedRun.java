@@ -0,0 +1,351 @@
+package com.interzoid.client.io;
+
+import com.interzoid.client.metrics.Metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Line-by-line pass over an input file that writes an output file and can
+ * be resumed after a crash.
+ *
+ * A run over millions of rows that dies near the end would otherwise have
+ * to start again from row one, paying for every API call a second time.
+ * Here the output is flushed and fsynced every {@code checkpointRows} rows
+ * (or {@code checkpointSeconds}), and then a small checkpoint file next to
+ * the output records the input byte offset, the output length and the
+ * line number reached. When the run is opened again and the checkpoint is
+ * there, the output is truncated to the recorded length, the input is
+ * read from the recorded offset, and processing continues. At most one
+ * checkpoint interval of rows is processed twice, and none is written twice.
+ *
+ * <pre>
+ *   try (CheckpointedRun run = CheckpointedRun.open(input, output)) {
+ *       String line;
+ *       while ((line = run.readLine()) != null) {
+ *           run.writeLine(process(line));
+ *       }
+ *       run.finish();
+ *   }
+ * </pre>
+ *
+ * A line counts as done when the next one is read, so everything written
+ * for a line must be written before calling {@link #readLine()} again.
+ * {@link #finish()} writes the rest and deletes the checkpoint; without it
+ * (an exception, a kill) the checkpoint stays and the next open resumes.
+ * To start over, delete the checkpoint file.
+ *
+ * Input is read as UTF-8; lines end with \n or \r\n. Output lines end
+ * with the platform line separator, as with PrintWriter.println. The
+ * checkpoint also records the input's size and modification time, and a
+ * run refuses to resume over an input file that has changed since.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.checkpoint.rows     rows between checkpoints (default 10000)
+ *   interzoid.checkpoint.seconds  seconds between checkpoints (default 10)
+ * </pre>
+ */
+public final class CheckpointedRun implements Closeable {
+
+    /** Suffix appended to the output file name to name its checkpoint. */
+    public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Path input;
+    private final Path checkpoint;
+    private final FileChannel in;
+    private final FileChannel out;
+    private final int checkpointRows;
+    private final long checkpointNanos;
+    private final long inputSize;
+    private final long inputModified;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final LineBytes line = new LineBytes();
+    private final LineBytes pendingOutput = new LineBytes();
+
+    // Input offset just past the last line returned, and its line number
+    private long inputOffset;
+    private long lineNumber;
+
+    // Output bytes on disk plus pending bytes; grows as rows are written
+    private long outputLength;
+
+    private final long resumedFromLine;
+    // -1 until the first line is read: that call marks no earlier line done
+    private int rowsSinceCheckpoint = -1;
+    private long lastCheckpointNanos;
+    private boolean finished;
+
+    private CheckpointedRun(Path input, Path output, int checkpointRows, Duration checkpointInterval)
+            throws IOException {
+        if (checkpointRows < 1) {
+            throw new IllegalArgumentException("checkpointRows must be at least 1: " + checkpointRows);
+        }
+        this.input = input;
+        this.checkpoint = output.resolveSibling(output.getFileName() + CHECKPOINT_SUFFIX);
+        this.checkpointRows = checkpointRows;
+        this.checkpointNanos = checkpointInterval.toNanos();
+        this.inputSize = Files.size(input);
+        this.inputModified = Files.getLastModifiedTime(input).toMillis();
+
+        Properties saved = readCheckpoint();
+        this.in = FileChannel.open(input, StandardOpenOption.READ);
+        FileChannel opened = null;
+        try {
+            if (saved == null) {
+                opened = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            } else {
+                opened = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            }
+            this.out = opened;
+            if (saved != null) {
+                restore(saved, output);
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            if (opened != null) {
+                opened.close();
+            }
+            throw e;
+        }
+        this.resumedFromLine = lineNumber;
+        readBuffer.flip();
+        lastCheckpointNanos = System.nanoTime();
+    }
+
+    /**
+     * Opens a run using the checkpoint interval from system properties.
+     * Resumes if a checkpoint for {@code output} exists, otherwise starts
+     * from the beginning and truncates {@code output}.
+     */
+    public static CheckpointedRun open(Path input, Path output) throws IOException {
+        int rows = Integer.getInteger("interzoid.checkpoint.rows", 10_000);
+        Duration interval = Duration.ofSeconds(Long.getLong("interzoid.checkpoint.seconds", 10));
+        return open(input, output, rows, interval);
+    }
+
+    public static CheckpointedRun open(Path input, Path output, int checkpointRows, Duration checkpointInterval)
+            throws IOException {
+        return new CheckpointedRun(input, output, checkpointRows, checkpointInterval);
+    }
+
+    /**
+     * True if this run continued from a checkpoint.
+     */
+    public boolean isResumed() {
+        return resumedFromLine > 0;
+    }
+
+    /**
+     * Line number the run resumed after (0 for a fresh run).
+     */
+    public long resumedFromLine() {
+        return resumedFromLine;
+    }
+
+    /**
+     * Line number of the line last returned by {@link #readLine()}, counting
+     * from 1 at the start of the input (also after a resume).
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Marks the previous line done and returns the next one, without its
+     * line terminator, or null at the end of the input.
+     */
+    public String readLine() throws IOException {
+        rowsSinceCheckpoint++;
+        if (rowsSinceCheckpoint >= checkpointRows
+                || System.nanoTime() - lastCheckpointNanos >= checkpointNanos) {
+            checkpoint();
+        }
+
+        line.reset();
+        boolean found = false;
+        while (!found) {
+            if (!readBuffer.hasRemaining()) {
+                readBuffer.clear();
+                int n = in.read(readBuffer);
+                readBuffer.flip();
+                if (n <= 0) {
+                    if (line.size() == 0) {
+                        return null;
+                    }
+                    break; // last line without a terminator
+                }
+            }
+            byte[] array = readBuffer.array();
+            int start = readBuffer.position();
+            int limit = readBuffer.limit();
+            int i = start;
+            while (i < limit && array[i] != '\n') {
+                i++;
+            }
+            found = i < limit;
+            line.write(array, start, i - start);
+            int consumed = (found ? i + 1 : i) - start;
+            readBuffer.position(start + consumed);
+            inputOffset += consumed;
+        }
+
+        lineNumber++;
+        int length = line.size();
+        if (length > 0 && line.bytes()[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line.bytes(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends one output line. Buffered; it reaches the disk at the next checkpoint.
+     */
+    public void writeLine(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        pendingOutput.write(bytes, 0, bytes.length);
+        pendingOutput.write(LINE_SEPARATOR, 0, LINE_SEPARATOR.length);
+        outputLength += bytes.length + LINE_SEPARATOR.length;
+        if (pendingOutput.size() >= WRITE_BUFFER_SIZE) {
+            flushOutput();
+        }
+        Metrics.shared().addRows(1);
+    }
+
+    /**
+     * Writes any pending output, fsyncs it, and records that every line
+     * read so far is done.
+     */
+    public void checkpoint() throws IOException {
+        flushOutput();
+        out.force(false);
+
+        Properties state = new Properties();
+        state.setProperty("inputOffset", Long.toString(inputOffset));
+        state.setProperty("outputLength", Long.toString(outputLength));
+        state.setProperty("lineNumber", Long.toString(lineNumber));
+        state.setProperty("inputSize", Long.toString(inputSize));
+        state.setProperty("inputModified", Long.toString(inputModified));
+
+        // Write beside the real file and rename, so a crash mid-write leaves the old checkpoint intact
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            state.store(Channels.newOutputStream(channel), "Progress of " + input.getFileName() + "; delete this file to start over");
+            channel.force(false);
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        rowsSinceCheckpoint = 0;
+        lastCheckpointNanos = System.nanoTime();
+    }
+
+    /**
+     * Writes and fsyncs the rest of the output and deletes the checkpoint:
+     * the run is complete and will not be resumed.
+     */
+    public void finish() throws IOException {
+        flushOutput();
+        out.force(false);
+        Files.deleteIfExists(checkpoint);
+        finished = true;
+    }
+
+    /**
+     * Closes both files. Without {@link #finish()}, pending output is
+     * discarded and the last checkpoint is kept for the next run.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            out.close();
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    private void flushOutput() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(pendingOutput.bytes(), 0, pendingOutput.size());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        pendingOutput.reset();
+    }
+
+    private Properties readCheckpoint() throws IOException {
+        Properties state = new Properties();
+        try (InputStream stream = Files.newInputStream(checkpoint)) {
+            state.load(stream);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        return state;
+    }
+
+    private void restore(Properties saved, Path output) throws IOException {
+        long savedOffset = savedLong(saved, "inputOffset");
+        long savedLength = savedLong(saved, "outputLength");
+        if (savedLong(saved, "inputSize") != inputSize || savedLong(saved, "inputModified") != inputModified) {
+            throw new IOException(input + " has changed since the checkpoint was written; delete "
+                + checkpoint + " to start over");
+        }
+        if (out.size() < savedLength) {
+            throw new IOException(output + " is shorter than the checkpoint says (" + out.size()
+                + " < " + savedLength + " bytes); delete " + checkpoint + " to start over");
+        }
+
+        // Rows written after the checkpoint are dropped; they are processed again
+        out.truncate(savedLength);
+        out.position(savedLength);
+        in.position(savedOffset);
+        inputOffset = savedOffset;
+        outputLength = savedLength;
+        lineNumber = savedLong(saved, "lineNumber");
+    }
+
+    private long savedLong(Properties saved, String key) throws IOException {
+        String value = saved.getProperty(key);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Checkpoint " + checkpoint + " has no valid " + key + ": " + value);
+        }
+    }
+
+    /**
+     * Growable byte buffer that exposes its array.
+     */
+    private static final class LineBytes extends ByteArrayOutputStream {
+        LineBytes() {
+            super(256);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
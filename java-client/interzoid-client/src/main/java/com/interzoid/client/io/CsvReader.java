@@ -0,0 +1,377 @@
+package com.interzoid.client.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for CSV (RFC 4180) and TSV files.
+ *
+ * The append programs took one value per line, so multi-column extracts
+ * had to be cut apart before a run and pasted back together after it.
+ * This reader parses records one at a time, and a record keeps its raw
+ * text next to its fields. A program can select one column by header
+ * name or number, look it up, and write the record through unchanged
+ * with a result column appended:
+ *
+ * <pre>
+ *   try (CsvReader reader = CsvReader.open(path, ',', true)) {
+ *       int column = reader.column("Company");          // or "3"
+ *       out.write(reader.header().raw() + ",SimKey");
+ *       CsvReader.Record row;
+ *       while ((row = reader.next()) != null) {
+ *           String simKey = lookup(row.get(column));
+ *           out.write(row.raw() + "," + CsvReader.escape(simKey, ','));
+ *       }
+ *   }
+ * </pre>
+ *
+ * Fields are only turned into Strings when {@link Record#get} asks for
+ * them, so a 40-column row costs one String for the column looked up and
+ * one for the raw text.
+ *
+ * CSV: a field that starts with a double quote may contain delimiters,
+ * line breaks and doubled quotes ({@code ""}). A quote anywhere else is
+ * an ordinary character. TSV has no quoting, as in the Full Dataset API
+ * results. Records end with \n, \r\n or \r outside quotes. Input is
+ * decoded as UTF-8; malformed bytes become U+FFFD.
+ */
+public final class CsvReader implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final Reader in;
+    private final char delimiter;
+    private final boolean quoting;
+    private final long sourceSize;
+
+    private final char[] buffer = new char[READ_BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    // Physical line the next record starts on
+    private long nextLine = 1;
+    private long recordCount;
+
+    private final Record record = new Record();
+    private final Record header;
+
+    private CsvReader(Reader in, char delimiter, boolean hasHeader, long sourceSize) throws IOException {
+        this.in = in;
+        this.delimiter = delimiter;
+        this.quoting = delimiter != '\t';
+        this.sourceSize = sourceSize;
+        this.header = hasHeader && parse(record) ? record.copy() : null;
+    }
+
+    /**
+     * Opens a UTF-8 file.
+     *
+     * @param delimiter ',' for CSV or '\t' for TSV (see {@link #delimiterFor})
+     * @param hasHeader whether the first record is a header
+     */
+    public static CsvReader open(Path file, char delimiter, boolean hasHeader) throws IOException {
+        Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8);
+        try {
+            return new CsvReader(reader, delimiter, hasHeader, Files.size(file));
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    public static CsvReader of(Reader reader, char delimiter, boolean hasHeader) throws IOException {
+        return new CsvReader(reader, delimiter, hasHeader, -1);
+    }
+
+    /**
+     * Delimiter for a file type as the Full Dataset API names them: "tsv"
+     * is a tab, anything else a comma.
+     */
+    public static char delimiterFor(String fileType) {
+        return "tsv".equalsIgnoreCase(fileType) ? '\t' : ',';
+    }
+
+    public char delimiter() {
+        return delimiter;
+    }
+
+    /**
+     * Size of the file being read, or -1 if reading from a Reader.
+     */
+    public long sourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * The header record, or null if the file has none (or is empty).
+     */
+    public Record header() {
+        return header;
+    }
+
+    /**
+     * Index of a column, from a header name (compared ignoring case and
+     * surrounding spaces) or a 1-based column number.
+     *
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int column(String nameOrNumber) {
+        String wanted = nameOrNumber.trim();
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(wanted)) {
+                    return i;
+                }
+            }
+        }
+        try {
+            int number = Integer.parseInt(wanted);
+            if (number >= 1 && (header == null || number <= header.size())) {
+                return number - 1;
+            }
+        } catch (NumberFormatException e) {
+            // Not a number either
+        }
+        throw new IllegalArgumentException("No column \"" + nameOrNumber + "\""
+            + (header == null ? " (the file has no header; use a column number)" : " in header " + header.raw()));
+    }
+
+    /**
+     * Reads the next record, or returns null at the end of the input. The
+     * record is reused by the next call.
+     */
+    public Record next() throws IOException {
+        if (!parse(record)) {
+            return null;
+        }
+        recordCount++;
+        return record;
+    }
+
+    /**
+     * Data records returned so far (the header not counted).
+     */
+    public long recordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Quotes a field for writing if it needs it. TSV cannot quote, so tabs
+     * and line breaks become spaces.
+     */
+    public static String escape(String field, char delimiter) {
+        if (field == null) {
+            return "";
+        }
+        if (delimiter == '\t') {
+            return field.indexOf('\t') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0
+                ? field : field.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+        boolean mustQuote = field.indexOf(delimiter) >= 0 || field.indexOf('"') >= 0
+            || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0;
+        return mustQuote ? "\"" + field.replace("\"", "\"\"") + "\"" : field;
+    }
+
+    private boolean parse(Record target) throws IOException {
+        target.reset(nextLine);
+        if (!fill()) {
+            return false;
+        }
+
+        int fieldStart = 0;
+        boolean fieldQuoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (position == limit && !fill()) {
+                break;
+            }
+            char c = buffer[position++];
+
+            if (inQuotes) {
+                if (c == '"') {
+                    if ((position < limit || fill()) && buffer[position] == '"') {
+                        // Doubled quote: stays doubled in the raw text
+                        target.append(c);
+                        position++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else if (c == '\n') {
+                    nextLine++;
+                } else if (c == '\r' && !((position < limit || fill()) && buffer[position] == '\n')) {
+                    // A lone \r is a line break too; \r\n is counted at its \n
+                    nextLine++;
+                }
+                target.append(c);
+                continue;
+            }
+
+            if (c == delimiter) {
+                target.endField(fieldStart, fieldQuoted);
+                target.append(c);
+                fieldStart = target.length;
+                fieldQuoted = false;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && (position < limit || fill()) && buffer[position] == '\n') {
+                    position++;
+                }
+                nextLine++;
+                break;
+            } else if (c == '"' && quoting && target.length == fieldStart) {
+                fieldQuoted = true;
+                inQuotes = true;
+                target.append(c);
+            } else {
+                target.append(c);
+            }
+        }
+        target.endField(fieldStart, fieldQuoted);
+        return true;
+    }
+
+    /**
+     * True if there is at least one more char to read.
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        if (eof) {
+            return false;
+        }
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * One record: its raw text (without the line break) and the bounds of
+     * each field in it.
+     */
+    public static final class Record {
+        private char[] text = new char[256];
+        private int length;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private boolean[] quoted = new boolean[16];
+        private int fields;
+        private long lineNumber;
+
+        private Record() {
+        }
+
+        /** Number of fields. */
+        public int size() {
+            return fields;
+        }
+
+        /**
+         * Field {@code index}, unquoted; "" if the record has fewer fields.
+         */
+        public String get(int index) {
+            if (index < 0 || index >= fields) {
+                return "";
+            }
+            int start = starts[index];
+            int end = ends[index];
+            if (!quoted[index]) {
+                return new String(text, start, end - start);
+            }
+            // Drop the quotes and undouble "", keeping any text after the closing quote
+            StringBuilder value = new StringBuilder(end - start);
+            for (int i = start + 1; i < end; i++) {
+                char c = text[i];
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < end && text[i + 1] == '"') {
+                    value.append('"');
+                    i++;
+                }
+            }
+            return value.toString();
+        }
+
+        /**
+         * The record as it appeared in the input, without its line break.
+         */
+        public String raw() {
+            return new String(text, 0, length);
+        }
+
+        /**
+         * True for a record with nothing but spaces, or nothing at all.
+         */
+        public boolean isBlank() {
+            for (int i = 0; i < length; i++) {
+                if (!Character.isWhitespace(text[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Line of the input the record starts on, counting from 1.
+         */
+        public long lineNumber() {
+            return lineNumber;
+        }
+
+        Record copy() {
+            Record copy = new Record();
+            copy.text = Arrays.copyOf(text, length);
+            copy.length = length;
+            copy.starts = Arrays.copyOf(starts, fields);
+            copy.ends = Arrays.copyOf(ends, fields);
+            copy.quoted = Arrays.copyOf(quoted, fields);
+            copy.fields = fields;
+            copy.lineNumber = lineNumber;
+            return copy;
+        }
+
+        private void reset(long line) {
+            length = 0;
+            fields = 0;
+            lineNumber = line;
+        }
+
+        private void append(char c) {
+            if (length == text.length) {
+                text = Arrays.copyOf(text, text.length * 2);
+            }
+            text[length++] = c;
+        }
+
+        private void endField(int start, boolean isQuoted) {
+            if (fields == starts.length) {
+                starts = Arrays.copyOf(starts, fields * 2);
+                ends = Arrays.copyOf(ends, fields * 2);
+                quoted = Arrays.copyOf(quoted, fields * 2);
+            }
+            starts[fields] = start;
+            ends[fields] = length;
+            quoted[fields] = isQuoted;
+            fields++;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.interzoid.client.io;
+
+import com.interzoid.client.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Output file written by one dedicated thread, so that the threads
+ * completing API calls never wait on each other or on the disk.
+ *
+ * A PrintWriter shared by many completion threads is a lock they all
+ * queue on, and it says nothing about what is on disk when the run dies.
+ * Here {@link #write} only appends the row to a lock-free queue. The
+ * writer thread encodes rows as UTF-8 into one large reusable buffer and
+ * writes it to a FileChannel when it fills (or the queue has been idle
+ * for a moment). With group commit enabled the thread also fsyncs every
+ * {@code syncRows} rows or {@code syncInterval}, whichever comes first:
+ * one fsync covers every row written since the last.
+ *
+ * <ul>
+ *   <li>unordered: rows are written in the order they are queued; rows
+ *       from one thread keep their order</li>
+ *   <li>ordered: every row carries a sequence number, starting at 0, and
+ *       rows are written in sequence order whatever order they complete
+ *       in. Rows that arrive early wait on the writer thread.</li>
+ * </ul>
+ *
+ * <pre>
+ *   try (GroupCommitWriter writer = GroupCommitWriter.open(output, true)) {
+ *       for (long seq = 0; ...; seq++) {
+ *           writer.awaitWritten(seq - window);   // bound rows held for reordering
+ *           callAsync(value).thenAccept(row -> writer.write(seq, row));
+ *       }
+ *   }   // close() waits for every row, writes and fsyncs
+ * </pre>
+ *
+ * Rows written are counted in {@link Metrics#shared()}, and the queue
+ * depth is exported there while the writer is open, as
+ * {@code interzoid_writer_queued_rows{file="..."}} with the output's
+ * absolute path, so writers open at the same time each keep a series.
+ *
+ * Producers wait if more than {@value #MAX_QUEUED_ROWS} rows are queued.
+ * If a write fails, the writer stops and the next call (or close) throws
+ * the IOException. Output lines end with the platform line separator, as
+ * with PrintWriter.println.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.writer.bufferKb    write buffer size (default 1024)
+ *   interzoid.writer.syncRows    rows between fsyncs, 0 = none (default 0)
+ *   interzoid.writer.syncMillis  milliseconds between fsyncs, 0 = none (default 0)
+ * </pre>
+ */
+public final class GroupCommitWriter implements Closeable {
+
+    private static final int MAX_QUEUED_ROWS = 1 << 16;
+
+    // A partly filled buffer is written once the queue has been empty this long
+    private static final long IDLE_FLUSH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final long PRODUCER_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final FileChannel out;
+    private final boolean ordered;
+    private final int syncRows;
+    private final long syncNanos;
+
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Thread thread;
+    private volatile boolean parked;
+    private volatile boolean closing;
+    private volatile IOException failure;
+    private final Metrics metrics = Metrics.shared();
+    private final String queueGauge;
+
+    // Rows encoded so far. Waiters in awaitWritten() lower wakeAt to the
+    // count they need, and the writer thread wakes them when it gets there.
+    private volatile long written;
+    private volatile long wakeAt = Long.MAX_VALUE;
+    private final Object writtenMonitor = new Object();
+
+    // Owned by the writer thread
+    private final ByteBuffer buffer;
+    private final Map<Long, String> early = new HashMap<>();
+    private long nextSequence;
+    private long unsyncedRows;
+    private long lastSyncNanos;
+    private long syncs;
+
+    private GroupCommitWriter(Path output, boolean ordered, int bufferBytes, int syncRows, Duration syncInterval)
+            throws IOException {
+        if (bufferBytes < 1024) {
+            throw new IllegalArgumentException("bufferBytes must be at least 1024: " + bufferBytes);
+        }
+        if (syncRows < 0) {
+            throw new IllegalArgumentException("syncRows must not be negative: " + syncRows);
+        }
+        this.ordered = ordered;
+        this.syncRows = syncRows;
+        this.syncNanos = syncInterval.toNanos();
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        this.out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        this.lastSyncNanos = System.nanoTime();
+        this.queueGauge = "interzoid_writer_queued_rows{file=\""
+            + labelValue(output.toAbsolutePath().normalize()) + "\"}";
+        metrics.gauge(queueGauge, "Rows queued for an output writer", queued::get);
+
+        this.thread = new Thread(this::run, "interzoid-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Creates or truncates {@code output}, with buffer size and group
+     * commit from system properties.
+     */
+    public static GroupCommitWriter open(Path output, boolean ordered) throws IOException {
+        int bufferBytes = Integer.getInteger("interzoid.writer.bufferKb", 1024) << 10;
+        int syncRows = Integer.getInteger("interzoid.writer.syncRows", 0);
+        Duration syncInterval = Duration.ofMillis(Long.getLong("interzoid.writer.syncMillis", 0));
+        return open(output, ordered, bufferBytes, syncRows, syncInterval);
+    }
+
+    /**
+     * @param syncRows     fsync after this many rows, 0 for no row-count trigger
+     * @param syncInterval fsync when this much time has passed since the
+     *                     last one and rows are waiting, zero for no time trigger
+     */
+    public static GroupCommitWriter open(Path output, boolean ordered, int bufferBytes, int syncRows,
+                                         Duration syncInterval) throws IOException {
+        return new GroupCommitWriter(output, ordered, bufferBytes, syncRows, syncInterval);
+    }
+
+    /**
+     * Queues a row (unordered mode). The row must not contain a line break
+     * unless that is intended.
+     */
+    public void write(String row) throws IOException {
+        if (ordered) {
+            throw new IllegalStateException("Writer is ordered: use write(sequence, row)");
+        }
+        enqueue(new Entry(-1, row, null));
+    }
+
+    /**
+     * Queues the row with sequence number {@code sequence} (ordered mode).
+     * Every sequence number from 0 up must be written exactly once.
+     */
+    public void write(long sequence, String row) throws IOException {
+        if (!ordered) {
+            throw new IllegalStateException("Writer is unordered: use write(row)");
+        }
+        if (sequence < 0) {
+            throw new IllegalArgumentException("sequence must not be negative: " + sequence);
+        }
+        enqueue(new Entry(sequence, row, null));
+    }
+
+    /**
+     * Blocks until at least {@code rows} rows have been written to the
+     * output buffer (in ordered mode: rows 0 to rows-1). Returns at once
+     * for rows &lt;= 0.
+     */
+    public void awaitWritten(long rows) throws IOException {
+        if (written >= rows) {
+            return;
+        }
+        synchronized (writtenMonitor) {
+            try {
+                while (true) {
+                    wakeAt = Math.min(wakeAt, rows);
+                    if (written >= rows) {
+                        return;
+                    }
+                    throwIfFailed();
+                    if (!thread.isAlive()) {
+                        throw new IOException("Writer is closed");
+                    }
+                    writtenMonitor.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the writer", e);
+            }
+        }
+    }
+
+    /**
+     * Blocks until every row queued before this call is written and fsynced.
+     * Callers that sync at the same time share one fsync.
+     */
+    public void sync() throws IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        enqueue(new Entry(-1, null, done));
+        try {
+            while (true) {
+                try {
+                    done.get(IDLE_FLUSH_NANOS, TimeUnit.NANOSECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    // A request queued just as the writer failed or stopped is never answered
+                    throwIfFailed();
+                    if (!thread.isAlive() && !done.isDone()) {
+                        throw new IOException("Writer is closed");
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for fsync", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /** Rows written to the output buffer so far. */
+    public long rowsWritten() {
+        return written;
+    }
+
+    /** Number of fsyncs so far. */
+    public long syncCount() {
+        synchronized (writtenMonitor) {
+            return syncs;
+        }
+    }
+
+    /**
+     * Waits for every queued row, writes them, fsyncs and closes the file.
+     * In ordered mode, throws if a sequence number was never written.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.removeGauge(queueGauge);
+        out.close();
+        throwIfFailed();
+        if (!early.isEmpty()) {
+            throw new IOException(early.size() + " rows were not written: row " + nextSequence + " never arrived");
+        }
+    }
+
+    private void enqueue(Entry entry) throws IOException {
+        throwIfFailed();
+        if (closing) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        while (queued.get() >= MAX_QUEUED_ROWS) {
+            LockSupport.parkNanos(PRODUCER_BACKOFF_NANOS);
+            throwIfFailed();
+        }
+        queued.incrementAndGet();
+        queue.offer(entry);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Writing output failed: " + e.getMessage(), e);
+        }
+    }
+
+    // --- writer thread ---
+
+    private void run() {
+        try {
+            long idleSince = 0;
+            while (true) {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    if (closing && queue.isEmpty()) {
+                        flush();
+                        force();
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    if (idleSince == 0) {
+                        idleSince = now;
+                    } else if (now - idleSince >= IDLE_FLUSH_NANOS && buffer.position() > 0) {
+                        flush();
+                    }
+                    syncIfDue(now);
+                    park();
+                    continue;
+                }
+                idleSince = 0;
+                queued.decrementAndGet();
+
+                if (entry.synced != null) {
+                    flush();
+                    force();
+                    entry.synced.complete(null);
+                } else if (!ordered) {
+                    append(entry.row);
+                } else if (entry.sequence == nextSequence) {
+                    append(entry.row);
+                    nextSequence++;
+                    String next;
+                    while ((next = early.remove(nextSequence)) != null) {
+                        append(next);
+                        nextSequence++;
+                    }
+                } else if (entry.sequence < nextSequence || early.putIfAbsent(entry.sequence, entry.row) != null) {
+                    throw new IllegalStateException("Row " + entry.sequence + " was written twice");
+                }
+
+                if (syncRows > 0 && unsyncedRows >= syncRows) {
+                    flush();
+                    force();
+                } else if (syncNanos > 0) {
+                    syncIfDue(System.nanoTime());
+                }
+                if (written >= wakeAt) {
+                    wakeWaiters();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(new IOException(e.getMessage(), e));
+        } finally {
+            wakeWaiters();
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            queued.decrementAndGet();
+            if (entry.synced != null) {
+                entry.synced.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void park() {
+        parked = true;
+        try {
+            if (queue.isEmpty() && !closing) {
+                LockSupport.parkNanos(this, IDLE_FLUSH_NANOS);
+            }
+        } finally {
+            parked = false;
+        }
+    }
+
+    private void syncIfDue(long now) throws IOException {
+        if (syncNanos > 0 && unsyncedRows > 0 && now - lastSyncNanos >= syncNanos) {
+            flush();
+            force();
+        }
+    }
+
+    /**
+     * A path as a Prometheus label value: backslashes, quotes and newlines escaped.
+     */
+    private static String labelValue(Path path) {
+        return path.toString().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Encodes one row and its line separator into the buffer.
+     */
+    private void append(String row) throws IOException {
+        int length = row.length();
+        if (buffer.remaining() < length + LINE_SEPARATOR.length) {
+            flush();
+        }
+        boolean ascii = buffer.remaining() >= length + LINE_SEPARATOR.length;
+        if (ascii) {
+            int start = buffer.position();
+            for (int i = 0; i < length; i++) {
+                char c = row.charAt(i);
+                if (c >= 0x80) {
+                    buffer.position(start);
+                    ascii = false;
+                    break;
+                }
+                buffer.put((byte) c);
+            }
+        }
+        if (!ascii) {
+            put(row.getBytes(StandardCharsets.UTF_8));
+        }
+        put(LINE_SEPARATOR);
+
+        written++;
+        unsyncedRows++;
+        metrics.addRows(1);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void force() throws IOException {
+        if (unsyncedRows == 0 && syncs > 0) {
+            return;
+        }
+        out.force(false);
+        unsyncedRows = 0;
+        lastSyncNanos = System.nanoTime();
+        synchronized (writtenMonitor) {
+            syncs++;
+        }
+    }
+
+    private void wakeWaiters() {
+        synchronized (writtenMonitor) {
+            wakeAt = Long.MAX_VALUE;
+            writtenMonitor.notifyAll();
+        }
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final String row;
+        final CompletableFuture<Void> synced;
+
+        Entry(long sequence, String row, CompletableFuture<Void> synced) {
+            this.sequence = sequence;
+            this.row = row;
+            this.synced = synced;
+        }
+    }
+}
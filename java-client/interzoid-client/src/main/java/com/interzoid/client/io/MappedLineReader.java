@@ -0,0 +1,439 @@
+package com.interzoid.client.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Memory-mapped line reader for large input files.
+ *
+ * The examples read input with {@code new BufferedReader(new FileReader(...))},
+ * which decodes with the platform charset, on one thread, and allocates a
+ * String for every line before the program looks at it. This reader maps
+ * the file (in windows of up to 256 MB, so files larger than 2 GB work) and
+ * hands each line to a {@link LineHandler} as a {@link Line}: a view of the
+ * mapped bytes. Nothing is copied or decoded until {@link Line#toString()}
+ * or {@link Line#copyTo} is called, and decoding is always UTF-8.
+ *
+ * {@link #split(int)} cuts the file into chunks that start and end on line
+ * boundaries, so several workers can each read their own chunk;
+ * {@link #forEachLineParallel} does that on a thread pool. Within a chunk
+ * lines arrive in file order, and {@link Line#position()} (the line's byte
+ * offset in the file) orders lines across chunks.
+ *
+ * <pre>
+ *   try (MappedLineReader reader = MappedLineReader.open(path)) {
+ *       MappedLineReader.Stats stats = reader.forEachLine(line -> {
+ *           if (!line.isEmpty()) {
+ *               process(line.toString());
+ *           }
+ *       });
+ *       System.out.printf("%.0f rows/s%n", stats.rowsPerSecond());
+ *   }
+ * </pre>
+ *
+ * Lines end with \n, \r\n or a lone \r, as with CsvReader and
+ * BufferedReader.readLine, so a file saved with old Mac line breaks is
+ * read line by line rather than as one long line. A line must fit in one
+ * mapping window together with the first byte of its line break (the last
+ * line of the file needs none); a longer one fails the read with an
+ * IOException naming its byte offset.
+ */
+public final class MappedLineReader implements Closeable {
+
+    private static final long DEFAULT_WINDOW_BYTES = 1L << 28;
+
+    // Block size when scanning for the newline that ends a chunk
+    private static final int SCAN_BLOCK_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long windowBytes;
+
+    private MappedLineReader(FileChannel channel, long windowBytes) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+    }
+
+    public static MappedLineReader open(Path file) throws IOException {
+        return open(file, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * @param windowBytes largest single mapping, at most Integer.MAX_VALUE;
+     *                    also the longest line that can be read
+     */
+    public static MappedLineReader open(Path file, long windowBytes) throws IOException {
+        if (windowBytes < 1 || windowBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowBytes must be between 1 and Integer.MAX_VALUE: " + windowBytes);
+        }
+        return new MappedLineReader(FileChannel.open(file, StandardOpenOption.READ), windowBytes);
+    }
+
+    /**
+     * File size in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * The whole file as one chunk.
+     */
+    public Chunk whole() {
+        return new Chunk(0, 0, size);
+    }
+
+    /**
+     * Splits the file into up to {@code count} chunks of about equal size,
+     * each ending just after a line break (or at the end of the file), and
+     * never between the \r and \n of a \r\n. Fewer chunks are returned if
+     * the file has fewer lines.
+     */
+    public List<Chunk> split(int count) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1: " + count);
+        }
+        List<Chunk> chunks = new ArrayList<>(count);
+        long start = 0;
+        for (int i = 1; i <= count && start < size; i++) {
+            long end = i == count ? size : Math.max(start, lineEndAtOrAfter(size / count * i));
+            if (end > start) {
+                chunks.add(new Chunk(chunks.size(), start, end));
+                start = end;
+            }
+        }
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * Reads the whole file on the calling thread.
+     */
+    public Stats forEachLine(LineHandler handler) throws IOException {
+        return whole().forEachLine(handler);
+    }
+
+    /**
+     * Splits the file into {@code threads} chunks and reads them in parallel.
+     * The handler is called from several threads at once; lines of one chunk
+     * arrive in order on one thread.
+     */
+    public Stats forEachLineParallel(int threads, LineHandler handler) throws IOException {
+        List<Chunk> chunks = split(threads);
+        if (chunks.size() <= 1) {
+            return forEachLine(handler);
+        }
+
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(chunks.size(), r -> {
+            Thread t = new Thread(r, "interzoid-reader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Stats>> results = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                results.add(pool.submit(() -> chunk.forEachLine(handler)));
+            }
+            long rows = 0;
+            for (Future<Stats> result : results) {
+                rows += result.get().rows();
+            }
+            return new Stats(rows, size, System.nanoTime() - started);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Position just after the first line break at or after {@code from}, or the file size.
+     */
+    private long lineEndAtOrAfter(long from) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+        long position = from;
+        while (position < size) {
+            block.clear();
+            int n = channel.read(block, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = block.get(i);
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    long next = position + i + 1;
+                    return next < size && byteAt(next) == '\n' ? next + 1 : next;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    /**
+     * The byte at {@code position}, which must be within the file.
+     */
+    private byte byteAt(long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (one.hasRemaining()) {
+            if (channel.read(one, position) < 0) {
+                throw new IOException("File ended before byte " + position);
+            }
+        }
+        return one.get(0);
+    }
+
+    /**
+     * Receives lines. The Line is reused and only valid during the call.
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+        void line(Line line) throws IOException;
+    }
+
+    /**
+     * A byte range of the file ending on a line boundary.
+     */
+    public final class Chunk {
+        private final int index;
+        private final long start;
+        private final long end;
+
+        private Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public long start() {
+            return start;
+        }
+
+        public long end() {
+            return end;
+        }
+
+        /**
+         * Reads the lines of this chunk in order on the calling thread.
+         * Chunks of one reader may be read concurrently.
+         */
+        public Stats forEachLine(LineHandler handler) throws IOException {
+            long started = System.nanoTime();
+            Line line = new Line(index);
+            long rows = 0;
+
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            int windowLimit = 0;
+
+            long position = start;
+            while (position < end) {
+                int from = (int) (position - windowStart);
+                if (window == null || from >= windowLimit) {
+                    windowStart = position;
+                    windowLimit = (int) Math.min(windowBytes, end - position);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLimit);
+                    line.setWindow(window);
+                    from = 0;
+                }
+
+                int i = from;
+                byte b = 0;
+                while (i < windowLimit && (b = window.get(i)) != '\n' && b != '\r') {
+                    i++;
+                }
+                boolean terminated = i < windowLimit;
+                if (!terminated && windowStart + windowLimit < end) {
+                    // The line runs past this window: map a new one starting at the line
+                    if (from == 0) {
+                        throw new IOException("Line at byte " + position + " is longer than " + windowBytes + " bytes");
+                    }
+                    window = null;
+                    continue;
+                }
+
+                // A \r followed by \n is one line break, even across a window
+                // boundary; chunks never end between the two
+                int breakLength = terminated ? 1 : 0;
+                if (b == '\r' && terminated) {
+                    long next = windowStart + i + 1;
+                    if (next < end && (i + 1 < windowLimit ? window.get(i + 1) : byteAt(next)) == '\n') {
+                        breakLength = 2;
+                    }
+                }
+                rows++;
+                line.set(from, i - from, position, rows);
+                handler.line(line);
+
+                position = windowStart + i + breakLength;
+            }
+            return new Stats(rows, end - start, System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * One line of the file, without its terminator, as a view of the mapped
+     * bytes. Reused for the next line, so copy out what must be kept.
+     */
+    public static final class Line {
+        private final int chunk;
+        private ByteBuffer window;
+        private int offset;
+        private int length;
+        private long position;
+        private long number;
+        private byte[] scratch = new byte[256];
+
+        private Line(int chunk) {
+            this.chunk = chunk;
+        }
+
+        private void setWindow(ByteBuffer window) {
+            // A private view whose position can be moved for bulk gets
+            this.window = window.duplicate();
+        }
+
+        private void set(int offset, int length, long position, long number) {
+            this.offset = offset;
+            this.length = length;
+            this.position = position;
+            this.number = number;
+        }
+
+        /** Length in bytes. */
+        public int length() {
+            return length;
+        }
+
+        public boolean isEmpty() {
+            return length == 0;
+        }
+
+        /** Byte offset of the line in the file. */
+        public long position() {
+            return position;
+        }
+
+        /**
+         * 1-based line number within the chunk; the line number in the
+         * file when reading the whole file.
+         */
+        public long number() {
+            return number;
+        }
+
+        /** Index of the chunk the line belongs to. */
+        public int chunk() {
+            return chunk;
+        }
+
+        public byte byteAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return window.get(offset + index);
+        }
+
+        /**
+         * Copies the line's bytes into {@code target} at {@code targetOffset}.
+         */
+        public void copyTo(byte[] target, int targetOffset) {
+            window.position(offset);
+            window.get(target, targetOffset, length);
+        }
+
+        /**
+         * Hash of the line's bytes; equal lines have equal hashes.
+         */
+        public int bytesHashCode() {
+            int h = 1;
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + window.get(offset + i);
+            }
+            return h;
+        }
+
+        /**
+         * The line decoded as UTF-8 (malformed bytes become U+FFFD).
+         */
+        @Override
+        public String toString() {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            copyTo(scratch, 0);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Rows and bytes read, and how long it took.
+     */
+    public static final class Stats {
+        private final long rows;
+        private final long bytes;
+        private final long nanos;
+
+        Stats(long rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        public double rowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1 << 20);
+        }
+    }
+}
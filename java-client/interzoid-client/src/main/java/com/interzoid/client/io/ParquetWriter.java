@@ -0,0 +1,872 @@
+package com.interzoid.client.io;
+
+import com.interzoid.client.metrics.Metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes result rows to an Apache Parquet file, so they can be loaded
+ * into an analytics engine (DuckDB, Spark, pandas, BigQuery, Snowflake)
+ * without parsing CSV.
+ *
+ * Columns are typed: STRING (UTF-8), INT64 or DOUBLE, and all of them are
+ * nullable. Enrichment fields such as Revenue or NumberEmployees therefore
+ * arrive as numbers rather than text. Rows are buffered column by column
+ * and written a row group at a time, once the buffered values reach
+ * {@code rowGroupBytes}. Within a row group each column is cut into pages
+ * of {@value #PAGE_ROWS} rows.
+ *
+ * String columns are dictionary encoded when that is smaller: SimKeys,
+ * result codes and categories such as NAICS repeat heavily, and each row
+ * then costs a few bits. A column with too few repeats, or whose distinct
+ * values pass {@value #MAX_DICTIONARY_BYTES} bytes in a row group, is
+ * written plain for that row group. Pages are gzip compressed by default
+ * (at the fastest level, since most of the saving comes from the
+ * encodings), a codec every Parquet reader has.
+ *
+ * <pre>
+ *   List&lt;ParquetWriter.Column&gt; columns = List.of(
+ *       ParquetWriter.Column.string("Company"),
+ *       ParquetWriter.Column.string("NAICS"),
+ *       ParquetWriter.Column.int64("NumberEmployees"));
+ *   try (ParquetWriter out = ParquetWriter.open(Paths.get("output.parquet"), columns)) {
+ *       out.write("Cisco Systems", "334210", "82500");
+ *   }
+ * </pre>
+ *
+ * A value may be a String, a Number or null. Numeric columns parse
+ * Strings, ignoring surrounding spaces, thousands separators and a
+ * leading '$'; "" or anything else that does not parse is stored as null.
+ *
+ * {@link #write} is synchronized, and rows are stored in the order it is
+ * called. The file is only readable once {@link #close} has written the
+ * footer. Rows written are counted in {@link Metrics#shared()}.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.parquet.rowGroupMb   buffered data per row group (default 64)
+ *   interzoid.parquet.compression  gzip or none (default gzip)
+ * </pre>
+ */
+public final class ParquetWriter implements Closeable {
+
+    public enum Type { STRING, INT64, DOUBLE }
+
+    public enum Compression { NONE, GZIP }
+
+    static final int PAGE_ROWS = 20000;
+    static final int MAX_DICTIONARY_BYTES = 16 << 20;
+
+    private static final long MAX_ROW_GROUP_BYTES = 1L << 30;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final String CREATED_BY = "interzoid-client";
+
+    // Enum values from parquet.thrift
+    private static final int TYPE_INT64 = 2;
+    private static final int TYPE_DOUBLE = 5;
+    private static final int TYPE_BYTE_ARRAY = 6;
+    private static final int REPETITION_OPTIONAL = 1;
+    private static final int CONVERTED_UTF8 = 0;
+    private static final int ENCODING_PLAIN = 0;
+    private static final int ENCODING_PLAIN_DICTIONARY = 2;
+    private static final int ENCODING_RLE = 3;
+    private static final int PAGE_DATA = 0;
+    private static final int PAGE_DICTIONARY = 2;
+    private static final int CODEC_UNCOMPRESSED = 0;
+    private static final int CODEC_GZIP = 2;
+
+    // Bit-packed runs are cut at 63 groups of 8, the longest some readers take
+    private static final int MAX_PACKED_VALUES = 63 * 8;
+
+    /**
+     * A column: its name and type.
+     */
+    public static final class Column {
+        private final String name;
+        private final Type type;
+
+        private Column(String name, Type type) {
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Column name must not be empty");
+            }
+            this.name = name;
+            this.type = type;
+        }
+
+        public static Column string(String name) {
+            return new Column(name, Type.STRING);
+        }
+
+        public static Column int64(String name) {
+            return new Column(name, Type.INT64);
+        }
+
+        public static Column float64(String name) {
+            return new Column(name, Type.DOUBLE);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Type type() {
+            return type;
+        }
+    }
+
+    private final OutputStream out;
+    private final List<Column> columns;
+    private final ColumnBuffer[] buffers;
+    private final long rowGroupBytes;
+    private final Compression compression;
+    private final Metrics metrics = Metrics.shared();
+
+    private final List<RowGroupMeta> rowGroups = new ArrayList<>();
+    private final ByteSink page = new ByteSink(1 << 16);
+    private final ByteSink compressed = new ByteSink(1 << 16);
+    private final int[] levels = new int[PAGE_ROWS];
+    private long position;
+    private int bufferedRows;
+    private long rows;
+    private boolean closed;
+
+    private ParquetWriter(Path output, List<Column> columns, long rowGroupBytes, Compression compression)
+            throws IOException {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("At least one column is needed");
+        }
+        if (rowGroupBytes < 1 || rowGroupBytes > MAX_ROW_GROUP_BYTES) {
+            throw new IllegalArgumentException("rowGroupBytes must be between 1 and " + MAX_ROW_GROUP_BYTES
+                + ": " + rowGroupBytes);
+        }
+        this.columns = List.copyOf(columns);
+        this.rowGroupBytes = rowGroupBytes;
+        this.compression = compression;
+        this.buffers = new ColumnBuffer[columns.size()];
+        for (int c = 0; c < buffers.length; c++) {
+            buffers[c] = new ColumnBuffer(columns.get(c).type());
+        }
+        this.out = new BufferedOutputStream(Files.newOutputStream(output), IO_BUFFER_SIZE);
+        writeBytes(MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Creates or truncates {@code output}, with row group size and
+     * compression from system properties.
+     */
+    public static ParquetWriter open(Path output, List<Column> columns) throws IOException {
+        long rowGroupBytes = Long.getLong("interzoid.parquet.rowGroupMb", 64) << 20;
+        String codec = System.getProperty("interzoid.parquet.compression", "gzip");
+        Compression compression;
+        if ("gzip".equalsIgnoreCase(codec)) {
+            compression = Compression.GZIP;
+        } else if ("none".equalsIgnoreCase(codec)) {
+            compression = Compression.NONE;
+        } else {
+            throw new IllegalArgumentException("interzoid.parquet.compression must be gzip or none: " + codec);
+        }
+        return open(output, columns, rowGroupBytes, compression);
+    }
+
+    public static ParquetWriter open(Path output, List<Column> columns, long rowGroupBytes, Compression compression)
+            throws IOException {
+        return new ParquetWriter(output, columns, rowGroupBytes, compression);
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Adds one row, a value per column in column order.
+     */
+    public synchronized void write(Object... values) throws IOException {
+        if (closed) {
+            throw new IOException("ParquetWriter is closed");
+        }
+        if (values.length != buffers.length) {
+            throw new IllegalArgumentException("Expected " + buffers.length + " values, got " + values.length);
+        }
+        long buffered = 0;
+        for (int c = 0; c < buffers.length; c++) {
+            buffers[c].add(values[c]);
+            buffered += buffers[c].plainBytes;
+        }
+        bufferedRows++;
+        rows++;
+        metrics.addRows(1);
+        if (buffered >= rowGroupBytes) {
+            flushRowGroup();
+        }
+    }
+
+    public synchronized long rowsWritten() {
+        return rows;
+    }
+
+    /**
+     * Row groups written so far, not counting the rows still buffered.
+     */
+    public synchronized int rowGroupCount() {
+        return rowGroups.size();
+    }
+
+    /**
+     * Writes the buffered rows and the footer, and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushRowGroup();
+            ByteSink footer = new ByteSink(1 << 12);
+            writeFooter(new Thrift(footer));
+            writeBytes(footer.array(), 0, footer.size());
+            ByteSink trailer = new ByteSink(8);
+            trailer.writeIntLE(footer.size());
+            trailer.write(MAGIC);
+            writeBytes(trailer.array(), 0, trailer.size());
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        if (bufferedRows == 0) {
+            return;
+        }
+        RowGroupMeta group = new RowGroupMeta(bufferedRows, position);
+        for (int c = 0; c < buffers.length; c++) {
+            group.chunks.add(writeChunk(columns.get(c), buffers[c]));
+            buffers[c].reset();
+        }
+        rowGroups.add(group);
+        bufferedRows = 0;
+    }
+
+    private ChunkMeta writeChunk(Column column, ColumnBuffer buffer) throws IOException {
+        ChunkMeta chunk = new ChunkMeta(column, buffer.rows, position);
+        boolean dictionary = buffer.dictionaryIsSmaller();
+        int bitWidth = 0;
+        if (dictionary) {
+            page.reset();
+            for (byte[] value : buffer.dictionary) {
+                page.writeIntLE(value.length);
+                page.write(value);
+            }
+            chunk.dictionaryOffset = position;
+            writePage(chunk, PAGE_DICTIONARY, buffer.dictionary.size(), ENCODING_PLAIN_DICTIONARY);
+            bitWidth = bitWidth(buffer.dictionary.size() - 1);
+        }
+
+        chunk.dataOffset = position;
+        chunk.encoding = dictionary ? ENCODING_PLAIN_DICTIONARY : ENCODING_PLAIN;
+        int value = 0;
+        int plainOffset = 0;
+        for (int first = 0; first < buffer.rows; first += PAGE_ROWS) {
+            int last = Math.min(buffer.rows, first + PAGE_ROWS);
+            page.reset();
+
+            // Definition levels (1 = value, 0 = null), prefixed by their length
+            int count = 0;
+            for (int row = first; row < last; row++) {
+                levels[row - first] = buffer.present[row];
+                count += buffer.present[row];
+            }
+            int lengthAt = page.size();
+            page.writeIntLE(0);
+            encodeHybrid(page, levels, 0, last - first, 1);
+            page.setIntLE(lengthAt, page.size() - lengthAt - 4);
+
+            if (buffer.type != Type.STRING) {
+                for (int i = value; i < value + count; i++) {
+                    page.writeLongLE(buffer.numbers[i]);
+                }
+            } else if (dictionary) {
+                page.write(bitWidth);
+                encodeHybrid(page, buffer.valueIds, value, value + count, bitWidth);
+            } else if (buffer.plain == null) {
+                for (int i = value; i < value + count; i++) {
+                    byte[] bytes = buffer.dictionary.get(buffer.valueIds[i]);
+                    page.writeIntLE(bytes.length);
+                    page.write(bytes);
+                }
+            } else {
+                int start = plainOffset;
+                for (int i = 0; i < count; i++) {
+                    plainOffset += 4 + buffer.plain.intLE(plainOffset);
+                }
+                page.write(buffer.plain.array(), start, plainOffset - start);
+            }
+            value += count;
+            writePage(chunk, PAGE_DATA, last - first, chunk.encoding);
+        }
+        return chunk;
+    }
+
+    /**
+     * Writes the contents of {@link #page} as one page of {@code chunk}.
+     */
+    private void writePage(ChunkMeta chunk, int pageType, int valueCount, int encoding) throws IOException {
+        ByteSink body = page;
+        if (compression == Compression.GZIP) {
+            compressed.reset();
+            try (GZIPOutputStream gzip = new FastGzipOutputStream(compressed)) {
+                gzip.write(page.array(), 0, page.size());
+            }
+            body = compressed;
+        }
+
+        ByteSink headerBytes = new ByteSink(64);
+        Thrift header = new Thrift(headerBytes);
+        header.i32(1, pageType);
+        header.i32(2, page.size());
+        header.i32(3, body.size());
+        if (pageType == PAGE_DATA) {
+            header.beginStruct(5);
+            header.i32(1, valueCount);
+            header.i32(2, encoding);
+            header.i32(3, ENCODING_RLE);
+            header.i32(4, ENCODING_RLE);
+            header.endStruct();
+        } else {
+            header.beginStruct(7);
+            header.i32(1, valueCount);
+            header.i32(2, encoding);
+            header.endStruct();
+        }
+        header.stop();
+
+        writeBytes(headerBytes.array(), 0, headerBytes.size());
+        writeBytes(body.array(), 0, body.size());
+        chunk.uncompressedBytes += headerBytes.size() + page.size();
+        chunk.compressedBytes += headerBytes.size() + body.size();
+    }
+
+    private void writeFooter(Thrift footer) {
+        footer.i32(1, 1);
+
+        footer.beginList(2, Thrift.STRUCT, columns.size() + 1);
+        footer.beginElement();
+        footer.string(4, "schema");
+        footer.i32(5, columns.size());
+        footer.endStruct();
+        for (Column column : columns) {
+            footer.beginElement();
+            footer.i32(1, physicalType(column.type()));
+            footer.i32(3, REPETITION_OPTIONAL);
+            footer.string(4, column.name());
+            if (column.type() == Type.STRING) {
+                footer.i32(6, CONVERTED_UTF8);
+                // LogicalType union, member 1: STRING (an empty struct)
+                footer.beginStruct(10);
+                footer.beginStruct(1);
+                footer.endStruct();
+                footer.endStruct();
+            }
+            footer.endStruct();
+        }
+
+        footer.i64(3, rows);
+
+        footer.beginList(4, Thrift.STRUCT, rowGroups.size());
+        for (RowGroupMeta group : rowGroups) {
+            footer.beginElement();
+            footer.beginList(1, Thrift.STRUCT, group.chunks.size());
+            long uncompressed = 0;
+            long compressedTotal = 0;
+            for (ChunkMeta chunk : group.chunks) {
+                footer.beginElement();
+                footer.i64(2, chunk.start);
+                footer.beginStruct(3);
+                footer.i32(1, physicalType(chunk.column.type()));
+                footer.beginList(2, Thrift.I32, 2);
+                footer.listI32(chunk.encoding);
+                footer.listI32(ENCODING_RLE);
+                footer.beginList(3, Thrift.BINARY, 1);
+                footer.listString(chunk.column.name());
+                footer.i32(4, compression == Compression.GZIP ? CODEC_GZIP : CODEC_UNCOMPRESSED);
+                footer.i64(5, chunk.rows);
+                footer.i64(6, chunk.uncompressedBytes);
+                footer.i64(7, chunk.compressedBytes);
+                footer.i64(9, chunk.dataOffset);
+                if (chunk.dictionaryOffset >= 0) {
+                    footer.i64(11, chunk.dictionaryOffset);
+                }
+                footer.endStruct();
+                footer.endStruct();
+                uncompressed += chunk.uncompressedBytes;
+                compressedTotal += chunk.compressedBytes;
+            }
+            footer.i64(2, uncompressed);
+            footer.i64(3, group.rows);
+            footer.i64(5, group.start);
+            footer.i64(6, compressedTotal);
+            footer.endStruct();
+        }
+
+        footer.string(6, CREATED_BY);
+        footer.stop();
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        position += length;
+    }
+
+    private static int physicalType(Type type) {
+        switch (type) {
+            case INT64:
+                return TYPE_INT64;
+            case DOUBLE:
+                return TYPE_DOUBLE;
+            default:
+                return TYPE_BYTE_ARRAY;
+        }
+    }
+
+    static int bitWidth(int maxValue) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(maxValue));
+    }
+
+    /**
+     * Writes values[from, to) in the RLE / bit-packed hybrid encoding:
+     * runs of 8 or more equal values as RLE runs, the rest bit-packed in
+     * groups of 8. Only the last group may be padded.
+     */
+    static void encodeHybrid(ByteSink out, int[] values, int from, int to, int bitWidth) {
+        int literalStart = from;
+        int i = from;
+        while (i < to) {
+            int value = values[i];
+            int run = 1;
+            while (i + run < to && values[i + run] == value) {
+                run++;
+            }
+            if (run < 8) {
+                i += run;
+                continue;
+            }
+            // Complete the pending literals to a whole group with values from the run
+            int pending = i - literalStart;
+            if (pending > 0) {
+                int pad = (8 - pending % 8) % 8;
+                i += pad;
+                run -= pad;
+                writeBitPacked(out, values, literalStart, i, bitWidth);
+            }
+            if (run >= 8) {
+                out.writeVarint((long) run << 1);
+                for (int b = 0; b < (bitWidth + 7) / 8; b++) {
+                    out.write(value >>> (8 * b));
+                }
+                i += run;
+            }
+            literalStart = i;
+        }
+        if (literalStart < to) {
+            writeBitPacked(out, values, literalStart, to, bitWidth);
+        }
+    }
+
+    private static void writeBitPacked(ByteSink out, int[] values, int from, int to, int bitWidth) {
+        for (int start = from; start < to; start += MAX_PACKED_VALUES) {
+            int end = Math.min(to, start + MAX_PACKED_VALUES);
+            int groups = (end - start + 7) / 8;
+            out.writeVarint(((long) groups << 1) | 1);
+            long bits = 0;
+            int bitCount = 0;
+            for (int k = start; k < start + groups * 8; k++) {
+                bits |= (long) (k < end ? values[k] : 0) << bitCount;
+                bitCount += bitWidth;
+                while (bitCount >= 8) {
+                    out.write((int) bits);
+                    bits >>>= 8;
+                    bitCount -= 8;
+                }
+            }
+        }
+    }
+
+    /**
+     * One column of the row group being buffered.
+     */
+    private static final class ColumnBuffer {
+        final Type type;
+        // 1 if the row has a value, 0 for null
+        int[] present = new int[1024];
+        int rows;
+        int values;
+        // Size of the values written plain: the row group size estimate
+        long plainBytes;
+
+        // INT64 and DOUBLE (as raw bits)
+        long[] numbers;
+
+        // STRING, while dictionary encoded: distinct values and an id per value
+        HashMap<String, Integer> ids;
+        List<byte[]> dictionary;
+        long dictionaryBytes;
+        int[] valueIds;
+
+        // STRING, after falling back to plain encoding
+        ByteSink plain;
+
+        ColumnBuffer(Type type) {
+            this.type = type;
+            reset();
+        }
+
+        void reset() {
+            rows = 0;
+            values = 0;
+            plainBytes = 0;
+            if (type == Type.STRING) {
+                ids = new HashMap<>();
+                dictionary = new ArrayList<>();
+                dictionaryBytes = 0;
+                valueIds = valueIds == null ? new int[1024] : valueIds;
+                plain = null;
+            } else if (numbers == null) {
+                numbers = new long[1024];
+            }
+        }
+
+        void add(Object value) {
+            if (rows == present.length) {
+                present = Arrays.copyOf(present, rows * 2);
+            }
+            boolean stored = type == Type.STRING ? addString(value) : addNumber(value);
+            present[rows++] = stored ? 1 : 0;
+            if (stored) {
+                values++;
+            }
+        }
+
+        private boolean addString(Object value) {
+            if (value == null) {
+                return false;
+            }
+            String text = value.toString();
+            if (dictionary == null) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                plain.writeIntLE(bytes.length);
+                plain.write(bytes);
+                plainBytes += 4 + bytes.length;
+                return true;
+            }
+
+            Integer id = ids.get(text);
+            byte[] bytes;
+            if (id == null) {
+                bytes = text.getBytes(StandardCharsets.UTF_8);
+                id = dictionary.size();
+                ids.put(text, id);
+                dictionary.add(bytes);
+                dictionaryBytes += 4 + bytes.length;
+            } else {
+                bytes = dictionary.get(id);
+            }
+            if (values == valueIds.length) {
+                valueIds = Arrays.copyOf(valueIds, values * 2);
+            }
+            valueIds[values] = id;
+            plainBytes += 4 + bytes.length;
+            if (dictionaryBytes > MAX_DICTIONARY_BYTES) {
+                fallBackToPlain();
+            }
+            return true;
+        }
+
+        /**
+         * True if the dictionary page plus the value ids take fewer bytes
+         * than the values written plain.
+         */
+        boolean dictionaryIsSmaller() {
+            if (dictionary == null) {
+                return false;
+            }
+            long idBytes = (long) values * bitWidth(dictionary.size() - 1) / 8;
+            return dictionaryBytes + idBytes < plainBytes;
+        }
+
+        /**
+         * Rewrites the values so far plain, and stops using the dictionary
+         * for the rest of the row group.
+         */
+        private void fallBackToPlain() {
+            plain = new ByteSink((int) Math.min(Integer.MAX_VALUE - 8, plainBytes * 2));
+            for (int i = 0; i <= values; i++) {
+                byte[] bytes = dictionary.get(valueIds[i]);
+                plain.writeIntLE(bytes.length);
+                plain.write(bytes);
+            }
+            ids = null;
+            dictionary = null;
+        }
+
+        private boolean addNumber(Object value) {
+            long bits;
+            if (value instanceof Number) {
+                Number number = (Number) value;
+                bits = type == Type.INT64 ? number.longValue() : Double.doubleToRawLongBits(number.doubleValue());
+            } else {
+                String text = value == null ? "" : cleanNumber(value.toString());
+                if (text.isEmpty()) {
+                    return false;
+                }
+                try {
+                    bits = type == Type.INT64 ? Long.parseLong(text)
+                        : Double.doubleToRawLongBits(Double.parseDouble(text));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            if (values == numbers.length) {
+                numbers = Arrays.copyOf(numbers, values * 2);
+            }
+            numbers[values] = bits;
+            plainBytes += 8;
+            return true;
+        }
+
+        private static String cleanNumber(String text) {
+            String trimmed = text.trim();
+            if (trimmed.startsWith("$")) {
+                trimmed = trimmed.substring(1).trim();
+            }
+            return trimmed.indexOf(',') < 0 ? trimmed : trimmed.replace(",", "");
+        }
+    }
+
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+        FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, IO_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    private static final class RowGroupMeta {
+        final int rows;
+        final long start;
+        final List<ChunkMeta> chunks = new ArrayList<>();
+
+        RowGroupMeta(int rows, long start) {
+            this.rows = rows;
+            this.start = start;
+        }
+    }
+
+    private static final class ChunkMeta {
+        final Column column;
+        final int rows;
+        final long start;
+        long dictionaryOffset = -1;
+        long dataOffset;
+        int encoding;
+        long uncompressedBytes;
+        long compressedBytes;
+
+        ChunkMeta(Column column, int rows, long start) {
+            this.column = column;
+            this.rows = rows;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Growable byte array with the little-endian and varint writes Parquet needs.
+     */
+    static final class ByteSink extends OutputStream {
+        private byte[] bytes;
+        private int size;
+
+        ByteSink(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        byte[] array() {
+            return bytes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int length) {
+            ensure(length);
+            System.arraycopy(b, offset, bytes, size, length);
+            size += length;
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        void writeIntLE(int value) {
+            ensure(4);
+            setIntLE(size, value);
+            size += 4;
+        }
+
+        void setIntLE(int at, int value) {
+            bytes[at] = (byte) value;
+            bytes[at + 1] = (byte) (value >>> 8);
+            bytes[at + 2] = (byte) (value >>> 16);
+            bytes[at + 3] = (byte) (value >>> 24);
+        }
+
+        int intLE(int at) {
+            return (bytes[at] & 0xFF) | (bytes[at + 1] & 0xFF) << 8
+                | (bytes[at + 2] & 0xFF) << 16 | (bytes[at + 3] & 0xFF) << 24;
+        }
+
+        void writeLongLE(long value) {
+            ensure(8);
+            for (int b = 0; b < 8; b++) {
+                bytes[size++] = (byte) (value >>> (8 * b));
+            }
+        }
+
+        /** Unsigned LEB128 varint. */
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                long grown = Math.max((long) size + more, (long) bytes.length * 2);
+                if (grown > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Buffer over 2 GB");
+                }
+                bytes = Arrays.copyOf(bytes, (int) grown);
+            }
+        }
+    }
+
+    /**
+     * Just enough of the Thrift compact protocol for the page headers and
+     * the file footer.
+     */
+    static final class Thrift {
+        static final int BINARY = 8;
+        static final int I32 = 5;
+        static final int I64 = 6;
+        static final int LIST = 9;
+        static final int STRUCT = 12;
+
+        private final ByteSink out;
+        private final int[] parentFieldIds = new int[16];
+        private int depth;
+        private int lastFieldId;
+
+        Thrift(ByteSink out) {
+            this.out = out;
+        }
+
+        void i32(int id, int value) {
+            fieldHeader(id, I32);
+            out.writeVarint(zigZag(value));
+        }
+
+        void i64(int id, long value) {
+            fieldHeader(id, I64);
+            out.writeVarint(zigZag(value));
+        }
+
+        void string(int id, String value) {
+            fieldHeader(id, BINARY);
+            listString(value);
+        }
+
+        void beginStruct(int id) {
+            fieldHeader(id, STRUCT);
+            beginElement();
+        }
+
+        /** Starts a struct that is a list element (it has no field header). */
+        void beginElement() {
+            parentFieldIds[depth++] = lastFieldId;
+            lastFieldId = 0;
+        }
+
+        void endStruct() {
+            out.write(0);
+            lastFieldId = parentFieldIds[--depth];
+        }
+
+        void beginList(int id, int elementType, int size) {
+            fieldHeader(id, LIST);
+            if (size < 15) {
+                out.write(size << 4 | elementType);
+            } else {
+                out.write(0xF0 | elementType);
+                out.writeVarint(size);
+            }
+        }
+
+        void listI32(int value) {
+            out.writeVarint(zigZag(value));
+        }
+
+        void listString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(bytes.length);
+            out.write(bytes);
+        }
+
+        /** Ends the outermost struct. */
+        void stop() {
+            out.write(0);
+        }
+
+        private void fieldHeader(int id, int type) {
+            int delta = id - lastFieldId;
+            if (delta > 0 && delta <= 15) {
+                out.write(delta << 4 | type);
+            } else {
+                out.write(type);
+                out.writeVarint(zigZag(id));
+            }
+            lastFieldId = id;
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+}
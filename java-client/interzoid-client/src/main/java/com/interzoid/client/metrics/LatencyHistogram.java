@@ -0,0 +1,95 @@
+package com.interzoid.client.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HdrHistogram-style log-linear buckets.
+ *
+ * Values are recorded in microseconds. Below 128 µs every value has its
+ * own bucket; above, each power of two is split into 64 buckets, so a
+ * percentile is reported within 1/64 (about 1.6%) of the true value, from
+ * 1 µs up to about 12 days, in a fixed 18 KB of counters. Recording is one
+ * atomic increment, so many threads can record at once.
+ */
+public final class LatencyHistogram {
+
+    // Values below LINEAR_LIMIT get one bucket each
+    private static final int LINEAR_BITS = 7;
+    private static final int LINEAR_LIMIT = 1 << LINEAR_BITS;
+
+    // Buckets per power of two above LINEAR_LIMIT
+    private static final int SUB_BUCKET_BITS = LINEAR_BITS - 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final long MAX_VALUE_MICROS = (1L << 40) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(0, Math.min(MAX_VALUE_MICROS, micros));
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sumMicros.add(value);
+        maxMicros.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumMicros() {
+        return sumMicros.sum();
+    }
+
+    public long maxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * The value at {@code quantile} (0.5 for the median, 0.999 for p99.9),
+     * as the highest value of its bucket, in microseconds; 0 if empty.
+     */
+    public long percentileMicros(double quantile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), maxMicros());
+            }
+        }
+        return maxMicros();
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,374 @@
+package com.interzoid.client.metrics;
+
+import com.interzoid.client.JsonFields;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Counters, gauges and latency histograms for a run, exported in the
+ * Prometheus text format and as JSON.
+ *
+ * {@link com.interzoid.client.InterzoidHttp} records every API response
+ * here: latency per endpoint, HTTP status, the {@code Code} field
+ * ("Success" or otherwise) and the last {@code Credits} value. The output
+ * writers count rows. Anything else that has a current value (in-flight
+ * calls, the concurrency limit, queue depths, breaker state) registers a
+ * {@link #gauge}.
+ *
+ * <pre>
+ *   java -Dinterzoid.metrics.port=9464 -Dinterzoid.metrics.jsonFile=metrics.json ...
+ *   curl localhost:9464/metrics
+ * </pre>
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.metrics.port      serve /metrics and /metrics.json on this port (default 0 = off)
+ *   interzoid.metrics.host      address to listen on (default 127.0.0.1)
+ *   interzoid.metrics.jsonFile  write the JSON here when the JVM exits (default none)
+ * </pre>
+ */
+public final class Metrics {
+
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("Code", "Credits");
+
+    private static volatile Metrics shared;
+
+    private final long startedNanos = System.nanoTime();
+    private final ConcurrentHashMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder rows = new LongAdder();
+    private final ConcurrentSkipListMap<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the JVM-wide metrics. On first use, starts the HTTP endpoint
+     * and the JSON dump at exit if their system properties are set.
+     */
+    public static Metrics shared() {
+        Metrics result = shared;
+        if (result == null) {
+            synchronized (Metrics.class) {
+                result = shared;
+                if (result == null) {
+                    result = new Metrics();
+                    result.exportFromSystemProperties();
+                    shared = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records one API response (every attempt, including retried ones).
+     * The body, if it is a JSON object, is scanned for Code and Credits.
+     */
+    public void recordResponse(String endpoint, int status, long latencyNanos, byte[] body) {
+        EndpointStats stats = endpoint(endpoint);
+        stats.latency.recordNanos(latencyNanos);
+        stats.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (body == null || body.length == 0) {
+            return;
+        }
+        JsonFields.Values json = RESPONSE_FIELDS.extract(body);
+        String code = json.get("Code");
+        if (!code.isEmpty()) {
+            stats.codes.computeIfAbsent(code, c -> new LongAdder()).increment();
+        }
+        String credits = json.get("Credits");
+        if (!credits.isEmpty()) {
+            try {
+                stats.credits = Double.parseDouble(credits);
+            } catch (NumberFormatException e) {
+                // Not a number: keep the last one that was
+            }
+        }
+    }
+
+    /**
+     * Records a call that failed without a response (timeout, reset, ...).
+     */
+    public void recordError(String endpoint, long latencyNanos) {
+        EndpointStats stats = endpoint(endpoint);
+        stats.latency.recordNanos(latencyNanos);
+        stats.errors.increment();
+    }
+
+    /**
+     * Counts rows written to an output file.
+     */
+    public void addRows(long count) {
+        rows.add(count);
+    }
+
+    public long rows() {
+        return rows.sum();
+    }
+
+    /**
+     * Rows per second since the metrics were created.
+     */
+    public double rowsPerSecond() {
+        long nanos = System.nanoTime() - startedNanos;
+        return nanos <= 0 ? 0 : rows() * 1e9 / nanos;
+    }
+
+    /**
+     * Registers (or replaces) a gauge. {@code series} is a metric name,
+     * optionally with labels: {@code interzoid_breaker_open{endpoint="getfullnamematch"}}.
+     */
+    public void gauge(String series, String help, DoubleSupplier value) {
+        gauges.put(series, new Gauge(help, value));
+    }
+
+    public void removeGauge(String series) {
+        gauges.remove(series);
+    }
+
+    /**
+     * Latency histogram of an endpoint, e.g. "getcompanymatchadvanced".
+     */
+    public LatencyHistogram latency(String endpoint) {
+        return endpoint(endpoint).latency;
+    }
+
+    private EndpointStats endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new EndpointStats());
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, EndpointStats> sorted = new TreeMap<>(endpoints);
+
+        header(out, "interzoid_api_latency_seconds", "API call latency per endpoint", "summary");
+        for (Map.Entry<String, EndpointStats> e : sorted.entrySet()) {
+            LatencyHistogram latency = e.getValue().latency;
+            String endpoint = escapeLabel(e.getKey());
+            for (double q : new double[] {0.5, 0.99, 0.999}) {
+                out.append("interzoid_api_latency_seconds{endpoint=\"").append(endpoint)
+                    .append("\",quantile=\"").append(q).append("\"} ")
+                    .append(seconds(latency.percentileMicros(q))).append('\n');
+            }
+            out.append("interzoid_api_latency_seconds_sum{endpoint=\"").append(endpoint).append("\"} ")
+                .append(seconds(latency.sumMicros())).append('\n');
+            out.append("interzoid_api_latency_seconds_count{endpoint=\"").append(endpoint).append("\"} ")
+                .append(latency.count()).append('\n');
+        }
+
+        header(out, "interzoid_api_responses_total", "API responses by HTTP status", "counter");
+        for (Map.Entry<String, EndpointStats> e : sorted.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> s : new TreeMap<>(e.getValue().statuses).entrySet()) {
+                out.append("interzoid_api_responses_total{endpoint=\"").append(escapeLabel(e.getKey()))
+                    .append("\",status=\"").append(s.getKey()).append("\"} ").append(s.getValue().sum()).append('\n');
+            }
+        }
+
+        header(out, "interzoid_api_codes_total", "API responses by the Code field", "counter");
+        for (Map.Entry<String, EndpointStats> e : sorted.entrySet()) {
+            for (Map.Entry<String, LongAdder> c : new TreeMap<>(e.getValue().codes).entrySet()) {
+                out.append("interzoid_api_codes_total{endpoint=\"").append(escapeLabel(e.getKey()))
+                    .append("\",code=\"").append(escapeLabel(c.getKey())).append("\",success=\"")
+                    .append("Success".equalsIgnoreCase(c.getKey())).append("\"} ")
+                    .append(c.getValue().sum()).append('\n');
+            }
+        }
+
+        header(out, "interzoid_api_errors_total", "API calls that failed without a response", "counter");
+        for (Map.Entry<String, EndpointStats> e : sorted.entrySet()) {
+            out.append("interzoid_api_errors_total{endpoint=\"").append(escapeLabel(e.getKey())).append("\"} ")
+                .append(e.getValue().errors.sum()).append('\n');
+        }
+
+        header(out, "interzoid_api_credits", "Credits reported by the last response", "gauge");
+        for (Map.Entry<String, EndpointStats> e : sorted.entrySet()) {
+            double credits = e.getValue().credits;
+            if (!Double.isNaN(credits)) {
+                out.append("interzoid_api_credits{endpoint=\"").append(escapeLabel(e.getKey())).append("\"} ")
+                    .append(number(credits)).append('\n');
+            }
+        }
+
+        header(out, "interzoid_rows_total", "Rows written to output files", "counter");
+        out.append("interzoid_rows_total ").append(rows()).append('\n');
+        header(out, "interzoid_rows_per_second", "Rows written per second since start", "gauge");
+        out.append("interzoid_rows_per_second ").append(number(rowsPerSecond())).append('\n');
+
+        String lastName = null;
+        for (Map.Entry<String, Gauge> g : gauges.entrySet()) {
+            String name = nameOf(g.getKey());
+            if (!name.equals(lastName)) {
+                header(out, name, g.getValue().help, "gauge");
+                lastName = name;
+            }
+            out.append(g.getKey()).append(' ').append(number(g.getValue().read())).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * All metrics as one JSON object, latencies in milliseconds.
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder(4096);
+        out.append("{\n  \"uptimeSeconds\": ").append(number((System.nanoTime() - startedNanos) / 1e9))
+            .append(",\n  \"rows\": ").append(rows())
+            .append(",\n  \"rowsPerSecond\": ").append(number(rowsPerSecond()))
+            .append(",\n  \"endpoints\": {");
+        String separator = "";
+        for (Map.Entry<String, EndpointStats> e : new TreeMap<>(endpoints).entrySet()) {
+            EndpointStats stats = e.getValue();
+            LatencyHistogram latency = stats.latency;
+            out.append(separator).append("\n    ").append(quote(e.getKey())).append(": {")
+                .append("\n      \"calls\": ").append(latency.count())
+                .append(",\n      \"errors\": ").append(stats.errors.sum())
+                .append(",\n      \"latencyMs\": {\"p50\": ").append(millis(latency.percentileMicros(0.5)))
+                .append(", \"p99\": ").append(millis(latency.percentileMicros(0.99)))
+                .append(", \"p999\": ").append(millis(latency.percentileMicros(0.999)))
+                .append(", \"max\": ").append(millis(latency.maxMicros()))
+                .append(", \"mean\": ").append(latency.count() == 0 ? "0"
+                    : millis(latency.sumMicros() / latency.count()))
+                .append("},\n      \"statuses\": {");
+            String inner = "";
+            for (Map.Entry<Integer, LongAdder> s : new TreeMap<>(stats.statuses).entrySet()) {
+                out.append(inner).append('"').append(s.getKey()).append("\": ").append(s.getValue().sum());
+                inner = ", ";
+            }
+            out.append("},\n      \"codes\": {");
+            inner = "";
+            for (Map.Entry<String, LongAdder> c : new TreeMap<>(stats.codes).entrySet()) {
+                out.append(inner).append(quote(c.getKey())).append(": ").append(c.getValue().sum());
+                inner = ", ";
+            }
+            out.append("},\n      \"credits\": ")
+                .append(Double.isNaN(stats.credits) ? "null" : number(stats.credits))
+                .append("\n    }");
+            separator = ",";
+        }
+        out.append(endpoints.isEmpty() ? "}" : "\n  }").append(",\n  \"gauges\": {");
+        separator = "";
+        for (Map.Entry<String, Gauge> g : gauges.entrySet()) {
+            out.append(separator).append("\n    ").append(quote(g.getKey())).append(": ")
+                .append(number(g.getValue().read()));
+            separator = ",";
+        }
+        out.append(gauges.isEmpty() ? "}" : "\n  }").append("\n}\n");
+        return out.toString();
+    }
+
+    public void writeJson(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    private void exportFromSystemProperties() {
+        int port = Integer.getInteger("interzoid.metrics.port", 0);
+        if (port > 0) {
+            String host = System.getProperty("interzoid.metrics.host", "127.0.0.1");
+            try {
+                MetricsServer.start(this, host, port);
+            } catch (IOException e) {
+                System.err.println("Could not serve metrics on " + host + ":" + port + ": " + e.getMessage());
+            }
+        }
+
+        String jsonFile = System.getProperty("interzoid.metrics.jsonFile");
+        if (jsonFile != null && !jsonFile.isEmpty()) {
+            Thread dump = new Thread(() -> {
+                try {
+                    writeJson(Paths.get(jsonFile));
+                } catch (IOException e) {
+                    System.err.println("Could not write metrics to " + jsonFile + ": " + e.getMessage());
+                }
+            }, "interzoid-metrics-dump");
+            Runtime.getRuntime().addShutdownHook(dump);
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String nameOf(String series) {
+        int brace = series.indexOf('{');
+        return brace < 0 ? series : series.substring(0, brace);
+    }
+
+    private static String seconds(long micros) {
+        return number(micros / 1e6);
+    }
+
+    private static String millis(long micros) {
+        return number(micros / 1e3);
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return "0";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.format(Locale.ROOT, "%.6g", value).replaceAll("\\.?0+(e|$)", "$1");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String quote(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static final class EndpointStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, LongAdder> codes = new ConcurrentHashMap<>();
+        final LongAdder errors = new LongAdder();
+        volatile double credits = Double.NaN;
+    }
+
+    private static final class Gauge {
+        final String help;
+        final DoubleSupplier value;
+
+        Gauge(String help, DoubleSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+
+        double read() {
+            try {
+                return value.getAsDouble();
+            } catch (RuntimeException e) {
+                return Double.NaN;
+            }
+        }
+    }
+}
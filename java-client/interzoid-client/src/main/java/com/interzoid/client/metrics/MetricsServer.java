@@ -0,0 +1,60 @@
+package com.interzoid.client.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics} over HTTP: /metrics in the Prometheus text
+ * format and /metrics.json. One daemon thread, so it never keeps a
+ * finished run alive.
+ */
+final class MetricsServer {
+
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private MetricsServer() {
+    }
+
+    static HttpServer start(Metrics metrics, String host, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/metrics.json")) {
+                respond(exchange, "application/json", metrics.toJson());
+            } else {
+                respond(exchange, PROMETHEUS_CONTENT_TYPE, metrics.toPrometheus());
+            }
+        });
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "interzoid-metrics");
+            t.setDaemon(true);
+            return t;
+        }));
+
+        // The server's dispatcher thread takes its daemon flag from the
+        // thread that starts it
+        Thread starter = new Thread(server::start, "interzoid-metrics-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.interzoid.client.x402;
+
+import java.math.BigInteger;
+
+/**
+ * EIP-3009 TransferWithAuthorization, the USDC transfer an x402 "exact"
+ * payment signs: its EIP-712 digest, and the account that signed it.
+ *
+ * {@link X402Client} only needs the digest. {@link #recoverSigner} checks
+ * a payment's signature as the token contract will when it is settled,
+ * for a server (or a stub standing in for one) that wants to refuse a
+ * bad payment up front.
+ *
+ * <pre>
+ *   byte[] digest = Eip3009.digest("USD Coin", "2", 8453, asset, from, to, value,
+ *                                  validAfter, validBefore, nonce);
+ *   boolean signedByPayer = from.equalsIgnoreCase(Eip3009.recoverSigner(digest, signature));
+ * </pre>
+ */
+public final class Eip3009 {
+
+    private static final byte[] DOMAIN_TYPEHASH = Keccak256.hash(
+        "EIP712Domain(string name,string version,uint256 chainId,address verifyingContract)");
+    private static final byte[] TRANSFER_TYPEHASH = Keccak256.hash(
+        "TransferWithAuthorization(address from,address to,uint256 value,uint256 validAfter,"
+            + "uint256 validBefore,bytes32 nonce)");
+
+    private Eip3009() {
+    }
+
+    /**
+     * The 32-byte digest that is signed: keccak256(0x1901 || domain
+     * separator || struct hash), with the token contract ({@code asset})
+     * as the verifying contract.
+     *
+     * @param tokenName    the token's EIP-712 name, e.g. "USD Coin" (a quote's extra.name)
+     * @param tokenVersion the token's EIP-712 version, e.g. "2"
+     * @param nonce        32 bytes
+     */
+    public static byte[] digest(String tokenName, String tokenVersion, long chainId, String asset,
+                                String from, String to, BigInteger value, long validAfter, long validBefore,
+                                byte[] nonce) {
+        if (nonce.length != 32) {
+            throw new IllegalArgumentException("nonce must be 32 bytes: " + nonce.length);
+        }
+        byte[] domain = domainSeparator(tokenName, tokenVersion, chainId, asset);
+        byte[] struct = Keccak256.hash(concat(
+            TRANSFER_TYPEHASH,
+            address(from),
+            address(to),
+            uint256(value),
+            uint256(BigInteger.valueOf(validAfter)),
+            uint256(BigInteger.valueOf(validBefore)),
+            nonce));
+        return Keccak256.hash(concat(new byte[] {0x19, 0x01}, domain, struct));
+    }
+
+    /**
+     * The token contract's EIP-712 domain separator, as its
+     * DOMAIN_SEPARATOR() returns it.
+     */
+    static byte[] domainSeparator(String tokenName, String tokenVersion, long chainId, String asset) {
+        return Keccak256.hash(concat(
+            DOMAIN_TYPEHASH,
+            Keccak256.hash(tokenName),
+            Keccak256.hash(tokenVersion),
+            uint256(BigInteger.valueOf(chainId)),
+            address(asset)));
+    }
+
+    /**
+     * The EIP-55 address whose key made an r || s || v signature (65
+     * bytes) of the digest, or null if the signature is not valid.
+     */
+    public static String recoverSigner(byte[] digest, byte[] signature) {
+        byte[] publicKey = Secp256k1.recover(digest, signature);
+        return publicKey == null ? null : EvmSigner.addressOf(publicKey);
+    }
+
+    private static byte[] uint256(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > 256) {
+            throw new IllegalArgumentException("Not a uint256: " + value);
+        }
+        return Secp256k1.toBytes32(value);
+    }
+
+    /** An address left-padded to 32 bytes, as ABI encoding does. */
+    private static byte[] address(String address) {
+        if (!Hex.isAddress(address)) {
+            throw new IllegalArgumentException("Not an address: " + address);
+        }
+        byte[] word = new byte[32];
+        System.arraycopy(Hex.decode(address), 0, word, 12, 20);
+        return word;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] out = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, out, offset, part.length);
+            offset += part.length;
+        }
+        return out;
+    }
+}
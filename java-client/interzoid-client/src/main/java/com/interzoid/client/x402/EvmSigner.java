@@ -0,0 +1,81 @@
+package com.interzoid.client.x402;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An Ethereum account (private key) that signs x402 payments.
+ *
+ * <pre>
+ *   EvmSigner signer = EvmSigner.fromPrivateKey(System.getenv("EVM_PRIVATE_KEY"));
+ *   System.out.println("Paying from " + signer.address());
+ * </pre>
+ *
+ * The key stays in memory and is never written out; {@link #toString()}
+ * shows only the address. Instances are immutable and can be shared
+ * between threads.
+ */
+public final class EvmSigner {
+
+    private final BigInteger privateKey;
+    private final String address;
+
+    private EvmSigner(BigInteger privateKey) {
+        this.privateKey = privateKey;
+        this.address = addressOf(Secp256k1.publicKey(privateKey));
+    }
+
+    /**
+     * @param hex 32-byte private key as hex, with or without 0x
+     */
+    public static EvmSigner fromPrivateKey(String hex) {
+        if (hex == null || hex.isEmpty()) {
+            throw new IllegalArgumentException("No private key given");
+        }
+        String digits = hex.startsWith("0x") || hex.startsWith("0X") ? hex.substring(2) : hex;
+        if (!digits.matches("[0-9a-fA-F]{64}")) {
+            throw new IllegalArgumentException("Private key must be 32 bytes of hex");
+        }
+        BigInteger key = new BigInteger(digits, 16);
+        if (key.signum() == 0 || key.compareTo(Secp256k1.N) >= 0) {
+            throw new IllegalArgumentException("Private key is out of range");
+        }
+        return new EvmSigner(key);
+    }
+
+    /**
+     * The account address in EIP-55 mixed case, e.g. 0x7E5F4552091A69125d5DfCb7b8C2659029395Bdf.
+     */
+    public String address() {
+        return address;
+    }
+
+    /**
+     * Signs a 32-byte EIP-712 digest; returns r || s || v.
+     */
+    byte[] sign(byte[] digest) {
+        return Secp256k1.sign(digest, privateKey);
+    }
+
+    @Override
+    public String toString() {
+        return "EvmSigner(" + address + ")";
+    }
+
+    /**
+     * The EIP-55 address of a 64-byte public key: the last 20 bytes of the
+     * key's hash, with a hex letter upper-cased where the hash of the
+     * lower-case address has a nibble of 8 or more.
+     */
+    static String addressOf(byte[] publicKey) {
+        String lower = Hex.encode(Keccak256.hash(publicKey), 12, 20);
+        byte[] hash = Keccak256.hash(lower.getBytes(StandardCharsets.US_ASCII));
+        StringBuilder out = new StringBuilder("0x");
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            int nibble = (hash[i / 2] >> (i % 2 == 0 ? 4 : 0)) & 0xf;
+            out.append(nibble >= 8 ? Character.toUpperCase(c) : c);
+        }
+        return out.toString();
+    }
+}
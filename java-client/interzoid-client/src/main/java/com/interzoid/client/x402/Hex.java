@@ -0,0 +1,56 @@
+package com.interzoid.client.x402;
+
+/**
+ * Lower-case hex, as Ethereum writes bytes in JSON (with a 0x prefix).
+ */
+final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hex() {
+    }
+
+    static String encode(byte[] bytes, int offset, int length) {
+        char[] out = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = bytes[offset + i] & 0xff;
+            out[2 * i] = DIGITS[b >>> 4];
+            out[2 * i + 1] = DIGITS[b & 0xf];
+        }
+        return new String(out);
+    }
+
+    /**
+     * "0x" followed by the bytes in hex.
+     */
+    static String prefixed(byte[] bytes) {
+        return "0x" + encode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decodes hex with or without a 0x prefix.
+     */
+    static byte[] decode(String hex) {
+        String digits = hex.startsWith("0x") || hex.startsWith("0X") ? hex.substring(2) : hex;
+        if (digits.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits: " + hex);
+        }
+        byte[] out = new byte[digits.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int high = Character.digit(digits.charAt(2 * i), 16);
+            int low = Character.digit(digits.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not hex: " + hex);
+            }
+            out[i] = (byte) (high << 4 | low);
+        }
+        return out;
+    }
+
+    /**
+     * True for a 20-byte address: 0x and 40 hex digits, in any case.
+     */
+    static boolean isAddress(String value) {
+        return value != null && value.matches("0[xX][0-9a-fA-F]{40}");
+    }
+}
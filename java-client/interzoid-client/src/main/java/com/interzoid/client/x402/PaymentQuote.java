@@ -0,0 +1,234 @@
+package com.interzoid.client.x402;
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.JsonFields;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * One way to pay that a 402 Payment Required response offers: an entry
+ * of its {@code accepts} list.
+ *
+ * <pre>
+ *   {"x402Version": 2,
+ *    "accepts": [{"scheme": "exact", "network": "eip155:8453", "amount": "12500",
+ *                 "asset": "0x8335...2913", "payTo": "0xdCEc...7566", "maxTimeoutSeconds": 60,
+ *                 "extra": {"name": "USD Coin", "version": "2"}}]}
+ * </pre>
+ *
+ * Version 1 quotes give the amount as {@code maxAmountRequired} and the
+ * network by name ("base"). Version 2 servers may send the quote base64
+ * encoded in a PAYMENT-REQUIRED header instead of the body; that header
+ * is read first.
+ */
+public final class PaymentQuote {
+
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("x402Version", "accepts", "resource");
+    private static final JsonFields REQUIREMENT_FIELDS = JsonFields.of(
+        "scheme", "network", "amount", "maxAmountRequired", "asset", "payTo", "maxTimeoutSeconds", "extra");
+    private static final JsonFields EXTRA_FIELDS = JsonFields.of("name", "version");
+
+    // USDC's EIP-712 domain, for quotes that leave out "extra"
+    private static final String DEFAULT_TOKEN_NAME = "USD Coin";
+    private static final String DEFAULT_TOKEN_VERSION = "2";
+
+    private static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    private final int version;
+    private final String scheme;
+    private final String network;
+    private final BigInteger amount;
+    private final String asset;
+    private final String payTo;
+    private final long maxTimeoutSeconds;
+    private final String tokenName;
+    private final String tokenVersion;
+    private final String requirementJson;
+    private final String resourceJson;
+
+    private PaymentQuote(int version, String requirementJson, String resourceJson) {
+        JsonFields.Values fields = REQUIREMENT_FIELDS.extract(requirementJson);
+        JsonFields.Values extra = EXTRA_FIELDS.extract(fields.get("extra"));
+        String amountText = fields.get("amount").isEmpty() ? fields.get("maxAmountRequired") : fields.get("amount");
+
+        this.version = version;
+        this.scheme = fields.get("scheme");
+        this.network = fields.get("network");
+        this.amount = amountText.matches("[0-9]+") ? new BigInteger(amountText) : null;
+        this.asset = fields.get("asset");
+        this.payTo = fields.get("payTo");
+        this.maxTimeoutSeconds = fields.get("maxTimeoutSeconds").matches("[0-9]+")
+            ? Long.parseLong(fields.get("maxTimeoutSeconds")) : DEFAULT_TIMEOUT_SECONDS;
+        this.tokenName = extra.get("name").isEmpty() ? DEFAULT_TOKEN_NAME : extra.get("name");
+        this.tokenVersion = extra.get("version").isEmpty() ? DEFAULT_TOKEN_VERSION : extra.get("version");
+        this.requirementJson = requirementJson;
+        this.resourceJson = resourceJson;
+    }
+
+    /**
+     * Reads every payment option of a 402 response, in the server's order.
+     *
+     * @throws IOException if the response holds no x402 quote
+     */
+    public static List<PaymentQuote> parse(HttpResult response) throws IOException {
+        Optional<String> header = response.header("PAYMENT-REQUIRED");
+        byte[] json = response.bodyBytes();
+        if (header.isPresent()) {
+            try {
+                json = Base64.getDecoder().decode(header.get().trim());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("PAYMENT-REQUIRED header is not base64: " + e.getMessage(), e);
+            }
+        }
+        return parse(json);
+    }
+
+    static List<PaymentQuote> parse(byte[] json) throws IOException {
+        JsonFields.Values response = RESPONSE_FIELDS.extract(json);
+        String versionText = response.get("x402Version");
+        int version = versionText.matches("[0-9]+") ? Integer.parseInt(versionText) : 1;
+
+        List<PaymentQuote> quotes = new ArrayList<>();
+        for (String requirement : arrayElements(response.get("accepts"))) {
+            quotes.add(new PaymentQuote(version, requirement, response.get("resource")));
+        }
+        if (quotes.isEmpty()) {
+            throw new IOException("402 response has no x402 quote: " + new String(json, StandardCharsets.UTF_8));
+        }
+        return quotes;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public String scheme() {
+        return scheme;
+    }
+
+    public String network() {
+        return network;
+    }
+
+    /**
+     * Price in the asset's smallest unit (USDC has 6 decimals: 12500 is
+     * $0.0125), or null if the quote has none.
+     */
+    public BigInteger amount() {
+        return amount;
+    }
+
+    /** Token contract address. */
+    public String asset() {
+        return asset;
+    }
+
+    /** Address the payment goes to. */
+    public String payTo() {
+        return payTo;
+    }
+
+    /** How long a signed payment for this quote stays valid. */
+    public long maxTimeoutSeconds() {
+        return maxTimeoutSeconds;
+    }
+
+    /**
+     * EVM chain id of the network ("base" and "eip155:8453" are 8453), or
+     * -1 for a network that is not an EVM chain this client knows.
+     */
+    public long chainId() {
+        if (network.startsWith("eip155:") && network.substring(7).matches("[0-9]{1,18}")) {
+            return Long.parseLong(network.substring(7));
+        }
+        switch (network) {
+            case "base":
+                return 8453;
+            case "base-sepolia":
+                return 84532;
+            default:
+                return -1;
+        }
+    }
+
+    String tokenName() {
+        return tokenName;
+    }
+
+    String tokenVersion() {
+        return tokenVersion;
+    }
+
+    /** The requirement as the server sent it, echoed back in version 2 payments. */
+    String requirementJson() {
+        return requirementJson;
+    }
+
+    /** The response's top-level "resource", or "" if it has none. */
+    String resourceJson() {
+        return resourceJson;
+    }
+
+    /**
+     * True if a payment signed for this quote pays the other one too: the
+     * same scheme, network, amount, asset, recipient and token domain.
+     */
+    boolean sameTerms(PaymentQuote other) {
+        return scheme.equals(other.scheme) && network.equals(other.network)
+            && Objects.equals(amount, other.amount) && asset.equalsIgnoreCase(other.asset)
+            && payTo.equalsIgnoreCase(other.payTo) && tokenName.equals(other.tokenName)
+            && tokenVersion.equals(other.tokenVersion);
+    }
+
+    @Override
+    public String toString() {
+        return scheme + " " + amount + " of " + asset + " on " + network + " to " + payTo;
+    }
+
+    /**
+     * Splits a JSON array into the raw text of its elements.
+     */
+    private static List<String> arrayElements(String array) {
+        List<String> elements = new ArrayList<>();
+        String text = array.trim();
+        if (!text.startsWith("[")) {
+            return elements;
+        }
+        int depth = 0;
+        int start = -1;
+        boolean inString = false;
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth++ == 0) {
+                    start = i;
+                }
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    break;
+                }
+                if (--depth == 0) {
+                    elements.add(text.substring(start, i + 1));
+                }
+            }
+        }
+        return elements;
+    }
+}
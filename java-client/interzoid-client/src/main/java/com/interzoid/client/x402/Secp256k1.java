@@ -0,0 +1,278 @@
+package com.interzoid.client.x402;
+
+import java.math.BigInteger;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ECDSA on secp256k1, the curve Ethereum accounts use, with signatures
+ * in Ethereum's r || s || v form.
+ *
+ * The JDK dropped secp256k1 from SunEC in Java 16, so the curve
+ * arithmetic is done here with BigInteger, in Jacobian coordinates to
+ * avoid a modular inverse per point operation. Nonces are derived from
+ * the key and digest as in RFC 6979, so a signature never depends on a
+ * random source, and s is kept in the lower half of the order as
+ * Ethereum requires.
+ *
+ * {@link #recover} finds the public key that made a signature, as
+ * Ethereum's ecrecover does, for checking payments in tests and stub
+ * servers; the client itself only signs.
+ */
+final class Secp256k1 {
+
+    static final BigInteger P = new BigInteger(
+        "fffffffffffffffffffffffffffffffffffffffffffffffffffffffefffffc2f", 16);
+    static final BigInteger N = new BigInteger(
+        "fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364141", 16);
+    private static final BigInteger GX = new BigInteger(
+        "79be667ef9dcbbac55a06295ce870b07029bfcdb2dce28d959f2815b16f81798", 16);
+    private static final BigInteger GY = new BigInteger(
+        "483ada7726a3c4655da4fbfc0e1108a8fd17b448a68554199c47d08ffb10d4b8", 16);
+    private static final BigInteger HALF_N = N.shiftRight(1);
+
+    private static final BigInteger SEVEN = BigInteger.valueOf(7);
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final BigInteger THREE = BigInteger.valueOf(3);
+    private static final BigInteger EIGHT = BigInteger.valueOf(8);
+
+    private Secp256k1() {
+    }
+
+    /**
+     * Uncompressed public key without its 0x04 prefix: x || y, 64 bytes.
+     */
+    static byte[] publicKey(BigInteger privateKey) {
+        return encode(multiplyG(privateKey));
+    }
+
+    /**
+     * Signs a 32-byte digest: r (32 bytes) || s (32 bytes) || v (27 or 28).
+     */
+    static byte[] sign(byte[] digest, BigInteger privateKey) {
+        if (digest.length != 32) {
+            throw new IllegalArgumentException("digest must be 32 bytes: " + digest.length);
+        }
+        BigInteger z = new BigInteger(1, digest);
+        NonceGenerator nonces = new NonceGenerator(privateKey, digest);
+        while (true) {
+            BigInteger k = nonces.next();
+            BigInteger[] point = toAffine(multiplyG(k));
+            BigInteger r = point[0].mod(N);
+            if (r.signum() == 0) {
+                continue;
+            }
+            BigInteger s = k.modInverse(N).multiply(z.add(r.multiply(privateKey))).mod(N);
+            if (s.signum() == 0) {
+                continue;
+            }
+            int recoveryId = point[1].testBit(0) ? 1 : 0;
+            if (s.compareTo(HALF_N) > 0) {
+                s = N.subtract(s);
+                recoveryId ^= 1;
+            }
+            byte[] signature = new byte[65];
+            System.arraycopy(toBytes32(r), 0, signature, 0, 32);
+            System.arraycopy(toBytes32(s), 0, signature, 32, 32);
+            signature[64] = (byte) (27 + recoveryId);
+            return signature;
+        }
+    }
+
+    /**
+     * The public key (as {@link #publicKey}) that made an r || s || v
+     * signature of the digest, or null if it is not a valid signature.
+     * Like the USDC contract, this refuses an s in the upper half of the
+     * order.
+     */
+    static byte[] recover(byte[] digest, byte[] signature) {
+        if (digest.length != 32 || signature.length != 65) {
+            return null;
+        }
+        int v = signature[64] & 0xff;
+        BigInteger r = new BigInteger(1, Arrays.copyOfRange(signature, 0, 32));
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, 32, 64));
+        if ((v != 27 && v != 28) || r.signum() == 0 || r.compareTo(N) >= 0
+                || s.signum() == 0 || s.compareTo(HALF_N) > 0) {
+            return null;
+        }
+
+        // The nonce point R has x = r (x = r + N is possible but has odds of about 2^-128),
+        // and the y whose parity v gives
+        BigInteger ySquared = r.pow(3).add(SEVEN).mod(P);
+        BigInteger y = ySquared.modPow(P.add(BigInteger.ONE).shiftRight(2), P);
+        if (!y.multiply(y).mod(P).equals(ySquared)) {
+            return null;
+        }
+        if (y.testBit(0) != (v == 28)) {
+            y = P.subtract(y);
+        }
+
+        // Q = r^-1 (s R - z G)
+        BigInteger rInverse = r.modInverse(N);
+        BigInteger u1 = N.subtract(new BigInteger(1, digest).mod(N)).multiply(rInverse).mod(N);
+        BigInteger u2 = s.multiply(rInverse).mod(N);
+        BigInteger[] zG = multiply(u1, GX, GY);
+        BigInteger[] sR = multiply(u2, r, y);
+        BigInteger[] q;
+        if (zG == null) {
+            q = sR;
+        } else if (sR == null) {
+            q = zG;
+        } else {
+            BigInteger[] affine = toAffine(zG);
+            q = add(sR, affine[0], affine[1]);
+        }
+        return q == null ? null : encode(q);
+    }
+
+    static byte[] toBytes32(BigInteger value) {
+        byte[] raw = value.toByteArray();
+        if (raw.length == 32) {
+            return raw;
+        }
+        byte[] out = new byte[32];
+        if (raw.length > 32) {
+            System.arraycopy(raw, raw.length - 32, out, 0, 32);
+        } else {
+            System.arraycopy(raw, 0, out, 32 - raw.length, raw.length);
+        }
+        return out;
+    }
+
+    //------------------------------------------------------------------
+    // Curve arithmetic: points are {X, Y, Z} with x = X/Z^2, y = Y/Z^3;
+    // null is the point at infinity
+    //------------------------------------------------------------------
+
+    private static BigInteger[] multiplyG(BigInteger k) {
+        return multiply(k, GX, GY);
+    }
+
+    /**
+     * k times the affine point (x, y).
+     */
+    private static BigInteger[] multiply(BigInteger k, BigInteger x, BigInteger y) {
+        BigInteger[] result = null;
+        for (int bit = k.bitLength() - 1; bit >= 0; bit--) {
+            result = twice(result);
+            if (k.testBit(bit)) {
+                result = add(result, x, y);
+            }
+        }
+        return result;
+    }
+
+    private static BigInteger[] twice(BigInteger[] point) {
+        if (point == null || point[1].signum() == 0) {
+            return null;
+        }
+        BigInteger x = point[0];
+        BigInteger y = point[1];
+        BigInteger ySquared = y.multiply(y).mod(P);
+        BigInteger s = x.multiply(ySquared).shiftLeft(2).mod(P);
+        BigInteger m = x.multiply(x).multiply(THREE).mod(P);
+        BigInteger x3 = m.multiply(m).subtract(s.multiply(TWO)).mod(P);
+        BigInteger y3 = m.multiply(s.subtract(x3)).subtract(ySquared.multiply(ySquared).multiply(EIGHT)).mod(P);
+        BigInteger z3 = y.multiply(point[2]).shiftLeft(1).mod(P);
+        return new BigInteger[] {x3, y3, z3};
+    }
+
+    /**
+     * point + the affine point (x, y).
+     */
+    private static BigInteger[] add(BigInteger[] point, BigInteger x, BigInteger y) {
+        if (point == null) {
+            return new BigInteger[] {x, y, BigInteger.ONE};
+        }
+        BigInteger z = point[2];
+        BigInteger zSquared = z.multiply(z).mod(P);
+        BigInteger u2 = x.multiply(zSquared).mod(P);
+        BigInteger s2 = y.multiply(zSquared).multiply(z).mod(P);
+        BigInteger h = u2.subtract(point[0]).mod(P);
+        BigInteger r = s2.subtract(point[1]).mod(P);
+        if (h.signum() == 0) {
+            return r.signum() == 0 ? twice(point) : null;
+        }
+        BigInteger hSquared = h.multiply(h).mod(P);
+        BigInteger hCubed = hSquared.multiply(h).mod(P);
+        BigInteger v = point[0].multiply(hSquared).mod(P);
+        BigInteger x3 = r.multiply(r).subtract(hCubed).subtract(v.shiftLeft(1)).mod(P);
+        BigInteger y3 = r.multiply(v.subtract(x3)).subtract(point[1].multiply(hCubed)).mod(P);
+        BigInteger z3 = z.multiply(h).mod(P);
+        return new BigInteger[] {x3, y3, z3};
+    }
+
+    /**
+     * x || y of a point, 32 bytes each.
+     */
+    private static byte[] encode(BigInteger[] point) {
+        BigInteger[] affine = toAffine(point);
+        byte[] key = new byte[64];
+        System.arraycopy(toBytes32(affine[0]), 0, key, 0, 32);
+        System.arraycopy(toBytes32(affine[1]), 0, key, 32, 32);
+        return key;
+    }
+
+    private static BigInteger[] toAffine(BigInteger[] point) {
+        BigInteger zInverse = point[2].modInverse(P);
+        BigInteger zInverseSquared = zInverse.multiply(zInverse).mod(P);
+        return new BigInteger[] {
+            point[0].multiply(zInverseSquared).mod(P),
+            point[1].multiply(zInverseSquared).multiply(zInverse).mod(P),
+        };
+    }
+
+    /**
+     * Deterministic nonces from RFC 6979, section 3.2, with HMAC-SHA256.
+     */
+    private static final class NonceGenerator {
+        private final Mac mac;
+        private byte[] k = new byte[32];
+        private byte[] v = new byte[32];
+
+        NonceGenerator(BigInteger privateKey, byte[] digest) {
+            try {
+                mac = Mac.getInstance("HmacSHA256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+            byte[] key = toBytes32(privateKey);
+            byte[] message = toBytes32(new BigInteger(1, digest).mod(N));
+            Arrays.fill(v, (byte) 0x01);
+            k = hmac(k, v, new byte[] {0x00}, key, message);
+            v = hmac(k, v);
+            k = hmac(k, v, new byte[] {0x01}, key, message);
+            v = hmac(k, v);
+        }
+
+        BigInteger next() {
+            while (true) {
+                v = hmac(k, v);
+                BigInteger candidate = new BigInteger(1, v);
+                // Ready the state for another candidate in case this one is rejected
+                k = hmac(k, v, new byte[] {0x00});
+                v = hmac(k, v);
+                if (candidate.signum() > 0 && candidate.compareTo(N) < 0) {
+                    return candidate;
+                }
+            }
+        }
+
+        private byte[] hmac(byte[] key, byte[]... parts) {
+            try {
+                mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            } catch (InvalidKeyException e) {
+                throw new IllegalStateException(e);
+            }
+            for (byte[] part : parts) {
+                mac.update(part);
+            }
+            return mac.doFinal();
+        }
+    }
+}
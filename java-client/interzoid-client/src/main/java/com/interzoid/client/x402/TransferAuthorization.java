@@ -0,0 +1,101 @@
+package com.interzoid.client.x402;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * A signed USDC transfer for one quote: an EIP-3009
+ * TransferWithAuthorization, signed as EIP-712 typed data, that the
+ * server's facilitator submits on chain to settle the payment.
+ *
+ * Signing needs nothing from the server, so authorizations can be made
+ * ahead of time for a quote that is already known. Each carries a random
+ * nonce that the token contract accepts once, so the same authorization
+ * can never pay twice. {@link X402Client} sends each in one request only.
+ */
+final class TransferAuthorization {
+
+    // Allows for a server clock somewhat behind ours
+    private static final long VALID_AFTER_SKEW_SECONDS = 600;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final PaymentQuote quote;
+    private final String from;
+    private final long validAfter;
+    private final long validBefore;
+    private final byte[] nonce;
+    private final byte[] signature;
+
+    private TransferAuthorization(PaymentQuote quote, String from, long validAfter, long validBefore,
+                                  byte[] nonce, byte[] signature) {
+        this.quote = quote;
+        this.from = from;
+        this.validAfter = validAfter;
+        this.validBefore = validBefore;
+        this.nonce = nonce;
+        this.signature = signature;
+    }
+
+    /**
+     * Signs a transfer of the quoted amount, valid from now for the
+     * quote's maxTimeoutSeconds.
+     */
+    static TransferAuthorization sign(PaymentQuote quote, EvmSigner signer, long nowSeconds) {
+        long validAfter = nowSeconds - VALID_AFTER_SKEW_SECONDS;
+        long validBefore = nowSeconds + quote.maxTimeoutSeconds();
+        byte[] nonce = new byte[32];
+        RANDOM.nextBytes(nonce);
+
+        byte[] digest = Eip3009.digest(quote.tokenName(), quote.tokenVersion(), quote.chainId(), quote.asset(),
+            signer.address(), quote.payTo(), quote.amount(), validAfter, validBefore, nonce);
+
+        return new TransferAuthorization(quote, signer.address(), validAfter, validBefore, nonce,
+            signer.sign(digest));
+    }
+
+    PaymentQuote quote() {
+        return quote;
+    }
+
+    /** Seconds until the facilitator would refuse this authorization. */
+    long secondsLeft(long nowSeconds) {
+        return validBefore - nowSeconds;
+    }
+
+    /**
+     * Name of the request header that carries the payment: PAYMENT-SIGNATURE
+     * for x402 version 2, X-PAYMENT for version 1.
+     */
+    String headerName() {
+        return quote.version() >= 2 ? "PAYMENT-SIGNATURE" : "X-PAYMENT";
+    }
+
+    /**
+     * The payment payload, base64 encoded JSON, for {@link #headerName()}.
+     */
+    String headerValue() {
+        String payload = "{\"signature\":\"" + Hex.prefixed(signature) + "\","
+            + "\"authorization\":{"
+            + "\"from\":\"" + from + "\","
+            + "\"to\":\"" + quote.payTo() + "\","
+            + "\"value\":\"" + quote.amount() + "\","
+            + "\"validAfter\":\"" + validAfter + "\","
+            + "\"validBefore\":\"" + validBefore + "\","
+            + "\"nonce\":\"" + Hex.prefixed(nonce) + "\"}}";
+        String json;
+        if (quote.version() >= 2) {
+            json = "{\"x402Version\":" + quote.version() + ","
+                + (quote.resourceJson().isEmpty() ? "" : "\"resource\":" + quote.resourceJson() + ",")
+                + "\"accepted\":" + quote.requirementJson() + ","
+                + "\"payload\":" + payload + "}";
+        } else {
+            json = "{\"x402Version\":1,"
+                + "\"scheme\":\"" + quote.scheme() + "\","
+                + "\"network\":\"" + quote.network() + "\","
+                + "\"payload\":" + payload + "}";
+        }
+        return Base64.getEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,357 @@
+package com.interzoid.client.x402;
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pays for API calls with x402: USDC authorizations signed by an
+ * {@link EvmSigner}, sent in place of an API key.
+ *
+ * A plain x402 call takes two round trips: the request is refused with
+ * 402 and a quote, and is then sent again with a payment signed for that
+ * quote. The price of an endpoint rarely changes between calls, so this
+ * client keeps each URL's quote (after checking it against
+ * {@link #maxAmount} and the allowed {@link #networks}) and sends later
+ * calls to that URL with a payment straight away, in one round trip. A
+ * background thread keeps a few authorizations for each known quote
+ * signed ahead of time, so the ECDSA signature is off the request path
+ * too.
+ *
+ * <pre>
+ *   try (X402Client payer = X402Client.create(InterzoidHttp.shared(), EvmSigner.fromPrivateKey(key))) {
+ *       HttpResult result = payer.get(url);
+ *   }
+ * </pre>
+ *
+ * If the server refuses a payment for a kept quote with a different
+ * quote (the price changed), the kept quote is dropped and the call is
+ * paid once more against the new one; a second refusal is an error.
+ *
+ * Each authorization carries its own nonce and is sent in exactly one
+ * request. A paid request is never retried: the server may have settled
+ * the payment even if it answered with a 5xx or the answer was lost. A
+ * 429 or 5xx to a paid request is returned to the caller, and a transport
+ * error thrown. Only the unpaid request for a quote is retried as usual.
+ * The JDK client itself resends a GET whose connection closed before any
+ * answer, which the server refuses as a replay; a refusal that comes with
+ * the quote just paid is therefore an error, never a reason to pay again.
+ *
+ * Defaults can be overridden with system properties:
+ *
+ * <pre>
+ *   interzoid.x402.maxAmount        most paid per call, in USDC base units (default 1000000 = $1)
+ *   interzoid.x402.networks         networks payments may be made on (default eip155:8453,base)
+ *   interzoid.x402.quoteTtlSeconds  how long a quote is reused; 0 asks every time (default 300)
+ *   interzoid.x402.presigned        authorizations kept signed per quote (default 2)
+ * </pre>
+ */
+public final class X402Client implements Closeable {
+
+    // How often spares are topped up and expired quotes dropped
+    private static final long REFRESH_SECONDS = 5;
+
+    private final InterzoidHttp http;
+    private final EvmSigner signer;
+    private final ConcurrentHashMap<String, KnownQuote> quotes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService background;
+
+    private volatile BigInteger maxAmount = BigInteger.valueOf(Long.getLong("interzoid.x402.maxAmount", 1_000_000));
+    private volatile Set<String> networks = parseNetworks(System.getProperty("interzoid.x402.networks", "eip155:8453,base"));
+    private volatile long quoteTtlSeconds = Long.getLong("interzoid.x402.quoteTtlSeconds", 300);
+    private volatile int presigned = Integer.getInteger("interzoid.x402.presigned", 2);
+
+    private final LongAdder challenges = new LongAdder();
+    private final LongAdder quoteReuses = new LongAdder();
+    private final LongAdder presignedUsed = new LongAdder();
+    private final LongAdder signedOnRequest = new LongAdder();
+
+    private X402Client(InterzoidHttp http, EvmSigner signer) {
+        this.http = http;
+        this.signer = signer;
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "interzoid-x402");
+            t.setDaemon(true);
+            return t;
+        });
+        background.scheduleWithFixedDelay(this::refresh, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static X402Client create(InterzoidHttp http, EvmSigner signer) {
+        return new X402Client(http, signer);
+    }
+
+    /**
+     * Most this client pays for one call, in the asset's base units (USDC
+     * has 6 decimals). A quote above it is refused with an IOException.
+     */
+    public X402Client maxAmount(long baseUnits) {
+        this.maxAmount = BigInteger.valueOf(baseUnits);
+        return this;
+    }
+
+    /**
+     * Networks payments may be made on, by x402 name: "eip155:8453" or "base".
+     */
+    public X402Client networks(String... networks) {
+        this.networks = new HashSet<>(Arrays.asList(networks));
+        return this;
+    }
+
+    /**
+     * How long a URL's quote is reused before it is asked for again. Zero
+     * turns reuse off: every call takes the 402 round trip.
+     */
+    public X402Client quoteTtl(Duration ttl) {
+        this.quoteTtlSeconds = ttl.getSeconds();
+        return this;
+    }
+
+    /**
+     * Authorizations kept signed ahead of time for each quote. Zero signs
+     * each payment when its call is made.
+     */
+    public X402Client presigned(int count) {
+        this.presigned = count;
+        return this;
+    }
+
+    public EvmSigner signer() {
+        return signer;
+    }
+
+    /**
+     * GETs {@code url}, paying for it if the server asks.
+     *
+     * @throws IOException if the quote is not acceptable, or the payment was refused
+     */
+    public HttpResult get(String url) throws IOException {
+        return call(url, headers -> headers.isEmpty() ? http.get(url) : http.getOnce(url, headers));
+    }
+
+    /**
+     * {@link InterzoidHttp#download} of {@code url}, paying for it if the
+     * server asks. Downloads are not retried.
+     *
+     * @throws IOException if the quote is not acceptable, or the payment was refused
+     */
+    public HttpResult download(String url, Path target, Duration timeout) throws IOException {
+        return call(url, headers -> http.download(url, target, timeout, headers));
+    }
+
+    /** 402 responses read for a quote, i.e. calls that took two round trips. */
+    public long challenges() {
+        return challenges.sum();
+    }
+
+    /** Calls sent with a payment straight away, against a kept quote. */
+    public long quoteReuses() {
+        return quoteReuses.sum();
+    }
+
+    /** Payments that used an authorization signed ahead of time. */
+    public long presignedUsed() {
+        return presignedUsed.sum();
+    }
+
+    /** Payments signed on the calling thread. */
+    public long signedOnRequest() {
+        return signedOnRequest.sum();
+    }
+
+    @Override
+    public void close() {
+        background.shutdownNow();
+    }
+
+    private HttpResult call(String url, Request request) throws IOException {
+        long now = nowSeconds();
+        KnownQuote known = quotes.get(url);
+        HttpResult result;
+        PaymentQuote offered;
+        if (known != null && !known.expired(now)) {
+            quoteReuses.increment();
+            result = request.send(payment(known, now));
+            if (result.statusCode() != 402) {
+                return result;
+            }
+            quotes.remove(url, known);
+            challenges.increment();
+            offered = choose(url, PaymentQuote.parse(result));
+            if (offered.sameTerms(known.quote)) {
+                throw refused(known.quote, result);
+            }
+        } else {
+            result = request.send(Map.of());
+            if (result.statusCode() != 402) {
+                return result;
+            }
+            challenges.increment();
+            offered = choose(url, PaymentQuote.parse(result));
+        }
+
+        KnownQuote fresh = new KnownQuote(offered, now, quoteTtlSeconds);
+        if (quoteTtlSeconds > 0) {
+            quotes.put(url, fresh);
+        }
+        result = request.send(payment(fresh, nowSeconds()));
+        if (result.statusCode() == 402) {
+            quotes.remove(url, fresh);
+            throw refused(fresh.quote, result);
+        }
+        return result;
+    }
+
+    /**
+     * A payment refused though its quote still stands: a bad payment, or a
+     * replay of one the server may already have settled. Not paid again.
+     */
+    private static IOException refused(PaymentQuote quote, HttpResult result) {
+        return new IOException("x402 payment for " + quote + " was refused: " + result.body());
+    }
+
+    private Map<String, String> payment(KnownQuote known, long now) {
+        TransferAuthorization authorization = known.takeSpare(now);
+        if (authorization != null) {
+            presignedUsed.increment();
+        } else {
+            signedOnRequest.increment();
+            authorization = TransferAuthorization.sign(known.quote, signer, now);
+        }
+        if (presigned > 0 && quoteTtlSeconds > 0) {
+            try {
+                background.execute(() -> topUp(known));
+            } catch (RejectedExecutionException e) {
+                // closed: sign on request from here on
+            }
+        }
+        return Map.of(authorization.headerName(), authorization.headerValue());
+    }
+
+    /**
+     * The first offered quote this client may pay.
+     */
+    private PaymentQuote choose(String url, List<PaymentQuote> offered) throws IOException {
+        List<String> reasons = new ArrayList<>();
+        for (PaymentQuote quote : offered) {
+            String reason = refusal(quote);
+            if (reason == null) {
+                return quote;
+            }
+            reasons.add(quote + ": " + reason);
+        }
+        throw new IOException("No acceptable x402 quote for " + url + ": " + String.join("; ", reasons));
+    }
+
+    private String refusal(PaymentQuote quote) {
+        if (!"exact".equals(quote.scheme())) {
+            return "scheme is not \"exact\"";
+        }
+        if (!networks.contains(quote.network()) || quote.chainId() <= 0) {
+            return "network is not one of " + networks;
+        }
+        if (quote.amount() == null || quote.amount().signum() <= 0) {
+            return "no amount";
+        }
+        if (quote.amount().compareTo(maxAmount) > 0) {
+            return "amount is above maxAmount " + maxAmount;
+        }
+        if (!Hex.isAddress(quote.payTo()) || !Hex.isAddress(quote.asset())) {
+            return "payTo or asset is not an address";
+        }
+        return null;
+    }
+
+    private void topUp(KnownQuote known) {
+        long now = nowSeconds();
+        known.dropStale(now);
+        while (known.spares.size() < presigned && !known.expired(now) && quotes.containsValue(known)) {
+            known.spares.add(TransferAuthorization.sign(known.quote, signer, now));
+        }
+    }
+
+    private void refresh() {
+        long now = nowSeconds();
+        quotes.values().removeIf(known -> known.expired(now));
+        for (KnownQuote known : quotes.values()) {
+            topUp(known);
+        }
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static Set<String> parseNetworks(String list) {
+        Set<String> set = new HashSet<>();
+        for (String network : list.split(",")) {
+            if (!network.trim().isEmpty()) {
+                set.add(network.trim());
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * A quote accepted for one URL, with authorizations signed ahead of time.
+     */
+    private static final class KnownQuote {
+        final PaymentQuote quote;
+        final long expiresAt;
+        final ConcurrentLinkedDeque<TransferAuthorization> spares = new ConcurrentLinkedDeque<>();
+
+        KnownQuote(PaymentQuote quote, long now, long ttlSeconds) {
+            this.quote = quote;
+            this.expiresAt = now + ttlSeconds;
+        }
+
+        boolean expired(long now) {
+            return now >= expiresAt;
+        }
+
+        /**
+         * A spare with at least half its validity left, so the facilitator
+         * still accepts it once the call has been answered; or null.
+         */
+        TransferAuthorization takeSpare(long now) {
+            TransferAuthorization spare;
+            while ((spare = spares.pollFirst()) != null) {
+                if (fresh(spare, now)) {
+                    return spare;
+                }
+            }
+            return null;
+        }
+
+        void dropStale(long now) {
+            spares.removeIf(spare -> !fresh(spare, now));
+        }
+
+        private boolean fresh(TransferAuthorization spare, long now) {
+            return spare.secondsLeft(now) >= quote.maxTimeoutSeconds() / 2;
+        }
+    }
+
+    private interface Request {
+        HttpResult send(Map<String, String> headers) throws IOException;
+    }
+}
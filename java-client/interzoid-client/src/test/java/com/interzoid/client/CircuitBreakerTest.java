@@ -0,0 +1,74 @@
+package com.interzoid.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static CircuitBreaker openBreaker() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, Duration.ofMillis(20));
+        breaker.onFailure(breaker.awaitPermit());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    @Test
+    void releasedProbePassesToTheNextCaller() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.awaitPermit(), "first caller after the open period is the probe");
+
+        // The probe is abandoned before it is sent, as when the limiter wait is interrupted
+        breaker.releasePermit(true);
+
+        boolean nextIsProbe = CompletableFuture.supplyAsync(() -> {
+            try {
+                return breaker.awaitPermit();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertTrue(nextIsProbe);
+        breaker.onSuccess(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void lateSuccessDoesNotCloseAnOpenBreaker() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+        breaker.onSuccess(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void throttledProbeLeavesTheBreakerHalfOpen() throws Exception {
+        CircuitBreaker breaker = openBreaker();
+        assertTrue(breaker.awaitPermit());
+        breaker.onSuccess(false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state(), "only the probe may close it");
+
+        breaker.releasePermit(true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.awaitPermit());
+        breaker.onFailure(true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(2, breaker.timesOpened());
+    }
+
+    @Test
+    void closedBreakerHandsOutOrdinaryPermits() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 2, Duration.ofSeconds(1));
+        assertFalse(breaker.awaitPermit());
+        breaker.onFailure(false);
+        breaker.releasePermit(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onFailure(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+}
@@ -0,0 +1,202 @@
+package com.interzoid.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** Longer than the decrease interval for these latencies, so the next pushback counts. */
+    private static void pastDecreaseInterval() throws InterruptedException {
+        Thread.sleep(20);
+    }
+
+    /** Takes every free slot. */
+    private static void fill(ConcurrencyLimiter limiter) throws InterruptedException {
+        while (limiter.inFlight() < limiter.limit()) {
+            limiter.acquire();
+        }
+    }
+
+    /** Answers one call promptly and starts the next ones, as a busy caller does. */
+    private static void answer(ConcurrencyLimiter limiter, int calls) throws InterruptedException {
+        for (int i = 0; i < calls; i++) {
+            limiter.onResponse(200, FAST, null);
+            fill(limiter);
+        }
+    }
+
+    @Test
+    void slowStartDoublesTheLimitEachRoundUpToTheMax() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 2, 64);
+        fill(limiter);
+        for (int expected : new int[] {4, 8, 16, 32, 64, 64}) {
+            answer(limiter, limiter.limit());
+            assertEquals(expected, limiter.limit());
+            assertEquals(expected, limiter.inFlight());
+        }
+    }
+
+    @Test
+    void afterAPushbackTheLimitGrowsByAboutOnePerRound() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 32, 64);
+        fill(limiter);
+        limiter.onResponse(429, FAST, null);
+        assertEquals(16, limiter.limit());
+        fill(limiter);
+
+        // Each busy call adds 1/limit: just under one slot per round, not a doubling
+        for (int round = 1; round <= 10; round++) {
+            int before = limiter.limit();
+            answer(limiter, before);
+            assertTrue(limiter.limit() - before <= 1, "round " + round + ": " + limiter.limit());
+        }
+        assertTrue(limiter.limit() >= 24 && limiter.limit() <= 26, "limit " + limiter.limit());
+    }
+
+    @Test
+    void anIdleLimiterDoesNotGrow() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 4, 64);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire();
+            limiter.onResponse(200, FAST, null);
+        }
+        assertEquals(4, limiter.limit());
+    }
+
+    @Test
+    void aBurstOfThrottledCallsHalvesTheLimitOnce() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 40, 64);
+        fill(limiter);
+        // The very first pushback counts, even right after the limiter is created
+        for (int i = 0; i < 5; i++) {
+            limiter.onResponse(429, FAST, null);
+        }
+        assertEquals(20, limiter.limit());
+        assertEquals(5, limiter.throttledCount());
+
+        pastDecreaseInterval();
+        limiter.onResponse(503, FAST, null);
+        assertEquals(10, limiter.limit());
+        pastDecreaseInterval();
+        limiter.onError();
+        assertEquals(5, limiter.limit());
+        assertEquals(6, limiter.throttledCount(), "transport errors are not responses");
+    }
+
+    @Test
+    void theLimitNeverFallsBelowOne() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 4, 64);
+        fill(limiter);
+        for (int i = 0; i < 4; i++) {
+            pastDecreaseInterval();
+            limiter.onResponse(500, FAST, null);
+        }
+        assertEquals(1, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void growingLatencyCutsTheLimitByATenth() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 20, 64);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+        limiter.onResponse(200, FAST, null);
+        // A little slower than the quietest call is jitter, not queueing
+        limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(3), null);
+        assertEquals(20, limiter.limit());
+
+        // Decreases are at most one per smoothed round trip, here up to 50 ms
+        Thread.sleep(100);
+        int responses = 0;
+        while (limiter.limit() == 20 && responses < 8) {
+            limiter.onResponse(200, TimeUnit.MILLISECONDS.toNanos(50), null);
+            responses++;
+        }
+        assertEquals(18, limiter.limit());
+        assertTrue(responses > 1, "one slow call does not move the smoothed latency far enough");
+    }
+
+    @Test
+    void clampsTheInitialLimit() {
+        assertEquals(1, new ConcurrencyLimiter(true, 0, 8).limit());
+        assertEquals(8, new ConcurrencyLimiter(true, 100, 8).limit());
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter(true, 1, 0));
+    }
+
+    @Test
+    void withoutAdaptiveLimitingTheLimitStaysAtTheMax() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(false, 2, 8);
+        assertEquals(8, limiter.limit());
+        fill(limiter);
+        limiter.onResponse(429, FAST, null);
+        limiter.onError();
+        answer(limiter, 20);
+        assertEquals(8, limiter.limit());
+        assertEquals(1, limiter.throttledCount());
+    }
+
+    @Test
+    void acquireWaitsForAFreeSlot() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(false, 1, 1);
+        limiter.acquire();
+        CompletableFuture<Void> next = CompletableFuture.runAsync(limiter::acquireUninterruptibly);
+        Thread.sleep(100);
+        assertFalse(next.isDone());
+        limiter.onResponse(200, FAST, null);
+        next.get(5, TimeUnit.SECONDS);
+        assertEquals(1, limiter.inFlight());
+    }
+
+    @Test
+    void retryAfterHoldsBackNewCalls() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 4, 4);
+        limiter.acquire();
+        limiter.onResponse(429, -1, "1");
+        long started = System.nanoTime();
+        limiter.acquire();
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    void parsesRetryAfterSeconds() {
+        assertEquals(TimeUnit.SECONDS.toNanos(120), ConcurrencyLimiter.parseRetryAfter("120"));
+        assertEquals(TimeUnit.SECONDS.toNanos(7), ConcurrencyLimiter.parseRetryAfter(" 7 "));
+        assertEquals(0, ConcurrencyLimiter.parseRetryAfter("0"));
+        assertEquals(0, ConcurrencyLimiter.parseRetryAfter("-3"));
+    }
+
+    @Test
+    void parsesRetryAfterHttpDates() {
+        String inThirtySeconds = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        long pause = ConcurrencyLimiter.parseRetryAfter(inThirtySeconds);
+        // The date has whole seconds, so up to one is lost
+        assertTrue(pause > TimeUnit.SECONDS.toNanos(28) && pause <= TimeUnit.SECONDS.toNanos(30), inThirtySeconds);
+
+        assertEquals(0, ConcurrencyLimiter.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+        // Further off than a long counts in nanoseconds: as long a pause as there is
+        assertEquals(Long.MAX_VALUE, ConcurrencyLimiter.parseRetryAfter("Fri, 31 Dec 9999 23:59:59 GMT"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " ", "soon", "1.5", "2e3", "Wed, 21 Oct 2015", "2015-10-21T07:28:00Z",
+        "Wed, 32 Oct 2015 07:28:00 GMT"})
+    void ignoresAMalformedRetryAfter(String value) {
+        assertEquals(0, ConcurrencyLimiter.parseRetryAfter(value));
+    }
+}
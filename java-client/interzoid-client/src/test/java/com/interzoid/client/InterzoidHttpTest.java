@@ -0,0 +1,133 @@
+package com.interzoid.client;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InterzoidHttpTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.createContext("/getorgstandard", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, status.get());
+        });
+        server.createContext("/getfullnamematch", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                slowRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200);
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        slowRelease.countDown();
+        server.stop(0);
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, int code) throws IOException {
+        byte[] body = "{\"Code\":\"Success\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void probeInterruptedWaitingForTheLimiterDoesNotWedgeTheBreaker() throws Exception {
+        InterzoidHttp http = InterzoidHttp.create(new HttpConfig()
+            .adaptive(false)
+            .poolSize(1)
+            .maxAttempts(1)
+            .breakerFailureThreshold(1)
+            .breakerOpenDuration(Duration.ofMillis(50)));
+        String url = baseUrl + "/getorgstandard?org=x";
+
+        status.set(503);
+        assertEquals(503, http.get(url).statusCode());
+        assertEquals(CircuitBreaker.State.OPEN, http.breaker("getorgstandard").state());
+        status.set(200);
+
+        // Another endpoint holds the only limiter slot
+        CompletableFuture<HttpResult> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return http.get(baseUrl + "/getfullnamematch?fullname=x");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (http.limiter().inFlight() == 0) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+
+        // The probe waits for the limiter and is interrupted there
+        Thread probe = new Thread(() -> assertThrows(IOException.class, () -> http.get(url)));
+        probe.start();
+        Thread.sleep(100);
+        probe.interrupt();
+        probe.join(5_000);
+
+        slowRelease.countDown();
+        assertEquals(200, slow.get(5, TimeUnit.SECONDS).statusCode());
+
+        HttpResult next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return http.get(url);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertEquals(200, next.statusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, http.breaker("getorgstandard").state());
+    }
+
+    @Test
+    void throttledProbeDoesNotCloseTheBreaker() throws Exception {
+        InterzoidHttp http = InterzoidHttp.create(new HttpConfig()
+            .adaptive(false)
+            .maxAttempts(1)
+            .breakerFailureThreshold(1)
+            .breakerOpenDuration(Duration.ofMillis(50)));
+        String url = baseUrl + "/getorgstandard?org=x";
+
+        status.set(503);
+        http.get(url);
+        status.set(429);
+        assertEquals(429, http.get(url).statusCode());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, http.breaker("getorgstandard").state());
+
+        status.set(200);
+        assertEquals(200, http.get(url).statusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, http.breaker("getorgstandard").state());
+    }
+}
@@ -0,0 +1,168 @@
+package com.interzoid.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonFieldsTest {
+
+    private static final JsonFields FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
+    @Test
+    void readsTopLevelStringsInTheOrderGiven() {
+        JsonFields.Values values = FIELDS.extract(
+            "{ \"Credits\" : \"4999\" ,\n\t\"Code\":\"Success\", \"Other\":\"x\", \"SimKey\":\"N1Ai4RfV0SRJf2dJwDO0Cvzh4xCgQG\"}");
+        assertEquals("N1Ai4RfV0SRJf2dJwDO0Cvzh4xCgQG", values.get("SimKey"));
+        assertEquals("N1Ai4RfV0SRJf2dJwDO0Cvzh4xCgQG", values.get(0));
+        assertEquals("Success", values.get("Code"));
+        assertEquals("4999", values.get(2));
+        assertFalse(values.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> values.get("Other"));
+    }
+
+    @Test
+    void unescapesQuotesBackslashesAndSlashes() {
+        JsonFields.Values values = FIELDS.extract(
+            "{\"SimKey\":\"a \\\"quoted\\\" \\\\ path\\/to\",\"Code\":\"line\\nbreak\\ttab\\r\\b\\f\"}");
+        assertEquals("a \"quoted\" \\ path/to", values.get("SimKey"));
+        assertEquals("line\nbreak\ttab\r\b\f", values.get("Code"));
+    }
+
+    @Test
+    void decodesUnicodeEscapesAndSurrogatePairs() {
+        JsonFields.Values values = FIELDS.extract(
+            "{\"SimKey\":\"caf\\u00e9 \\u6771\\u4EAC\",\"Code\":\"\\ud83d\\ude00!\"}");
+        assertEquals("café 東京", values.get("SimKey"));
+        assertEquals("\uD83D\uDE00!", values.get("Code"));
+        assertEquals("😀!", values.get("Code"));
+    }
+
+    @Test
+    void keepsRawMultiByteUtf8() {
+        String text = "Zürich Straße 東京 😀";
+        JsonFields.Values values = FIELDS.extract(
+            ("{\"SimKey\":\"" + text + "\",\"Code\":\"" + text + " \\\"HQ\\\"\"}").getBytes(StandardCharsets.UTF_8));
+        assertEquals(text, values.get("SimKey"));
+        // Raw UTF-8 on both sides of an escape
+        assertEquals(text + " \"HQ\"", values.get("Code"));
+    }
+
+    @Test
+    void matchesNonAsciiAndEscapedKeys() {
+        JsonFields fields = JsonFields.of("Straße", "SimKey");
+        JsonFields.Values values = fields.extract("{\"Straße\":\"1\",\"Sim\\u004Bey\":\"k\"}");
+        assertEquals("1", values.get("Straße"));
+        assertEquals("k", values.get("SimKey"));
+    }
+
+    @Test
+    void doesNotMatchKeysInNestedObjectsOrArrays() {
+        JsonFields.Values values = FIELDS.extract("{\"Meta\":{\"SimKey\":\"inner\",\"Code\":{\"Credits\":\"1\"}},"
+            + "\"List\":[{\"SimKey\":\"in array\"},\"SimKey\",[\"Code\"]],"
+            + "\"Note\":\"} ] \\\" { [\",\"SimKey\":\"outer\"}");
+        assertEquals("outer", values.get("SimKey"));
+        assertEquals("", values.get("Code"));
+        assertEquals("", values.get("Credits"));
+
+        assertEquals("", FIELDS.extract("{\"Meta\":{\"SimKey\":\"inner\"},\"List\":[\"SimKey\"]}").get("SimKey"));
+    }
+
+    @Test
+    void returnsNestedValuesAsRawJson() {
+        JsonFields fields = JsonFields.of("Meta", "List");
+        JsonFields.Values values = fields.extract(
+            "{\"Meta\":{\"a\":\"}\",\"b\":[1,{\"c\":null}]},\"List\":[ \"x\" , \"ü\" ]}");
+        assertEquals("{\"a\":\"}\",\"b\":[1,{\"c\":null}]}", values.get("Meta"));
+        assertEquals("[ \"x\" , \"ü\" ]", values.get("List"));
+    }
+
+    @Test
+    void returnsNumbersAndBooleansAsWrittenAndNullAsEmpty() {
+        JsonFields fields = JsonFields.of("Score", "Negative", "Exponent", "Valid", "Stale", "Missing");
+        JsonFields.Values values = fields.extract(
+            "{\"Score\":87,\"Negative\":-0.5,\"Exponent\":1.2E+3,\"Valid\":true,\"Stale\":false,\"Missing\":null}");
+        assertEquals("87", values.get("Score"));
+        assertEquals("-0.5", values.get("Negative"));
+        assertEquals("1.2E+3", values.get("Exponent"));
+        assertEquals("true", values.get("Valid"));
+        assertEquals("false", values.get("Stale"));
+        assertEquals("", values.get("Missing"));
+    }
+
+    @Test
+    void missingFieldsReadAsEmpty() {
+        JsonFields.Values values = FIELDS.extract("{\"Code\":\"Success\"}");
+        assertEquals("", values.get("SimKey"));
+        assertEquals("Success", values.get("Code"));
+        assertEquals("", values.get("Credits"));
+        assertEquals("", FIELDS.extract("{}").get("Code"));
+    }
+
+    @Test
+    void keepsTheFirstOfRepeatedKeys() {
+        assertEquals("first", FIELDS.extract("{\"Code\":\"first\",\"Code\":\"second\"}").get("Code"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "   ", "\r\n\t"})
+    void anEmptyBodyIsEmpty(String body) {
+        JsonFields.Values values = FIELDS.extract(body);
+        assertTrue(values.isEmpty());
+        assertEquals("", values.get("Code"));
+    }
+
+    /**
+     * A malformed or cut-off body keeps the fields read before the damage
+     * and leaves the rest "".
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"Code\":\"Success\",\"SimKey\":\"abc",
+        "{\"Code\":\"Success\",\"SimKey\":\"ab\\",
+        "{\"Code\":\"Success\",\"SimKey\":\"\\u00",
+        "{\"Code\":\"Success\",\"SimKey\":\"\\u12G4\"}",
+        "{\"Code\":\"Success\",\"SimKey\":{\"a\":[1,2",
+        "{\"Code\":\"Success\",\"Meta\":{\"a\":\"}",
+        "{\"Code\":\"Success\",\"SimKey\"",
+        "{\"Code\":\"Success\",\"SimKey\" \"abc\"}",
+        "{\"Code\":\"Success\",\"SimKey\":",
+        "{\"Code\":\"Success\",\"Sim",
+        "{\"Code\":\"Success\" \"SimKey\":\"abc\"}",
+        "{\"Code\":\"Success\",,\"SimKey\":\"abc\"}",
+    })
+    void stopsAtTheFirstDamage(String body) {
+        JsonFields.Values values = FIELDS.extract(body);
+        assertFalse(values.isEmpty());
+        assertEquals("Success", values.get("Code"));
+        assertEquals("", values.get("SimKey"));
+        assertEquals("", values.get("Credits"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"<html>Bad Gateway</html>", "[{\"Code\":\"Success\"}]", "\"Code\"", "null"})
+    void aBodyThatIsNotAnObjectHasNoFields(String body) {
+        JsonFields.Values values = FIELDS.extract(body);
+        assertFalse(values.isEmpty());
+        assertEquals("", values.get("Code"));
+    }
+
+    @Test
+    void readsOnlyTheGivenRange() {
+        byte[] buffer = "xx{\"Code\":\"Success\",\"SimKey\":\"k\"}{\"Code\":\"next\"}".getBytes(StandardCharsets.UTF_8);
+        JsonFields.Values values = FIELDS.extract(buffer, 2, 31);
+        assertEquals("Success", values.get("Code"));
+        assertEquals("k", values.get("SimKey"));
+
+        // A range that ends inside a value
+        values = FIELDS.extract(buffer, 2, 29);
+        assertEquals("Success", values.get("Code"));
+        assertEquals("", values.get("SimKey"));
+    }
+}
@@ -0,0 +1,244 @@
+package com.interzoid.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimKeyCacheTest {
+
+    private static final String API = "getcompanymatchadvanced";
+    private static final String ALGORITHM = "wide";
+    private static final Duration DAY = Duration.ofDays(1);
+
+    @TempDir
+    Path dir;
+
+    private Path logFile() {
+        return dir.resolve("results.log");
+    }
+
+    private static String get(SimKeyCache cache, String input) {
+        return cache.get(API, ALGORITHM, input);
+    }
+
+    private static void put(SimKeyCache cache, String input, String value) throws IOException {
+        cache.put(API, ALGORITHM, input, value);
+    }
+
+    @Test
+    void resultsSurviveAReopen() throws IOException {
+        String large = "v".repeat(100_000);
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            put(cache, "Acme Inc", "simkey-acme");
+            put(cache, "Zürich", "simkey-zürich");
+            put(cache, "large", large);
+            put(cache, "ignored", "");
+            // Served before anything reaches the log file
+            assertEquals("simkey-acme", get(cache, "Acme Inc"));
+            assertEquals(large, get(cache, "large"));
+            assertEquals(3, cache.size());
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals(3, cache.size());
+            assertEquals("simkey-acme", get(cache, "Acme Inc"));
+            // Inputs are NFC-normalized: a decomposed ü finds the same entry
+            assertEquals("simkey-zürich", get(cache, "Zu\u0308rich"));
+            assertEquals(large, get(cache, "large"));
+            assertNull(get(cache, "ignored"));
+            assertNull(cache.get(API, "narrow", "Acme Inc"));
+            assertNull(cache.get("getaddressmatchadvanced", ALGORITHM, "Acme Inc"));
+            assertEquals(3, cache.hits());
+            assertEquals(3, cache.misses());
+
+            // A later put replaces the value, here and after the next reopen
+            put(cache, "Acme Inc", "simkey-acme-2");
+            assertEquals("simkey-acme-2", get(cache, "Acme Inc"));
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals("simkey-acme-2", get(cache, "Acme Inc"));
+            assertEquals(3, cache.size());
+        }
+    }
+
+    @Test
+    void flushMakesPutsDurableWithoutClosing() throws IOException {
+        SimKeyCache cache = SimKeyCache.open(dir, DAY, 100);
+        put(cache, "a", "1");
+        assertEquals(0, Files.size(logFile()));
+        cache.flush();
+        long flushed = Files.size(logFile());
+        assertTrue(flushed > 0);
+
+        // As if the process died here: the log is read by another instance
+        try (SimKeyCache reader = SimKeyCache.open(dir.resolve("copy"), DAY, 100)) {
+            assertEquals(0, reader.size());
+        }
+        Files.copy(logFile(), dir.resolve("copy").resolve("results.log"), StandardCopyOption.REPLACE_EXISTING);
+        try (SimKeyCache reader = SimKeyCache.open(dir.resolve("copy"), DAY, 100)) {
+            assertEquals("1", get(reader, "a"));
+        }
+        cache.close();
+    }
+
+    @Test
+    void expiredEntriesAreMissesAndAreDroppedOnReopen() throws Exception {
+        Duration ttl = Duration.ofMillis(1000);
+        try (SimKeyCache cache = SimKeyCache.open(dir, ttl, 100)) {
+            put(cache, "old", "1");
+            Thread.sleep(1200);
+            put(cache, "new", "2");
+            assertEquals(2, cache.size());
+            assertNull(get(cache, "old"));
+            assertEquals(1, cache.size());
+            assertEquals("2", get(cache, "new"));
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, ttl, 100)) {
+            assertEquals(1, cache.size());
+            assertNull(get(cache, "old"));
+            assertEquals("2", get(cache, "new"));
+        }
+        // With a longer TTL the old record is live again: it was not removed from the log
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals("1", get(cache, "old"));
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryAtMaxEntries() throws IOException {
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 3)) {
+            put(cache, "a", "1");
+            put(cache, "b", "2");
+            put(cache, "c", "3");
+            assertEquals("1", get(cache, "a"));
+            put(cache, "d", "4");
+            assertEquals(3, cache.size());
+            assertNull(get(cache, "b"));
+            assertEquals("3", get(cache, "c"));
+            assertEquals("1", get(cache, "a"));
+            put(cache, "e", "5");
+            assertNull(get(cache, "d"));
+            assertEquals(3, cache.size());
+        }
+        // Reads are not logged, so a reopen replays the puts in order: c, d, e are newest
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 3)) {
+            assertEquals(3, cache.size());
+            assertEquals("3", get(cache, "c"));
+            assertEquals("5", get(cache, "e"));
+        }
+    }
+
+    @Test
+    void matchesAnAccessOrderedMapUnderRandomPutsAndGets() throws IOException {
+        int maxEntries = 500;
+        Map<String, String> model = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        Random random = new Random(7);
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, maxEntries)) {
+            for (int i = 0; i < 30_000; i++) {
+                String input = "input " + random.nextInt(1500);
+                if (random.nextInt(3) == 0) {
+                    String value = "value " + i;
+                    put(cache, input, value);
+                    model.put(input, value);
+                } else {
+                    assertEquals(model.get(input), get(cache, input), input);
+                }
+                assertEquals(model.size(), cache.size());
+            }
+        }
+    }
+
+    @Test
+    void aTruncatedTailIsDroppedAndAppendedOver() throws IOException {
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            put(cache, "a", "1");
+        }
+        long firstRecord = Files.size(logFile());
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            put(cache, "b", "2");
+        }
+        // A crash part way through writing b
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(logFile()) - 3);
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals(firstRecord, Files.size(logFile()));
+            assertEquals(1, cache.size());
+            assertEquals("1", get(cache, "a"));
+            assertNull(get(cache, "b"));
+            put(cache, "c", "3");
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals("1", get(cache, "a"));
+            assertEquals("3", get(cache, "c"));
+        }
+    }
+
+    @Test
+    void aRecordWithABadCrcEndsTheLog() throws IOException {
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            put(cache, "a", "1");
+            put(cache, "b", "value of b");
+            put(cache, "c", "3");
+        }
+        byte[] log = Files.readAllBytes(logFile());
+        String text = new String(log, StandardCharsets.ISO_8859_1);
+        int at = text.indexOf("value of b");
+        try (FileChannel channel = FileChannel.open(logFile(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'V'}), at);
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals("1", get(cache, "a"));
+            // b is corrupt, and nothing after it is trusted
+            assertNull(get(cache, "b"));
+            assertNull(get(cache, "c"));
+            assertEquals(text.lastIndexOf("IZC1", at), Files.size(logFile()));
+        }
+    }
+
+    @Test
+    void closeCompactsALogOfMostlyDeadRecords() throws IOException {
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            for (int i = 0; i < 3000; i++) {
+                put(cache, "key " + (i % 10), "value " + i);
+            }
+        }
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            assertEquals(10, cache.size());
+            for (int k = 0; k < 10; k++) {
+                assertEquals("value " + (2990 + k), get(cache, "key " + k));
+            }
+        }
+        // Only the ten live records are left
+        long compacted = Files.size(logFile());
+        assertTrue(compacted < 1000, "log is " + compacted + " bytes");
+        assertFalse(Files.exists(dir.resolve("results.log.compact")));
+
+        // A log with few dead records is left as it is
+        try (SimKeyCache cache = SimKeyCache.open(dir, DAY, 100)) {
+            put(cache, "key 0", "again");
+        }
+        assertTrue(Files.size(logFile()) > compacted);
+    }
+}
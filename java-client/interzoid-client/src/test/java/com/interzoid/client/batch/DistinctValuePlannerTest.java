@@ -0,0 +1,282 @@
+package com.interzoid.client.batch;
+
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.io.CsvReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistinctValuePlannerTest {
+
+    // Large enough that the test files are indexed in memory
+    private static final long IN_MEMORY = 1L << 30;
+
+    // Small enough that they are split into the most partitions allowed
+    private static final long PARTITIONED = 1;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Values with repeats, spellings that fold together, non-ASCII text and
+     * (for the punctuation rule) values that fold to "".
+     */
+    private static final String[] VALUES = {
+        "Acme Inc", "ACME  Inc", " acme inc ", "Acme, Inc.", "Zürich Straße 1", "東京タワー",
+        "ＡＢＣ Corp", "ABC Corp", "...", "-", "Käse", "kase", "x\ty"
+    };
+
+    private static List<String> randomLines(long seed, int count) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int pick = random.nextInt(10);
+            if (pick == 0) {
+                lines.add("");
+            } else if (pick < 4) {
+                lines.add(VALUES[random.nextInt(VALUES.length)]);
+            } else {
+                lines.add("company " + random.nextInt(400));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Resolves each value to a tag of it, completing some lookups later on
+     * another thread, and counts the calls per canonical form.
+     */
+    private static final class CountingResolver implements ValueResolver {
+        final Canonicalizer canonical;
+        final Map<String, Integer> calls = new ConcurrentHashMap<>();
+        final Map<String, Long> firstLines = new ConcurrentHashMap<>();
+
+        CountingResolver(Canonicalizer canonical) {
+            this.canonical = canonical;
+        }
+
+        @Override
+        public CompletableFuture<String> resolve(String value, long lineNumber) {
+            String key = canonical.apply(value);
+            calls.merge(key, 1, Integer::sum);
+            firstLines.put(key, lineNumber);
+            String result = "r:" + value;
+            return (key.hashCode() & 1) == 0 ? CompletableFuture.completedFuture(result)
+                : CompletableFuture.supplyAsync(() -> result);
+        }
+    }
+
+    /** Rows handed on, as "row => result". */
+    private static List<String> rows(List<String> collected, String row, String result) {
+        collected.add(row + " => " + result);
+        return collected;
+    }
+
+    /**
+     * What every run should hand on: each non-empty line with the result for
+     * the first spelling of its canonical form, "" for a form that is "".
+     */
+    private static List<String> expected(List<String> values, List<String> texts, Canonicalizer canonical) {
+        Map<String, String> first = new HashMap<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            String key = canonical.apply(value);
+            String spelling = first.computeIfAbsent(key, k -> value);
+            expected.add(texts.get(i) + " => " + (key.isEmpty() ? "" : "r:" + spelling));
+        }
+        return expected;
+    }
+
+    /** Line numbers of the first occurrence of each non-empty canonical form. */
+    private static Map<String, Long> firstLines(List<String> values, List<Long> lineNumbers, Canonicalizer canonical) {
+        Map<String, Long> first = new HashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            String key = canonical.apply(values.get(i));
+            if (!key.isEmpty()) {
+                first.putIfAbsent(key, lineNumbers.get(i));
+            }
+        }
+        return first;
+    }
+
+    private Path writeLines(List<String> lines, String separator) throws IOException {
+        Path input = dir.resolve("input.txt");
+        Files.write(input, String.join(separator, lines).getBytes(StandardCharsets.UTF_8));
+        return input;
+    }
+
+    private void assertNoTempFilesLeft(Path input) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(input), files.collect(Collectors.toList()));
+        }
+    }
+
+    private void assertLineRunsMatch(List<String> lines, String separator, Canonicalizer canonical)
+            throws IOException {
+        Path input = writeLines(lines, separator);
+        List<String> values = new ArrayList<>();
+        List<Long> lineNumbers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!lines.get(i).isEmpty()) {
+                values.add(lines.get(i));
+                lineNumbers.add(i + 1L);
+            }
+        }
+
+        List<String> inMemory = new ArrayList<>();
+        CountingResolver memoryResolver = new CountingResolver(canonical);
+        DistinctValuePlanner.Summary memory = new DistinctValuePlanner(IN_MEMORY, dir).canonical(canonical)
+            .run(input, memoryResolver, (row, result) -> rows(inMemory, row, result));
+        assertEquals(1, memory.partitions());
+
+        List<String> partitioned = new ArrayList<>();
+        CountingResolver partitionResolver = new CountingResolver(canonical);
+        DistinctValuePlanner.Summary spilled = new DistinctValuePlanner(PARTITIONED, dir).canonical(canonical)
+            .run(input, partitionResolver, (row, result) -> rows(partitioned, row, result));
+        assertTrue(spilled.partitions() > 1, "partitions: " + spilled.partitions());
+
+        List<String> expected = expected(values, values, canonical);
+        assertEquals(expected, inMemory);
+        assertEquals(expected, partitioned);
+        assertEquals(values.size(), memory.rows());
+        assertEquals(values.size(), spilled.rows());
+
+        Map<String, Long> first = firstLines(values, lineNumbers, canonical);
+        for (CountingResolver resolver : List.of(memoryResolver, partitionResolver)) {
+            assertEquals(first.keySet(), resolver.calls.keySet());
+            resolver.calls.forEach((key, calls) -> assertEquals(1, calls, key));
+            assertEquals(first, resolver.firstLines);
+        }
+        assertEquals(first.size(), memory.distinctValues());
+        assertEquals(first.size(), spilled.distinctValues());
+        assertNoTempFilesLeft(input);
+    }
+
+    @Test
+    void partitionedLinesMatchTheInMemoryRun() throws IOException {
+        assertLineRunsMatch(randomLines(12, 3000), "\n", Canonicalizer.none());
+    }
+
+    @Test
+    void partitionedLinesMatchTheInMemoryRunWithCrlf() throws IOException {
+        assertLineRunsMatch(randomLines(13, 3000), "\r\n", Canonicalizer.none());
+    }
+
+    @Test
+    void partitionedLinesMatchTheInMemoryRunWhenFolded() throws IOException {
+        assertLineRunsMatch(randomLines(14, 3000), "\n", Canonicalizer.of(
+            Canonicalizer.Rule.NFKC, Canonicalizer.Rule.PUNCTUATION,
+            Canonicalizer.Rule.WHITESPACE, Canonicalizer.Rule.CASE));
+    }
+
+    @Test
+    void aSmallBudgetSplitsIntoSeveralPartitions() throws IOException {
+        // About 40 KB at 8 bytes of index per byte: a little over 10 partitions of 32 KB
+        Path input = writeLines(randomLines(15, 4000), "\n");
+        DistinctValuePlanner.Summary summary = new DistinctValuePlanner(32 << 10, dir)
+            .run(input, (value, line) -> CompletableFuture.completedFuture(value), (row, result) -> { });
+        long expected = (Files.size(input) * 8 + (32 << 10) - 1) / (32 << 10);
+        assertEquals(expected, summary.partitions());
+        assertTrue(summary.partitions() > 1 && summary.partitions() < 256);
+        assertNoTempFilesLeft(input);
+    }
+
+    private static String csvField(String value) {
+        return CsvReader.escape(value, ',');
+    }
+
+    private void assertCsvRunsMatch(Canonicalizer canonical) throws IOException {
+        Random random = new Random(21);
+        List<String> companies = new ArrayList<>();
+        List<Long> lineNumbers = new ArrayList<>();
+        List<String> raws = new ArrayList<>();
+        StringBuilder csv = new StringBuilder("id,company,city\r\n");
+        long line = 2;
+        for (int i = 0; i < 2000; i++) {
+            int pick = random.nextInt(10);
+            String company = pick == 0 ? ""
+                : pick < 3 ? VALUES[random.nextInt(VALUES.length)]
+                : pick == 3 ? "Multi\nLine " + random.nextInt(20)
+                : "company " + random.nextInt(300);
+            String raw = i + "," + csvField(company) + "," + csvField("city, " + random.nextInt(5));
+            companies.add(company);
+            lineNumbers.add(line);
+            raws.add(raw);
+            csv.append(raw).append(i % 2 == 0 ? "\r\n" : "\n");
+            line += raw.chars().filter(c -> c == '\n').count() + 1;
+        }
+        Path input = dir.resolve("input.csv");
+        Files.write(input, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> expected = expected(companies, raws, canonical);
+
+        List<List<String>> results = new ArrayList<>();
+        List<CountingResolver> resolvers = new ArrayList<>();
+        for (long budget : new long[] {IN_MEMORY, PARTITIONED}) {
+            List<String> collected = new ArrayList<>();
+            CountingResolver resolver = new CountingResolver(canonical);
+            try (CsvReader reader = CsvReader.open(input, ',', true)) {
+                DistinctValuePlanner.Summary summary = new DistinctValuePlanner(budget, dir).canonical(canonical)
+                    .run(reader, reader.column("company"), resolver, (row, result) -> rows(collected, row, result));
+                assertEquals(budget == IN_MEMORY, summary.partitions() == 1, "partitions: " + summary.partitions());
+                assertEquals(companies.size(), summary.rows());
+                assertEquals(resolver.calls.size(), summary.distinctValues());
+            }
+            results.add(collected);
+            resolvers.add(resolver);
+        }
+        assertEquals(expected, results.get(0));
+        assertEquals(expected, results.get(1));
+
+        Map<String, Long> firstLines = firstLines(companies, lineNumbers, canonical);
+        for (CountingResolver resolver : resolvers) {
+            assertEquals(firstLines.keySet(), resolver.calls.keySet());
+            resolver.calls.forEach((key, calls) -> assertEquals(1, calls, key));
+            assertEquals(firstLines, resolver.firstLines);
+        }
+        assertNoTempFilesLeft(input);
+    }
+
+    @Test
+    void partitionedCsvMatchesTheInMemoryRun() throws IOException {
+        assertCsvRunsMatch(Canonicalizer.none());
+    }
+
+    @Test
+    void partitionedCsvMatchesTheInMemoryRunWhenFolded() throws IOException {
+        assertCsvRunsMatch(Canonicalizer.of(Canonicalizer.Rule.PUNCTUATION, Canonicalizer.Rule.WHITESPACE,
+            Canonicalizer.Rule.CASE));
+    }
+
+    @Test
+    void aFailedLookupAbortsThePartitionedRunAndCleansUp() throws IOException {
+        Path input = writeLines(randomLines(16, 500), "\n");
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("quota exceeded"));
+        List<String> handed = new ArrayList<>();
+        IOException e = assertThrows(IOException.class, () -> new DistinctValuePlanner(PARTITIONED, dir)
+            .run(input, (value, line) -> value.equals("Käse") ? failed : CompletableFuture.completedFuture(value),
+                (row, result) -> handed.add(row)));
+        assertTrue(e.getMessage().contains("Käse") && e.getMessage().contains("quota exceeded"), e.getMessage());
+        assertTrue(handed.isEmpty(), "no row is handed on before every partition is resolved");
+        assertNoTempFilesLeft(input);
+    }
+}
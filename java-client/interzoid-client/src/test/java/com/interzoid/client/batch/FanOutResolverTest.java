@@ -0,0 +1,213 @@
+package com.interzoid.client.batch;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.InterzoidHttp;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FanOutResolverTest {
+
+    private HttpServer server;
+    private InterzoidHttp http;
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final AtomicInteger slowInFlight = new AtomicInteger();
+    private final AtomicInteger slowMostInFlight = new AtomicInteger();
+    private final AtomicInteger fastCalls = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        // Echoes the input as its SimKey
+        server.createContext("/match", exchange -> {
+            fastCalls.incrementAndGet();
+            String company = query(exchange, "company");
+            respond(exchange, 200, "{\"SimKey\":\"key-" + company.replace("\u001f", "\\u001f")
+                + "\",\"Code\":\"Success\"}");
+        });
+        // Fails some lookups: with a Code, without one, or with no body at all
+        server.createContext("/business", exchange -> {
+            String lookup = query(exchange, "lookup");
+            if (lookup.equals("busy")) {
+                respond(exchange, 503, "{\"Code\":\"Server busy\"}");
+            } else if (lookup.equals("unknown")) {
+                respond(exchange, 404, "");
+            } else {
+                respond(exchange, 200, "{\"CompanyName\":\"" + lookup + " Corp\",\"Revenue\":\"\",\"Code\":\"Success\"}");
+            }
+        });
+        // Holds every call until released
+        server.createContext("/slow", exchange -> {
+            slowCalls.incrementAndGet();
+            slowMostInFlight.accumulateAndGet(slowInFlight.incrementAndGet(), Math::max);
+            try {
+                slowRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slowInFlight.decrementAndGet();
+            respond(exchange, 200, "{\"Standard\":\"" + query(exchange, "org") + "\",\"Code\":\"Success\"}");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        http = InterzoidHttp.create(new HttpConfig()
+            .baseUrl("http://localhost:" + server.getAddress().getPort())
+            .adaptive(false)
+            .maxAttempts(1)
+            .breakerFailureThreshold(1000));
+    }
+
+    @AfterEach
+    void stopServer() {
+        slowRelease.countDown();
+        server.stop(0);
+    }
+
+    private static String query(HttpExchange exchange, String name) {
+        for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+            int eq = pair.indexOf('=');
+            if (pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return "";
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static EnrichmentApi match() {
+        return EnrichmentApi.of("match", "company").label("Match").fields("SimKey");
+    }
+
+    private static EnrichmentApi business() {
+        return EnrichmentApi.of("business", "lookup").label("Business").fields("CompanyName", "Revenue");
+    }
+
+    private static EnrichmentApi slow(int maxInFlight) {
+        return EnrichmentApi.of("slow", "org").label("Standard").fields("Standard").maxInFlight(maxInFlight);
+    }
+
+    private static String[] resolve(FanOutResolver resolver, String value) throws Exception {
+        return resolver.decode(resolver.resolve(value, 1).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void mergesEveryApiIntoOneRow() throws Exception {
+        FanOutResolver resolver = new FanOutResolver(http, "KEY", List.of(match(), business()));
+        assertEquals(List.of("Match.SimKey", "Match.Code", "Business.CompanyName", "Business.Revenue",
+            "Business.Code"), resolver.columns());
+
+        assertArrayEquals(new String[] {"key-Acme", "Success", "Acme Corp", null, "Success"},
+            resolve(resolver, "Acme"));
+        // A separator inside a value cannot shift the columns after it
+        assertArrayEquals(new String[] {"key-A B", "Success", "A B Corp", null, "Success"},
+            resolve(resolver, "A\u001fB"));
+        // The result for an empty input line
+        assertArrayEquals(new String[5], resolver.decode(""));
+        assertEquals(Map.of("Match", 0L, "Business", 0L), resolver.failures());
+    }
+
+    @Test
+    void aFailedCallEmptiesOnlyItsOwnColumns() throws Exception {
+        EnrichmentApi broken = EnrichmentApi.of("not a valid path", "org").label("Broken").fields("Standard");
+        FanOutResolver resolver = new FanOutResolver(http, "KEY", List.of(match(), business(), broken));
+
+        String[] busy = resolve(resolver, "busy");
+        assertArrayEquals(new String[] {"key-busy", "Success", null, null, "Server busy"}, Arrays.copyOf(busy, 5));
+        assertNull(busy[5]);
+        assertTrue(busy[6].startsWith("Error: "), busy[6]);
+
+        String[] unknown = resolve(resolver, "unknown");
+        assertArrayEquals(new String[] {"key-unknown", "Success", null, null, "HTTP 404"},
+            Arrays.copyOf(unknown, 5));
+        assertNull(unknown[5]);
+
+        assertEquals(Map.of("Match", 0L, "Business", 2L, "Broken", 2L), resolver.failures());
+    }
+
+    @Test
+    void aSlowApiQueuesItsCallsWithoutHoldingUpTheCaller() throws Exception {
+        FanOutResolver resolver = new FanOutResolver(http, "KEY", List.of(slow(1), match()));
+        List<CompletableFuture<String>> results = new ArrayList<>();
+
+        // With the slow API's only slot taken, resolve still returns at once
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 5; i++) {
+                results.add(resolver.resolve("value " + i, i + 1));
+            }
+        });
+        // The other API answers every value meanwhile; the slow one has one call out
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fastCalls.get() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(5, fastCalls.get());
+        assertEquals(1, slowCalls.get());
+        assertFalse(results.get(0).isDone());
+
+        slowRelease.countDown();
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(new String[] {"value " + i, "Success", "key-value " + i, "Success"},
+                resolver.decode(results.get(i).get(10, TimeUnit.SECONDS)));
+        }
+        assertEquals(5, slowCalls.get());
+        assertEquals(1, slowMostInFlight.get());
+    }
+
+    @Test
+    void queuedCallsUseEveryFreeSlot() throws Exception {
+        FanOutResolver resolver = new FanOutResolver(http, "KEY", List.of(slow(3)));
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 10; i++) {
+                results.add(resolver.resolve("value " + i, i + 1));
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (slowCalls.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(100);
+        assertEquals(3, slowCalls.get());
+
+        slowRelease.countDown();
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new String[] {"value " + i, "Success"}, resolver.decode(results.get(i).get(10, TimeUnit.SECONDS)));
+        }
+        assertEquals(10, slowCalls.get());
+        assertEquals(3, slowMostInFlight.get());
+    }
+}
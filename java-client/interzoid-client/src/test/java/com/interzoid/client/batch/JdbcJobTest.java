@@ -0,0 +1,250 @@
+package com.interzoid.client.batch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdbcJobTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private Connection source;
+    private Connection sink;
+
+    // Calls made through the sink
+    private final AtomicInteger executeBatches = new AtomicInteger();
+    private final AtomicInteger commits = new AtomicInteger();
+
+    /**
+     * Stand-in for the API: "sk:" and the value, or "" for values starting
+     * with "?".
+     */
+    private static final ValueResolver RESOLVER = (value, rowNumber) ->
+        CompletableFuture.completedFuture(value.startsWith("?") ? "" : "sk:" + value);
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        String url = "jdbc:h2:mem:jdbcjob" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+        source = DriverManager.getConnection(url);
+        sink = counting(DriverManager.getConnection(url));
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        try (Statement statement = source.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        source.close();
+        sink.close();
+    }
+
+    /**
+     * 30 companies: every fifth with no name ("", NULL or spaces), and
+     * every seventh one the API cannot resolve. The other 20 resolve.
+     */
+    private void createCompanies() throws SQLException {
+        try (Statement statement = source.createStatement()) {
+            statement.execute("CREATE TABLE companies (id INT PRIMARY KEY, company VARCHAR(100), simkey VARCHAR(100))");
+        }
+        String[] blanks = {"", null, "   "};
+        try (PreparedStatement insert = source.prepareStatement("INSERT INTO companies (id, company) VALUES (?, ?)")) {
+            for (int id = 1; id <= 30; id++) {
+                insert.setInt(1, id);
+                insert.setString(2, id % 5 == 0 ? blanks[id % 3] : id % 7 == 0 ? "?unknown" + id : "Company" + id);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private TreeMap<Integer, String> simKeys() throws SQLException {
+        TreeMap<Integer, String> simKeys = new TreeMap<>();
+        try (Statement statement = source.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, simkey FROM companies WHERE simkey IS NOT NULL")) {
+            while (rs.next()) {
+                simKeys.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return simKeys;
+    }
+
+    @Test
+    void updatesEachResolvedRowInBatchesAndCommits() throws Exception {
+        createCompanies();
+        JdbcJob job = JdbcJob.query("SELECT id, company FROM companies WHERE simkey IS NULL ORDER BY id")
+            .update("UPDATE companies SET simkey = ? WHERE id = ?")
+            .fetchSize(3)
+            .batchSize(4)
+            .commitEvery(10);
+
+        JdbcJob.Summary summary = job.run(source, sink, RESOLVER);
+        assertEquals(30, summary.rows());
+        assertEquals(24, summary.lookups());
+        assertEquals(20, summary.written());
+        assertEquals(2, summary.commits());
+        // Rows 1-4 and 5-8 in full batches, 9-10 sent at the first commit; the same again for 11-20
+        assertEquals(6, executeBatches.get());
+        assertEquals(2, commits.get());
+
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int id = 1; id <= 30; id++) {
+            if (id % 5 != 0 && id % 7 != 0) {
+                expected.put(id, "sk:Company" + id);
+            }
+        }
+        assertEquals(expected, simKeys());
+        assertTrue(source.getAutoCommit());
+        assertTrue(sink.getAutoCommit());
+
+        // Rows with no value or no result are left for the next run, which has nothing to write
+        summary = job.run(source, sink, RESOLVER);
+        assertEquals(10, summary.rows());
+        assertEquals(4, summary.lookups());
+        assertEquals(0, summary.written());
+        assertEquals(0, summary.commits());
+        assertEquals(2, commits.get());
+        assertEquals(expected, simKeys());
+    }
+
+    @Test
+    void insertsWithTwoKeyColumnsInQueryOrder() throws Exception {
+        try (Statement statement = source.createStatement()) {
+            statement.execute("CREATE TABLE people (region VARCHAR(10), id INT, fullname VARCHAR(100), "
+                + "PRIMARY KEY (region, id))");
+            statement.execute("CREATE TABLE name_keys (seq INT AUTO_INCREMENT PRIMARY KEY, region VARCHAR(10), "
+                + "id INT, simkey VARCHAR(100))");
+        }
+        List<String> expected = new ArrayList<>();
+        try (PreparedStatement insert = source.prepareStatement("INSERT INTO people VALUES (?, ?, ?)")) {
+            for (String region : new String[] {"east", "west"}) {
+                for (int id = 1; id <= 50; id++) {
+                    String name = "Person" + id % 30;
+                    insert.setString(1, region);
+                    insert.setInt(2, id);
+                    insert.setString(3, name);
+                    insert.addBatch();
+                    expected.add(region + "," + id + ",sk:" + name);
+                }
+            }
+            insert.executeBatch();
+        }
+
+        // Answers arrive late and out of order
+        Random random = new Random(23);
+        ValueResolver resolver = (value, rowNumber) -> {
+            long delay = random.nextInt(200_000);
+            return CompletableFuture.supplyAsync(() -> {
+                LockSupport.parkNanos(delay);
+                return "sk:" + value;
+            });
+        };
+        JdbcJob.Summary summary = JdbcJob.query("SELECT region, id, fullname FROM people ORDER BY region, id")
+            .insert("INSERT INTO name_keys (region, id, simkey) VALUES (?, ?, ?)")
+            .keyColumns(2)
+            .fetchSize(7)
+            .batchSize(16)
+            .commitEvery(40)
+            .maxInFlight(8)
+            .run(source, sink, resolver);
+        assertEquals(100, summary.rows());
+        assertEquals(100, summary.written());
+        assertEquals(3, summary.commits());
+        assertEquals(3, commits.get());
+
+        List<String> written = new ArrayList<>();
+        try (Statement statement = source.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT region, id, simkey FROM name_keys ORDER BY seq")) {
+            while (rs.next()) {
+                written.add(rs.getString(1) + "," + rs.getInt(2) + "," + rs.getString(3));
+            }
+        }
+        assertEquals(expected, written);
+    }
+
+    @Test
+    void aFailedLookupRollsBackToTheLastCommit() throws Exception {
+        createCompanies();
+        ValueResolver resolver = (value, rowNumber) -> value.equals("Company18")
+            ? CompletableFuture.failedFuture(new IOException("API unavailable"))
+            : RESOLVER.resolve(value, rowNumber);
+        JdbcJob job = JdbcJob.query("SELECT id, company FROM companies ORDER BY id")
+            .update("UPDATE companies SET simkey = ? WHERE id = ?")
+            .fetchSize(2)
+            .batchSize(3)
+            .commitEvery(5);
+
+        IOException e = assertThrows(IOException.class, () -> job.run(source, sink, resolver));
+        assertTrue(e.getMessage().contains("row 18 (\"Company18\")"), e.getMessage());
+        assertEquals(2, commits.get());
+
+        // Twelve rows were written before the failure; the two after the last commit are gone
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int id = 1; id <= 13; id++) {
+            if (id % 5 != 0 && id % 7 != 0) {
+                expected.put(id, "sk:Company" + id);
+            }
+        }
+        assertEquals(10, expected.size());
+        assertEquals(expected, simKeys());
+        assertTrue(source.getAutoCommit());
+        assertTrue(sink.getAutoCommit());
+    }
+
+    /**
+     * Counts commit() on a connection and executeBatch() on the statements
+     * it prepares.
+     */
+    private Connection counting(Connection connection) {
+        return wrap(Connection.class, connection, (target, method, args) -> {
+            if (method.getName().equals("commit")) {
+                commits.incrementAndGet();
+            }
+            Object result = call(target, method, args);
+            if (result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, (PreparedStatement) result, (statement, m, a) -> {
+                    if (m.getName().equals("executeBatch")) {
+                        executeBatches.incrementAndGet();
+                    }
+                    return call(statement, m, a);
+                });
+            }
+            return result;
+        });
+    }
+
+    private static <T> T wrap(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+            (proxy, method, args) -> handler.invoke(target, method, args)));
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
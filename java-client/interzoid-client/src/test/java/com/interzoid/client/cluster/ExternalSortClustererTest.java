@@ -0,0 +1,150 @@
+package com.interzoid.client.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExternalSortClustererTest {
+
+    // Large enough that the test records are sorted in memory
+    private static final long IN_MEMORY = 1L << 30;
+
+    // A few hundred records per run: tens of runs, merged in one pass
+    private static final long SMALL = 32 << 10;
+
+    // One record per run: more runs than one merge takes, so several passes
+    private static final long TINY = 1;
+
+    private static final String[] KEY_PARTS = {"A1", "a1", "B", "Zü", "東京", "🙂", "z", ""};
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Records with skewed, often repeated keys (so clusters of every size,
+     * and many ties to keep in input order), non-ASCII and supplementary
+     * characters, and empty or long inputs.
+     */
+    private static List<String[]> randomRecords(long seed, int count) {
+        Random random = new Random(seed);
+        List<String> keys = new ArrayList<>();
+        for (int k = 0; k < count / 4; k++) {
+            StringBuilder key = new StringBuilder();
+            for (int p = 1 + random.nextInt(4); p > 0; p--) {
+                key.append(KEY_PARTS[random.nextInt(KEY_PARTS.length)]);
+            }
+            keys.add(key.toString());
+        }
+        List<String[]> records = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            String key = keys.get((int) (keys.size() * Math.pow(random.nextDouble(), 3)));
+            int pick = random.nextInt(20);
+            String input = pick == 0 ? "" : pick == 1 ? "long input " + "x".repeat(2000) + r : "input " + r;
+            records.add(new String[] {key, input});
+        }
+        return records;
+    }
+
+    /**
+     * What the match reports did before: a stable sort of every record by
+     * SimKey, then each run of equal keys as a cluster if large enough.
+     */
+    private static List<String> sortInMemory(List<String[]> records, int minSize) {
+        List<String[]> sorted = new ArrayList<>(records);
+        Collections.sort(sorted, Comparator.comparing(record -> record[0]));
+        List<String> clusters = new ArrayList<>();
+        List<String> cluster = new ArrayList<>();
+        String currentKey = null;
+        for (String[] record : sorted) {
+            if (currentKey != null && !record[0].equals(currentKey)) {
+                if (cluster.size() >= minSize) {
+                    clusters.add(currentKey + " " + cluster);
+                }
+                cluster.clear();
+            }
+            currentKey = record[0];
+            cluster.add(record[1]);
+        }
+        if (currentKey != null && cluster.size() >= minSize) {
+            clusters.add(currentKey + " " + cluster);
+        }
+        return clusters;
+    }
+
+    private static List<String> cluster(ExternalSortClusterer clusterer, List<String[]> records, int minSize)
+            throws IOException {
+        for (String[] record : records) {
+            clusterer.add(record[0], record[1]);
+        }
+        assertEquals(records.size(), clusterer.size());
+        List<String> clusters = new ArrayList<>();
+        clusterer.forEachCluster(minSize, (key, inputs) -> clusters.add(key + " " + inputs));
+        return clusters;
+    }
+
+    private void assertNoRunsLeft() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5})
+    void matchesTheInMemorySortAtEveryBudget(int minSize) throws IOException {
+        List<String[]> records = randomRecords(minSize, 3000);
+        List<String> expected = sortInMemory(records, minSize);
+        assertTrue(expected.size() > 10);
+
+        int[] runs = new int[3];
+        long[] budgets = {IN_MEMORY, SMALL, TINY};
+        for (int b = 0; b < budgets.length; b++) {
+            try (ExternalSortClusterer clusterer = new ExternalSortClusterer(budgets[b], dir)) {
+                assertEquals(expected, cluster(clusterer, records, minSize), "budget " + budgets[b]);
+                runs[b] = clusterer.spilledRuns();
+            }
+            assertNoRunsLeft();
+        }
+        assertEquals(0, runs[0]);
+        assertTrue(runs[1] > 1 && runs[1] <= 128, "runs: " + runs[1]);
+        // Multi-pass merging leaves fewer, larger runs
+        assertTrue(runs[2] > 1 && runs[2] < records.size(), "runs: " + runs[2]);
+    }
+
+    @Test
+    void tiesKeepTheirInputOrderAcrossRuns() throws IOException {
+        // Two keys: every run and every merge is almost all ties
+        List<String[]> records = new ArrayList<>();
+        for (int r = 0; r < 1000; r++) {
+            records.add(new String[] {r % 7 == 0 ? "B" : "A", "input " + r});
+        }
+        for (long budget : new long[] {IN_MEMORY, 4 << 10, TINY}) {
+            try (ExternalSortClusterer clusterer = new ExternalSortClusterer(budget, dir)) {
+                assertEquals(sortInMemory(records, 2), cluster(clusterer, records, 2), "budget " + budget);
+            }
+        }
+        assertNoRunsLeft();
+    }
+
+    @Test
+    void noRecordsMakeNoClusters() throws IOException {
+        try (ExternalSortClusterer clusterer = new ExternalSortClusterer(TINY, dir)) {
+            assertEquals(List.of(), cluster(clusterer, List.of(), 1));
+            assertEquals(0, clusterer.spilledRuns());
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.interzoid.client.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzyClustererTest {
+
+    private static final String ALPHABET = "0123456789ABCDEF";
+
+    @TempDir
+    Path dir;
+
+    /**
+     * SimKey-like keys in families: each new key is either random or a
+     * copy of an earlier one with 1 to 3 random edits, so near keys of
+     * equal and unequal length, and chains of them, are common.
+     */
+    private static List<String> randomKeys(Random random, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (keys.isEmpty() || random.nextInt(3) == 0) {
+                int length = random.nextInt(8) == 0 ? 1 + random.nextInt(3) : 6 + random.nextInt(20);
+                StringBuilder key = new StringBuilder();
+                for (int c = 0; c < length; c++) {
+                    key.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+                keys.add(key.toString());
+            } else {
+                StringBuilder key = new StringBuilder(keys.get(random.nextInt(keys.size())));
+                for (int edits = 1 + random.nextInt(3); edits > 0; edits--) {
+                    int at = random.nextInt(key.length() + 1);
+                    char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                    int kind = random.nextInt(3);
+                    if (kind == 0 || key.length() <= 1) {
+                        key.insert(at, c);
+                    } else if (at == key.length()) {
+                        key.deleteCharAt(at - 1);
+                    } else if (kind == 1) {
+                        key.deleteCharAt(at);
+                    } else {
+                        key.setCharAt(at, c);
+                    }
+                }
+                keys.add(key.toString());
+            }
+        }
+        return keys;
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static int root(int[] parent, int k) {
+        while (parent[k] != k) {
+            k = parent[k];
+        }
+        return k;
+    }
+
+    /**
+     * The clusters by comparing every pair of distinct keys, merged the
+     * same way: single linkage, named by the key with the most records
+     * (then the first in key order), records in input order, clusters in
+     * key order. Also returns the merged and chained key counts.
+     */
+    private static Map<String, List<String>> bruteForce(List<String[]> records, int maxDistance, int[] merged) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (String[] record : records) {
+            Integer id = ids.get(record[0]);
+            if (id == null) {
+                id = keys.size();
+                ids.put(record[0], id);
+                keys.add(record[0]);
+                counts.add(0);
+            }
+            counts.set(id, counts.get(id) + 1);
+        }
+
+        int[] parent = new int[keys.size()];
+        for (int k = 0; k < parent.length; k++) {
+            parent[k] = k;
+        }
+        for (int a = 0; a < keys.size(); a++) {
+            for (int b = a + 1; b < keys.size(); b++) {
+                if (levenshtein(keys.get(a), keys.get(b)) <= maxDistance) {
+                    parent[root(parent, b)] = root(parent, a);
+                }
+            }
+        }
+
+        Map<Integer, Integer> best = new LinkedHashMap<>();
+        for (int k = 0; k < keys.size(); k++) {
+            best.merge(root(parent, k), k, (current, candidate) ->
+                counts.get(candidate) > counts.get(current)
+                    || (counts.get(candidate).equals(counts.get(current))
+                        && keys.get(candidate).compareTo(keys.get(current)) < 0) ? candidate : current);
+        }
+        for (int k = 0; k < keys.size(); k++) {
+            int representative = best.get(root(parent, k));
+            if (representative != k) {
+                merged[0]++;
+                if (levenshtein(keys.get(k), keys.get(representative)) > maxDistance) {
+                    merged[1]++;
+                }
+            }
+        }
+
+        Map<String, List<String>> clusters = new TreeMap<>();
+        for (String[] record : records) {
+            String key = keys.get(best.get(root(parent, ids.get(record[0]))));
+            clusters.computeIfAbsent(key, k -> new ArrayList<>()).add(record[1]);
+        }
+        return clusters;
+    }
+
+    private Map<String, List<String>> cluster(FuzzyClusterer clusterer, List<String[]> records) throws IOException {
+        for (String[] record : records) {
+            clusterer.add(record[0], record[1]);
+        }
+        Map<String, List<String>> clusters = new LinkedHashMap<>();
+        clusterer.forEachCluster(1, clusters::put);
+        return clusters;
+    }
+
+    private void assertNoSpoolLeft() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.findAny().isPresent());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3})
+    void mergesTheSameClustersAsComparingEveryPair(int maxDistance) throws IOException {
+        int chained = 0;
+        for (long seed = 1; seed <= 4; seed++) {
+            Random random = new Random(seed * 31 + maxDistance);
+            List<String> keys = randomKeys(random, 500);
+            List<String[]> records = new ArrayList<>();
+            for (int r = 0; r < 1500; r++) {
+                // Skewed, so record counts (and so the cluster names) differ
+                String key = keys.get((int) (keys.size() * Math.pow(random.nextDouble(), 2)));
+                records.add(new String[] {key, "record " + r});
+            }
+
+            int[] merged = new int[2];
+            Map<String, List<String>> expected = bruteForce(records, maxDistance, merged);
+            try (FuzzyClusterer clusterer = new FuzzyClusterer(new HashClusterer(), maxDistance, dir)) {
+                Map<String, List<String>> actual = cluster(clusterer, records);
+                assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()),
+                    "seed " + seed);
+                assertEquals(merged[0], clusterer.mergedKeys(), "seed " + seed);
+                assertEquals(merged[1], clusterer.chainedKeys(), "seed " + seed);
+                assertTrue(clusterer.mergedKeys() > 0, "seed " + seed);
+                chained += clusterer.chainedKeys();
+            }
+            assertNoSpoolLeft();
+        }
+        assertTrue(chained > 0, "some keys joined a cluster only through a chain");
+    }
+
+    @Test
+    void chainsMergeKeysFurtherApartThanTheDistance() throws IOException {
+        // A~B and B~C at one edit each, but A and C are two apart; D is near none
+        List<String[]> records = List.of(
+            new String[] {"ABCDEF", "a1"}, new String[] {"ABCDXF", "b1"}, new String[] {"ABYDXF", "c1"},
+            new String[] {"ABCDEF", "a2"}, new String[] {"ZZZZZZ", "d1"}, new String[] {"ABCDEF", "a3"});
+        try (FuzzyClusterer clusterer = new FuzzyClusterer(new HashClusterer(), 1, dir)) {
+            Map<String, List<String>> clusters = cluster(clusterer, records);
+            assertEquals(Map.of("ABCDEF", List.of("a1", "b1", "c1", "a2", "a3"), "ZZZZZZ", List.of("d1")), clusters);
+            assertEquals(4, clusterer.distinctKeys());
+            assertEquals(2, clusterer.mergedKeys());
+            assertEquals(1, clusterer.chainedKeys());
+            assertEquals("Fuzzy merging at edit distance 1: 2 of 4 SimKeys merged into another cluster,"
+                + " 1 of them more than 1 edit from its SimKey (through a chain of near keys)", clusterer.summary());
+        }
+        assertNoSpoolLeft();
+    }
+
+    @Test
+    void theKeyWithTheMostRecordsNamesTheCluster() throws IOException {
+        List<String[]> records = List.of(
+            new String[] {"KEY1", "a"}, new String[] {"KEY2", "b"}, new String[] {"KEY2", "c"},
+            new String[] {"KEY3", "d"}, new String[] {"KEY3", "e"});
+        try (FuzzyClusterer clusterer = new FuzzyClusterer(new HashClusterer(), 1, dir)) {
+            // KEY2 and KEY3 tie on records; KEY2 sorts first
+            assertEquals(Map.of("KEY2", List.of("a", "b", "c", "d", "e")), cluster(clusterer, records));
+        }
+    }
+
+    @Test
+    void rejectsDistancesOutsideTheSupportedRange() {
+        assertThrows(IllegalArgumentException.class, () -> new FuzzyClusterer(new HashClusterer(), 0, dir));
+        assertThrows(IllegalArgumentException.class,
+            () -> new FuzzyClusterer(new HashClusterer(), FuzzyClusterer.MAX_DISTANCE + 1, dir));
+    }
+}
@@ -0,0 +1,130 @@
+package com.interzoid.client.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashClustererTest {
+
+    // "Aa" and "BB" have the same String.hashCode, as do their concatenations
+    private static final String[] KEY_PARTS = {"Aa", "BB", "Zü", "東京", "🙂", "￿", "z", ""};
+
+    /**
+     * Records with skewed, often repeated keys, including many with equal
+     * hash codes; non-ASCII and supplementary characters; and inputs that
+     * are empty, long, or longer than an arena chunk.
+     */
+    private static List<String[]> randomRecords(long seed, int count) {
+        Random random = new Random(seed);
+        List<String> keys = new ArrayList<>();
+        for (int k = 0; k < count / 4; k++) {
+            StringBuilder key = new StringBuilder();
+            for (int p = 1 + random.nextInt(5); p > 0; p--) {
+                key.append(KEY_PARTS[random.nextInt(KEY_PARTS.length)]);
+            }
+            keys.add(random.nextInt(3) == 0 ? key.toString() + k : key.toString());
+        }
+        List<String[]> records = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            String key = keys.get((int) (keys.size() * Math.pow(random.nextDouble(), 3)));
+            int pick = random.nextInt(200);
+            String input = pick < 10 ? ""
+                : pick < 20 ? "long input " + "x".repeat(random.nextInt(5000)) + r
+                : pick == 20 ? "huge input " + "y".repeat(70_000) + r
+                : "input " + r;
+            records.add(new String[] {key, input});
+        }
+        return records;
+    }
+
+    /**
+     * What the match reports did before: a stable sort of every record by
+     * SimKey, then each run of equal keys as a cluster if large enough.
+     */
+    private static List<String> sortInMemory(List<String[]> records, int minSize) {
+        List<String[]> sorted = new ArrayList<>(records);
+        Collections.sort(sorted, Comparator.comparing(record -> record[0]));
+        List<String> clusters = new ArrayList<>();
+        List<String> cluster = new ArrayList<>();
+        String currentKey = null;
+        for (String[] record : sorted) {
+            if (currentKey != null && !record[0].equals(currentKey)) {
+                if (cluster.size() >= minSize) {
+                    clusters.add(currentKey + " " + cluster);
+                }
+                cluster.clear();
+            }
+            currentKey = record[0];
+            cluster.add(record[1]);
+        }
+        if (currentKey != null && cluster.size() >= minSize) {
+            clusters.add(currentKey + " " + cluster);
+        }
+        return clusters;
+    }
+
+    private static List<String> cluster(HashClusterer clusterer, List<String[]> records, int minSize)
+            throws Exception {
+        for (String[] record : records) {
+            clusterer.add(record[0], record[1]);
+        }
+        List<String> clusters = new ArrayList<>();
+        clusterer.forEachCluster(minSize, (key, inputs) -> clusters.add(key + " " + inputs));
+        return clusters;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5})
+    void matchesTheInMemorySort(int minSize) throws Exception {
+        // Enough records and keys that every array, the table and the arenas grow
+        List<String[]> records = randomRecords(minSize, 20_000);
+        List<String> expected = sortInMemory(records, minSize);
+        assertTrue(expected.size() > 10);
+
+        try (HashClusterer clusterer = new HashClusterer()) {
+            assertEquals(expected, cluster(clusterer, records, minSize));
+            assertEquals(records.size(), clusterer.size());
+            HashSet<String> keys = new HashSet<>();
+            records.forEach(record -> keys.add(record[0]));
+            assertEquals(keys.size(), clusterer.distinctKeys());
+        }
+    }
+
+    @Test
+    void valuesAroundAFullArenaChunkKeepTheirOwnCharacters() throws Exception {
+        // Fill a chunk exactly, overflow one, and add empty values after each
+        String[][] records = {
+            {"k", "a".repeat(65_536)}, {"k", ""}, {"", ""},
+            {"k", "b".repeat(70_000)}, {"k", ""}, {"", "c"},
+            {"k", "d".repeat(65_535)}, {"k", "e"}, {"k", ""}};
+        List<String[]> list = List.of(records);
+        try (HashClusterer clusterer = new HashClusterer()) {
+            assertEquals(sortInMemory(list, 1), cluster(clusterer, list, 1));
+        }
+        // The last value added is an empty one, right after a full chunk
+        for (String full : new String[] {"f".repeat(65_536), "g".repeat(70_000)}) {
+            List<String[]> last = List.of(new String[] {"k", full}, new String[] {"k", ""});
+            try (HashClusterer clusterer = new HashClusterer()) {
+                assertEquals(sortInMemory(last, 1), cluster(clusterer, last, 1));
+            }
+        }
+    }
+
+    @Test
+    void noRecordsMakeNoClusters() throws Exception {
+        try (HashClusterer clusterer = new HashClusterer()) {
+            assertEquals(List.of(), cluster(clusterer, List.of(), 1));
+            assertEquals(0, clusterer.distinctKeys());
+        }
+    }
+}
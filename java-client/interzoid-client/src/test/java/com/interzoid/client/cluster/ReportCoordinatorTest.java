@@ -0,0 +1,236 @@
+package com.interzoid.client.cluster;
+
+import com.interzoid.client.batch.ValueResolver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportCoordinatorTest {
+
+    private static final int MIN_SIZE = 2;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Stand-in for the API: a SimKey from the first word of the input, ""
+     * for inputs it cannot resolve, and about half the answers arriving
+     * late and out of order.
+     */
+    private static final ValueResolver RESOLVER = (value, lineNumber) -> {
+        String trimmed = value.trim();
+        String simKey = trimmed.startsWith("?") ? "" : trimmed.split("\\s+")[0].toLowerCase();
+        if (Math.floorMod(value.hashCode(), 2) == 0) {
+            return CompletableFuture.completedFuture(simKey);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            LockSupport.parkNanos(Math.floorMod(value.hashCode(), 50_000));
+            return simKey;
+        });
+    };
+
+    /**
+     * Lines with CRLF, LF and lone CR endings, blank and all-space lines,
+     * repeated inputs, unresolvable inputs and non-ASCII text, with no
+     * newline after the last line.
+     */
+    private static void writeInput(Path input, int lines) throws IOException {
+        Random random = new Random(24);
+        String[] endings = {"\r\n", "\r\n", "\r\n", "\n", "\r"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            // Kind 0 leaves the line empty
+            int kind = random.nextInt(20);
+            if (kind == 1) {
+                text.append("   ");
+            } else if (kind == 2) {
+                text.append("? unknown ").append(i);
+            } else if (kind == 3) {
+                text.append("Käse").append(random.nextInt(40)).append(" Straße ").append(random.nextInt(5));
+            } else {
+                text.append("Key").append(random.nextInt(lines / 4)).append(' ').append(random.nextInt(1000))
+                    .append(" Main St");
+            }
+            if (i < lines - 1) {
+                text.append(endings[random.nextInt(endings.length)]);
+            }
+        }
+        Files.write(input, text.toString().getBytes(Charset.defaultCharset()));
+    }
+
+    private static ClusterHandler printer(PrintStream out) {
+        return (simKey, inputs) -> {
+            for (String input : inputs) {
+                out.println(input + "," + simKey);
+            }
+            out.println();
+        };
+    }
+
+    /**
+     * The single-process report: every non-blank line, read as the
+     * examples read it, through the external sort.
+     */
+    private static byte[] singleProcessReport(Path input) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(bytes, true, "UTF-8");
+             ExternalSortClusterer clusterer = new ExternalSortClusterer(64 << 10, input.getParent());
+             BufferedReader reader = Files.newBufferedReader(input, Charset.defaultCharset())) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String simKey = RESOLVER.resolve(line, lineNumber).join();
+                if (!simKey.isEmpty()) {
+                    clusterer.add(simKey, line);
+                }
+            }
+            assertTrue(clusterer.spilledRuns() > 1, "the reference run spills");
+            clusterer.forEachCluster(MIN_SIZE, printer(out));
+        }
+        return bytes.toByteArray();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    @Timeout(120)
+    void workersProduceTheSingleProcessReport(int workers) throws Exception {
+        Path input = dir.resolve("input.txt");
+        writeInput(input, 20_000);
+        byte[] expected = singleProcessReport(input);
+        assertTrue(expected.length > 100_000, "most inputs are in a cluster");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try (ReportCoordinator coordinator = ReportCoordinator.start(input, workers, MIN_SIZE, "127.0.0.1", 0, 3);
+             PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                running.add(pool.submit(() -> {
+                    try (ReportWorker worker = ReportWorker.start(coordinator.url())) {
+                        worker.maxInFlight(16).run(RESOLVER);
+                    }
+                    return null;
+                }));
+            }
+            coordinator.awaitReport(printer(out));
+            for (Future<?> worker : running) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertArrayEquals(expected, bytes.toByteArray());
+    }
+
+    private static int postReport(ReportCoordinator coordinator, String partition, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(coordinator.url() + "/report/" + partition))
+            .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static List<Path> spooled(Path spool) throws IOException {
+        try (Stream<Path> files = Files.list(spool)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Starts a two-worker coordinator that spools reports to {@code spool}.
+     */
+    private ReportCoordinator startSpoolingTo(Path spool) throws IOException {
+        Path input = dir.resolve("input.txt");
+        writeInput(input, 100);
+        Files.createDirectories(spool);
+        String previous = System.getProperty("interzoid.sort.tmpDir");
+        System.setProperty("interzoid.sort.tmpDir", spool.toString());
+        try {
+            return ReportCoordinator.start(input, 2, MIN_SIZE, "127.0.0.1", 0, 1);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("interzoid.sort.tmpDir");
+            } else {
+                System.setProperty("interzoid.sort.tmpDir", previous);
+            }
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void aReportForNoSuchPartitionIsRefusedWithoutSpooling() throws Exception {
+        Path spool = dir.resolve("spool");
+        try (ReportCoordinator coordinator = startSpoolingTo(spool)) {
+            assertEquals(400, postReport(coordinator, "2", "clusters"));
+            assertEquals(400, postReport(coordinator, "-1", "clusters"));
+            assertEquals(400, postReport(coordinator, "x", "clusters"));
+            assertEquals(List.of(), spooled(spool));
+
+            assertEquals(200, postReport(coordinator, "1", "clusters"));
+            assertEquals(409, postReport(coordinator, "1", "clusters again"));
+            assertEquals(1, spooled(spool).size());
+        }
+        assertEquals(List.of(), spooled(spool));
+    }
+
+    @Test
+    @Timeout(30)
+    void aReportCutOffPartWayIsDeleted() throws Exception {
+        Path spool = dir.resolve("spool");
+        try (ReportCoordinator coordinator = startSpoolingTo(spool)) {
+            URI url = URI.create(coordinator.url());
+            try (Socket socket = new Socket(url.getHost(), url.getPort())) {
+                OutputStream out = socket.getOutputStream();
+                out.write(("POST /report/0 HTTP/1.1\r\nHost: " + url.getAuthority()
+                    + "\r\nContent-Length: 1000000\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.write(new byte[1000]);
+                out.flush();
+                // The body is being spooled when the worker goes away
+                while (spooled(spool).isEmpty()) {
+                    Thread.sleep(10);
+                }
+            }
+            while (!spooled(spool).isEmpty()) {
+                Thread.sleep(10);
+            }
+            // The partition can still be reported
+            assertEquals(200, postReport(coordinator, "0", "clusters"));
+            assertEquals(1, spooled(spool).size());
+        }
+    }
+}
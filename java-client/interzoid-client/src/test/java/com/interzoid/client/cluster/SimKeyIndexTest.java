@@ -0,0 +1,158 @@
+package com.interzoid.client.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimKeyIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private static Map<String, List<String>> report(SimKeyIndex index) throws IOException {
+        Map<String, List<String>> clusters = new LinkedHashMap<>();
+        index.forEachChangedCluster(1, clusters::put);
+        return clusters;
+    }
+
+    @Test
+    void reportsOnlyClustersChangedSinceTheLastReport() throws Exception {
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            index.add("k1", "a");
+            index.add("k2", "b");
+            assertEquals(Map.of("k1", List.of("a"), "k2", List.of("b")), report(index));
+        }
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertEquals(0, index.changedKeys());
+            index.add("k1", "c");
+            assertEquals(Map.of("k1", List.of("a", "c")), report(index));
+            assertEquals(Map.of(), report(index));
+        }
+    }
+
+    @Test
+    void recordsKeptFromARunThatDiedBeforeItsReportAreReportedNextRun() throws Exception {
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            index.add("k1", "a");
+            report(index);
+        }
+
+        // Records reach the disk, then the run dies without reporting or closing
+        SimKeyIndex died = SimKeyIndex.open(dir);
+        died.add("k1", "b");
+        died.add("k2", "c");
+        died.commit();
+
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertEquals(2, index.changedKeys());
+            index.add("k3", "d");
+            assertEquals(Map.of("k1", List.of("a", "b"), "k2", List.of("c"), "k3", List.of("d")), report(index));
+        }
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertEquals(0, index.changedKeys());
+        }
+        died.close();
+    }
+
+    @Test
+    void failedReportIsRepeated() throws Exception {
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            index.add("k1", "a");
+            assertThrows(IOException.class, () -> index.forEachChangedCluster(1, (simKey, inputs) -> {
+                throw new IOException("output failed");
+            }));
+            assertEquals(1, index.changedKeys());
+        }
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertEquals(Map.of("k1", List.of("a")), report(index));
+        }
+    }
+
+    @Test
+    void repeatedInputIsARecordEachTime() throws Exception {
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertFalse(index.seen("a"));
+            assertNull(index.simKeyOf("a"));
+            index.add("k1", "a");
+            assertFalse(index.seen("a"));
+            assertEquals("k1", index.simKeyOf("a"));
+            index.add("k1", "a");
+            assertEquals(Map.of("k1", List.of("a", "a")), report(index));
+        }
+        try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+            assertTrue(index.seen("a"));
+            assertTrue(index.seen("a"));
+            assertFalse(index.seen("a"), "a third line of the same input is new");
+            assertEquals(1, index.size());
+        }
+    }
+
+    /**
+     * Runs over a file that grows between runs, with repeated lines, report
+     * the clusters a full report over the final file does. The inputs table
+     * is deleted before the last run, so it is rebuilt from the log.
+     */
+    @Test
+    void incrementalRunsReportWhatAFullReportDoes() throws Exception {
+        Random random = new Random(19);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            lines.add("addr " + random.nextInt(3000) + (random.nextInt(4) == 0 ? " Straße" : ""));
+        }
+
+        Map<String, List<String>> latest = new TreeMap<>();
+        Set<String> lookedUp = new HashSet<>();
+        int lookups = 0;
+        for (int end : new int[] {4000, 4000, 7500, 10_000}) {
+            if (end == 10_000) {
+                Files.delete(dir.resolve("inputs.tbl"));
+            }
+            try (SimKeyIndex index = SimKeyIndex.open(dir)) {
+                for (String line : lines.subList(0, end)) {
+                    if (index.seen(line)) {
+                        continue;
+                    }
+                    String simKey = index.simKeyOf(line);
+                    if (simKey == null) {
+                        simKey = simKeyOf(line);
+                        lookups++;
+                        lookedUp.add(line);
+                    }
+                    index.add(simKey, line);
+                }
+                index.forEachChangedCluster(2, latest::put);
+            }
+        }
+
+        Map<String, List<String>> full = new TreeMap<>();
+        try (HashClusterer clusterer = new HashClusterer()) {
+            for (String line : lines) {
+                clusterer.add(simKeyOf(line), line);
+            }
+            clusterer.forEachCluster(2, full::put);
+        }
+        assertEquals(full, latest);
+        assertEquals(lookedUp.size(), lookups, "each distinct input is looked up once");
+    }
+
+    private static String simKeyOf(String line) {
+        return "k" + Math.floorMod(line.hashCode(), 500);
+    }
+}
@@ -0,0 +1,238 @@
+package com.interzoid.client.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointedRunTest {
+
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    @TempDir
+    Path dir;
+
+    private static String process(String line) {
+        return "out:" + line;
+    }
+
+    /**
+     * Lines long enough that the rows after a checkpoint overflow the
+     * 64 KB write buffer and reach the output before the crash.
+     */
+    private static List<String> inputLines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            lines.add("row " + i + " " + "x".repeat(600) + " Käse " + i);
+        }
+        return lines;
+    }
+
+    private static Path write(Path file, List<String> lines, String separator) throws IOException {
+        Files.write(file, String.join(separator, lines).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> expectedOutput(List<String> lines) {
+        List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            expected.add(process(line));
+        }
+        return expected;
+    }
+
+    /**
+     * Processes lines until {@code lastLine} has been written, then closes
+     * the run without finishing it, as a killed process would leave it.
+     */
+    private static void crashAfter(CheckpointedRun run, long lastLine) throws IOException {
+        try (run) {
+            String line;
+            while ((line = run.readLine()) != null) {
+                run.writeLine(process(line));
+                if (run.lineNumber() == lastLine) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Processes the rest of the input and finishes the run. */
+    private static void complete(CheckpointedRun run) throws IOException {
+        try (run) {
+            String line;
+            while ((line = run.readLine()) != null) {
+                run.writeLine(process(line));
+            }
+            run.finish();
+        }
+    }
+
+    private static Properties checkpointOf(Path output) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(output.resolveSibling(output.getFileName()
+                + CheckpointedRun.CHECKPOINT_SUFFIX))) {
+            state.load(in);
+        }
+        return state;
+    }
+
+    @Test
+    void resumesAfterACrashWithNoRowMissingOrRepeated() throws IOException {
+        List<String> lines = inputLines(1000);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+
+        // Checkpoints after lines 300 and 600; lines 601-750 are written but not checkpointed
+        crashAfter(CheckpointedRun.open(input, output, 300, NEVER), 750);
+        Properties saved = checkpointOf(output);
+        assertEquals("600", saved.getProperty("lineNumber"));
+        long checkpointed = Long.parseLong(saved.getProperty("outputLength"));
+        assertTrue(Files.size(output) > checkpointed, "rows after the checkpoint reached the file");
+
+        CheckpointedRun run = CheckpointedRun.open(input, output, 300, NEVER);
+        assertTrue(run.isResumed());
+        assertEquals(600, run.resumedFromLine());
+        assertEquals(checkpointed, Files.size(output));
+        assertEquals(lines.get(600), run.readLine());
+        assertEquals(601, run.lineNumber());
+        run.writeLine(process(lines.get(600)));
+        complete(run);
+
+        assertTrue(run.isFinished());
+        assertEquals(expectedOutput(lines), Files.readAllLines(output, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(output.resolveSibling("output.txt" + CheckpointedRun.CHECKPOINT_SUFFIX)));
+    }
+
+    @Test
+    void survivesRepeatedCrashes() throws IOException {
+        List<String> lines = inputLines(500);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+
+        long[] crashes = {57, 58, 200, 201, 499};
+        for (long crash : crashes) {
+            crashAfter(CheckpointedRun.open(input, output, 50, NEVER), crash);
+        }
+        complete(CheckpointedRun.open(input, output, 50, NEVER));
+        assertEquals(expectedOutput(lines), Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void aCrashBeforeTheFirstCheckpointStartsOver() throws IOException {
+        List<String> lines = inputLines(100);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+
+        crashAfter(CheckpointedRun.open(input, output, 1000, NEVER), 40);
+        CheckpointedRun run = CheckpointedRun.open(input, output, 1000, NEVER);
+        assertFalse(run.isResumed());
+        complete(run);
+        assertEquals(expectedOutput(lines), Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void checkpointsOnTimeAsWellAsRows() throws IOException {
+        List<String> lines = inputLines(20);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+
+        // With no interval, every line read marks the one before it done
+        crashAfter(CheckpointedRun.open(input, output, 1000, Duration.ZERO), 12);
+        CheckpointedRun run = CheckpointedRun.open(input, output, 1000, Duration.ZERO);
+        assertEquals(11, run.resumedFromLine());
+        complete(run);
+        assertEquals(expectedOutput(lines), Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void resumesCrlfInputAtTheRightLine() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            lines.add(i % 4 == 2 ? "" : "Zürich Straße " + i + " 東京");
+        }
+        // The last line has no line break
+        Path input = write(dir.resolve("input.txt"), lines, "\r\n");
+        Path output = dir.resolve("output.txt");
+
+        crashAfter(CheckpointedRun.open(input, output, 3, NEVER), 8);
+        CheckpointedRun run = CheckpointedRun.open(input, output, 3, NEVER);
+        assertEquals(6, run.resumedFromLine());
+        assertEquals(lines.get(6), run.readLine());
+        run.writeLine(process(lines.get(6)));
+        complete(run);
+
+        List<String> written = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(expectedOutput(lines), written);
+        for (String line : written) {
+            assertFalse(line.contains("\r"), line);
+        }
+    }
+
+    @Test
+    void refusesToResumeOverAChangedInput() throws IOException {
+        List<String> lines = inputLines(100);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+        crashAfter(CheckpointedRun.open(input, output, 10, NEVER), 50);
+        long outputSize = Files.size(output);
+
+        // Same size, different modification time
+        FileTime modified = Files.getLastModifiedTime(input);
+        Files.setLastModifiedTime(input, FileTime.fromMillis(modified.toMillis() + 60_000));
+        IOException e = assertThrows(IOException.class, () -> CheckpointedRun.open(input, output, 10, NEVER));
+        assertTrue(e.getMessage().contains("has changed"), e.getMessage());
+
+        // Different size, same modification time
+        Files.write(input, "row 101\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(input, modified);
+        assertThrows(IOException.class, () -> CheckpointedRun.open(input, output, 10, NEVER));
+
+        // The output is left as it was
+        assertEquals(outputSize, Files.size(output));
+    }
+
+    @Test
+    void refusesToResumeOverAShorterOutput() throws IOException {
+        List<String> lines = inputLines(100);
+        Path input = write(dir.resolve("input.txt"), lines, "\n");
+        Path output = dir.resolve("output.txt");
+        crashAfter(CheckpointedRun.open(input, output, 10, NEVER), 50);
+
+        long checkpointed = Long.parseLong(checkpointOf(output).getProperty("outputLength"));
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+            channel.truncate(checkpointed - 1);
+        }
+        IOException e = assertThrows(IOException.class, () -> CheckpointedRun.open(input, output, 10, NEVER));
+        assertTrue(e.getMessage().contains("is shorter"), e.getMessage());
+        assertEquals(checkpointed - 1, Files.size(output));
+    }
+
+    @Test
+    void aFreshRunTruncatesAnOldOutput() throws IOException {
+        Path input = write(dir.resolve("input.txt"), List.of("a", "b"), "\n");
+        Path output = dir.resolve("output.txt");
+        Files.write(output, "left over from another run\n".repeat(10).getBytes(StandardCharsets.UTF_8));
+
+        CheckpointedRun run = CheckpointedRun.open(input, output, 10, NEVER);
+        assertFalse(run.isResumed());
+        complete(run);
+        assertEquals(List.of("out:a", "out:b"), Files.readAllLines(output, StandardCharsets.UTF_8));
+    }
+}
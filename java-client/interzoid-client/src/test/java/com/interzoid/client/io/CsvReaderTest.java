@@ -0,0 +1,237 @@
+package com.interzoid.client.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Hands out at most {@code chunk} chars per read, so every record
+     * boundary, quote and \r\n falls across a buffer refill somewhere.
+     */
+    private static Reader trickle(String text, int chunk) {
+        return new FilterReader(new StringReader(text)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, chunk));
+            }
+        };
+    }
+
+    /** Each record as its line number, then its fields. */
+    private static List<List<String>> readAll(CsvReader reader) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        CsvReader.Record record;
+        while ((record = reader.next()) != null) {
+            List<String> fields = new ArrayList<>();
+            fields.add(String.valueOf(record.lineNumber()));
+            for (int i = 0; i < record.size(); i++) {
+                fields.add(record.get(i));
+            }
+            records.add(fields);
+        }
+        return records;
+    }
+
+    private static final String CSV = "id,name,note\r\n"
+        + "1,\"Acme, Inc\",\"said \"\"hi\"\"\"\r\n"
+        + "2,\"multi\nline\r\nvalue\",x\n"
+        + "3,plain \"quote\" inside,\r\n"
+        + "4,\"\",\"a,\rb\"\r"
+        + "5,Zürich,東京";
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 7, 1 << 16})
+    void parsesQuotedFieldsAcrossAnyReadBoundary(int chunk) throws IOException {
+        try (CsvReader reader = CsvReader.of(trickle(CSV, chunk), ',', true)) {
+            assertEquals(Arrays.asList("id", "name", "note"), Arrays.asList(
+                reader.header().get(0), reader.header().get(1), reader.header().get(2)));
+            assertEquals(Arrays.asList(
+                Arrays.asList("2", "1", "Acme, Inc", "said \"hi\""),
+                Arrays.asList("3", "2", "multi\nline\r\nvalue", "x"),
+                Arrays.asList("6", "3", "plain \"quote\" inside", ""),
+                Arrays.asList("7", "4", "", "a,\rb"),
+                // A lone \r inside quotes is a line break
+                Arrays.asList("9", "5", "Zürich", "東京")), readAll(reader));
+            assertEquals(5, reader.recordCount());
+            assertEquals(-1, reader.sourceSize());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 1 << 16})
+    void countsLinesOfCrOnlyFiles(int chunk) throws IOException {
+        String text = "a\r\"b\rc\r\rd\"\re\r\rf";
+        try (CsvReader reader = CsvReader.of(trickle(text, chunk), ',', false)) {
+            assertEquals(Arrays.asList(
+                Arrays.asList("1", "a"),
+                Arrays.asList("2", "b\rc\r\rd"),
+                Arrays.asList("6", "e"),
+                Arrays.asList("7", ""),
+                Arrays.asList("8", "f")), readAll(reader));
+        }
+    }
+
+    @Test
+    void crlfSplitAcrossTheReadBufferIsOneLineBreak() throws IOException {
+        char[] filler = new char[(1 << 16) - 1];
+        Arrays.fill(filler, 'a');
+        String first = new String(filler);
+        // The \r is the last char of the first buffer and the \n the first of the next
+        String text = first + "\r\nsecond\r\n\"quoted\r\nvalue\"";
+        try (CsvReader reader = CsvReader.of(new StringReader(text), ',', false)) {
+            assertEquals(first, reader.next().raw());
+            CsvReader.Record record = reader.next();
+            assertEquals("second", record.raw());
+            assertEquals(2, record.lineNumber());
+            record = reader.next();
+            assertEquals("quoted\r\nvalue", record.get(0));
+            assertEquals(3, record.lineNumber());
+            assertNull(reader.next());
+        }
+
+        // Inside quotes: the field holds one \r\n, and the next record starts a line later
+        String quoted = "\"" + first.substring(1) + "\r\nx\",y\nz";
+        try (CsvReader reader = CsvReader.of(new StringReader(quoted), ',', false)) {
+            assertEquals(first.substring(1) + "\r\nx", reader.next().get(0));
+            assertEquals(3, reader.next().lineNumber());
+        }
+    }
+
+    @Test
+    void aLastRecordNeedsNoLineBreak() throws IOException {
+        try (CsvReader reader = CsvReader.of(new StringReader("a\nb"), ',', false)) {
+            assertEquals("a", reader.next().raw());
+            assertEquals("b", reader.next().raw());
+            assertNull(reader.next());
+        }
+        // ...and a final line break does not make an empty record
+        try (CsvReader reader = CsvReader.of(new StringReader("a\r\nb\r\n"), ',', false)) {
+            assertEquals(2, readAll(reader).size());
+        }
+        try (CsvReader reader = CsvReader.of(new StringReader("\"open"), ',', false)) {
+            assertEquals("open", reader.next().get(0));
+            assertNull(reader.next());
+        }
+        try (CsvReader reader = CsvReader.of(new StringReader(""), ',', true)) {
+            assertNull(reader.header());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void blankLinesAreRecords() throws IOException {
+        try (CsvReader reader = CsvReader.of(new StringReader("a\n\n  \t\nb"), ',', false)) {
+            assertFalse(reader.next().isBlank());
+            CsvReader.Record empty = reader.next();
+            assertTrue(empty.isBlank());
+            assertEquals(1, empty.size());
+            assertEquals("", empty.get(0));
+            assertTrue(reader.next().isBlank());
+            assertEquals(4, reader.next().lineNumber());
+        }
+    }
+
+    @Test
+    void tsvHasNoQuoting() throws IOException {
+        String text = "name\tnote\n\"Acme\tInc\"\t\"\"x\"\n";
+        try (CsvReader reader = CsvReader.of(new StringReader(text), CsvReader.delimiterFor("TSV"), true)) {
+            assertEquals('\t', reader.delimiter());
+            CsvReader.Record record = reader.next();
+            assertEquals(3, record.size());
+            assertEquals("\"Acme", record.get(0));
+            assertEquals("Inc\"", record.get(1));
+            assertEquals("\"\"x\"", record.get(2));
+            assertEquals("\"Acme\tInc\"\t\"\"x\"", record.raw());
+        }
+        assertEquals(',', CsvReader.delimiterFor("csv"));
+        assertEquals("a b c", CsvReader.escape("a\tb\nc", '\t'));
+    }
+
+    @Test
+    void findsColumnsByHeaderNameOrNumber() throws IOException {
+        String text = " Id ,Company,2019,\"Street, City\"\n";
+        try (CsvReader reader = CsvReader.of(new StringReader(text), ',', true)) {
+            assertEquals(0, reader.column("id"));
+            assertEquals(1, reader.column(" COMPANY "));
+            assertEquals(3, reader.column("street, city"));
+            // A header name wins over a column number
+            assertEquals(2, reader.column("2019"));
+            assertEquals(1, reader.column("2"));
+            assertEquals(3, reader.column("4"));
+            assertThrows(IllegalArgumentException.class, () -> reader.column("5"));
+            assertThrows(IllegalArgumentException.class, () -> reader.column("0"));
+            assertThrows(IllegalArgumentException.class, () -> reader.column("Name"));
+        }
+        try (CsvReader reader = CsvReader.of(new StringReader("a,b\n"), ',', false)) {
+            assertNull(reader.header());
+            assertEquals(6, reader.column("7"));
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reader.column("Company"));
+            assertTrue(e.getMessage().contains("no header"), e.getMessage());
+        }
+    }
+
+    @Test
+    void rawTextAndEscapedFieldsRoundTrip() throws IOException {
+        Path file = dir.resolve("input.csv");
+        Files.write(file, CSV.getBytes(StandardCharsets.UTF_8));
+        StringBuilder raw = new StringBuilder();
+        StringBuilder escaped = new StringBuilder();
+        try (CsvReader reader = CsvReader.open(file, ',', false)) {
+            assertEquals(Files.size(file), reader.sourceSize());
+            CsvReader.Record record;
+            while ((record = reader.next()) != null) {
+                raw.append(record.raw()).append('\n');
+                for (int i = 0; i < record.size(); i++) {
+                    escaped.append(i == 0 ? "" : ",").append(CsvReader.escape(record.get(i), ','));
+                }
+                escaped.append('\n');
+                assertEquals("", record.get(record.size()));
+            }
+        }
+        // Record breaks become \n; everything else, quotes included, is kept as written
+        String expected = "id,name,note\n"
+            + "1,\"Acme, Inc\",\"said \"\"hi\"\"\"\n"
+            + "2,\"multi\nline\r\nvalue\",x\n"
+            + "3,plain \"quote\" inside,\n"
+            + "4,\"\",\"a,\rb\"\n"
+            + "5,Zürich,東京\n";
+        assertEquals(expected, raw.toString());
+
+        // Fields written back with escape() read the same
+        List<List<String>> original;
+        try (CsvReader reader = CsvReader.of(new StringReader(CSV), ',', false)) {
+            original = readAll(reader);
+        }
+        try (CsvReader reader = CsvReader.of(new StringReader(escaped.toString()), ',', false)) {
+            List<List<String>> reread = readAll(reader);
+            assertEquals(original.size(), reread.size());
+            for (int i = 0; i < original.size(); i++) {
+                assertEquals(original.get(i).subList(1, original.get(i).size()),
+                    reread.get(i).subList(1, reread.get(i).size()));
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.interzoid.client.io;
+
+import com.interzoid.client.metrics.Metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupCommitWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private static String series(Path file) {
+        return "interzoid_writer_queued_rows{file=\"" + file.toAbsolutePath().normalize() + "\"}";
+    }
+
+    @Test
+    void writersOpenAtOnceKeepTheirOwnQueueGauge() throws Exception {
+        Path first = dir.resolve("first.csv");
+        Path second = dir.resolve("second.csv");
+
+        GroupCommitWriter a = GroupCommitWriter.open(first, false);
+        try (GroupCommitWriter b = GroupCommitWriter.open(second, false)) {
+            String exported = Metrics.shared().toPrometheus();
+            assertTrue(exported.contains(series(first)), exported);
+            assertTrue(exported.contains(series(second)), exported);
+
+            a.write("a");
+            a.close();
+            exported = Metrics.shared().toPrometheus();
+            assertFalse(exported.contains(series(first)), exported);
+            assertTrue(exported.contains(series(second)), "closing one writer must keep the other's series");
+            b.write("b");
+        }
+        assertFalse(Metrics.shared().toPrometheus().contains(series(second)));
+        assertEquals(List.of("a"), Files.readAllLines(first));
+        assertEquals(List.of("b"), Files.readAllLines(second));
+    }
+
+    /** A writer with a 1 KB buffer, so a few rows fill it. */
+    private static GroupCommitWriter smallBuffer(Path file, boolean ordered, int syncRows, Duration syncInterval)
+            throws IOException {
+        return GroupCommitWriter.open(file, ordered, 1024, syncRows, syncInterval);
+    }
+
+    @Test
+    void reassemblesRowsCompletedOutOfOrder() throws Exception {
+        Path file = dir.resolve("ordered.csv");
+        int rows = 20_000;
+        List<Long> sequences = new ArrayList<>();
+        for (long i = 0; i < rows; i++) {
+            sequences.add(i);
+        }
+        Collections.shuffle(sequences, new Random(14));
+
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        try (GroupCommitWriter writer = smallBuffer(file, true, 0, Duration.ZERO)) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                List<Long> share = sequences.subList(p * rows / 4, (p + 1) * rows / 4);
+                running.add(producers.submit(() -> {
+                    for (long sequence : share) {
+                        writer.write(sequence, "row " + sequence);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> producer : running) {
+                producer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            producers.shutdownNow();
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(rows, lines.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals("row " + i, lines.get(i));
+        }
+    }
+
+    @Test
+    void unorderedRowsKeepEachThreadsOrder() throws Exception {
+        Path file = dir.resolve("unordered.csv");
+        int threads = 4;
+        int rows = 5_000;
+        ExecutorService producers = Executors.newFixedThreadPool(threads);
+        try (GroupCommitWriter writer = smallBuffer(file, false, 0, Duration.ZERO)) {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                running.add(producers.submit(() -> {
+                    for (int i = 0; i < rows; i++) {
+                        writer.write(thread + ":" + i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> producer : running) {
+                producer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            producers.shutdownNow();
+        }
+        int[] next = new int[threads];
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(threads * rows, lines.size());
+        for (String line : lines) {
+            int thread = Integer.parseInt(line.substring(0, line.indexOf(':')));
+            assertEquals(thread + ":" + next[thread]++, line);
+        }
+    }
+
+    @Test
+    void awaitWrittenWaitsForTheMissingRow() throws Exception {
+        Path file = dir.resolve("await.csv");
+        try (GroupCommitWriter writer = GroupCommitWriter.open(file, true)) {
+            writer.awaitWritten(0);
+            writer.write(1, "b");
+            writer.write(2, "c");
+            CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+                try {
+                    writer.awaitWritten(2);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+            assertEquals(0, writer.rowsWritten());
+
+            writer.write(0, "a");
+            waiting.get(10, TimeUnit.SECONDS);
+            writer.awaitWritten(3);
+            assertEquals(3, writer.rowsWritten());
+        }
+        assertEquals(List.of("a", "b", "c"), Files.readAllLines(file));
+    }
+
+    @Test
+    void syncWritesAndFsyncsEverythingQueuedBeforeIt() throws Exception {
+        Path file = dir.resolve("sync.csv");
+        try (GroupCommitWriter writer = GroupCommitWriter.open(file, false)) {
+            writer.write("a");
+            writer.write("b");
+            writer.sync();
+            assertEquals(List.of("a", "b"), Files.readAllLines(file));
+            assertEquals(1, writer.syncCount());
+
+            // Nothing new to fsync
+            writer.sync();
+            assertEquals(1, writer.syncCount());
+        }
+    }
+
+    @Test
+    void fsyncsEverySyncRowsRows() throws Exception {
+        Path file = dir.resolve("rows.csv");
+        GroupCommitWriter writer = GroupCommitWriter.open(file, false, 1024, 10, Duration.ZERO);
+        try (writer) {
+            for (int i = 0; i < 35; i++) {
+                writer.write("row " + i);
+            }
+            writer.awaitWritten(35);
+            assertEquals(3, writer.syncCount());
+        }
+        // close() fsyncs the last five
+        assertEquals(4, writer.syncCount());
+    }
+
+    @Test
+    void fsyncsAfterSyncIntervalOnlyWhenRowsAreWaiting() throws Exception {
+        Path file = dir.resolve("interval.csv");
+        try (GroupCommitWriter writer = GroupCommitWriter.open(file, false, 1024, 0, Duration.ofMillis(20))) {
+            TimeUnit.MILLISECONDS.sleep(300);
+            assertEquals(0, writer.syncCount());
+
+            writer.write("a");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (writer.syncCount() == 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            assertEquals(1, writer.syncCount());
+            assertEquals(List.of("a"), Files.readAllLines(file));
+
+            TimeUnit.MILLISECONDS.sleep(300);
+            assertEquals(1, writer.syncCount());
+        }
+    }
+
+    @Test
+    void closeReportsARowThatNeverArrived() throws Exception {
+        Path file = dir.resolve("gap.csv");
+        GroupCommitWriter writer = GroupCommitWriter.open(file, true);
+        writer.write(0, "a");
+        writer.write(2, "c");
+        writer.write(3, "d");
+        IOException e = assertThrows(IOException.class, writer::close);
+        assertEquals("2 rows were not written: row 1 never arrived", e.getMessage());
+        assertEquals(List.of("a"), Files.readAllLines(file));
+    }
+
+    @Test
+    void aRepeatedSequenceFailsTheWriterForEveryCaller() throws Exception {
+        for (long repeated : new long[] {0, 5}) {
+            Path file = dir.resolve("twice-" + repeated + ".csv");
+            GroupCommitWriter writer = GroupCommitWriter.open(file, true);
+            writer.write(0, "a");
+            writer.write(5, "f");
+            // Blocked until row 1 arrives, which it never does
+            CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+                try {
+                    writer.awaitWritten(6);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.write(repeated, "again");
+
+            Exception waiterFailure = assertThrows(Exception.class, () -> waiting.get(10, TimeUnit.SECONDS));
+            assertTrue(waiterFailure.getMessage().contains("Row " + repeated + " was written twice"),
+                waiterFailure.getMessage());
+            IOException e = assertThrows(IOException.class, () -> writer.write(1, "b"));
+            assertEquals("Writing output failed: Row " + repeated + " was written twice", e.getMessage());
+            assertThrows(IOException.class, writer::sync);
+            assertThrows(IOException.class, () -> writer.awaitWritten(2));
+            assertThrows(IOException.class, writer::close);
+        }
+    }
+
+    @Test
+    void writesInTheWrongModeOrAfterCloseAreRejected() throws Exception {
+        try (GroupCommitWriter ordered = GroupCommitWriter.open(dir.resolve("o.csv"), true);
+             GroupCommitWriter unordered = GroupCommitWriter.open(dir.resolve("u.csv"), false)) {
+            assertThrows(IllegalStateException.class, () -> ordered.write("row"));
+            assertThrows(IllegalStateException.class, () -> unordered.write(0, "row"));
+            assertThrows(IllegalArgumentException.class, () -> ordered.write(-1, "row"));
+            unordered.close();
+            assertThrows(IllegalStateException.class, () -> unordered.write("row"));
+            assertThrows(IOException.class, () -> unordered.awaitWritten(1));
+            assertThrows(IllegalStateException.class, unordered::sync);
+        }
+    }
+
+    /**
+     * Rows of every length around the 1 KB buffer, with two- to four-byte
+     * characters falling across each flush.
+     */
+    @Test
+    void nonAsciiRowsSurviveBufferFlushes() throws Exception {
+        Path file = dir.resolve("utf8.csv");
+        String[] pieces = {"a", "ü", "東", "😀", ",", "ß"};
+        Random random = new Random(1014);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int length = random.nextInt(i % 100 == 0 ? 2000 : 120);
+            StringBuilder row = new StringBuilder();
+            while (row.length() < length) {
+                row.append(pieces[random.nextInt(pieces.length)]);
+            }
+            rows.add(row.toString());
+        }
+        try (GroupCommitWriter writer = smallBuffer(file, false, 0, Duration.ZERO)) {
+            for (String row : rows) {
+                writer.write(row);
+            }
+        }
+        String expected = String.join(System.lineSeparator(), rows) + System.lineSeparator();
+        assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+}
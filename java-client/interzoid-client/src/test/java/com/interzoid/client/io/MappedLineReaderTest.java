@@ -0,0 +1,214 @@
+package com.interzoid.client.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedLineReaderTest {
+
+    private static final String[] BREAKS = {"\n", "\r\n", "\r"};
+    private static final String[] WORDS = {"Acme", "Zürich", "東京", "🙂", "x", ""};
+
+    @TempDir
+    Path dir;
+
+    /** Lines as BufferedReader.readLine sees them, which the reader should match. */
+    private static List<String> readLines(String text) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new StringReader(text))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Lines of random length (up to {@code maxLineChars}) with multi-byte
+     * characters, empty lines and every kind of line break.
+     */
+    private static String randomText(Random random, int lines, int maxLineChars) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            StringBuilder line = new StringBuilder();
+            int target = random.nextInt(maxLineChars + 1);
+            while (line.length() < target) {
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            int end = Math.min(line.length(), target);
+            if (end > 0 && Character.isHighSurrogate(line.charAt(end - 1))) {
+                end--;
+            }
+            text.append(line, 0, end);
+            if (i < lines - 1 || random.nextBoolean()) {
+                text.append(BREAKS[random.nextInt(BREAKS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = dir.resolve("input.txt");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Reads a chunk, checking each line's position against the file bytes.
+     */
+    private static List<String> read(MappedLineReader.Chunk chunk, byte[] bytes) throws IOException {
+        List<String> lines = new ArrayList<>();
+        chunk.forEachLine(line -> {
+            String text = line.toString();
+            byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+            assertEquals(line.length(), expected.length);
+            assertTrue(Arrays.equals(bytes, (int) line.position(), (int) line.position() + line.length(),
+                expected, 0, expected.length), "position of line " + line.number());
+            assertEquals(lines.size() + 1, line.number());
+            lines.add(text);
+        });
+        return lines;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 8, 13, 40})
+    void chunksCoverEveryLineOnce(int count) throws IOException {
+        String text = randomText(new Random(count), 300, 30);
+        Path file = write(text);
+        byte[] bytes = Files.readAllBytes(file);
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            List<MappedLineReader.Chunk> chunks = reader.split(count);
+            assertTrue(chunks.size() <= count);
+            long expectedStart = 0;
+            List<String> lines = new ArrayList<>();
+            for (MappedLineReader.Chunk chunk : chunks) {
+                assertEquals(expectedStart, chunk.start());
+                assertTrue(chunk.end() > chunk.start());
+                // No chunk starts with the \n of a \r\n
+                assertTrue(chunk.start() == 0 || bytes[(int) chunk.start() - 1] != '\r'
+                    || bytes[(int) chunk.start()] != '\n', "chunk at " + chunk.start());
+                lines.addAll(read(chunk, bytes));
+                expectedStart = chunk.end();
+            }
+            assertEquals(reader.size(), expectedStart);
+            assertEquals(readLines(text), lines);
+        }
+    }
+
+    @Test
+    void parallelReadingSeesEveryLineOnce() throws IOException {
+        String text = randomText(new Random(99), 5000, 40);
+        Path file = write(text);
+        TreeMap<Long, String> byPosition = new TreeMap<>();
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            MappedLineReader.Stats stats = reader.forEachLineParallel(4, line -> {
+                synchronized (byPosition) {
+                    byPosition.put(line.position(), line.toString());
+                }
+            });
+            assertEquals(readLines(text).size(), stats.rows());
+        }
+        assertEquals(readLines(text), new ArrayList<>(byPosition.values()));
+    }
+
+    @Test
+    void aCrOnlyFileIsReadLineByLineAndSplits() throws IOException {
+        String text = "a\rb\r\rZürich\rlast";
+        Path file = write(text);
+        byte[] bytes = Files.readAllBytes(file);
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            assertEquals(Arrays.asList("a", "b", "", "Zürich", "last"), read(reader.whole(), bytes));
+            assertTrue(reader.split(3).size() > 1);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 16, 17, 31, 64})
+    void smallWindowsRemapWithoutLosingLines(int lineChars) throws IOException {
+        // Lines of up to half a window, so their breaks and multi-byte
+        // characters land on every offset of the window edge
+        long window = 4L * lineChars + 16;
+        String text = randomText(new Random(lineChars), 400, lineChars);
+        Path file = write(text);
+        byte[] bytes = Files.readAllBytes(file);
+        try (MappedLineReader reader = MappedLineReader.open(file, window)) {
+            assertEquals(readLines(text), read(reader.whole(), bytes));
+            List<String> lines = new ArrayList<>();
+            for (MappedLineReader.Chunk chunk : reader.split(7)) {
+                lines.addAll(read(chunk, bytes));
+            }
+            assertEquals(readLines(text), lines);
+        }
+    }
+
+    @Test
+    void aCrLfSplitByTheWindowEdgeIsOneLineBreak() throws IOException {
+        // Each of the first and third lines fills its window up to the \r;
+        // the \n starts the next window
+        String first = "x".repeat(15);
+        String text = first + "\r\nsecond\r\n" + "y".repeat(12) + "東\r\nthird";
+        Path file = write(text);
+        try (MappedLineReader reader = MappedLineReader.open(file, 16)) {
+            assertEquals(Arrays.asList(first, "second", "y".repeat(12) + "東", "third"),
+                read(reader.whole(), Files.readAllBytes(file)));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {11, 12, 13, 14, 15, 16, 17, 18, 19})
+    void aMultiByteCharacterAcrossTheWindowEdgeIsDecodedWhole(int window) throws IOException {
+        // Lines of 9 bytes and a \n: the first window ends 1 to 9 bytes into
+        // the second line, inside its 3-byte 東 or 4-byte 🙂 for most sizes
+        List<String> expected = Collections.nCopies(50, "ab東🙂");
+        String text = String.join("\n", expected);
+        Path file = write(text);
+        try (MappedLineReader reader = MappedLineReader.open(file, window)) {
+            assertEquals(expected, read(reader.whole(), Files.readAllBytes(file)));
+        }
+    }
+
+    @Test
+    void aLineLongerThanTheWindowFailsWithItsOffset() throws IOException {
+        Path file = write("short\n" + "z".repeat(100) + "\nafter\n");
+        try (MappedLineReader reader = MappedLineReader.open(file, 32)) {
+            List<String> seen = new ArrayList<>();
+            IOException e = assertThrows(IOException.class, () -> reader.forEachLine(line -> seen.add(line.toString())));
+            assertTrue(e.getMessage().contains("at byte 6") && e.getMessage().contains("longer than 32"),
+                e.getMessage());
+            assertEquals(List.of("short"), seen);
+        }
+        // The last line of the file needs no line break, so may fill the window
+        Path exact = write("a\n" + "z".repeat(32));
+        try (MappedLineReader reader = MappedLineReader.open(exact, 32)) {
+            assertEquals(List.of("a", "z".repeat(32)), read(reader.whole(), Files.readAllBytes(exact)));
+        }
+    }
+
+    @Test
+    void anEmptyFileHasNoLinesOrChunks() throws IOException {
+        Path file = write("");
+        try (MappedLineReader reader = MappedLineReader.open(file)) {
+            assertEquals(0, reader.forEachLine(line -> { }).rows());
+            assertEquals(0, reader.split(4).size());
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.interzoid.client.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads back what {@link ParquetWriter} writes, straight from the format
+ * spec and independent of the writer's code: flat schemas of nullable
+ * BYTE_ARRAY, INT64 and DOUBLE columns, PLAIN or dictionary encoded,
+ * uncompressed or gzip. Enough for round-trip tests, nothing more.
+ */
+final class MiniParquetReader {
+
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+    final Map<Integer, Object> footer;
+    final List<String> columnNames = new ArrayList<>();
+    // Encodings (from the chunk metadata) of each column chunk, by row group
+    final List<List<List<Long>>> chunkEncodings = new ArrayList<>();
+    final List<Object[]> rows = new ArrayList<>();
+
+    private final byte[] file;
+
+    private MiniParquetReader(byte[] file) throws IOException {
+        this.file = file;
+        int length = file.length;
+        if (length < 12 || !Arrays.equals(Arrays.copyOfRange(file, 0, 4), MAGIC)
+                || !Arrays.equals(Arrays.copyOfRange(file, length - 4, length), MAGIC)) {
+            throw new IOException("Not a Parquet file");
+        }
+        int footerLength = ByteBuffer.wrap(file, length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        Compact footerReader = new Compact(file, length - 8 - footerLength);
+        this.footer = footerReader.struct();
+        if (footerReader.pos != length - 8) {
+            throw new IOException("Footer length does not match its contents");
+        }
+
+        List<Object> schema = list(footer, 2);
+        for (Object element : schema.subList(1, schema.size())) {
+            columnNames.add(string(struct(element), 4));
+        }
+        long rowCount = number(footer, 3);
+        for (Object group : list(footer, 4)) {
+            List<Object> chunks = list(struct(group), 1);
+            long groupRows = number(struct(group), 3);
+            List<List<Object>> columns = new ArrayList<>();
+            List<List<Long>> encodings = new ArrayList<>();
+            for (Object chunk : chunks) {
+                Map<Integer, Object> meta = struct(struct(chunk).get(3));
+                columns.add(readChunk(meta));
+                List<Long> chunkEncoding = new ArrayList<>();
+                for (Object encoding : list(meta, 2)) {
+                    chunkEncoding.add((Long) encoding);
+                }
+                encodings.add(chunkEncoding);
+            }
+            chunkEncodings.add(encodings);
+            for (int row = 0; row < groupRows; row++) {
+                Object[] values = new Object[columns.size()];
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = columns.get(c).get(row);
+                }
+                rows.add(values);
+            }
+        }
+        if (rows.size() != rowCount) {
+            throw new IOException("Footer says " + rowCount + " rows, row groups hold " + rows.size());
+        }
+    }
+
+    static MiniParquetReader read(Path path) throws IOException {
+        return new MiniParquetReader(Files.readAllBytes(path));
+    }
+
+    private List<Object> readChunk(Map<Integer, Object> meta) throws IOException {
+        long type = number(meta, 1);
+        boolean gzip = number(meta, 4) == 2;
+        long values = number(meta, 5);
+        int pos = (int) (meta.containsKey(11) ? number(meta, 11) : number(meta, 9));
+
+        List<Object> dictionary = null;
+        List<Object> out = new ArrayList<>();
+        while (out.size() < values) {
+            Compact headerReader = new Compact(file, pos);
+            Map<Integer, Object> header = headerReader.struct();
+            int uncompressedSize = (int) number(header, 2);
+            int compressedSize = (int) number(header, 3);
+            byte[] body = Arrays.copyOfRange(file, headerReader.pos, headerReader.pos + compressedSize);
+            pos = headerReader.pos + compressedSize;
+            if (gzip) {
+                try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = in.readAllBytes();
+                }
+            }
+            if (body.length != uncompressedSize) {
+                throw new IOException("Page is " + body.length + " bytes, header says " + uncompressedSize);
+            }
+            ByteBuffer page = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (number(header, 1) == 2) {
+                Map<Integer, Object> dictionaryHeader = struct(header.get(7));
+                dictionary = new ArrayList<>();
+                for (long i = number(dictionaryHeader, 1); i > 0; i--) {
+                    dictionary.add(plainValue(page, type));
+                }
+                continue;
+            }
+
+            Map<Integer, Object> dataHeader = struct(header.get(5));
+            int pageRows = (int) number(dataHeader, 1);
+            long encoding = number(dataHeader, 2);
+            int levelsLength = page.getInt();
+            int[] levels = decodeHybrid(body, page.position(), levelsLength, 1, pageRows);
+            page.position(page.position() + levelsLength);
+            int present = 0;
+            for (int level : levels) {
+                present += level;
+            }
+
+            List<Object> pageValues = new ArrayList<>();
+            if (encoding == 2) {
+                int bitWidth = page.get() & 0xFF;
+                int[] ids = decodeHybrid(body, page.position(), body.length - page.position(), bitWidth, present);
+                for (int id : ids) {
+                    pageValues.add(dictionary.get(id));
+                }
+            } else {
+                for (int i = 0; i < present; i++) {
+                    pageValues.add(plainValue(page, type));
+                }
+                if (page.hasRemaining()) {
+                    throw new IOException(page.remaining() + " bytes left over in a plain page");
+                }
+            }
+            int next = 0;
+            for (int level : levels) {
+                out.add(level == 1 ? pageValues.get(next++) : null);
+            }
+        }
+        return out;
+    }
+
+    private static Object plainValue(ByteBuffer page, long type) {
+        if (type == 2) {
+            return page.getLong();
+        }
+        if (type == 5) {
+            return page.getDouble();
+        }
+        byte[] bytes = new byte[page.getInt()];
+        page.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes {@code count} values of the RLE / bit-packed hybrid encoding
+     * held in bytes[from, from + length).
+     */
+    static int[] decodeHybrid(byte[] bytes, int from, int length, int bitWidth, int count) {
+        int[] values = new int[count];
+        int n = 0;
+        int pos = from;
+        int end = from + length;
+        while (n < count) {
+            if (pos >= end) {
+                throw new IllegalStateException("Ran out of bytes after " + n + " of " + count + " values");
+            }
+            long header = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++] & 0xFF;
+                header |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if ((header & 1) == 0) {
+                int run = (int) (header >>> 1);
+                int value = 0;
+                for (int k = 0; k < (bitWidth + 7) / 8; k++) {
+                    value |= (bytes[pos++] & 0xFF) << (8 * k);
+                }
+                for (int k = 0; k < run && n < count; k++) {
+                    values[n++] = value;
+                }
+            } else {
+                int packed = (int) (header >>> 1) * 8;
+                long bits = 0;
+                int bitCount = 0;
+                for (int k = 0; k < packed; k++) {
+                    while (bitCount < bitWidth) {
+                        bits |= (long) (bytes[pos++] & 0xFF) << bitCount;
+                        bitCount += 8;
+                    }
+                    int value = (int) (bits & ((1L << bitWidth) - 1));
+                    bits >>>= bitWidth;
+                    bitCount -= bitWidth;
+                    if (n < count) {
+                        values[n++] = value;
+                    }
+                }
+            }
+        }
+        if (pos != end) {
+            throw new IllegalStateException((end - pos) + " bytes left after " + count + " values");
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Object> struct(Object value) {
+        return (Map<Integer, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> list(Map<Integer, Object> struct, int field) {
+        return (List<Object>) struct.get(field);
+    }
+
+    private static long number(Map<Integer, Object> struct, int field) {
+        return (Long) struct.get(field);
+    }
+
+    private static String string(Map<Integer, Object> struct, int field) {
+        return new String((byte[]) struct.get(field), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Thrift compact protocol, read into maps of field id to Long, byte[],
+     * List or (nested) Map.
+     */
+    private static final class Compact {
+        private final byte[] bytes;
+        int pos;
+
+        Compact(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        Map<Integer, Object> struct() throws IOException {
+            Map<Integer, Object> fields = new HashMap<>();
+            int lastId = 0;
+            while (true) {
+                int header = bytes[pos++] & 0xFF;
+                if (header == 0) {
+                    return fields;
+                }
+                int type = header & 0x0F;
+                int delta = header >>> 4;
+                int id = delta != 0 ? lastId + delta : (int) zigZag(varint());
+                fields.put(id, value(type));
+                lastId = id;
+            }
+        }
+
+        private Object value(int type) throws IOException {
+            switch (type) {
+                case 5:
+                case 6:
+                    return zigZag(varint());
+                case 8:
+                    int length = (int) varint();
+                    byte[] value = Arrays.copyOfRange(bytes, pos, pos + length);
+                    pos += length;
+                    return value;
+                case 9:
+                    int header = bytes[pos++] & 0xFF;
+                    int size = header >>> 4 == 15 ? (int) varint() : header >>> 4;
+                    List<Object> list = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        list.add(value(header & 0x0F));
+                    }
+                    return list;
+                case 12:
+                    return struct();
+                default:
+                    throw new IOException("Unexpected Thrift type " + type + " at " + pos);
+            }
+        }
+
+        private long varint() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = bytes[pos++] & 0xFF;
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static long zigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
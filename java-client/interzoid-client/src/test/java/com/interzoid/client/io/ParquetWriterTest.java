@@ -0,0 +1,267 @@
+package com.interzoid.client.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParquetWriterTest {
+
+    private static final long PLAIN = 0;
+    private static final long PLAIN_DICTIONARY = 2;
+    private static final long RLE = 3;
+
+    @TempDir
+    Path dir;
+
+    private static byte[] hex(String hex) {
+        String digits = hex.replaceAll("\\s", "");
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(digits.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String ascii(String text) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : text.getBytes(StandardCharsets.US_ASCII)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] encode(int[] values, int from, int to, int bitWidth) {
+        ParquetWriter.ByteSink sink = new ParquetWriter.ByteSink(16);
+        ParquetWriter.encodeHybrid(sink, values, from, to, bitWidth);
+        return Arrays.copyOf(sink.array(), sink.size());
+    }
+
+    private static int[] repeat(int value, int count) {
+        int[] values = new int[count];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    private static int[] concat(int[]... parts) {
+        return Arrays.stream(parts).flatMapToInt(Arrays::stream).toArray();
+    }
+
+    /**
+     * One INT64 row, uncompressed, written byte for byte as parquet.thrift
+     * lays it out.
+     */
+    @Test
+    void pinsPageHeaderAndFooterBytes() throws Exception {
+        Path path = dir.resolve("one.parquet");
+        try (ParquetWriter out = ParquetWriter.open(path, List.of(ParquetWriter.Column.int64("n")),
+                64 << 20, ParquetWriter.Compression.NONE)) {
+            out.write(42);
+        }
+
+        byte[] pageHeader = hex(
+            "15 00"          // 1: type = DATA_PAGE
+            + "15 1c"        // 2: uncompressed_page_size = 14
+            + "15 1c"        // 3: compressed_page_size = 14
+            + "2c"           // 5: data_page_header {
+            + "  15 02"      //   1: num_values = 1
+            + "  15 00"      //   2: encoding = PLAIN
+            + "  15 06"      //   3: definition_level_encoding = RLE
+            + "  15 06"      //   4: repetition_level_encoding = RLE
+            + "00"           // }
+            + "00");
+        byte[] page = hex(
+            "02 00 00 00 03 01"              // definition levels: 2 bytes, one bit-packed group, [1]
+            + "2a 00 00 00 00 00 00 00");    // 42
+        byte[] footer = hex(
+            "15 02"                                  // 1: version = 1
+            + "19 2c"                                // 2: schema, list of 2 structs
+            + "  48 06" + ascii("schema")            //   4: name
+            + "  15 02 00"                           //   5: num_children = 1
+            + "  15 04"                              //   1: type = INT64
+            + "  25 02"                              //   3: repetition_type = OPTIONAL
+            + "  18 01" + ascii("n") + "00"          //   4: name
+            + "16 02"                                // 3: num_rows = 1
+            + "19 1c"                                // 4: row_groups, list of 1 struct
+            + "  19 1c"                              //   1: columns, list of 1 struct
+            + "    26 08"                            //     2: file_offset = 4
+            + "    1c"                               //     3: meta_data {
+            + "      15 04"                          //       1: type = INT64
+            + "      19 25 00 06"                    //       2: encodings = [PLAIN, RLE]
+            + "      19 18 01" + ascii("n")          //       3: path_in_schema = [n]
+            + "      15 00"                          //       4: codec = UNCOMPRESSED
+            + "      16 02"                          //       5: num_values = 1
+            + "      16 3e"                          //       6: total_uncompressed_size = 31
+            + "      16 3e"                          //       7: total_compressed_size = 31
+            + "      26 08"                          //       9: data_page_offset = 4
+            + "    00 00"                            //     }
+            + "  16 3e"                              //   2: total_byte_size = 31
+            + "  16 02"                              //   3: num_rows = 1
+            + "  26 08"                              //   5: file_offset = 4
+            + "  16 3e"                              //   6: total_compressed_size = 31
+            + "  00"
+            + "28 10" + ascii("interzoid-client")    // 6: created_by
+            + "00");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write("PAR1".getBytes(StandardCharsets.US_ASCII));
+        expected.write(pageHeader);
+        expected.write(page);
+        expected.write(footer);
+        expected.write(new byte[] {(byte) footer.length, 0, 0, 0});
+        expected.write("PAR1".getBytes(StandardCharsets.US_ASCII));
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(path));
+    }
+
+    @Test
+    void encodeHybridPinnedCases() {
+        // Fewer than 8 values: one bit-packed group, padded with zeros
+        assertArrayEquals(hex("03 05"), encode(new int[] {1, 0, 1}, 0, 3, 1));
+        // A run of exactly 8 is RLE
+        assertArrayEquals(hex("10 02"), encode(repeat(2, 8), 0, 8, 2));
+        // Literals are completed to a group from the run, and the rest of the run is RLE
+        assertArrayEquals(hex("03 d1 da b6 1e 05"),
+            encode(concat(new int[] {1, 2, 3}, repeat(5, 20)), 0, 23, 3));
+        // Padding leaves less than 8 of the run, which is then bit-packed
+        assertArrayEquals(hex("03 d1 da b6 03 6d 0b 00"),
+            encode(concat(new int[] {1, 2, 3}, repeat(5, 9)), 0, 12, 3));
+        // Nothing to write
+        assertArrayEquals(new byte[0], encode(new int[] {7}, 1, 1, 3));
+        // Multi-byte RLE value, little-endian
+        assertArrayEquals(hex("20 34 12"), encode(repeat(0x1234, 16), 0, 16, 13));
+    }
+
+    @Test
+    void encodeHybridCutsLongLiteralRuns() {
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 2;
+        }
+        byte[] encoded = encode(values, 0, values.length, 1);
+        // 63 groups, then the remaining 496 values as 62 groups
+        assertEquals(0x7F, encoded[0] & 0xFF);
+        assertEquals((62 << 1) | 1, encoded[1 + 63] & 0xFF);
+        assertEquals(1 + 63 + 1 + 62, encoded.length);
+        assertArrayEquals(values, MiniParquetReader.decodeHybrid(encoded, 0, encoded.length, 1, values.length));
+    }
+
+    @Test
+    void encodeHybridRoundTrips() {
+        Random random = new Random(17);
+        for (int round = 0; round < 2000; round++) {
+            int bitWidth = 1 + random.nextInt(20);
+            int size = random.nextInt(1200);
+            int[] values = new int[size + 5];
+            int i = 0;
+            while (i < values.length) {
+                int value = random.nextInt(1 << bitWidth);
+                int run = random.nextInt(4) == 0 ? 1 + random.nextInt(40) : 1;
+                for (int k = 0; k < run && i < values.length; k++) {
+                    values[i++] = value;
+                }
+            }
+            int from = random.nextInt(5);
+            int to = from + size;
+            byte[] encoded = encode(values, from, to, bitWidth);
+            assertArrayEquals(Arrays.copyOfRange(values, from, to),
+                MiniParquetReader.decodeHybrid(encoded, 0, encoded.length, bitWidth, size),
+                "bitWidth " + bitWidth + ", size " + size + ", round " + round);
+        }
+    }
+
+    @Test
+    void roundTripsEveryTypeAcrossRowGroupsAndPages() throws Exception {
+        Path path = dir.resolve("mixed.parquet");
+        List<ParquetWriter.Column> columns = List.of(
+            ParquetWriter.Column.string("Company"),
+            ParquetWriter.Column.string("Code"),
+            ParquetWriter.Column.int64("Employees"),
+            ParquetWriter.Column.float64("Revenue"));
+        String[] codes = {"Success", "NoMatch", "Invalid"};
+        Object[] employees = {"$1,200", " 7 ", "n/a", "", null, 5};
+        Long[] employeesStored = {1200L, 7L, null, null, null, 5L};
+        Object[] revenue = {"3.5", "$2,000.25", null, 1.25, "x"};
+        Double[] revenueStored = {3.5, 2000.25, null, 1.25, null};
+
+        int rowCount = 45_000;
+        List<Object[]> expected = new ArrayList<>();
+        int rowGroups;
+        try (ParquetWriter out = ParquetWriter.open(path, columns, 1 << 20, ParquetWriter.Compression.GZIP)) {
+            for (int i = 0; i < rowCount; i++) {
+                String company = i % 13 == 0 ? null : "Company " + i + " é";
+                String code = i % 11 == 0 ? null : codes[i % codes.length];
+                out.write(company, code, employees[i % employees.length], revenue[i % revenue.length]);
+                expected.add(new Object[] {company, code, employeesStored[i % employees.length],
+                    revenueStored[i % revenue.length]});
+            }
+            rowGroups = out.rowGroupCount();
+        }
+
+        MiniParquetReader reader = MiniParquetReader.read(path);
+        assertEquals(List.of("Company", "Code", "Employees", "Revenue"), reader.columnNames);
+        assertEquals(rowCount, reader.rows.size());
+        for (int i = 0; i < rowCount; i++) {
+            assertArrayEquals(expected.get(i), reader.rows.get(i), "row " + i);
+        }
+        assertTrue(rowGroups >= 1, "rows were flushed before close");
+        assertTrue(reader.chunkEncodings.size() > 1, "more than one row group");
+        for (List<List<Long>> group : reader.chunkEncodings) {
+            assertEquals(List.of(PLAIN, RLE), group.get(0), "distinct values are written plain");
+            assertEquals(List.of(PLAIN_DICTIONARY, RLE), group.get(1), "repeats are dictionary encoded");
+        }
+    }
+
+    @Test
+    void fallsBackToPlainInTheMiddleOfARowGroup() throws Exception {
+        Path path = dir.resolve("fallback.parquet");
+        List<ParquetWriter.Column> columns = List.of(
+            ParquetWriter.Column.string("Key"),
+            ParquetWriter.Column.int64("Row"));
+        char[] filler = new char[2000];
+        Arrays.fill(filler, 'k');
+        String padding = new String(filler);
+
+        // Repeats, then enough distinct values to pass the dictionary limit,
+        // then repeats again, past the first page
+        int rowCount = ParquetWriter.PAGE_ROWS + 5000;
+        int distinctFrom = 5000;
+        int distinctTo = distinctFrom + 12_000;
+        assertTrue((distinctTo - distinctFrom) * 9L / 10 * filler.length > ParquetWriter.MAX_DICTIONARY_BYTES);
+        List<String> expected = new ArrayList<>();
+        try (ParquetWriter out = ParquetWriter.open(path, columns, 1L << 30, ParquetWriter.Compression.NONE)) {
+            for (int i = 0; i < rowCount; i++) {
+                String key;
+                if (i % 10 == 0) {
+                    key = null;
+                } else if (i >= distinctFrom && i < distinctTo) {
+                    key = i + padding;
+                } else {
+                    key = "repeat " + (i % 3);
+                }
+                out.write(key, i);
+                expected.add(key);
+            }
+            assertEquals(0, out.rowGroupCount(), "everything is still in one buffered row group");
+        }
+
+        MiniParquetReader reader = MiniParquetReader.read(path);
+        assertEquals(1, reader.chunkEncodings.size());
+        assertEquals(List.of(PLAIN, RLE), reader.chunkEncodings.get(0).get(0));
+        assertEquals(rowCount, reader.rows.size());
+        for (int i = 0; i < rowCount; i++) {
+            assertEquals(expected.get(i), reader.rows.get(i)[0], "row " + i);
+            assertEquals(Long.valueOf(i), reader.rows.get(i)[1]);
+        }
+    }
+}
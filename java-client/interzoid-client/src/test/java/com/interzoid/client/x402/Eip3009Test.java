@@ -0,0 +1,58 @@
+package com.interzoid.client.x402;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class Eip3009Test {
+
+    private static final String USDC_ON_BASE = "0x833589fCD6eDb6E08f4c7C32D4f71b54bdA02913";
+    private static final String PAY_TO = "0x4020402040204020402040204020402040204020";
+    private static final EvmSigner KEY_1 = EvmSigner.fromPrivateKey(
+        "0x0000000000000000000000000000000000000000000000000000000000000001");
+
+    private static byte[] nonce() {
+        byte[] nonce = new byte[32];
+        for (int i = 0; i < nonce.length; i++) {
+            nonce[i] = (byte) i;
+        }
+        return nonce;
+    }
+
+    private static byte[] digest(String from, long value) {
+        return Eip3009.digest("USD Coin", "2", 8453, USDC_ON_BASE, from, PAY_TO, BigInteger.valueOf(value),
+            1_700_000_000L, 1_700_000_060L, nonce());
+    }
+
+    @Test
+    void domainSeparatorOfUsdcOnBase() {
+        // DOMAIN_SEPARATOR() of the USDC contract on Base
+        assertEquals("02fa7265e7c5d81118673727957699e4d68f74cd74b7db77da710fe8a2c7834f",
+            Hex.encode(Eip3009.domainSeparator("USD Coin", "2", 8453, USDC_ON_BASE), 0, 32));
+    }
+
+    @Test
+    void transferWithAuthorizationDigest() {
+        // Computed independently of this code, from the EIP-712 and EIP-3009 definitions
+        assertEquals("30525f49db84369e1a4244936f240126fb71c69c9796d549d9a321a7e00c2032",
+            Hex.encode(digest(KEY_1.address(), 10_000), 0, 32));
+        // Address case does not matter
+        assertEquals(Hex.encode(digest(KEY_1.address(), 10_000), 0, 32),
+            Hex.encode(digest(KEY_1.address().toLowerCase(), 10_000), 0, 32));
+    }
+
+    @Test
+    void recoversThePayer() {
+        byte[] digest = digest(KEY_1.address(), 10_000);
+        byte[] signature = KEY_1.sign(digest);
+        assertEquals(KEY_1.address(), Eip3009.recoverSigner(digest, signature));
+
+        // Signed for another amount: the signature names someone else
+        assertNotEquals(KEY_1.address(), Eip3009.recoverSigner(digest(KEY_1.address(), 1), signature));
+        assertNull(Eip3009.recoverSigner(digest, new byte[65]));
+    }
+}
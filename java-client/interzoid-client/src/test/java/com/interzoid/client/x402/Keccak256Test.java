@@ -0,0 +1,28 @@
+package com.interzoid.client.x402;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Keccak256Test {
+
+    private static String keccak(byte[] input) {
+        return Hex.encode(Keccak256.hash(input), 0, 32);
+    }
+
+    @Test
+    void knownAnswers() {
+        // Ethereum's Keccak-256 (original padding), not FIPS 202 SHA3-256
+        assertEquals("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470", keccak(new byte[0]));
+        assertEquals("4e03657aea45a94fc7d47ba826c8d667c0d1e6e33a64a036ec44f58fa12d6c45",
+            Hex.encode(Keccak256.hash("abc"), 0, 32));
+    }
+
+    @Test
+    void inputsAroundTheBlockSize() {
+        // Zero bytes filling the 136-byte block but one, exactly, and one over
+        assertEquals("29e3704feeca7fb9ba229f0fa04d9b36449cf3ad6e1d85d9cfff3a10df9abc3e", keccak(new byte[135]));
+        assertEquals("3a5912a7c5faa06ee4fe906253e339467a9ce87d533c65be3c15cb231cdb25f9", keccak(new byte[136]));
+        assertEquals("bee7fbb405cb0d91a8775e338c4a5e4b5d6b2d051f687fa942043cffdc73bd28", keccak(new byte[137]));
+    }
+}
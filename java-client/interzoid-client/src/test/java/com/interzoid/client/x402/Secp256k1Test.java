@@ -0,0 +1,82 @@
+package com.interzoid.client.x402;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class Secp256k1Test {
+
+    private static byte[] sha256(String text) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void addressesOfWellKnownKeys() {
+        assertEquals("0x7E5F4552091A69125d5DfCb7b8C2659029395Bdf", EvmSigner.fromPrivateKey(
+            "0x0000000000000000000000000000000000000000000000000000000000000001").address());
+        assertEquals("0x2B5AD5c4795c026514f8317c7a215E218DcCD6cF", EvmSigner.fromPrivateKey(
+            "0000000000000000000000000000000000000000000000000000000000000002").address());
+        assertEquals("0x6813Eb9362372EEF6200f3b1dbC3f819671cBA69", EvmSigner.fromPrivateKey(
+            "0x0000000000000000000000000000000000000000000000000000000000000003").address());
+    }
+
+    /**
+     * RFC 6979 signatures with key 1, as published with other deterministic
+     * secp256k1 signers (low s).
+     */
+    @Test
+    void deterministicSignatureKnownAnswers() throws Exception {
+        assertEquals("934b1ea10a4b3c1757e2b0c017d0b6143ce3c9a7e6a4a49860d7a6ab210ee3d8"
+                + "2442ce9d2b916064108014783e923ec36b49743e2ffa1c4496f01a512aafd9e5",
+            Hex.encode(Secp256k1.sign(sha256("Satoshi Nakamoto"), BigInteger.ONE), 0, 64));
+        assertEquals("8600dbd41e348fe5c9465ab92d23e3db8b98b873beecd930736488696438cb6b"
+                + "547fe64427496db33bf66019dacbf0039c04199abb0122918601db38a72cfc21",
+            Hex.encode(Secp256k1.sign(sha256(
+                "All those moments will be lost in time, like tears in rain. Time to die..."), BigInteger.ONE), 0, 64));
+    }
+
+    @Test
+    void recoversTheSigningKey() throws Exception {
+        byte[] digest = sha256("Satoshi Nakamoto");
+        for (String key : new String[] {"1", "2", "c0ffee", "fffffffffffffffffffffffffffffffebaaedce6af48a03bbfd25e8cd0364140"}) {
+            BigInteger privateKey = new BigInteger(key, 16);
+            byte[] signature = Secp256k1.sign(digest, privateKey);
+            assertArrayEquals(Secp256k1.publicKey(privateKey), Secp256k1.recover(digest, signature), key);
+        }
+    }
+
+    @Test
+    void refusesSignaturesTheTokenContractWould() throws Exception {
+        byte[] digest = sha256("Satoshi Nakamoto");
+        byte[] signature = Secp256k1.sign(digest, BigInteger.ONE);
+
+        byte[] badV = signature.clone();
+        badV[64] = 29;
+        assertNull(Secp256k1.recover(digest, badV));
+
+        // (r, N - s) with the other v is the same signature, but only low s is accepted
+        byte[] highS = signature.clone();
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(signature, 32, 64));
+        System.arraycopy(Secp256k1.toBytes32(Secp256k1.N.subtract(s)), 0, highS, 32, 32);
+        highS[64] = (byte) (27 + 28 - highS[64]);
+        assertNull(Secp256k1.recover(digest, highS));
+
+        byte[] zeroR = signature.clone();
+        Arrays.fill(zeroR, 0, 32, (byte) 0);
+        assertNull(Secp256k1.recover(digest, zeroR));
+
+        assertNull(Secp256k1.recover(digest, Arrays.copyOf(signature, 64)));
+
+        // The same signature over another digest belongs to some other key
+        byte[] recovered = Secp256k1.recover(sha256("Satoshi Nakamoto."), signature);
+        assertFalse(Arrays.equals(Secp256k1.publicKey(BigInteger.ONE), recovered));
+    }
+}
@@ -0,0 +1,227 @@
+package com.interzoid.client.x402;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class X402ClientTest {
+
+    private static final String ASSET = "0x833589fCD6eDb6E08f4c7C32D4f71b54bdA02913";
+    private static final String PAY_TO = "0x4020402040204020402040204020402040204020";
+    private static final EvmSigner PAYER = EvmSigner.fromPrivateKey(
+        "0x0000000000000000000000000000000000000000000000000000000000000001");
+
+    private static final JsonFields PAYMENT_FIELDS = JsonFields.of("payload");
+    private static final JsonFields PAYLOAD_FIELDS = JsonFields.of("signature", "authorization");
+    private static final JsonFields AUTHORIZATION_FIELDS = JsonFields.of(
+        "from", "to", "value", "validAfter", "validBefore", "nonce");
+
+    private HttpServer server;
+    private String url;
+    private InterzoidHttp http;
+
+    // What the stub asks for
+    private volatile long price = 1000;
+    private volatile String network = "eip155:8453";
+    // Status of the next paid answers, after the payment is settled; 0 drops the connection
+    private volatile int failStatus;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    private final AtomicInteger unpaidRequests = new AtomicInteger();
+    private final AtomicInteger paidRequests = new AtomicInteger();
+    private final List<Long> settled = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> spentNonces = Collections.synchronizedSet(new HashSet<>());
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        server.createContext("/match", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/match?source=x";
+        http = InterzoidHttp.create(new HttpConfig()
+            .adaptive(false)
+            .maxAttempts(4)
+            .retryBaseDelay(Duration.ofMillis(1))
+            .retryMaxDelay(Duration.ofMillis(5))
+            .retryBudgetRatio(1.0));
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    /**
+     * A 402 stub in the shape of the Full Dataset API: a version 2 quote
+     * for unpaid requests, and a payment checked as the facilitator would
+     * before it is settled. Each nonce settles once.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String header = exchange.getRequestHeaders().getFirst("PAYMENT-SIGNATURE");
+        if (header == null) {
+            unpaidRequests.incrementAndGet();
+            sendQuote(exchange);
+            return;
+        }
+        paidRequests.incrementAndGet();
+        JsonFields.Values payload = PAYLOAD_FIELDS.extract(
+            PAYMENT_FIELDS.extract(Base64.getDecoder().decode(header)).get("payload"));
+        JsonFields.Values authorization = AUTHORIZATION_FIELDS.extract(payload.get("authorization"));
+        long value = Long.parseLong(authorization.get("value"));
+        byte[] digest = Eip3009.digest("USD Coin", "2", 8453, ASSET, authorization.get("from"),
+            authorization.get("to"), BigInteger.valueOf(value), Long.parseLong(authorization.get("validAfter")),
+            Long.parseLong(authorization.get("validBefore")), Hex.decode(authorization.get("nonce")));
+        if (!PAYER.address().equals(Eip3009.recoverSigner(digest, Hex.decode(payload.get("signature"))))
+                || !PAY_TO.equalsIgnoreCase(authorization.get("to")) || value != price
+                || !spentNonces.add(authorization.get("nonce"))) {
+            sendQuote(exchange);
+            return;
+        }
+        settled.add(value);
+
+        if (failuresLeft.getAndDecrement() > 0) {
+            if (failStatus == 0) {
+                exchange.close();
+            } else {
+                respond(exchange, failStatus, "{\"Code\":\"Error\"}");
+            }
+            return;
+        }
+        respond(exchange, 200, "{\"Code\":\"Success\"}");
+    }
+
+    private void sendQuote(HttpExchange exchange) throws IOException {
+        respond(exchange, 402, "{\"x402Version\":2,\"accepts\":[{\"scheme\":\"exact\",\"network\":\"" + network
+            + "\",\"amount\":\"" + price + "\",\"asset\":\"" + ASSET + "\",\"payTo\":\"" + PAY_TO
+            + "\",\"maxTimeoutSeconds\":60,\"extra\":{\"name\":\"USD Coin\",\"version\":\"2\"}}]}");
+    }
+
+    private static void respond(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void reusesTheQuoteForLaterCalls() throws Exception {
+        try (X402Client payer = X402Client.create(http, PAYER)) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, payer.get(url).statusCode());
+            }
+            assertEquals(1, payer.challenges());
+            assertEquals(2, payer.quoteReuses());
+        }
+        assertEquals(1, unpaidRequests.get());
+        assertEquals(3, paidRequests.get());
+        assertEquals(List.of(1000L, 1000L, 1000L), settled);
+    }
+
+    @Test
+    void paysTheNewPriceAfterAPriceChange() throws Exception {
+        try (X402Client payer = X402Client.create(http, PAYER)) {
+            assertEquals(200, payer.get(url).statusCode());
+            price = 1500;
+            assertEquals(200, payer.get(url).statusCode());
+            assertEquals(200, payer.get(url).statusCode());
+            assertEquals(2, payer.challenges());
+        }
+        // The payment at the old price is refused, not settled
+        assertEquals(List.of(1000L, 1500L, 1500L), settled);
+        assertEquals(4, paidRequests.get());
+    }
+
+    @Test
+    void refusesAQuoteAboveMaxAmount() {
+        try (X402Client payer = X402Client.create(http, PAYER).maxAmount(999)) {
+            assertThrows(IOException.class, () -> payer.get(url));
+        }
+        assertEquals(0, paidRequests.get());
+    }
+
+    @Test
+    void refusesAQuoteOnAnotherNetwork() {
+        network = "eip155:1";
+        try (X402Client payer = X402Client.create(http, PAYER)) {
+            assertThrows(IOException.class, () -> payer.get(url));
+        }
+        assertEquals(0, paidRequests.get());
+    }
+
+    /**
+     * The server settles the payment, then answers with a retryable status
+     * or drops the connection. The call must not be paid again.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {0, 429, 500, 503})
+    void paysOncePerCallWhenThePaidRequestFails(int status) throws Exception {
+        try (X402Client payer = X402Client.create(http, PAYER)) {
+            // First with a kept quote, then with a fresh one
+            assertEquals(200, payer.get(url).statusCode());
+            for (int round = 0; round < 2; round++) {
+                failStatus = status;
+                failuresLeft.set(1);
+                if (status == 0) {
+                    assertThrows(IOException.class, () -> payer.get(url));
+                } else {
+                    assertEquals(status, payer.get(url).statusCode());
+                }
+                assertEquals(2 + round, settled.size(), "one payment for the failed call");
+                if (status != 0) {
+                    assertEquals(2 + round, paidRequests.get(), "the paid request is sent once");
+                }
+                // A dropped connection is resent by the JDK client, and the stub refuses the replay
+                paidRequests.set(settled.size());
+                payer.quoteTtl(Duration.ZERO);
+            }
+        }
+    }
+
+    @Test
+    void retriesTheUnpaidRequestForAQuote() throws Exception {
+        server.removeContext("/match");
+        AtomicInteger calls = new AtomicInteger();
+        server.createContext("/match", exchange -> {
+            if (calls.getAndIncrement() == 0) {
+                exchange.getRequestBody().readAllBytes();
+                respond(exchange, 503, "{\"Code\":\"Error\"}");
+            } else {
+                handle(exchange);
+            }
+        });
+        try (X402Client payer = X402Client.create(http, PAYER)) {
+            assertEquals(200, payer.get(url).statusCode());
+        }
+        assertEquals(List.of(1000L), settled);
+    }
+}
@@ -0,0 +1,214 @@
+package com.interzoid.proxy;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings for {@link ProxyServer}.
+ *
+ * Defaults can be overridden with system properties. The upstream side
+ * (API base URL, pool size, retries, breakers) is configured with the
+ * usual interzoid.baseUrl and interzoid.http.* properties, and the cache
+ * with interzoid.cache.*:
+ *
+ * <pre>
+ *   interzoid.proxy.host                  address to listen on (default 127.0.0.1)
+ *   interzoid.proxy.port                  port to listen on (default 8090)
+ *   interzoid.proxy.threads               requests handled at once (default 256)
+ *   interzoid.proxy.cacheDir              cache directory (default proxy-cache)
+ *   interzoid.proxy.apiKey                license sent upstream; empty forwards each caller's own (default empty)
+ *   interzoid.proxy.maxRequestsPerSecond  upstream calls per second, 0 for no limit (default 100)
+ *   interzoid.proxy.burst                 upstream calls allowed at once after an idle spell (default 20)
+ *   interzoid.proxy.endpoints             comma-separated APIs served (default: the list below)
+ *   interzoid.proxy.input.&lt;api&gt;          query parameter holding the API's input value, the one
+ *                                         its Canonicalizer applies to (defaults: see below)
+ * </pre>
+ */
+public final class ProxyConfig {
+
+    /**
+     * APIs served by default. Anything else gets a 404, so the proxy is
+     * not an open relay to the rest of the site.
+     */
+    public static final Set<String> DEFAULT_ENDPOINTS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+        "getcompanymatchadvanced", "getaddressmatchadvanced", "getfullnamematch", "getorgstandard",
+        "getbusinessinfo", "getparentcompanyinfo", "emailtrustscore", "getcustom")));
+
+    /**
+     * The query parameter that carries each API's input value. Only that
+     * value is canonicalized in the cache key; options such as algorithm
+     * are matched as sent.
+     */
+    public static final Map<String, String> DEFAULT_INPUT_PARAMETERS = Map.of(
+        "getcompanymatchadvanced", "company",
+        "getaddressmatchadvanced", "address",
+        "getfullnamematch", "fullname",
+        "getorgstandard", "org",
+        "getbusinessinfo", "lookup",
+        "getparentcompanyinfo", "lookup",
+        "emailtrustscore", "lookup",
+        "getcustom", "topic");
+
+    private String host = "127.0.0.1";
+    private int port = 8090;
+    private int threads = 256;
+    private Path cacheDir = Paths.get("proxy-cache");
+    private String apiKey = "";
+    private double maxRequestsPerSecond = 100;
+    private int burst = 20;
+    private Set<String> endpoints = DEFAULT_ENDPOINTS;
+    private final Map<String, String> inputParameters = new HashMap<>(DEFAULT_INPUT_PARAMETERS);
+
+    /**
+     * Returns the built-in defaults with any {@code interzoid.proxy.*} system properties applied.
+     */
+    public static ProxyConfig fromSystemProperties() {
+        ProxyConfig config = new ProxyConfig();
+        config.host = System.getProperty("interzoid.proxy.host", config.host);
+        config.port(Integer.getInteger("interzoid.proxy.port", config.port));
+        config.threads(Integer.getInteger("interzoid.proxy.threads", config.threads));
+        config.cacheDir = Paths.get(System.getProperty("interzoid.proxy.cacheDir", config.cacheDir.toString()));
+        config.apiKey = System.getProperty("interzoid.proxy.apiKey", config.apiKey);
+        config.maxRequestsPerSecond(Double.parseDouble(
+            System.getProperty("interzoid.proxy.maxRequestsPerSecond", String.valueOf(config.maxRequestsPerSecond))));
+        config.burst(Integer.getInteger("interzoid.proxy.burst", config.burst));
+        String endpoints = System.getProperty("interzoid.proxy.endpoints");
+        if (endpoints != null) {
+            config.endpoints(endpoints.split(","));
+        }
+        for (String endpoint : config.endpoints) {
+            String input = System.getProperty("interzoid.proxy.input." + endpoint);
+            if (input != null) {
+                config.inputParameter(endpoint, input);
+            }
+        }
+        return config;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public ProxyConfig host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    /**
+     * Port to listen on; 0 picks a free one.
+     */
+    public ProxyConfig port(int port) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("port out of range: " + port);
+        }
+        this.port = port;
+        return this;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Requests handled at once. Callers waiting on the same upstream call
+     * each hold a thread, so keep this above the number of clients.
+     */
+    public ProxyConfig threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public Path cacheDir() {
+        return cacheDir;
+    }
+
+    public ProxyConfig cacheDir(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        return this;
+    }
+
+    public String apiKey() {
+        return apiKey;
+    }
+
+    /**
+     * License sent upstream in place of the caller's. With none set, each
+     * miss is sent with the license of the caller that caused it.
+     */
+    public ProxyConfig apiKey(String apiKey) {
+        this.apiKey = apiKey == null ? "" : apiKey;
+        return this;
+    }
+
+    public double maxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * Upstream calls per second across all callers; 0 for no limit.
+     * Cache hits never count.
+     */
+    public ProxyConfig maxRequestsPerSecond(double maxRequestsPerSecond) {
+        if (maxRequestsPerSecond < 0 || Double.isNaN(maxRequestsPerSecond)) {
+            throw new IllegalArgumentException("maxRequestsPerSecond must be 0 or more: " + maxRequestsPerSecond);
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    public int burst() {
+        return burst;
+    }
+
+    /**
+     * Upstream calls that may go out back to back after an idle spell.
+     */
+    public ProxyConfig burst(int burst) {
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be at least 1: " + burst);
+        }
+        this.burst = burst;
+        return this;
+    }
+
+    public Set<String> endpoints() {
+        return endpoints;
+    }
+
+    public ProxyConfig endpoints(String... endpoints) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String endpoint : endpoints) {
+            if (!endpoint.trim().isEmpty()) {
+                names.add(endpoint.trim());
+            }
+        }
+        this.endpoints = Collections.unmodifiableSet(names);
+        return this;
+    }
+
+    /**
+     * The query parameter holding {@code endpoint}'s input value, or "" if
+     * none is known, in which case no parameter is canonicalized.
+     */
+    public String inputParameter(String endpoint) {
+        return inputParameters.getOrDefault(endpoint, "");
+    }
+
+    public ProxyConfig inputParameter(String endpoint, String parameter) {
+        inputParameters.put(endpoint, parameter == null ? "" : parameter.trim());
+        return this;
+    }
+}
@@ -0,0 +1,399 @@
+package com.interzoid.proxy;
+
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.SimKeyCache;
+import com.interzoid.client.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local sidecar that answers the Interzoid query API from a shared cache.
+ *
+ * Services and batch jobs that each called api.interzoid.com on their own
+ * paid again for lookups another job had already made. Pointed at the
+ * proxy instead ({@code -Dinterzoid.baseUrl=http://localhost:8090}), they
+ * keep the same URLs and responses, and every lookup is paid for once:
+ *
+ * <ul>
+ *   <li>answers come from a {@link SimKeyCache}: appended to a log on
+ *       disk and indexed in memory, so a restarted proxy keeps them</li>
+ *   <li>identical requests that arrive while the first is still upstream
+ *       wait for its answer instead of calling again</li>
+ *   <li>misses go out through one pooled {@link InterzoidHttp} client, with
+ *       its adaptive concurrency, retries and circuit breakers, paced to
+ *       {@code interzoid.proxy.maxRequestsPerSecond}</li>
+ * </ul>
+ *
+ * Requests are keyed by API and query parameters; the license is left out,
+ * so callers with different keys share answers. The API's input value
+ * ({@link ProxyConfig#inputParameter}) goes through its {@link Canonicalizer}
+ * first, so spellings it folds share an answer too; the other parameters
+ * are matched as sent. Only 200 responses whose Code is "Success" (or
+ * absent) are cached; anything else is passed back to the caller as it
+ * came, and asked again next time.
+ *
+ * Each response carries an {@code X-Interzoid-Cache} header: "hit",
+ * "miss" or "coalesced". {@code /proxy/stats} returns the counts as JSON,
+ * and they are also exported as interzoid_proxy_* gauges.
+ *
+ * The proxy trusts its callers: anyone who can reach it can spend the
+ * configured key's credits. It listens on 127.0.0.1 unless told otherwise.
+ *
+ * Run with: java -jar interzoid-proxy/target/interzoid-proxy.jar [port]
+ * (settings: see {@link ProxyConfig}).
+ */
+public final class ProxyServer implements AutoCloseable {
+
+    private static final JsonFields CODE_FIELD = JsonFields.of("Code");
+
+    // Buffered cache writes reach the log at least this often
+    private static final long FLUSH_INTERVAL_SECONDS = 5;
+
+    static {
+        // Without TCP_NODELAY the JDK server's separate header/body writes hit
+        // delayed ACKs and every response takes ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ProxyConfig config;
+    private final InterzoidHttp http;
+    private final SimKeyCache cache;
+    private final RateLimiter rateLimiter;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService flusher;
+    private final ConcurrentHashMap<String, CompletableFuture<Answer>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Canonicalizer> canonicalizers = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder upstreamErrors = new LongAdder();
+
+    /**
+     * An upstream answer, as passed back to every caller that waited for it.
+     */
+    private static final class Answer {
+        final int status;
+        final byte[] body;
+
+        Answer(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private ProxyServer(ProxyConfig config, InterzoidHttp http, SimKeyCache cache, HttpServer server,
+                        ExecutorService executor) {
+        this.config = config;
+        this.http = http;
+        this.cache = cache;
+        this.rateLimiter = new RateLimiter(config.maxRequestsPerSecond(), config.burst());
+        this.server = server;
+        this.executor = executor;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "interzoid-proxy-flush");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Opens the cache and starts serving. Misses are sent through {@code http}.
+     */
+    public static ProxyServer start(ProxyConfig config, InterzoidHttp http) throws IOException {
+        SimKeyCache cache = SimKeyCache.open(config.cacheDir());
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(config.host(), config.port()), 1024);
+        } catch (IOException e) {
+            cache.close();
+            throw e;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(config.threads(), r -> {
+            Thread t = new Thread(r, "interzoid-proxy");
+            t.setDaemon(true);
+            return t;
+        });
+
+        ProxyServer proxy = new ProxyServer(config, http, cache, server, executor);
+        server.createContext("/", proxy::handle);
+        server.setExecutor(executor);
+        server.start();
+        proxy.flusher.scheduleWithFixedDelay(proxy::flushCache,
+            FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        proxy.exportGauges(Metrics.shared());
+        return proxy;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ProxyConfig config = ProxyConfig.fromSystemProperties();
+        if (args.length > 0) {
+            config.port(Integer.parseInt(args[0]));
+        }
+        InterzoidHttp http = InterzoidHttp.shared();
+        ProxyServer proxy = start(config, http);
+        Runtime.getRuntime().addShutdownHook(new Thread(proxy::close, "interzoid-proxy-shutdown"));
+        System.out.printf("Interzoid proxy on %s, upstream %s, %d cached answers in %s%n",
+            proxy.baseUrl(), http.config().baseUrl(), proxy.cache.size(), config.cacheDir());
+    }
+
+    /**
+     * Base URL for callers, e.g. http://127.0.0.1:8090.
+     */
+    public String baseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort();
+    }
+
+    /** Requests answered from the cache. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Requests that went upstream. */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Requests that waited for an identical request already upstream. */
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    /** Upstream calls that failed without a response. */
+    public long upstreamErrors() {
+        return upstreamErrors.sum();
+    }
+
+    /**
+     * Stops serving and closes the cache, writing out what it buffered.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        flusher.shutdownNow();
+        try {
+            cache.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the proxy cache: " + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+
+        String endpoint = exchange.getRequestURI().getPath().replaceFirst("^/", "");
+        if ("proxy/stats".equals(endpoint)) {
+            respond(exchange, 200, statsJson().getBytes(StandardCharsets.UTF_8), null);
+            return;
+        }
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, codeJson("Only GET is supported"), null);
+            return;
+        }
+        if (!config.endpoints().contains(endpoint)) {
+            respond(exchange, 404, codeJson("Unknown API: " + endpoint), null);
+            return;
+        }
+
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        String key = cacheKey(endpoint, rawQuery);
+        String cached = cache.get(endpoint, "", key);
+        if (cached != null) {
+            hits.increment();
+            respond(exchange, 200, cached.getBytes(StandardCharsets.UTF_8), "hit");
+            return;
+        }
+
+        String flight = endpoint + '\u0000' + key;
+        CompletableFuture<Answer> call = new CompletableFuture<>();
+        CompletableFuture<Answer> earlier = inFlight.putIfAbsent(flight, call);
+        if (earlier != null) {
+            coalesced.increment();
+            Answer answer;
+            try {
+                answer = earlier.join();
+            } catch (CompletionException e) {
+                respond(exchange, 502, codeJson("Upstream Error: " + e.getCause().getMessage()), "coalesced");
+                return;
+            }
+            respond(exchange, answer.status, answer.body, "coalesced");
+            return;
+        }
+
+        try {
+            // A call that finished between the lookup and now has filled the cache
+            cached = cache.get(endpoint, "", key);
+            Answer answer = cached != null
+                ? new Answer(200, cached.getBytes(StandardCharsets.UTF_8))
+                : fetch(endpoint, rawQuery, key);
+            call.complete(answer);
+            respond(exchange, answer.status, answer.body, cached != null ? "hit" : "miss");
+        } catch (IOException | RuntimeException e) {
+            upstreamErrors.increment();
+            call.completeExceptionally(e);
+            respond(exchange, 502, codeJson("Upstream Error: " + e.getMessage()), "miss");
+        } finally {
+            inFlight.remove(flight, call);
+        }
+    }
+
+    /**
+     * Calls the API for a miss, caching a successful answer before any
+     * waiting caller is released.
+     */
+    private Answer fetch(String endpoint, String rawQuery, String key) throws IOException {
+        try {
+            rateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to call " + endpoint, e);
+        }
+        misses.increment();
+        HttpResult result = http.get(upstreamUrl(endpoint, rawQuery));
+        byte[] body = result.bodyBytes();
+        if (result.statusCode() == 200) {
+            String code = CODE_FIELD.extract(body).get(0);
+            if (code.isEmpty() || "Success".equalsIgnoreCase(code)) {
+                cache.put(endpoint, "", key, new String(body, StandardCharsets.UTF_8));
+            }
+        }
+        return new Answer(result.statusCode(), body);
+    }
+
+    /**
+     * The query parameters other than license, sorted by name, with the
+     * input value in the API's canonical form.
+     */
+    private String cacheKey(String endpoint, String rawQuery) {
+        Canonicalizer canonical = canonicalizers.computeIfAbsent(endpoint, Canonicalizer::forApi);
+        String input = config.inputParameter(endpoint);
+        TreeMap<String, String> params = new TreeMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+                if (name.isEmpty() || name.equals("license")) {
+                    continue;
+                }
+                String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+                if (name.equals(input)) {
+                    value = canonical.apply(value);
+                }
+                params.merge(name, value, (first, next) -> first + ',' + next);
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (key.length() > 0) {
+                key.append('&');
+            }
+            key.append(encode(e.getKey())).append('=').append(encode(e.getValue()));
+        }
+        return key.toString();
+    }
+
+    /**
+     * The caller's query as it came, with the configured license in place
+     * of the caller's if one is set.
+     */
+    private String upstreamUrl(String endpoint, String rawQuery) {
+        StringBuilder url = new StringBuilder(http.config().baseUrl()).append('/').append(endpoint);
+        char separator = '?';
+        if (!config.apiKey().isEmpty()) {
+            url.append(separator).append("license=").append(encode(config.apiKey()));
+            separator = '&';
+        }
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                if (pair.isEmpty() || (!config.apiKey().isEmpty() && pair.startsWith("license="))) {
+                    continue;
+                }
+                url.append(separator).append(pair);
+                separator = '&';
+            }
+        }
+        return url.toString();
+    }
+
+    private void flushCache() {
+        try {
+            cache.flush();
+        } catch (IOException e) {
+            System.out.println("Could not write the proxy cache: " + e.getMessage());
+        }
+    }
+
+    private void exportGauges(Metrics metrics) {
+        metrics.gauge("interzoid_proxy_hits", "Requests answered from the proxy cache", this::hits);
+        metrics.gauge("interzoid_proxy_misses", "Requests the proxy sent upstream", this::misses);
+        metrics.gauge("interzoid_proxy_coalesced", "Requests that waited for an identical call in flight",
+            this::coalesced);
+        metrics.gauge("interzoid_proxy_upstream_errors", "Upstream calls that failed without a response",
+            this::upstreamErrors);
+        metrics.gauge("interzoid_proxy_cache_entries", "Answers held by the proxy cache", cache::size);
+    }
+
+    private String statsJson() {
+        return "{\"hits\":" + hits() + ",\"misses\":" + misses() + ",\"coalesced\":" + coalesced()
+            + ",\"upstreamErrors\":" + upstreamErrors() + ",\"cacheEntries\":" + cache.size()
+            + ",\"inFlight\":" + inFlight.size()
+            + ",\"rateLimitWaitMs\":" + TimeUnit.NANOSECONDS.toMillis(rateLimiter.waitedNanos()) + "}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body, String cacheStatus)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (cacheStatus != null) {
+            exchange.getResponseHeaders().set("X-Interzoid-Cache", cacheStatus);
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] codeJson(String code) {
+        String escaped = String.valueOf(code).replace("\\", "\\\\").replace("\"", "\\\"");
+        return ("{\"Code\":\"" + escaped + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
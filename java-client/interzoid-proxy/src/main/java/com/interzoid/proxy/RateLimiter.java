@@ -0,0 +1,63 @@
+package com.interzoid.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paces calls to a steady rate: a token bucket that refills at
+ * {@code permitsPerSecond} and holds up to {@code burst} permits.
+ *
+ * Callers over the rate are not rejected. Each one reserves the next free
+ * slot and sleeps until it comes, so a burst of misses is spread out
+ * instead of being answered with 429s by the API.
+ */
+final class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    // Time at which the next permit becomes free
+    private final AtomicLong nextFree;
+
+    private final AtomicLong waitedNanos = new AtomicLong();
+
+    /**
+     * @param permitsPerSecond steady rate; 0 turns pacing off
+     */
+    RateLimiter(double permitsPerSecond, int burst) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+        this.burstNanos = intervalNanos * burst;
+        this.nextFree = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * Waits for a permit.
+     */
+    void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long slot;
+        while (true) {
+            long next = nextFree.get();
+            // Unused permits pile up to burst, no further
+            slot = Math.max(next, now - burstNanos);
+            if (nextFree.compareAndSet(next, slot + intervalNanos)) {
+                break;
+            }
+        }
+        long wait = slot - now;
+        if (wait > 0) {
+            waitedNanos.addAndGet(wait);
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Total time callers have spent waiting for permits.
+     */
+    long waitedNanos() {
+        return waitedNanos.get();
+    }
+}
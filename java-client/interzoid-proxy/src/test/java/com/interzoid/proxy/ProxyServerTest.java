@@ -0,0 +1,251 @@
+package com.interzoid.proxy;
+
+import com.interzoid.client.HttpConfig;
+import com.interzoid.client.InterzoidHttp;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProxyServerTest {
+
+    @TempDir
+    Path dir;
+
+    private HttpServer upstream;
+    private InterzoidHttp http;
+    private final HttpClient caller = HttpClient.newHttpClient();
+
+    // Raw queries the upstream was sent, and when
+    private final List<String> upstreamQueries = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> upstreamNanos = Collections.synchronizedList(new ArrayList<>());
+
+    // What the upstream answers with
+    private volatile int status = 200;
+    private volatile String code = "Success";
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @BeforeEach
+    void startUpstream() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+        upstream.createContext("/", this::answer);
+        upstream.setExecutor(Executors.newCachedThreadPool());
+        upstream.start();
+        http = InterzoidHttp.create(new HttpConfig()
+            .baseUrl("http://localhost:" + upstream.getAddress().getPort())
+            .adaptive(false)
+            .maxAttempts(1)
+            .breakerFailureThreshold(1000));
+    }
+
+    @AfterEach
+    void stopUpstream() {
+        release.countDown();
+        upstream.stop(0);
+        System.clearProperty("interzoid.canonical.rules.getcompanymatchadvanced");
+    }
+
+    /**
+     * Answers with the query it was sent as the SimKey, so a caller can
+     * tell which request an answer came from.
+     */
+    private void answer(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        upstreamNanos.add(System.nanoTime());
+        String query = exchange.getRequestURI().getRawQuery();
+        upstreamQueries.add(query);
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = ("{\"SimKey\":\"" + query + "\",\"Code\":\"" + code + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private ProxyConfig config() {
+        return new ProxyConfig().port(0).cacheDir(dir.resolve("cache")).maxRequestsPerSecond(0);
+    }
+
+    private HttpResponse<String> get(ProxyServer proxy, String pathAndQuery) throws Exception {
+        return caller.send(HttpRequest.newBuilder(URI.create(proxy.baseUrl() + pathAndQuery)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String cacheStatus(HttpResponse<?> response) {
+        return response.headers().firstValue("X-Interzoid-Cache").orElse("");
+    }
+
+    @Test
+    @Timeout(30)
+    void identicalRequestsInFlightShareOneUpstreamCall() throws Exception {
+        int callers = 8;
+        release = new CountDownLatch(1);
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                responses.add(caller.sendAsync(HttpRequest.newBuilder(
+                    URI.create(proxy.baseUrl() + "/getcompanymatchadvanced?license=k&company=Acme")).build(),
+                    HttpResponse.BodyHandlers.ofString()));
+            }
+            // Hold the upstream answer until every other caller is waiting on it
+            while (proxy.coalesced() < callers - 1) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            release.countDown();
+
+            List<String> statuses = new ArrayList<>();
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals(200, response.get().statusCode());
+                assertEquals("{\"SimKey\":\"license=k&company=Acme\",\"Code\":\"Success\"}", response.get().body());
+                statuses.add(cacheStatus(response.get()));
+            }
+            assertEquals(1, upstreamQueries.size());
+            assertEquals(1, proxy.misses());
+            assertEquals(callers - 1, proxy.coalesced());
+            assertEquals(1, Collections.frequency(statuses, "miss"));
+            assertEquals(callers - 1, Collections.frequency(statuses, "coalesced"));
+        }
+    }
+
+    @Test
+    void aRestartedProxyAnswersFromItsCacheDirectory() throws Exception {
+        String body;
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            HttpResponse<String> response = get(proxy, "/getaddressmatchadvanced?license=k&address=1+Main+St");
+            assertEquals("miss", cacheStatus(response));
+            body = response.body();
+        }
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            HttpResponse<String> response = get(proxy, "/getaddressmatchadvanced?license=k&address=1+Main+St");
+            assertEquals("hit", cacheStatus(response));
+            assertEquals(body, response.body());
+            assertEquals(1, proxy.hits());
+            assertEquals(0, proxy.misses());
+        }
+        assertEquals(1, upstreamQueries.size());
+    }
+
+    @Test
+    void theLicenseIsLeftOutOfTheKeyAndReplacedUpstream() throws Exception {
+        try (ProxyServer proxy = ProxyServer.start(config().apiKey("proxy key"), http)) {
+            assertEquals("miss", cacheStatus(get(proxy, "/getorgstandard?license=first&org=IBM")));
+            assertEquals("hit", cacheStatus(get(proxy, "/getorgstandard?org=IBM&license=second")));
+            assertEquals("hit", cacheStatus(get(proxy, "/getorgstandard?org=IBM")));
+        }
+        assertEquals(List.of("license=proxy+key&org=IBM"), upstreamQueries);
+    }
+
+    @Test
+    void withoutAnApiKeyTheCallersLicenseIsForwarded() throws Exception {
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            assertEquals("miss", cacheStatus(get(proxy, "/getorgstandard?license=first&org=IBM")));
+            assertEquals("hit", cacheStatus(get(proxy, "/getorgstandard?license=second&org=IBM")));
+        }
+        assertEquals(List.of("license=first&org=IBM"), upstreamQueries);
+    }
+
+    @Test
+    void answersOtherThanSuccessAreNotCached() throws Exception {
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            code = "Insufficient credits";
+            for (int i = 0; i < 2; i++) {
+                HttpResponse<String> response = get(proxy, "/getfullnamematch?fullname=Jim+Smith");
+                assertEquals(200, response.statusCode());
+                assertEquals("miss", cacheStatus(response));
+            }
+
+            code = "Success";
+            status = 500;
+            for (int i = 0; i < 2; i++) {
+                HttpResponse<String> response = get(proxy, "/getfullnamematch?fullname=Jim+Smith");
+                assertEquals(500, response.statusCode());
+                assertEquals("miss", cacheStatus(response));
+            }
+
+            status = 200;
+            assertEquals("miss", cacheStatus(get(proxy, "/getfullnamematch?fullname=Jim+Smith")));
+            assertEquals("hit", cacheStatus(get(proxy, "/getfullnamematch?fullname=Jim+Smith")));
+            assertEquals(5, proxy.misses());
+        }
+        assertEquals(5, upstreamQueries.size());
+    }
+
+    @Test
+    void onlyTheInputValueIsCanonicalized() throws Exception {
+        System.setProperty("interzoid.canonical.rules.getcompanymatchadvanced", "whitespace,case");
+        try (ProxyServer proxy = ProxyServer.start(config(), http)) {
+            assertEquals("miss", cacheStatus(
+                get(proxy, "/getcompanymatchadvanced?company=ACME++Inc&algorithm=model-v4-wide")));
+            HttpResponse<String> folded = get(proxy, "/getcompanymatchadvanced?algorithm=model-v4-wide&company=acme+inc+");
+            assertEquals("hit", cacheStatus(folded));
+            // The API was sent the first spelling
+            assertEquals("{\"SimKey\":\"company=ACME++Inc&algorithm=model-v4-wide\",\"Code\":\"Success\"}",
+                folded.body());
+
+            // A different algorithm is a different lookup, whatever its case
+            assertEquals("miss", cacheStatus(
+                get(proxy, "/getcompanymatchadvanced?company=acme+inc&algorithm=MODEL-V4-WIDE")));
+        }
+        assertEquals(2, upstreamQueries.size());
+    }
+
+    @Test
+    void upstreamCallsArePacedButHitsAreNot() throws Exception {
+        int calls = 12;
+        long interval = TimeUnit.MILLISECONDS.toNanos(50);
+        try (ProxyServer proxy = ProxyServer.start(config().maxRequestsPerSecond(20).burst(1), http)) {
+            // A burst of different lookups at once
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                responses.add(caller.sendAsync(HttpRequest.newBuilder(
+                    URI.create(proxy.baseUrl() + "/getorgstandard?org=Org" + i)).build(),
+                    HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertEquals("miss", cacheStatus(response.get()));
+            }
+            // One permit is banked after an idle spell; the rest come one interval apart
+            List<Long> arrivals = new ArrayList<>(upstreamNanos);
+            Collections.sort(arrivals);
+            long spread = arrivals.get(calls - 1) - arrivals.get(0);
+            assertTrue(spread >= (calls - 2) * interval * 9 / 10, "upstream calls took " + spread + " ns");
+            String stats = get(proxy, "/proxy/stats").body();
+            assertTrue(stats.matches(".*\"rateLimitWaitMs\":[1-9][0-9]*.*"), stats);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < calls; i++) {
+                assertEquals("hit", cacheStatus(get(proxy, "/getorgstandard?org=Org" + i)));
+            }
+            assertTrue(System.nanoTime() - start < (calls - 2) * interval, "hits were paced");
+        }
+        assertEquals(calls, upstreamQueries.size());
+    }
+}
@@ -1,20 +1,36 @@
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.batch.DistinctValuePlanner;
+import com.interzoid.client.io.CsvReader;
+import com.interzoid.client.io.GroupCommitWriter;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Reads organization names from a text file, calls Interzoid's
  * getorgstandard API, and writes original value + Standard to a CSV file.
  *
+ * Each distinct organization name is sent to the API once, however often
+ * it repeats in the file; its Standard is then written for every line in
+ * the original order (see interzoid.distinct.* in java-client/README.md).
+ *
+ * For a CSV or TSV file, set INPUT_FILE_TYPE and name the organization
+ * column in INPUT_COLUMN: the other columns are copied through untouched
+ * and a Standard column is added to each row.
+ *
+ * With -Dinterzoid.canonical=true, names that differ only in spacing or
+ * Unicode form share one call too; case is kept, since the Standard can
+ * depend on it (see interzoid.canonical.* in java-client/README.md).
+ *
  * File name: standardize-file.java
- * Run with:  java StandardizeFile
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar standardize-file.java
  */
 class StandardizeFile {
 
@@ -24,6 +40,15 @@ class StandardizeFile {
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
     private static final String OUTPUT_FILE_NAME = "output.csv";
 
+    // "txt": one name per line. "csv" or "tsv": INPUT_COLUMN is the
+    // column's header name, or its number (1 = first column)
+    private static final String INPUT_FILE_TYPE = "txt";
+    private static final String INPUT_COLUMN = "Organization";
+    private static final boolean HAS_HEADER = true;
+
+    // Off unless -Dinterzoid.canonical=true or -Dinterzoid.canonical.rules.getorgstandard=...
+    private static final Canonicalizer CANONICAL = Canonicalizer.forApi("getorgstandard");
+
     // Mapping of JSON response
     private static class ResponseData {
         String standard;
@@ -31,51 +56,68 @@ class StandardizeFile {
         String credits;
     }
 
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("Standard", "Code", "Credits");
+
     public static void main(String[] args) {
         try (
-            BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME));
-            PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(OUTPUT_FILE_NAME)))
+            GroupCommitWriter writer = GroupCommitWriter.open(Paths.get(OUTPUT_FILE_NAME), false)
         ) {
-            String line;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                String originalValue = line;
-
-                // Allow blank lines to be skipped
-                if (originalValue.length() == 0) {
-                    continue;
-                }
-
-                ResponseData result;
-                try {
-                    result = callApiForOrg(originalValue);
-                } catch (Exception e) {
-                    System.out.printf(
-                        "API call error for line %d (\"%s\"): %s%n",
-                        lineNumber, originalValue, e.getMessage()
+            // One API call per distinct name, then every line is written
+            // with its Standard in input order
+            DistinctValuePlanner.Summary summary;
+            if ("txt".equalsIgnoreCase(INPUT_FILE_TYPE)) {
+                summary = new DistinctValuePlanner().canonical(CANONICAL).run(
+                    Paths.get(INPUT_FILE_NAME),
+                    (orgName, lineNumber) -> CompletableFuture.completedFuture(standardize(orgName, lineNumber)),
+                    (orgName, standard) -> writer.write(toCsvRow(orgName, standard))
+                );
+            } else {
+                char delimiter = CsvReader.delimiterFor(INPUT_FILE_TYPE);
+                try (CsvReader reader = CsvReader.open(Paths.get(INPUT_FILE_NAME), delimiter, HAS_HEADER)) {
+                    int column = reader.column(INPUT_COLUMN);
+                    if (reader.header() != null) {
+                        writer.write(reader.header().raw() + delimiter + "Standard");
+                    }
+                    // Rows keep all their columns; only the standard is appended
+                    summary = new DistinctValuePlanner().canonical(CANONICAL).run(
+                        reader,
+                        column,
+                        (orgName, lineNumber) -> CompletableFuture.completedFuture(standardize(orgName, lineNumber)),
+                        (row, standard) -> writer.write(row + delimiter + CsvReader.escape(standard, delimiter))
                     );
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
                 }
-
-                if (result == null) {
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
-                }
-
-                // Write row to CSV: original value + Standard
-                writer.println(toCsvRow(originalValue, result.standard));
             }
 
             System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
+            System.out.printf("Rows: %d, API calls: %d%n", summary.rows(), summary.distinctValues());
 
         } catch (IOException e) {
             System.out.println("Error opening/creating files: " + e.getMessage());
         }
     }
 
+    /**
+     * Returns the Standard for one organization name, or "" if the call fails.
+     */
+    private static String standardize(String orgName, long lineNumber) {
+        ResponseData result;
+        try {
+            result = callApiForOrg(orgName);
+        } catch (Exception e) {
+            System.out.printf(
+                "API call error for line %d (\"%s\"): %s%n",
+                lineNumber, orgName, e.getMessage()
+            );
+            return "";
+        }
+
+        if (result == null) {
+            return "";
+        }
+        return result.standard;
+    }
+
     /**
      * Calls the getorgstandard API for a given organization name.
      */
@@ -83,96 +125,25 @@ class StandardizeFile {
         String orgParam = URLEncoder.encode(orgName, StandardCharsets.UTF_8.toString());
 
         String apiUrl =
-            "https://api.interzoid.com/getorgstandard?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getorgstandard?license=" + API_KEY +
             "&org=" + orgParam;
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in = new BufferedReader(
-            new java.io.InputStreamReader(
-                status >= 200 && status < 300
-                    ? conn.getInputStream()
-                    : conn.getErrorStream(),
-                StandardCharsets.UTF_8
-            )
-        );
-
-        StringBuilder responseBuilder = new StringBuilder();
-        String inputLine;
-
-        while ((inputLine = in.readLine()) != null) {
-            responseBuilder.append(inputLine);
-        }
-
-        in.close();
-        conn.disconnect();
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-        String json = responseBuilder.toString().trim();
+        JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
         if (json.isEmpty()) {
             return null;
         }
 
         ResponseData data = new ResponseData();
-        data.standard = extractJsonValue(json, "Standard");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        data.standard = json.get("Standard");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
 
         return data;
     }
 
-    /**
-     * Simple JSON extractor for flat key/value JSON like:
-     * {"Standard":"...","Code":"Success","Credits":"1"}
-     */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) return "";
-
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        // Handle quoted string values
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not really expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length() &&
-                   json.charAt(valueEnd) != ',' &&
-                   json.charAt(valueEnd) != '}' &&
-                   !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
-
     /**
      * Escapes a single field for CSV.
      */
@@ -8,16 +8,16 @@
 //
 // Register for an API key at:
 // https://www.interzoid.com/manage-api-account
+//
+// Requires the shared client (cd ../../java-client && mvn -q install).
+// Run with: java -cp ../../java-client/interzoid-client/target/interzoid-client.jar example.java
+
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 
 public class example {
@@ -34,89 +34,41 @@ public class example {
 
             // Construct the API URL
             String apiUrl =
-                "https://api.interzoid.com/getorgstandard?license=" + API_KEY +
+                InterzoidHttp.apiBaseUrl() + "/getorgstandard?license=" + API_KEY +
                 "&org=" + org;
 
-            HttpURLConnection connection = null;
-
-            try {
-                // Parse URL safely (avoids deprecated URL(String) constructor)
-                URI uri = new URI(apiUrl);
-                URL url = uri.toURL();
-
-                // Open HTTP connection
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-
-                int statusCode = connection.getResponseCode();
+            // Send the request on the shared keep-alive client
+            HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-                if (statusCode == HttpURLConnection.HTTP_OK) {
+            int statusCode = response.statusCode();
 
-                    // Read response into a single String
-                    String responseBody = readStream(connection.getInputStream());
+            if (statusCode == 200) {
+                // Example JSON returned:
+                // {
+                //   "Standard": "Bank of America",
+                //   "Code": "success",
+                //   "Credits": "99"
+                // }
 
-                    // Example JSON returned:
-                    // {
-                    //   "Standard": "Bank of America",
-                    //   "Code": "success",
-                    //   "Credits": "99"
-                    // }
+                // Pick out all fields in one pass over the raw response bytes
+                JsonFields.Values json = JsonFields.of("Standard", "Code", "Credits")
+                    .extract(response.bodyBytes());
 
-                    String standard = extractJsonValue(responseBody, "Standard");
-                    String code     = extractJsonValue(responseBody, "Code");
-                    String credits  = extractJsonValue(responseBody, "Credits");
+                String standard = json.get("Standard");
+                String code     = json.get("Code");
+                String credits  = json.get("Credits");
 
-                    // Print results
-                    System.out.println("Standardized Organization: " + standard);
-                    System.out.println("Result Code: " + code);
-                    System.out.println("Remaining Credits: " + credits);
+                // Print results
+                System.out.println("Standardized Organization: " + standard);
+                System.out.println("Result Code: " + code);
+                System.out.println("Remaining Credits: " + credits);
 
-                } else {
-                    System.out.println("API returned HTTP status code: " + statusCode);
-                }
-
-            } finally {
-                if (connection != null) {
-                    connection.disconnect();
-                }
+            } else {
+                System.out.println("API returned HTTP status code: " + statusCode);
             }
 
-        } catch (IOException | URISyntaxException e) {
+        } catch (IOException e) {
             System.out.println("Error calling Interzoid API: " + e.getMessage());
         }
     }
-
-    // Helper method to read an InputStream into one String
-    private static String readStream(InputStream inputStream) throws IOException {
-        StringBuilder builder = new StringBuilder();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            builder.append(line);
-        }
-
-        reader.close();
-        return builder.toString();
-    }
-
-    // A simple JSON field extractor using string searching.
-    // Works for predictable API responses.
-    private static String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\"";
-
-        int keyIndex = json.indexOf(pattern);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(":", keyIndex);
-        if (colonIndex == -1) return "";
-
-        int firstQuote = json.indexOf("\"", colonIndex + 1);
-        if (firstQuote == -1) return "";
-
-        int secondQuote = json.indexOf("\"", firstQuote + 1);
-        if (secondQuote == -1) return "";
-
-        return json.substring(firstQuote + 1, secondQuote);
-    }
 }
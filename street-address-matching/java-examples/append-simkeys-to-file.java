@@ -1,20 +1,55 @@
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import com.interzoid.client.Canonicalizer;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.SimKeyCache;
+import com.interzoid.client.batch.DistinctValuePlanner;
+import com.interzoid.client.io.CsvReader;
+import com.interzoid.client.io.GroupCommitWriter;
+import com.interzoid.client.io.ParquetWriter;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Reads street addresses from a text file, calls Interzoid's Address Match
  * Advanced API, and writes original value + SimKey to a CSV file.
  *
+ * Each distinct address is looked up once, however often it repeats in
+ * the file, and the SimKey is then written for every line in the original
+ * order (see interzoid.distinct.* in java-client/README.md). SimKeys are
+ * also kept in a local cache directory, so re-running over a file that has
+ * mostly been seen before only calls the API for new addresses.
+ *
+ * API calls run concurrently. The shared client starts with a few in
+ * flight and adapts the number to the API's responses: it backs off on
+ * 429s, server errors, Retry-After and growing latency, and ramps up while
+ * calls are answered promptly (see interzoid.http.* in java-client/README.md).
+ * output.csv is still written in the original line order.
+ *
+ * The input can also be a CSV or TSV extract with the address in one of
+ * several columns: set INPUT_FILE_TYPE and INPUT_COLUMN below, and every
+ * row is written out as it was read with a SimKey column added at the end.
+ * Name the output file output.parquet to get a Parquet file (Address and
+ * SimKey columns, SimKeys dictionary encoded) for loading into an
+ * analytics engine instead.
+ *
+ * Run with -Dinterzoid.canonical=true to also count spellings that differ
+ * only in case, spacing or Unicode form ("12 Main St" and "12  MAIN ST")
+ * as one address: one lookup and one cache entry between them. Each line
+ * is still written with its own text (see interzoid.canonical.* in
+ * java-client/README.md).
+ *
+ * Run with -Dinterzoid.metrics.port=9464 to watch latency, status and
+ * Code counts, credits and rows/s at http://localhost:9464/metrics while
+ * the job runs (see interzoid.metrics.* in java-client/README.md).
+ *
  * File name: append-simkeys-to-file-address.java
- * Run with:  java AppendAddressSimkeysToFile
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar append-simkeys-to-file-address.java
  */
 class AppendAddressSimkeysToFile {
 
@@ -22,148 +57,180 @@ class AppendAddressSimkeysToFile {
     private static final String API_KEY = "YOUR_API_KEY_HERE";
 
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
+    // A name ending in .parquet writes Parquet (from "txt" input only)
     private static final String OUTPUT_FILE_NAME = "output.csv";
 
+    // "txt" for one address per line, or "csv"/"tsv" for a file with
+    // several columns. INPUT_COLUMN is the header name of the address
+    // column, or its number counting from 1.
+    private static final String INPUT_FILE_TYPE = "txt";
+    private static final String INPUT_COLUMN = "Address";
+    private static final boolean HAS_HEADER = true;
+
+    private static final String API_NAME = "getaddressmatchadvanced";
+    private static final String ALGORITHM = "model-v3-narrow";
+
+    // Local SimKey cache (TTL and size: see java-client/README.md).
+    // Delete the directory to start from scratch.
+    private static final String CACHE_DIR = "simkey-cache";
+
+    // Folds trivial differences before the cache and the API are asked
+    // (off unless -Dinterzoid.canonical=true)
+    private static final Canonicalizer CANONICAL = Canonicalizer.forApi(API_NAME);
+
     private static class ResponseData {
         String simKey;
         String code;
         String credits;
     }
 
-    public static void main(String[] args) {
-        try (
-            BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME));
-            PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(OUTPUT_FILE_NAME)))
-        ) {
-            String line;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                String originalValue = line;
-
-                // Skip blank lines if desired
-                if (originalValue.length() == 0) {
-                    continue;
-                }
-
-                ResponseData result;
-                try {
-                    result = callApiForAddress(originalValue);
-                } catch (Exception e) {
-                    System.out.printf(
-                        "API error on line %d (\"%s\"): %s%n",
-                        lineNumber, originalValue, e.getMessage()
-                    );
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
-                }
-
-                if (result == null) {
-                    writer.println(toCsvRow(originalValue, ""));
-                    continue;
-                }
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
 
-                writer.println(toCsvRow(originalValue, result.simKey));
-            }
+    public static void main(String[] args) {
+        try (SimKeyCache cache = SimKeyCache.open(Paths.get(CACHE_DIR))) {
+            // Looks up each distinct address once (cache first, then the API),
+            // then writes every line with its SimKey in input order. The
+            // client's limiter paces the API calls to what the API can take.
+            DistinctValuePlanner.Summary summary = OUTPUT_FILE_NAME.endsWith(".parquet")
+                ? writeParquet(cache)
+                : writeCsv(cache);
 
             System.out.println("Done. Results written to " + OUTPUT_FILE_NAME);
+            System.out.printf("Rows: %d (read at %.0f rows/s), distinct addresses: %d%n",
+                summary.rows(), summary.readRowsPerSecond(), summary.distinctValues());
+            System.out.printf("Cache hits: %d, API calls: %d, canonical rules: %s%n",
+                cache.hits(), cache.misses(), CANONICAL);
+            System.out.printf("Concurrency limit at end: %d, throttled responses: %d, retries: %d%n",
+                InterzoidHttp.shared().limiter().limit(), InterzoidHttp.shared().limiter().throttledCount(),
+                InterzoidHttp.shared().retryCount());
 
         } catch (IOException e) {
             System.out.println("Error with input/output files: " + e.getMessage());
         }
     }
 
+    private static DistinctValuePlanner.Summary writeCsv(SimKeyCache cache) throws IOException {
+        try (GroupCommitWriter writer = GroupCommitWriter.open(Paths.get(OUTPUT_FILE_NAME), false)) {
+            if (!"txt".equalsIgnoreCase(INPUT_FILE_TYPE)) {
+                return appendToDelimitedFile(cache, writer);
+            }
+            return new DistinctValuePlanner().canonical(CANONICAL).run(
+                Paths.get(INPUT_FILE_NAME),
+                (address, lineNumber) -> lookupSimKey(address, lineNumber, cache),
+                (address, simKey) -> writer.write(toCsvRow(address, simKey))
+            );
+        }
+    }
+
     /**
-     * Calls getaddressmatchadvanced for a given street address.
+     * Parquet output: an Address and a SimKey column, both strings. Failed
+     * lookups are stored as null rather than "".
      */
-    private static ResponseData callApiForAddress(String address) throws IOException {
-        String addrParam = URLEncoder.encode(address, StandardCharsets.UTF_8.toString());
-
-        String apiUrl =
-            "https://api.interzoid.com/getaddressmatchadvanced?license=" + API_KEY +
-            "&address=" + addrParam +
-            "&algorithm=model-v3-narrow";
-
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in = new BufferedReader(
-                new java.io.InputStreamReader(
-                        status >= 200 && status < 300 ?
-                        conn.getInputStream() : conn.getErrorStream(),
-                        StandardCharsets.UTF_8));
-
-        StringBuilder responseBuilder = new StringBuilder();
-        String inputLine;
-
-        while ((inputLine = in.readLine()) != null) {
-            responseBuilder.append(inputLine);
+    private static DistinctValuePlanner.Summary writeParquet(SimKeyCache cache) throws IOException {
+        if (!"txt".equalsIgnoreCase(INPUT_FILE_TYPE)) {
+            throw new IOException("Parquet output needs INPUT_FILE_TYPE \"txt\"");
         }
+        List<ParquetWriter.Column> columns = List.of(
+            ParquetWriter.Column.string("Address"), ParquetWriter.Column.string("SimKey"));
+        try (ParquetWriter writer = ParquetWriter.open(Paths.get(OUTPUT_FILE_NAME), columns)) {
+            return new DistinctValuePlanner().canonical(CANONICAL).run(
+                Paths.get(INPUT_FILE_NAME),
+                (address, lineNumber) -> lookupSimKey(address, lineNumber, cache),
+                (address, simKey) -> writer.write(address, simKey.isEmpty() ? null : simKey)
+            );
+        }
+    }
 
-        in.close();
-        conn.disconnect();
+    /**
+     * CSV/TSV input: looks up the address column and writes each row back
+     * unchanged, plus its SimKey, in the same format as the input.
+     */
+    private static DistinctValuePlanner.Summary appendToDelimitedFile(SimKeyCache cache, GroupCommitWriter writer)
+            throws IOException {
+        char delimiter = CsvReader.delimiterFor(INPUT_FILE_TYPE);
+        try (CsvReader reader = CsvReader.open(Paths.get(INPUT_FILE_NAME), delimiter, HAS_HEADER)) {
+            int column = reader.column(INPUT_COLUMN);
+            if (reader.header() != null) {
+                writer.write(reader.header().raw() + delimiter + "SimKey");
+            }
+            return new DistinctValuePlanner().canonical(CANONICAL).run(
+                reader,
+                column,
+                (address, lineNumber) -> lookupSimKey(address, lineNumber, cache),
+                (row, simKey) -> writer.write(row + delimiter + CsvReader.escape(simKey, delimiter))
+            );
+        }
+    }
 
-        String json = responseBuilder.toString().trim();
-        if (json.isEmpty()) {
-            return null;
+    /**
+     * Returns the SimKey for one distinct address: from the cache if present,
+     * otherwise from the API (caching successful results). On error or an
+     * empty response the SimKey is "".
+     */
+    private static CompletableFuture<String> lookupSimKey(String address, long lineNumber, SimKeyCache cache) {
+        // Served from the cache: no credit or round trip needed
+        String cacheKey = CANONICAL.apply(address);
+        String cachedKey = cache.get(API_NAME, ALGORITHM, cacheKey);
+        if (cachedKey != null) {
+            return CompletableFuture.completedFuture(cachedKey);
         }
 
-        ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        return callApiForAddressAsync(address).handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.printf(
+                    "API error on line %d (\"%s\"): %s%n",
+                    lineNumber, address, cause.getMessage()
+                );
+                return "";
+            }
+            if (result == null) {
+                return "";
+            }
 
-        return data;
+            // Only successful results are cached; failures are retried next run
+            if ("Success".equalsIgnoreCase(result.code)) {
+                try {
+                    cache.put(API_NAME, ALGORITHM, cacheKey, result.simKey);
+                } catch (IOException e) {
+                    System.out.println("Could not write to the cache: " + e.getMessage());
+                }
+            }
+            return result.simKey;
+        });
     }
 
     /**
-     * Very small JSON extractor for flat key/value pairs.
+     * Calls getaddressmatchadvanced for a given street address without
+     * blocking for the response.
      */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) return "";
+    private static CompletableFuture<ResponseData> callApiForAddressAsync(String address) {
+        String apiUrl =
+            InterzoidHttp.apiBaseUrl() + "/" + API_NAME + "?license=" + API_KEY +
+            "&address=" + URLEncoder.encode(address, StandardCharsets.UTF_8) +
+            "&algorithm=" + ALGORITHM;
 
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) return "";
+        // Shared keep-alive client: connections are reused across rows
+        return InterzoidHttp.shared().getAsync(apiUrl)
+            .thenApply(response -> parseResponse(response.bodyBytes()));
+    }
 
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
+    /**
+     * Maps a response body (success or error) to ResponseData, or null if empty.
+     */
+    private static ResponseData parseResponse(byte[] body) {
+        JsonFields.Values json = RESPONSE_FIELDS.extract(body);
+        if (json.isEmpty()) {
+            return null;
         }
 
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            int valueEnd = valueStart;
-            while (valueEnd < json.length() &&
-                   json.charAt(valueEnd) != ',' &&
-                   json.charAt(valueEnd) != '}' &&
-                   !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
+        ResponseData data = new ResponseData();
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
+
+        return data;
     }
 
     /**
@@ -1,15 +1,20 @@
+import com.interzoid.client.HttpResult;
+import com.interzoid.client.InterzoidHttp;
+import com.interzoid.client.JsonFields;
+import com.interzoid.client.cluster.FuzzyClusterer;
+import com.interzoid.client.cluster.ReportCoordinator;
+import com.interzoid.client.cluster.ReportWorker;
+import com.interzoid.client.cluster.SimKeyClusterer;
+import com.interzoid.client.cluster.SimKeyIndex;
+
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Reads a list of street addresses from a text file, generates
@@ -20,8 +25,29 @@ import java.util.List;
  * Each printed line is "Input,SimKey" (two-column CSV style).
  * Only clusters with two or more matching addresses are printed.
  *
+ * Records are grouped with a bounded-memory external sort by default, or
+ * with a single-pass hash grouping when run with
+ * -Dinterzoid.cluster.mode=hash (see java-client/README.md).
+ *
+ * For a file that grows between runs, set INDEX_DIRECTORY: SimKeys are
+ * then kept in a persistent index, only addresses not yet in it are sent
+ * to the API, and only clusters that are new or gained an address since
+ * the last run are printed (with all of their addresses). A repeated
+ * address is printed as often as it appears, as in a full report.
+ *
+ * To spread a large file over several processes or machines, start a
+ * coordinator on the machine with the input file, then the workers, each
+ * pointed at the coordinator. Workers split the API calls between them
+ * and cluster one hash partition of the SimKeys each; the coordinator
+ * prints the same report as a single run (see interzoid.report.* in
+ * java-client/README.md):
+ *
+ *   java -cp ... generate-address-match-report.java coordinator 4
+ *   java -cp ... generate-address-match-report.java worker http://coordinator-host:8095   (x4)
+ *
  * File name: generate-address-match-report.java
- * Run with:  java GenerateAddressMatchReport
+ * Requires:  the shared client (cd ../../java-client && mvn -q install)
+ * Run with:  java -cp ../../java-client/interzoid-client/target/interzoid-client.jar generate-address-match-report.java
  */
 class GenerateAddressMatchReport {
 
@@ -31,16 +57,8 @@ class GenerateAddressMatchReport {
     // Input file containing one street address per line
     private static final String INPUT_FILE_NAME = "sample-input-file.txt";
 
-    // Holds one input address and its generated similarity key
-    private static class Record {
-        String input;
-        String simKey;
-
-        Record(String input, String simKey) {
-            this.input = input;
-            this.simKey = simKey;
-        }
-    }
+    // Directory for the persistent SimKey index, or "" to report the whole file on every run
+    private static final String INDEX_DIRECTORY = "";
 
     // Maps the JSON returned by the getaddressmatchadvanced API
     private static class ResponseData {
@@ -49,92 +67,192 @@ class GenerateAddressMatchReport {
         String credits;
     }
 
+    // Fields read from each response, in a single pass over its bytes
+    private static final JsonFields RESPONSE_FIELDS = JsonFields.of("SimKey", "Code", "Credits");
+
     public static void main(String[] args) {
-        List<Record> records = new ArrayList<>();
+        if (args.length == 2 && "coordinator".equals(args[0])) {
+            runCoordinator(Integer.parseInt(args[1]));
+            return;
+        }
+        if (args.length == 2 && "worker".equals(args[0])) {
+            runWorker(args[1]);
+            return;
+        }
+        if (!INDEX_DIRECTORY.isEmpty()) {
+            runIncremental();
+            return;
+        }
 
-        // Open the input file for reading
-        try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
-            String address;
+        // Collects (SimKey, input) pairs. The default engine sorts small files
+        // in memory and spills large ones to temp files as sorted runs, so
+        // the heap never has to hold the whole file. -Dinterzoid.cluster.mode=hash
+        // groups in one pass instead (faster, but everything stays in memory).
+        try (SimKeyClusterer clusterer = SimKeyClusterer.fromSystemProperties()) {
+
+            // Open the input file for reading
+            try (BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
+                String address;
+
+                // Read each line as a street address and call the API
+                while ((address = reader.readLine()) != null) {
+                    // Skip blank lines
+                    if (address.trim().isEmpty()) {
+                        continue;
+                    }
+
+                    ResponseData apiResult;
+                    try {
+                        apiResult = callGetAddressMatchAdvanced(address);
+                    } catch (Exception e) {
+                        System.out.println("Error calling API for: " + address + " - " + e.getMessage());
+                        continue;
+                    }
+
+                    // If there is no SimKey, skip this record
+                    if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
+                        continue;
+                    }
+
+                    // Store the address and SimKey for later clustering
+                    clusterer.add(apiResult.simKey, address);
+                }
+
+            } catch (IOException e) {
+                System.out.println("Error opening input file: " + e.getMessage());
+                return;
+            }
+
+            // Check if we got any records with SimKeys
+            if (clusterer.size() == 0) {
+                System.out.println("No records with similarity keys found.");
+                return;
+            }
 
-            // Read each line as a street address and call the API
+            //------------------------------------------------------------------
+            // Emit the clusters in SimKey order (records keep their input order)
+            // and print each cluster that contains two or more records. Each
+            // line is "Input,SimKey" and clusters are separated by a blank line.
+            //------------------------------------------------------------------
+            clusterer.forEachCluster(2, GenerateAddressMatchReport::printCluster);
+
+            // Fuzzy merging is single linkage: say how many SimKeys joined a
+            // cluster only through a chain of near keys
+            if (clusterer instanceof FuzzyClusterer) {
+                System.out.println(((FuzzyClusterer) clusterer).summary());
+            }
+
+        } catch (IOException e) {
+            System.out.println("Error sorting records: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the lines that are not yet in the index, then prints the
+     * clusters they created or joined, along with any left unprinted by a
+     * run that died before its report.
+     */
+    private static void runIncremental() {
+        try (SimKeyIndex index = SimKeyIndex.open(Paths.get(INDEX_DIRECTORY));
+             BufferedReader reader = new BufferedReader(new FileReader(INPUT_FILE_NAME))) {
+            String address;
             while ((address = reader.readLine()) != null) {
-                // Skip blank lines
-                if (address.trim().isEmpty()) {
+                // Skip blank lines and lines indexed by an earlier run
+                if (address.trim().isEmpty() || index.seen(address)) {
                     continue;
                 }
 
-                ResponseData apiResult;
-                try {
-                    apiResult = callGetAddressMatchAdvanced(address);
-                } catch (Exception e) {
-                    System.out.println("Error calling API for: " + address + " - " + e.getMessage());
-                    continue;
-                }
-
-                // If there is no SimKey, skip this record
-                if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
-                    continue;
+                // A repeat of an indexed address reuses its SimKey
+                String simKey = index.simKeyOf(address);
+                if (simKey == null) {
+                    ResponseData apiResult;
+                    try {
+                        apiResult = callGetAddressMatchAdvanced(address);
+                    } catch (Exception e) {
+                        System.out.println("Error calling API for: " + address + " - " + e.getMessage());
+                        continue;
+                    }
+
+                    // Not indexed without a SimKey, so the next run tries again
+                    if (apiResult == null || apiResult.simKey == null || apiResult.simKey.isEmpty()) {
+                        continue;
+                    }
+                    simKey = apiResult.simKey;
                 }
+                index.add(simKey, address);
+            }
 
-                // Store the address and SimKey in memory for later clustering
-                records.add(new Record(address, apiResult.simKey));
+            if (index.changedKeys() == 0) {
+                System.out.println("No new addresses since the last run.");
+                return;
             }
+            index.forEachChangedCluster(2, GenerateAddressMatchReport::printCluster);
 
         } catch (IOException e) {
-            System.out.println("Error opening input file: " + e.getMessage());
-            return;
+            System.out.println("Error with input file or index: " + e.getMessage());
         }
+    }
 
-        // Check if we got any records with SimKeys
-        if (records.isEmpty()) {
-            System.out.println("No records with similarity keys found.");
-            return;
+    /**
+     * Hands out shards of the input file to {@code workers} workers and
+     * prints the clusters they find.
+     */
+    private static void runCoordinator(int workers) {
+        try (ReportCoordinator coordinator = ReportCoordinator.start(Paths.get(INPUT_FILE_NAME), workers, 2)) {
+            System.err.printf("Waiting for %d workers at %s (%d shards)%n", workers, coordinator.url(), coordinator.shards());
+            coordinator.awaitReport(GenerateAddressMatchReport::printCluster);
+        } catch (IOException e) {
+            System.out.println("Error running the report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
-        //------------------------------------------------------------------
-        // Sort the records strictly by SimKey only.
-        // This ensures that all identical SimKeys are adjacent in the list,
-        // making it easy to identify groups of matches.
-        //------------------------------------------------------------------
-        Collections.sort(records, Comparator.comparing(r -> r.simKey));
-
-        //------------------------------------------------------------------
-        // Walk through the sorted list and collect clusters of records that
-        // share the same SimKey. Only print clusters that contain two or more
-        // records. Each line is printed as "Input,SimKey" and clusters are
-        // separated by a blank line.
-        //------------------------------------------------------------------
-        String currentKey = null;
-        List<Record> cluster = new ArrayList<>();
-
-        for (Record rec : records) {
-            if (currentKey == null || !rec.simKey.equals(currentKey)) {
-                // SimKey changed: flush the previous cluster (if any)
-                printCluster(cluster);
-                cluster.clear();
-
-                currentKey = rec.simKey;
-                cluster.add(rec);
-            } else {
-                // Same SimKey as current cluster, add to it
-                cluster.add(rec);
-            }
+    /**
+     * Looks up SimKeys for the shards the coordinator gives out, and
+     * clusters this worker's share of them.
+     */
+    private static void runWorker(String coordinatorUrl) {
+        try (ReportWorker worker = ReportWorker.start(coordinatorUrl)) {
+            worker.run(GenerateAddressMatchReport::lookupSimKey);
+            System.err.printf("Worker done: %d addresses in %d shards%n", worker.rows(), worker.shards());
+        } catch (IOException e) {
+            System.out.println("Error running the report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
-        // Flush the final cluster at the end
-        printCluster(cluster);
+    /**
+     * The SimKey for one address, or "" (address left out of the report)
+     * if the call fails.
+     */
+    private static CompletableFuture<String> lookupSimKey(String address, long order) {
+        String apiUrl =
+            InterzoidHttp.apiBaseUrl() + "/getaddressmatchadvanced?license=" + API_KEY +
+            "&address=" + URLEncoder.encode(address, StandardCharsets.UTF_8) +
+            "&algorithm=model-v3-narrow";
+
+        return InterzoidHttp.shared().getAsync(apiUrl).handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.out.println("Error calling API for: " + address + " - " + cause.getMessage());
+                return "";
+            }
+            return RESPONSE_FIELDS.extract(response.bodyBytes()).get("SimKey");
+        });
     }
 
     /**
      * Helper function to print a cluster if it has two or more records.
      * Each record is printed as "Input,SimKey", with a blank line between clusters.
      */
-    private static void printCluster(List<Record> cluster) {
-        if (cluster.size() < 2) {
+    private static void printCluster(String simKey, List<String> inputs) {
+        if (inputs.size() < 2) {
             return;
         }
-        for (Record r : cluster) {
-            System.out.printf("%s,%s%n", r.input, r.simKey);
+        for (String input : inputs) {
+            System.out.printf("%s,%s%n", input, simKey);
         }
         System.out.println(); // blank line between clusters
     }
@@ -146,93 +264,23 @@ class GenerateAddressMatchReport {
         String addressParam = URLEncoder.encode(address, StandardCharsets.UTF_8.toString());
 
         String apiUrl =
-            "https://api.interzoid.com/getaddressmatchadvanced?license=" + API_KEY +
+            InterzoidHttp.apiBaseUrl() + "/getaddressmatchadvanced?license=" + API_KEY +
             "&address=" + addressParam +
             "&algorithm=model-v3-narrow";
 
-        URL url = new URL(apiUrl);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        int status = conn.getResponseCode();
-        BufferedReader in = new BufferedReader(
-            new InputStreamReader(
-                status >= 200 && status < 300
-                    ? conn.getInputStream()
-                    : conn.getErrorStream(),
-                StandardCharsets.UTF_8
-            )
-        );
-
-        StringBuilder responseBuilder = new StringBuilder();
-        String line;
-        while ((line = in.readLine()) != null) {
-            responseBuilder.append(line);
-        }
-        in.close();
-        conn.disconnect();
+        // Shared keep-alive client: the connection is reused from row to row
+        HttpResult response = InterzoidHttp.shared().get(apiUrl);
 
-        String json = responseBuilder.toString().trim();
+        JsonFields.Values json = RESPONSE_FIELDS.extract(response.bodyBytes());
         if (json.isEmpty()) {
             return null;
         }
 
         ResponseData data = new ResponseData();
-        data.simKey = extractJsonValue(json, "SimKey");
-        data.code = extractJsonValue(json, "Code");
-        data.credits = extractJsonValue(json, "Credits");
+        data.simKey = json.get("SimKey");
+        data.code = json.get("Code");
+        data.credits = json.get("Credits");
 
         return data;
     }
-
-    /**
-     * Minimal JSON value extractor for flat JSON like:
-     * {"SimKey":"...","Code":"Success","Credits":"1"}
-     * (No external libraries, to keep parity with the Go example.)
-     */
-    private static String extractJsonValue(String json, String key) {
-        String quotedKey = "\"" + key + "\"";
-        int keyIndex = json.indexOf(quotedKey);
-        if (keyIndex == -1) return "";
-
-        int colonIndex = json.indexOf(':', keyIndex + quotedKey.length());
-        if (colonIndex == -1) return "";
-
-        int valueStart = colonIndex + 1;
-        while (valueStart < json.length() && Character.isWhitespace(json.charAt(valueStart))) {
-            valueStart++;
-        }
-
-        // Handle quoted string value
-        if (valueStart < json.length() && json.charAt(valueStart) == '"') {
-            valueStart++;
-            StringBuilder sb = new StringBuilder();
-            boolean escaping = false;
-
-            for (int i = valueStart; i < json.length(); i++) {
-                char c = json.charAt(i);
-                if (escaping) {
-                    sb.append(c);
-                    escaping = false;
-                } else if (c == '\\') {
-                    escaping = true;
-                } else if (c == '"') {
-                    break;
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        } else {
-            // Fallback for non-string values (not expected here)
-            int valueEnd = valueStart;
-            while (valueEnd < json.length()
-                    && json.charAt(valueEnd) != ','
-                    && json.charAt(valueEnd) != '}'
-                    && !Character.isWhitespace(json.charAt(valueEnd))) {
-                valueEnd++;
-            }
-            return json.substring(valueStart, valueEnd).trim();
-        }
-    }
 }